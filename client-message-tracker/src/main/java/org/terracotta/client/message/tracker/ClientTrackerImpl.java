@@ -17,22 +17,64 @@ package org.terracotta.client.message.tracker;
 
 import org.terracotta.entity.StateDumpCollector;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Stream;
 import org.terracotta.entity.ClientSourceId;
 
+import static java.util.Comparator.comparingLong;
+
 class ClientTrackerImpl<M, R> implements ClientTracker<M, R> {
 
   private final ConcurrentMap<ClientSourceId, TrackerImpl<M, R>> objectTrackers = new ConcurrentHashMap<>();
+  private final int maximumTrackedTransactions;
 
   public ClientTrackerImpl() {
+    this(TrackerImpl.MAXIMUM_CAPACITY);
+  }
+
+  /**
+   * @param maximumTrackedTransactions the maximum span of transaction ids tracked for each client
+   */
+  public ClientTrackerImpl(int maximumTrackedTransactions) {
+    this.maximumTrackedTransactions = maximumTrackedTransactions;
   }
 
+  /**
+   * @return the tracked messages of all clients, ordered by sequence id
+   */
   Stream<SequencedRecordedMessage<M, R>> getTrackedValues() {
-    return objectTrackers.entrySet().stream().flatMap(t->t.getValue().getTrackedValues().stream().map(e->convert(t.getKey(), e)));
+    // each client lists its messages in sequence order: merging the lists keeps that order overall
+    PriorityQueue<Cursor<M, R>> cursors = new PriorityQueue<>(comparingLong(Cursor::getSequenceId));
+    for (Map.Entry<ClientSourceId, TrackerImpl<M, R>> entry : objectTrackers.entrySet()) {
+      Iterator<TrackerImpl.RequestResponse<M, R>> values = entry.getValue().getTrackedValues().iterator();
+      if (values.hasNext()) {
+        cursors.add(new Cursor<>(entry.getKey(), values));
+      }
+    }
+    List<SequencedRecordedMessage<M, R>> merged = new ArrayList<>();
+    while (!cursors.isEmpty()) {
+      Cursor<M, R> cursor = cursors.poll();
+      merged.add(convert(cursor.clientId, cursor.current));
+      if (cursor.advance()) {
+        cursors.add(cursor);
+      }
+    }
+    return merged.stream();
+  }
+
+  long getTrackedCount() {
+    return objectTrackers.values().stream().mapToLong(TrackerImpl::getTrackedCount).sum();
+  }
+
+  long getEvictedCount() {
+    return objectTrackers.values().stream().mapToLong(TrackerImpl::getEvictedCount).sum();
   }
 
   static <M, R> SequencedRecordedMessage<M, R> convert(ClientSourceId cid, TrackerImpl.RequestResponse<M, R> rr) {
@@ -65,7 +107,7 @@ class ClientTrackerImpl<M, R> implements ClientTracker<M, R> {
   }
 
   TrackerImpl<M, R> getTracker(ClientSourceId clientId) {
-    return objectTrackers.computeIfAbsent(clientId, d -> new TrackerImpl<>());
+    return objectTrackers.computeIfAbsent(clientId, d -> new TrackerImpl<>(maximumTrackedTransactions));
   }
 
   @Override
@@ -80,8 +122,34 @@ class ClientTrackerImpl<M, R> implements ClientTracker<M, R> {
 
   @Override
   public void addStateTo(StateDumpCollector stateDumper) {
+    stateDumper.addState("TrackedCount", getTrackedCount());
+    stateDumper.addState("EvictedCount", getEvictedCount());
     for (Map.Entry<ClientSourceId, TrackerImpl<M, R>> entry : objectTrackers.entrySet()) {
       entry.getValue().addStateTo(stateDumper.subStateDumpCollector(entry.getKey().toString()));
     }
   }
+
+  private static class Cursor<M, R> {
+    private final ClientSourceId clientId;
+    private final Iterator<TrackerImpl.RequestResponse<M, R>> values;
+    private TrackerImpl.RequestResponse<M, R> current;
+
+    Cursor(ClientSourceId clientId, Iterator<TrackerImpl.RequestResponse<M, R>> values) {
+      this.clientId = clientId;
+      this.values = values;
+      this.current = values.next();
+    }
+
+    long getSequenceId() {
+      return current.getSequenceId();
+    }
+
+    boolean advance() {
+      if (values.hasNext()) {
+        current = values.next();
+        return true;
+      }
+      return false;
+    }
+  }
 }
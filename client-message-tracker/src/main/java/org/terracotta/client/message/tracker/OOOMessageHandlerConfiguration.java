@@ -26,12 +26,33 @@ import java.util.function.Predicate;
 @CommonComponent
 public class OOOMessageHandlerConfiguration<M extends EntityMessage, R extends EntityResponse> implements ServiceConfiguration<OOOMessageHandler<M, R>> {
 
+  /**
+   * No limit on the tracked transactions of a client, beyond the one of the tracker itself.
+   */
+  public static final int UNBOUNDED = Integer.MAX_VALUE;
+
   private final String entityIdentifier;
   private final Predicate<M> trackerPolicy;
+  private final int maxTrackedTransactionsPerClient;
 
   public OOOMessageHandlerConfiguration(String entityIdentifier, Predicate<M> trackerPolicy) {
+    this(entityIdentifier, trackerPolicy, UNBOUNDED);
+  }
+
+  /**
+   * @param entityIdentifier the identifier of the entity
+   * @param trackerPolicy decides which messages are tracked
+   * @param maxTrackedTransactionsPerClient the maximum span of transaction ids tracked for a client, bounding the
+   *   memory used by its tracker. When reached, the oldest messages of the client are evicted and their resends are
+   *   handled as reconciled messages.
+   */
+  public OOOMessageHandlerConfiguration(String entityIdentifier, Predicate<M> trackerPolicy, int maxTrackedTransactionsPerClient) {
+    if (maxTrackedTransactionsPerClient < 1) {
+      throw new IllegalArgumentException("Invalid maximum of tracked transactions: " + maxTrackedTransactionsPerClient);
+    }
     this.entityIdentifier = entityIdentifier;
     this.trackerPolicy = trackerPolicy;
+    this.maxTrackedTransactionsPerClient = maxTrackedTransactionsPerClient;
   }
 
   public Predicate<M> getTrackerPolicy() {
@@ -42,6 +63,10 @@ public class OOOMessageHandlerConfiguration<M extends EntityMessage, R extends E
     return entityIdentifier;
   }
 
+  public int getMaxTrackedTransactionsPerClient() {
+    return maxTrackedTransactionsPerClient;
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public Class<OOOMessageHandler<M, R>> getServiceType() {
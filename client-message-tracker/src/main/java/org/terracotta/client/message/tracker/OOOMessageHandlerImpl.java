@@ -15,7 +15,6 @@
  */
 package org.terracotta.client.message.tracker;
 
-import static java.util.Comparator.comparingLong;
 import org.terracotta.entity.ClientSourceId;
 import org.terracotta.entity.EntityMessage;
 import org.terracotta.entity.EntityResponse;
@@ -40,8 +39,12 @@ public class OOOMessageHandlerImpl<M extends EntityMessage, R extends EntityResp
   private final AtomicBoolean checkDuplicates = new AtomicBoolean(true);
 
   public OOOMessageHandlerImpl(Predicate<M> trackerPolicy, DestroyCallback callback) {
+    this(trackerPolicy, OOOMessageHandlerConfiguration.UNBOUNDED, callback);
+  }
+
+  public OOOMessageHandlerImpl(Predicate<M> trackerPolicy, int maxTrackedTransactionsPerClient, DestroyCallback callback) {
     this.trackerPolicy = trackerPolicy;
-    this.clientMessageTracker = new ClientTrackerImpl<>();
+    this.clientMessageTracker = new ClientTrackerImpl<>(maxTrackedTransactionsPerClient);
     this.callback = callback;
   }
 
@@ -96,7 +99,7 @@ public class OOOMessageHandlerImpl<M extends EntityMessage, R extends EntityResp
 
   @Override
   public Stream<RecordedMessage<M, R>> getRecordedMessages() {
-    return clientMessageTracker.getTrackedValues().sorted(comparingLong(SequencedRecordedMessage::getSequenceId)).map(SequencedRecordedMessage::convert);
+    return clientMessageTracker.getTrackedValues().map(SequencedRecordedMessage::convert);
   }
 
   @Override
@@ -15,55 +15,168 @@
  */
 package org.terracotta.client.message.tracker;
 
-import java.util.ArrayList;
-import java.util.Collection;
 import org.terracotta.entity.StateDumpCollector;
 
-import java.util.Optional;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static java.util.Comparator.comparingLong;
 
+/**
+ * Tracks the messages of a client in a ring of slots indexed by transaction id.
+ * <p>
+ * The transaction ids of a client grow monotonically and everything below the oldest transaction id of the client gets
+ * reconciled, so the tracked ids span a window sliding forward: each id takes the slot {@code id & (capacity - 1)},
+ * which needs neither boxing nor locking to track or look up a message. When two tracked ids fall on the same slot the
+ * ring doubles, up to its maximum capacity. Beyond it the oldest messages are evicted by forcing the reconciliation
+ * forward, so that a resend of one of them is handled as a reconciled message rather than applied twice.
+ * <p>
+ * A few messages can stay unreconciled far behind the others, for instance while their processing is long. The ring
+ * does not grow to span them when it is mostly empty: the older of the two colliding messages moves to a sorted
+ * overflow map instead, looked up when the ring misses.
+ * <p>
+ * Only advancing the reconciliation, resizing the ring and moving messages to the overflow synchronize on the tracker.
+ */
 class TrackerImpl<M, R> implements Tracker<M, R> {
 
-  private final SortedMap<Long, RequestResponse<M, R>> trackedValues;
+  static final int INITIAL_CAPACITY = 16;
+  static final int MAXIMUM_CAPACITY = 1 << 30;
+  // the ring stops growing for a collision when fewer than one slot in SPARSE_RATIO is used
+  static final int SPARSE_CAPACITY = 1024;
+  static final int SPARSE_RATIO = 4;
+
+  private final int maximumCapacity;
+  private final AtomicLong trackedCount = new AtomicLong();
+  private final AtomicLong evictedCount = new AtomicLong();
+  private volatile AtomicReferenceArray<RequestResponse<M, R>> slots;
+  private final ConcurrentSkipListMap<Long, RequestResponse<M, R>> overflow = new ConcurrentSkipListMap<>();
   private volatile long reconciledMarker = 0L;
 
+  TrackerImpl() {
+    this(MAXIMUM_CAPACITY);
+  }
+
   /**
-   * Constructor taking a predicate to define the tracking policy. If the predicate returns true, the source will
-   * be tracked.
-   *
-   * @param trackerPolicy defines if a source is tracked or not
+   * @param maximumCapacity the maximum span of transaction ids tracked, rounded up to a power of two
    */
-  @SuppressWarnings("unchecked")
-  TrackerImpl() {
-    this.trackedValues = new TreeMap<>();
+  TrackerImpl(int maximumCapacity) {
+    if (maximumCapacity < 1) {
+      throw new IllegalArgumentException("Invalid capacity: " + maximumCapacity);
+    }
+    this.maximumCapacity = capacityFor(maximumCapacity);
+    this.slots = new AtomicReferenceArray<>(Math.min(INITIAL_CAPACITY, this.maximumCapacity));
+  }
+
+  static int capacityFor(int span) {
+    if (span > MAXIMUM_CAPACITY >>> 1) {
+      return MAXIMUM_CAPACITY;
+    }
+    int capacity = Integer.highestOneBit(span);
+    return capacity == span ? capacity : capacity << 1;
+  }
+
+  private static int index(long id, AtomicReferenceArray<?> table) {
+    return (int) id & (table.length() - 1);
   }
 
   @Override
   public void track(long track, long id, M source, R value) {
     if (id > 0) {
-      placeTrackedValue(track, id, source, value);
+      placeTrackedValue(new RequestResponse<>(track, id, source, value));
     }
   }
-  
-  private synchronized void placeTrackedValue(long insert, long id, M req, R value) {
-    trackedValues.put(id, new RequestResponse<>(insert, id, req, value));
+
+  @SuppressWarnings("unchecked")
+  private void placeTrackedValue(RequestResponse<M, R> entry) {
+    long id = entry.getTransactionId();
+    AtomicReferenceArray<RequestResponse<M, R>> table = slots;
+    // a message already reconciled will not be looked up anymore
+    while (id >= reconciledMarker) {
+      int index = index(id, table);
+      RequestResponse<M, R> current = table.get(index);
+      if (current instanceof Forward) {
+        table = ((Forward<M, R>) current).table;
+      } else if (current == null || current.getTransactionId() == id || current.getTransactionId() < reconciledMarker) {
+        if (table.compareAndSet(index, current, entry)) {
+          if (current == null || current.getTransactionId() != id) {
+            trackedCount.incrementAndGet();
+          }
+          if (current != null && current.getTransactionId() != id) {
+            // a stale message left behind by a reconciliation, which now cannot clear it anymore
+            trackedCount.decrementAndGet();
+          }
+          // a reconciliation may have advanced past the message without seeing it
+          if (id < reconciledMarker) {
+            remove(entry);
+          }
+          return;
+        }
+      } else {
+        table = makeRoom(table, entry, current);
+        if (table == null) {
+          return;
+        }
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void remove(RequestResponse<M, R> entry) {
+    AtomicReferenceArray<RequestResponse<M, R>> table = slots;
+    while (true) {
+      int index = index(entry.getTransactionId(), table);
+      RequestResponse<M, R> current = table.get(index);
+      if (current instanceof Forward) {
+        table = ((Forward<M, R>) current).table;
+      } else if (current != entry) {
+        return;
+      } else if (table.compareAndSet(index, entry, null)) {
+        trackedCount.decrementAndGet();
+        return;
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private RequestResponse<M, R> lookup(long id) {
+    if (id < reconciledMarker) {
+      return null;
+    }
+    AtomicReferenceArray<RequestResponse<M, R>> table = slots;
+    while (true) {
+      RequestResponse<M, R> entry = table.get(index(id, table));
+      if (entry instanceof Forward) {
+        table = ((Forward<M, R>) entry).table;
+      } else {
+        if (entry != null && entry.getTransactionId() == id) {
+          return entry;
+        }
+        return overflow.isEmpty() ? null : overflow.get(id);
+      }
+    }
   }
 
   @Override
-  public synchronized R getTrackedValue(long id) {
-    return Optional.ofNullable(trackedValues.get(id)).map(RequestResponse::getResponse).orElse(null);
+  public R getTrackedValue(long id) {
+    RequestResponse<M, R> entry = lookup(id);
+    return entry == null ? null : entry.getResponse();
   }
   
   @Override
-  public synchronized M getTrackedRequest(long id) {
-    return Optional.ofNullable(trackedValues.get(id)).map(RequestResponse::getRequest).orElse(null);
+  public M getTrackedRequest(long id) {
+    RequestResponse<M, R> entry = lookup(id);
+    return entry == null ? null : entry.getRequest();
   }
 
   @Override
-  public synchronized void reconcile(long id) {
-    reconciledMarker = Math.max(id, reconciledMarker);// don't go backwards
-    trackedValues.headMap(id).clear();
+  public void reconcile(long id) {
+    if (id > reconciledMarker) {// don't go backwards
+      reconcileTo(id);
+    }
   }
 
   @Override
@@ -71,13 +184,153 @@ class TrackerImpl<M, R> implements Tracker<M, R> {
     return id < reconciledMarker;
   }
 
-  synchronized Collection<RequestResponse<M, R>> getTrackedValues() {
-    return new ArrayList<>(trackedValues.values());
+  private synchronized long reconcileTo(long id) {
+    long marker = reconciledMarker;
+    if (id <= marker) {
+      return 0L;
+    }
+    // published first, so that a message tracked concurrently is either cleared here or removed by its tracker
+    reconciledMarker = id;
+
+    AtomicReferenceArray<RequestResponse<M, R>> table = slots;
+    long cleared = 0L;
+    if (!overflow.isEmpty()) {
+      Map<Long, RequestResponse<M, R>> reconciled = overflow.headMap(id);
+      cleared += reconciled.size();
+      trackedCount.addAndGet(-reconciled.size());
+      reconciled.clear();
+    }
+    if (id - marker >= table.length()) {
+      for (int i = 0; i < table.length(); i++) {
+        cleared += clear(table, i, id);
+      }
+    } else {
+      for (long t = marker; t < id; t++) {
+        cleared += clear(table, index(t, table), id);
+      }
+    }
+    return cleared;
+  }
+
+  private int clear(AtomicReferenceArray<RequestResponse<M, R>> table, int index, long marker) {
+    while (true) {
+      RequestResponse<M, R> entry = table.get(index);
+      if (entry == null || entry.getTransactionId() >= marker) {
+        return 0;
+      }
+      if (table.compareAndSet(index, entry, null)) {
+        trackedCount.decrementAndGet();
+        return 1;
+      }
+    }
+  }
+
+  /**
+   * @return the ring to retry the message in, or null if the message went to the overflow
+   */
+  private synchronized AtomicReferenceArray<RequestResponse<M, R>> makeRoom(AtomicReferenceArray<RequestResponse<M, R>> table,
+                                                                            RequestResponse<M, R> entry, RequestResponse<M, R> current) {
+    if (table != slots) {
+      // resized in the meantime
+      return slots;
+    }
+    long id = entry.getTransactionId();
+    long occupant = current.getTransactionId();
+    if (table.length() < maximumCapacity) {
+      if (table.length() < SPARSE_CAPACITY || trackedCount.get() * SPARSE_RATIO >= table.length()) {
+        return grow(table);
+      }
+      // the reconciliation cannot advance while moving messages to the overflow
+      if (id < reconciledMarker) {
+        return null;
+      }
+      if (table.get(index(occupant, table)) != current) {
+        // cleared, or moved to the overflow by another message
+        return table;
+      }
+      if (id < occupant) {
+        if (overflow.put(id, entry) == null) {
+          trackedCount.incrementAndGet();
+        }
+        return null;
+      }
+      overflow.put(occupant, current);
+      if (!table.compareAndSet(index(occupant, table), current, null)) {
+        // replaced by a resend of the same message in the meantime
+        overflow.remove(occupant, current);
+      }
+      return table;
+    }
+    // the two ids are at least the maximum capacity apart: evicting up to the window of the newest one frees the slot
+    evictedCount.addAndGet(reconcileTo(Math.max(id, occupant) - maximumCapacity + 1));
+    return table;
+  }
+
+  private AtomicReferenceArray<RequestResponse<M, R>> grow(AtomicReferenceArray<RequestResponse<M, R>> table) {
+    AtomicReferenceArray<RequestResponse<M, R>> resized = new AtomicReferenceArray<>(table.length() << 1);
+    Forward<M, R> forward = new Forward<>(resized);
+    // the reconciliation cannot advance while resizing
+    long marker = reconciledMarker;
+    for (int i = 0; i < table.length(); i++) {
+      while (true) {
+        RequestResponse<M, R> entry = table.get(i);
+        boolean live = entry != null && entry.getTransactionId() >= marker;
+        if (live) {
+          resized.set(index(entry.getTransactionId(), resized), entry);
+        }
+        // once forwarded, messages for this slot are tracked in the resized ring
+        if (table.compareAndSet(i, entry, forward)) {
+          if (entry != null && !live) {
+            trackedCount.decrementAndGet();
+          }
+          break;
+        }
+      }
+    }
+    slots = resized;
+    return resized;
+  }
+
+  /**
+   * @return the tracked messages, ordered by sequence id
+   */
+  synchronized List<RequestResponse<M, R>> getTrackedValues() {
+    long marker = reconciledMarker;
+    AtomicReferenceArray<RequestResponse<M, R>> table = slots;
+    List<RequestResponse<M, R>> values = new ArrayList<>();
+    for (int i = 0; i < table.length(); i++) {
+      RequestResponse<M, R> entry = table.get(i);
+      if (entry != null && entry.getTransactionId() >= marker) {
+        values.add(entry);
+      }
+    }
+    values.addAll(overflow.tailMap(marker).values());
+    values.sort(comparingLong(RequestResponse::getSequenceId));
+    return values;
+  }
+
+  long getTrackedCount() {
+    return trackedCount.get();
+  }
+
+  long getEvictedCount() {
+    return evictedCount.get();
+  }
+
+  int getCapacity() {
+    return slots.length();
   }
 
   @Override
-  public synchronized void addStateTo(StateDumpCollector stateDumper) {
-    stateDumper.addState("TrackedResponses", new ArrayList<>(trackedValues.keySet()));
+  public void addStateTo(StateDumpCollector stateDumper) {
+    List<Long> ids = new ArrayList<>();
+    for (RequestResponse<M, R> entry : getTrackedValues()) {
+      ids.add(entry.getTransactionId());
+    }
+    ids.sort(null);
+    stateDumper.addState("TrackedResponses", ids);
+    stateDumper.addState("Capacity", getCapacity());
+    stateDumper.addState("Evicted", getEvictedCount());
   }
 
   static class RequestResponse<M, R> {
@@ -109,4 +362,16 @@ class TrackerImpl<M, R> implements Tracker<M, R> {
       return response;
     }
   }
+
+  /**
+   * Marks a slot whose messages moved to a resized ring.
+   */
+  private static class Forward<M, R> extends RequestResponse<M, R> {
+    private final AtomicReferenceArray<RequestResponse<M, R>> table;
+
+    Forward(AtomicReferenceArray<RequestResponse<M, R>> table) {
+      super(0L, Long.MIN_VALUE, null, null);
+      this.table = table;
+    }
+  }
 }
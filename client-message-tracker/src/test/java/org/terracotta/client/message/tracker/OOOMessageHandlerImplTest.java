@@ -112,6 +112,24 @@ public class OOOMessageHandlerImplTest {
     assertThat(entityResponse2, sameInstance(entityResponse1));
   }
 
+  @Test
+  public void testEvictedMessageIsNotInvokedAgain() throws Exception {
+    messageHandler = new OOOMessageHandlerImpl<>(msg -> true, 4, () -> {});
+    ClientSourceId clientSourceId = new DummyClientSourceId(1);
+    EntityMessage message = mock(EntityMessage.class);
+
+    for (long txn = 1; txn <= 6; txn++) {
+      messageHandler.invoke(new DummyContext(clientSourceId, txn, 1), message, (ctxt, msg) -> mock(EntityResponse.class));
+    }
+
+    // beyond the cap the oldest messages are evicted, and answered as reconciled ones
+    EntityResponse resent = messageHandler.invoke(new DummyContext(clientSourceId, 1, 1), message, (ctxt, msg) -> {
+      throw new AssertionError("evicted message invoked again");
+    });
+    assertThat(resent, Matchers.nullValue());
+    assertThat(messageHandler.getRecordedMessages().count(), is(4L));
+  }
+
   @SuppressWarnings("deprecation")
   @Test
   public void testSegmentation() throws Exception {
@@ -19,6 +19,11 @@ import org.junit.Test;
 import org.terracotta.entity.EntityMessage;
 import org.terracotta.entity.EntityResponse;
 
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.sameInstance;
@@ -98,4 +103,95 @@ public class TrackerImplTest {
     assertThat(tracker.getTrackedValue(2L), notNullValue());
 
   }
+
+  @Test
+  public void trackAcrossWideSpan() throws Exception {
+    EntityMessage message = mock(EntityMessage.class);
+    EntityResponse response = mock(EntityResponse.class);
+
+    TrackerImpl<EntityMessage, EntityResponse> tracker = new TrackerImpl<>();
+    for (long id = 1L; id <= 1000L; id++) {
+      tracker.track(id, id, message, response);
+    }
+
+    for (long id = 1L; id <= 1000L; id++) {
+      assertThat(tracker.getTrackedValue(id), notNullValue());
+    }
+    assertThat(tracker.getTrackedCount(), is(1000L));
+    assertThat(tracker.getCapacity(), is(1024));
+
+    tracker.reconcile(901L);
+    assertThat(tracker.getTrackedValue(900L), nullValue());
+    assertThat(tracker.getTrackedValue(901L), notNullValue());
+    assertThat(tracker.getTrackedCount(), is(100L));
+  }
+
+  @Test
+  public void sparseIdsDoNotGrowTheRing() throws Exception {
+    EntityMessage message = mock(EntityMessage.class);
+    EntityResponse response = mock(EntityResponse.class);
+
+    TrackerImpl<EntityMessage, EntityResponse> tracker = new TrackerImpl<>();
+    // every id falls on the same slot, whatever the capacity of the ring
+    for (long id = 1L; id <= 100_000L; id += 1024L) {
+      tracker.track(id, id, message, response);
+    }
+
+    assertThat(tracker.getTrackedCount(), is(98L));
+    assertThat(tracker.getCapacity(), is(TrackerImpl.SPARSE_CAPACITY));
+    for (long id = 1L; id <= 100_000L; id += 1024L) {
+      assertThat(tracker.getTrackedValue(id), notNullValue());
+    }
+    assertThat(tracker.getTrackedValue(2L), nullValue());
+    assertThat(tracker.getTrackedValues().size(), is(98));
+
+    tracker.reconcile(50_000L);
+    assertThat(tracker.getTrackedValue(1L), nullValue());
+    assertThat(tracker.getTrackedValue(49_153L), nullValue());
+    assertThat(tracker.getTrackedValue(50_177L), notNullValue());
+    assertThat(tracker.getTrackedCount(), is(49L));
+  }
+
+  @Test
+  public void evictOldestBeyondMaximumCapacity() throws Exception {
+    EntityMessage message = mock(EntityMessage.class);
+    EntityResponse response = mock(EntityResponse.class);
+
+    TrackerImpl<EntityMessage, EntityResponse> tracker = new TrackerImpl<>(4);
+    for (long id = 1L; id <= 6L; id++) {
+      tracker.track(id, id, message, response);
+    }
+
+    assertThat(tracker.getCapacity(), is(4));
+    assertThat(tracker.getEvictedCount(), is(2L));
+    assertThat(tracker.getTrackedCount(), is(4L));
+    assertThat(tracker.wasReconciled(2L), is(true));
+    assertThat(tracker.getTrackedValue(2L), nullValue());
+    for (long id = 3L; id <= 6L; id++) {
+      assertThat(tracker.getTrackedValue(id), notNullValue());
+    }
+
+    // a late message older than the tracked window is not tracked
+    tracker.track(7L, 2L, message, response);
+    assertThat(tracker.getTrackedValue(2L), nullValue());
+  }
+
+  @Test
+  public void trackedValuesInSequenceOrder() throws Exception {
+    EntityMessage message = mock(EntityMessage.class);
+    EntityResponse response = mock(EntityResponse.class);
+
+    TrackerImpl<EntityMessage, EntityResponse> tracker = new TrackerImpl<>();
+    tracker.track(1L, 3L, message, response);
+    tracker.track(2L, 1L, message, response);
+    tracker.track(3L, 2L, message, response);
+
+    List<Long> sequence = tracker.getTrackedValues().stream().map(TrackerImpl.RequestResponse::getSequenceId).collect(toList());
+    assertThat(sequence, contains(1L, 2L, 3L));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidCapacity() throws Exception {
+    new TrackerImpl<>(0);
+  }
 }
@@ -18,10 +18,12 @@ package org.terracotta.nomad;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.time.Clock;
+import java.time.Duration;
 
 public class NomadEnvironment {
   private static final String USER_NAME_PROPERTY = "user.name";
   private static final String UNKNOWN = "unknown";
+  private static final int DEFAULT_CONCURRENCY = 16;
 
   public String getHost() {
     try {
@@ -38,4 +40,19 @@ public class NomadEnvironment {
   public Clock getClock() {
     return Clock.systemUTC();
   }
+
+  /**
+   * @return the maximum number of servers a Nomad client sends a message to at the same time
+   */
+  public int getConcurrency() {
+    return DEFAULT_CONCURRENCY;
+  }
+
+  /**
+   * @return the time given to all the servers to respond during each Nomad phase, or null to only rely on the
+   * timeouts of the server endpoints
+   */
+  public Duration getTimeout() {
+    return null;
+  }
 }
\ No newline at end of file
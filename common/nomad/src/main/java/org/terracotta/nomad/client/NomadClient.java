@@ -25,6 +25,7 @@ import org.terracotta.nomad.client.status.DiscoveryProcess;
 import org.terracotta.nomad.server.ChangeRequestState;
 
 import java.time.Clock;
+import java.time.Duration;
 import java.util.List;
 
 public class NomadClient<T> implements AutoCloseable {
@@ -32,6 +33,8 @@ public class NomadClient<T> implements AutoCloseable {
   private final String host;
   private final String user;
   private final Clock clock;
+  private final int concurrency;
+  private final Duration timeout;
 
   /**
    * @param servers the set of servers to run the Nomad protocol across
@@ -39,7 +42,20 @@ public class NomadClient<T> implements AutoCloseable {
    * @param user    the name of the user the current process is running as
    */
   public NomadClient(List<NomadEndpoint<T>> servers, String host, String user, Clock clock) {
+    this(servers, host, user, clock, 1, null);
+  }
+
+  /**
+   * @param servers     the set of servers to run the Nomad protocol across
+   * @param host        the name of the local machine
+   * @param user        the name of the user the current process is running as
+   * @param concurrency the maximum number of servers contacted at the same time during each phase
+   * @param timeout     the time given to all the servers to respond during each phase, or null to not limit it
+   */
+  public NomadClient(List<NomadEndpoint<T>> servers, String host, String user, Clock clock, int concurrency, Duration timeout) {
     this.clock = clock;
+    this.concurrency = concurrency;
+    this.timeout = timeout;
     if (servers.isEmpty()) {
       throw new IllegalArgumentException("There must be at least one server");
     }
@@ -50,17 +66,17 @@ public class NomadClient<T> implements AutoCloseable {
   }
 
   public void tryApplyChange(ChangeResultReceiver<T> results, NomadChange change) {
-    ChangeProcess<T> changeProcess = new ChangeProcess<>(servers, host, user, clock);
+    ChangeProcess<T> changeProcess = new ChangeProcess<>(servers, host, user, clock, concurrency, timeout);
     changeProcess.applyChange(results, change);
   }
 
   public void tryRecovery(RecoveryResultReceiver<T> results, int expectedTotalNodeCount, ChangeRequestState forcedState) {
-    RecoveryProcess<T> recoveryProcess = new RecoveryProcess<>(servers, host, user, clock);
+    RecoveryProcess<T> recoveryProcess = new RecoveryProcess<>(servers, host, user, clock, concurrency, timeout);
     recoveryProcess.recover(results, expectedTotalNodeCount, forcedState);
   }
 
   public void tryDiscovery(DiscoverResultsReceiver<T> results) {
-    DiscoveryProcess<T> discoveryProcess = new DiscoveryProcess<>(servers, host, user, clock);
+    DiscoveryProcess<T> discoveryProcess = new DiscoveryProcess<>(servers, host, user, clock, concurrency, timeout);
     discoveryProcess.discover(results);
   }
 
@@ -21,6 +21,7 @@ import org.terracotta.nomad.client.results.DiscoverResultsReceiver;
 import org.terracotta.nomad.client.results.MuxAllResultsReceiver;
 
 import java.time.Clock;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 
@@ -29,12 +30,20 @@ public abstract class NomadClientProcess<C, R> {
   protected final String host;
   protected final String user;
   protected final Clock clock;
+  protected final int concurrency;
+  protected final Duration timeout;
 
   public NomadClientProcess(List<NomadEndpoint<R>> servers, String host, String user, Clock clock) {
+    this(servers, host, user, clock, 1, null);
+  }
+
+  public NomadClientProcess(List<NomadEndpoint<R>> servers, String host, String user, Clock clock, int concurrency, Duration timeout) {
     this.servers = servers;
     this.host = host;
     this.user = user;
     this.clock = clock;
+    this.concurrency = concurrency;
+    this.timeout = timeout;
   }
 
   protected abstract boolean act(AllResultsReceiver<R> results, NomadDecider<R> decider, NomadMessageSender<R> messageSender, C data);
@@ -34,16 +34,30 @@ import static java.util.Objects.requireNonNull;
 public class NomadEndpoint<T> implements NomadServer<T> {
   private final InetSocketAddress address;
   private final NomadServer<T> server;
+  private final int orderGroup;
 
   public NomadEndpoint(InetSocketAddress address, NomadServer<T> server) {
+    this(address, server, 0);
+  }
+
+  /**
+   * @param orderGroup the group of this endpoint: a message is only sent to the endpoints of a group once all the
+   *                   endpoints of the previous groups in the server list have responded to it
+   */
+  public NomadEndpoint(InetSocketAddress address, NomadServer<T> server, int orderGroup) {
     this.address = requireNonNull(address);
     this.server = requireNonNull(server);
+    this.orderGroup = orderGroup;
   }
 
   public InetSocketAddress getAddress() {
     return address;
   }
 
+  public int getOrderGroup() {
+    return orderGroup;
+  }
+
   @Override
   public DiscoverResponse<T> discover() throws NomadException {
     return server.discover();
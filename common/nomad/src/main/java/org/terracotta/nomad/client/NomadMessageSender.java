@@ -15,6 +15,7 @@
  */
 package org.terracotta.nomad.client;
 
+import org.terracotta.common.struct.TimeBudget;
 import org.terracotta.nomad.client.change.NomadChange;
 import org.terracotta.nomad.client.results.AllResultsReceiver;
 import org.terracotta.nomad.client.results.CommitResultsReceiver;
@@ -32,16 +33,25 @@ import org.terracotta.nomad.server.NomadException;
 
 import java.net.InetSocketAddress;
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.stream.Collectors.toList;
 
 public class NomadMessageSender<T> implements AllResultsReceiver<T> {
@@ -52,26 +62,41 @@ public class NomadMessageSender<T> implements AllResultsReceiver<T> {
   private final String user;
   private final Map<InetSocketAddress, Long> mutativeMessageCounts = new ConcurrentHashMap<>();
   private final AtomicLong maxVersionNumber = new AtomicLong();
+  private final int concurrency;
+  private final Duration timeout;
 
   private final List<NomadEndpoint<T>> preparedServers = new CopyOnWriteArrayList<>();
   protected volatile UUID changeUuid;
 
   public NomadMessageSender(List<NomadEndpoint<T>> servers, String host, String user, Clock clock) {
+    this(servers, host, user, clock, 1, null);
+  }
+
+  /**
+   * @param concurrency the maximum number of servers a message is sent to at the same time
+   * @param timeout     the time given to all the servers to respond during a phase, or null to wait for each response
+   */
+  public NomadMessageSender(List<NomadEndpoint<T>> servers, String host, String user, Clock clock, int concurrency, Duration timeout) {
     this.host = host;
     this.user = user;
     this.servers = servers;
     this.clock = clock;
+    this.concurrency = concurrency;
+    this.timeout = timeout;
   }
 
   public void sendDiscovers(DiscoverResultsReceiver<T> results) {
     results.startDiscovery(servers.stream().map(NomadEndpoint::getAddress).collect(toList()));
+    List<Call<?>> calls = new ArrayList<>();
     for (NomadEndpoint<T> server : servers) {
-      runSync(
+      calls.add(new Call<>(
+          server,
           server::discover,
           discovery -> results.discovered(server.getAddress(), discovery),
           unwrap(e -> results.discoverFail(server.getAddress(), e))
-      );
+      ));
     }
+    runAll(calls);
 
     results.endDiscovery();
   }
@@ -79,9 +104,11 @@ public class NomadMessageSender<T> implements AllResultsReceiver<T> {
   public void sendSecondDiscovers(DiscoverResultsReceiver<T> results) {
     results.startSecondDiscovery();
 
+    List<Call<?>> calls = new ArrayList<>();
     for (NomadEndpoint<T> server : servers) {
       long mutativeMessageCount = mutativeMessageCounts.get(server.getAddress());
-      runSync(
+      calls.add(new Call<>(
+          server,
           server::discover,
           discovery -> {
             long secondMutativeMessageCount = discovery.getMutativeMessageCount();
@@ -94,8 +121,9 @@ public class NomadMessageSender<T> implements AllResultsReceiver<T> {
             }
           },
           unwrap(e -> results.discoverFail(server.getAddress(), e))
-      );
+      ));
     }
+    runAll(calls);
 
     // The endSecondDiscovery() call is made outside this method
   }
@@ -106,9 +134,11 @@ public class NomadMessageSender<T> implements AllResultsReceiver<T> {
     long newVersionNumber = maxVersionNumber.get() + 1;
     Instant now = clock.instant();
 
+    List<Call<?>> calls = new ArrayList<>();
     for (NomadEndpoint<T> server : servers) {
       long mutativeMessageCount = mutativeMessageCounts.get(server.getAddress());
-      runSync(
+      calls.add(new Call<>(
+          server,
           () -> server.prepare(
               new PrepareMessage(
                   mutativeMessageCount,
@@ -144,8 +174,9 @@ public class NomadMessageSender<T> implements AllResultsReceiver<T> {
             }
           },
           unwrap(e -> results.prepareFail(server.getAddress(), e))
-      );
+      ));
     }
+    runAll(calls);
 
     results.endPrepare();
   }
@@ -155,9 +186,11 @@ public class NomadMessageSender<T> implements AllResultsReceiver<T> {
 
     Instant now = clock.instant();
 
+    List<Call<?>> calls = new ArrayList<>();
     for (NomadEndpoint<T> server : preparedServers) {
       long mutativeMessageCount = mutativeMessageCounts.get(server.getAddress());
-      runSync(
+      calls.add(new Call<>(
+          server,
           () -> {
             return server.commit(
                 new CommitMessage(
@@ -190,8 +223,9 @@ public class NomadMessageSender<T> implements AllResultsReceiver<T> {
             }
           },
           unwrap(e -> results.commitFail(server.getAddress(), e))
-      );
+      ));
     }
+    runAll(calls);
 
     results.endCommit();
   }
@@ -201,9 +235,11 @@ public class NomadMessageSender<T> implements AllResultsReceiver<T> {
 
     Instant now = clock.instant();
 
+    List<Call<?>> calls = new ArrayList<>();
     for (NomadEndpoint<T> server : preparedServers) {
       long mutativeMessageCount = mutativeMessageCounts.get(server.getAddress());
-      runSync(
+      calls.add(new Call<>(
+          server,
           () -> server.rollback(
               new RollbackMessage(
                   mutativeMessageCount + 1,
@@ -234,8 +270,9 @@ public class NomadMessageSender<T> implements AllResultsReceiver<T> {
             }
           },
           unwrap(e -> results.rollbackFail(server.getAddress(), e))
-      );
+      ));
     }
+    runAll(calls);
 
     results.endRollback();
   }
@@ -245,9 +282,11 @@ public class NomadMessageSender<T> implements AllResultsReceiver<T> {
 
     Instant now = clock.instant();
 
+    List<Call<?>> calls = new ArrayList<>();
     for (NomadEndpoint<T> server : servers) {
       long mutativeMessageCount = mutativeMessageCounts.get(server.getAddress());
-      runSync(
+      calls.add(new Call<>(
+          server,
           () -> server.takeover(
               new TakeoverMessage(
                   mutativeMessageCount,
@@ -277,8 +316,9 @@ public class NomadMessageSender<T> implements AllResultsReceiver<T> {
             }
           },
           unwrap(e -> results.takeoverFail(server.getAddress(), e))
-      );
+      ));
     }
+    runAll(calls);
 
     results.endTakeover();
   }
@@ -297,15 +337,110 @@ public class NomadMessageSender<T> implements AllResultsReceiver<T> {
     preparedServers.add(servers.stream().filter(s -> s.getAddress().equals(address)).findAny().get());
   }
 
-  private <T> void runSync(Callable<T> callable, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+  /**
+   * Sends the messages of a phase and gives the responses to the result receivers.
+   * <p>
+   * The messages are sent concurrently when configured so, but only to the servers of a same
+   * {@link NomadEndpoint#getOrderGroup() order group}: the servers of a group are contacted once all the ones of the
+   * previous group have responded, keeping the order the caller relies on between groups. The results are always
+   * given from the calling thread and in the order of the servers, so that the result receivers do not have to be
+   * thread-safe.
+   */
+  private void runAll(List<Call<?>> calls) {
+    if (calls.isEmpty()) {
+      return;
+    }
+    if (timeout == null && (concurrency <= 1 || calls.size() == 1)) {
+      calls.forEach(Call::runSync);
+      return;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(Math.max(concurrency, 1), calls.size()), r -> {
+      Thread thread = new Thread(r, "nomad-message-sender");
+      thread.setDaemon(true);
+      return thread;
+    });
     try {
-      T result = callable.call();
+      TimeBudget timeBudget = timeout == null ? null : new TimeBudget(timeout.toMillis(), MILLISECONDS);
+      int from = 0;
+      while (from < calls.size()) {
+        int to = from + 1;
+        while (to < calls.size() && calls.get(to).orderGroup == calls.get(from).orderGroup) {
+          to++;
+        }
+        List<Call<?>> group = calls.subList(from, to);
+        group.forEach(call -> call.submit(executor));
+        group.forEach(call -> call.complete(timeBudget, timeout));
+        from = to;
+      }
+    } finally {
+      // interrupts the calls still running after the deadline
+      executor.shutdownNow();
+    }
+  }
+
+  private static class Call<R> {
+    private final InetSocketAddress address;
+    private final int orderGroup;
+    private final Callable<R> callable;
+    private final Consumer<R> onSuccess;
+    private final Consumer<Throwable> onError;
+
+    private Future<R> future;
+
+    Call(NomadEndpoint<?> server, Callable<R> callable, Consumer<R> onSuccess, Consumer<Throwable> onError) {
+      this.address = server.getAddress();
+      this.orderGroup = server.getOrderGroup();
+      this.callable = callable;
+      this.onSuccess = onSuccess;
+      this.onError = onError;
+    }
+
+    void runSync() {
+      try {
+        accept(callable.call());
+      } catch (Exception e) {
+        onError.accept(e);
+      }
+    }
+
+    void submit(ExecutorService executor) {
+      future = executor.submit(callable);
+    }
+
+    void complete(TimeBudget timeBudget, Duration timeout) {
+      R result;
+      try {
+        result = timeBudget == null ? future.get() : future.get(Math.max(0, timeBudget.remaining(NANOSECONDS)), NANOSECONDS);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        onError.accept(cause);
+        return;
+      } catch (TimeoutException e) {
+        future.cancel(true);
+        onError.accept(new TimeoutException("No response from " + address + " within " + timeout));
+        return;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        future.cancel(true);
+        onError.accept(e);
+        return;
+      }
+      try {
+        accept(result);
+      } catch (Exception e) {
+        onError.accept(e);
+      }
+    }
+
+    private void accept(R result) {
       if (result == null) {
         throw new AssertionError("Response expected. Bug or wrong mocking ?");
       }
       onSuccess.accept(result);
-    } catch (Exception e) {
-      onError.accept(e);
     }
   }
 
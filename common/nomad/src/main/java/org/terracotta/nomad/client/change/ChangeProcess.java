@@ -22,6 +22,7 @@ import org.terracotta.nomad.client.NomadMessageSender;
 import org.terracotta.nomad.client.results.AllResultsReceiver;
 
 import java.time.Clock;
+import java.time.Duration;
 import java.util.List;
 import java.util.UUID;
 
@@ -30,11 +31,15 @@ public class ChangeProcess<T> extends NomadClientProcess<NomadChange, T> {
     super(servers, host, user, clock);
   }
 
+  public ChangeProcess(List<NomadEndpoint<T>> servers, String host, String user, Clock clock, int concurrency, Duration timeout) {
+    super(servers, host, user, clock, concurrency, timeout);
+  }
+
   public void applyChange(ChangeResultReceiver<T> results, NomadChange change) {
     runProcess(
         new ChangeAllResultsReceiverAdapter<>(results),
         new ChangeProcessDecider<>(),
-        new ChangeMessageSender<>(servers, host, user, clock),
+        new ChangeMessageSender<>(servers, host, user, clock, concurrency, timeout),
         change
     );
   }
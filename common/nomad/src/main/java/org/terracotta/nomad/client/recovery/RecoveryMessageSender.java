@@ -22,6 +22,7 @@ import org.terracotta.nomad.server.NomadServerMode;
 
 import java.net.InetSocketAddress;
 import java.time.Clock;
+import java.time.Duration;
 import java.util.List;
 
 public class RecoveryMessageSender<T> extends NomadMessageSender<T> {
@@ -29,6 +30,10 @@ public class RecoveryMessageSender<T> extends NomadMessageSender<T> {
     super(servers, host, user, clock);
   }
 
+  public RecoveryMessageSender(List<NomadEndpoint<T>> servers, String host, String user, Clock clock, int concurrency, Duration timeout) {
+    super(servers, host, user, clock, concurrency, timeout);
+  }
+
   @Override
   public void discovered(InetSocketAddress server, DiscoverResponse<T> discovery) {
     super.discovered(server, discovery);
@@ -23,6 +23,7 @@ import org.terracotta.nomad.client.results.AllResultsReceiver;
 import org.terracotta.nomad.server.ChangeRequestState;
 
 import java.time.Clock;
+import java.time.Duration;
 import java.util.List;
 
 public class RecoveryProcess<T> extends NomadClientProcess<Void, T> {
@@ -30,11 +31,15 @@ public class RecoveryProcess<T> extends NomadClientProcess<Void, T> {
     super(servers, host, user, clock);
   }
 
+  public RecoveryProcess(List<NomadEndpoint<T>> servers, String host, String user, Clock clock, int concurrency, Duration timeout) {
+    super(servers, host, user, clock, concurrency, timeout);
+  }
+
   public void recover(RecoveryResultReceiver<T> results, int expectedTotalNodeCount, ChangeRequestState forcedState) {
     runProcess(
         new RecoveryAllResultsReceiverAdapter<>(results),
         new RecoveryProcessDecider<>(expectedTotalNodeCount, forcedState),
-        new RecoveryMessageSender<>(servers, host, user, clock),
+        new RecoveryMessageSender<>(servers, host, user, clock, concurrency, timeout),
         null
     );
   }
@@ -24,6 +24,7 @@ import org.terracotta.nomad.client.results.RollbackResultsReceiver;
 import org.terracotta.nomad.client.results.TakeoverResultsReceiver;
 
 import java.time.Clock;
+import java.time.Duration;
 import java.util.List;
 import java.util.UUID;
 
@@ -35,6 +36,10 @@ public class DiscoveryMessageSender<T> extends NomadMessageSender<T> {
     super(servers, host, user, clock);
   }
 
+  public DiscoveryMessageSender(List<NomadEndpoint<T>> servers, String host, String user, Clock clock, int concurrency, Duration timeout) {
+    super(servers, host, user, clock, concurrency, timeout);
+  }
+
   @Override
   public void sendPrepares(PrepareResultsReceiver results, UUID changeUuid, NomadChange change) {
     // ensure we do nothing
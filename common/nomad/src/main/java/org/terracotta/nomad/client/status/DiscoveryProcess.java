@@ -24,6 +24,7 @@ import org.terracotta.nomad.client.results.AllResultsReceiver;
 import org.terracotta.nomad.client.results.DiscoverResultsReceiver;
 
 import java.time.Clock;
+import java.time.Duration;
 import java.util.List;
 
 /**
@@ -34,11 +35,15 @@ public class DiscoveryProcess<T> extends NomadClientProcess<NomadChange, T> {
     super(servers, host, user, clock);
   }
 
+  public DiscoveryProcess(List<NomadEndpoint<T>> servers, String host, String user, Clock clock, int concurrency, Duration timeout) {
+    super(servers, host, user, clock, concurrency, timeout);
+  }
+
   public void discover(DiscoverResultsReceiver<T> results) {
     runProcess(
         new DiscoveryAllResultsReceiverAdapter<>(results),
         new DiscoveryProcessDecider<>(),
-        new DiscoveryMessageSender<>(servers, host, user, clock),
+        new DiscoveryMessageSender<>(servers, host, user, clock, concurrency, timeout),
         null
     );
   }
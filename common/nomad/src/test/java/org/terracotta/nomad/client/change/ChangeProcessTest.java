@@ -21,6 +21,7 @@ import org.mockito.Mock;
 import org.terracotta.nomad.SimpleNomadChange;
 import org.terracotta.nomad.client.NomadClient;
 import org.terracotta.nomad.client.NomadClientProcessTest;
+import org.terracotta.nomad.client.NomadEndpoint;
 import org.terracotta.nomad.messages.CommitMessage;
 import org.terracotta.nomad.messages.DiscoverResponse;
 import org.terracotta.nomad.messages.PrepareMessage;
@@ -29,8 +30,18 @@ import org.terracotta.nomad.server.NomadException;
 
 import java.net.InetSocketAddress;
 import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
 import java.util.UUID;
-
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeoutException;
+
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
@@ -432,8 +443,111 @@ public class ChangeProcessTest extends NomadClientProcessTest {
     verify(results).done(MAY_NEED_RECOVERY);
   }
 
+  @SuppressWarnings("unchecked")
+  @Test
+  public void makeChangeConcurrently() throws Exception {
+    // each server only responds once the other one has been contacted
+    CyclicBarrier barrier = new CyclicBarrier(2);
+    when(server1.discover()).then(invocation -> {
+      barrier.await(10, SECONDS);
+      return discovery(COMMITTED, uuid1);
+    });
+    when(server1.prepare(any(PrepareMessage.class))).thenReturn(accept());
+    when(server1.commit(any(CommitMessage.class))).thenReturn(accept());
+    when(server2.discover()).then(invocation -> {
+      barrier.await(10, SECONDS);
+      return discovery(COMMITTED, uuid1);
+    });
+    when(server2.prepare(any(PrepareMessage.class))).thenReturn(accept());
+    when(server2.commit(any(CommitMessage.class))).thenReturn(accept());
+
+    runTest(2, null);
+
+    verify(results).startDiscovery(withItems(address1, address2));
+    verify(results).discovered(eq(address1), any(DiscoverResponse.class));
+    verify(results).discovered(eq(address2), any(DiscoverResponse.class));
+    verify(results).endDiscovery();
+    verify(results).startSecondDiscovery();
+    verify(results).discoverRepeated(address1);
+    verify(results).discoverRepeated(address2);
+    verify(results).endSecondDiscovery();
+    verify(results).startPrepare(any(UUID.class));
+    verify(results).prepared(address1);
+    verify(results).prepared(address2);
+    verify(results).endPrepare();
+    verify(results).startCommit();
+    verify(results).committed(address1);
+    verify(results).committed(address2);
+    verify(results).endCommit();
+    verify(results).done(CONSISTENT);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void discoverTimeout() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    when(server1.discover()).thenReturn(discovery(COMMITTED));
+    when(server2.discover()).then(invocation -> {
+      release.await();
+      return discovery(COMMITTED);
+    });
+
+    try {
+      runTest(2, Duration.ofMillis(200));
+    } finally {
+      release.countDown();
+    }
+
+    verify(results).startDiscovery(withItems(address1, address2));
+    verify(results).discovered(eq(address1), any(DiscoverResponse.class));
+    verify(results).discoverFail(eq(address2), any(TimeoutException.class));
+    verify(results).endDiscovery();
+    verify(results).done(UNKNOWN_BUT_NO_CHANGE);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void makeChangeConcurrentlyKeepsOrderGroups() throws Exception {
+    servers = asList(
+        new NomadEndpoint<>(address1, server1, 0),
+        new NomadEndpoint<>(address2, server2, 1)
+    );
+    // the first server is the slowest one: it still has to be done before the second one is contacted
+    List<String> calls = new CopyOnWriteArrayList<>();
+    when(server1.discover()).thenReturn(discovery(COMMITTED, uuid1));
+    when(server1.prepare(any(PrepareMessage.class))).then(invocation -> {
+      MILLISECONDS.sleep(100);
+      calls.add("prepare1");
+      return accept();
+    });
+    when(server1.commit(any(CommitMessage.class))).then(invocation -> {
+      MILLISECONDS.sleep(100);
+      calls.add("commit1");
+      return accept();
+    });
+    when(server2.discover()).thenReturn(discovery(COMMITTED, uuid1));
+    when(server2.prepare(any(PrepareMessage.class))).then(invocation -> {
+      calls.add("prepare2");
+      return accept();
+    });
+    when(server2.commit(any(CommitMessage.class))).then(invocation -> {
+      calls.add("commit2");
+      return accept();
+    });
+
+    runTest(2, null);
+
+    assertEquals(asList("prepare1", "prepare2", "commit1", "commit2"), calls);
+    verify(results).done(CONSISTENT);
+  }
+
   private void runTest() {
     NomadClient<String> client = new NomadClient<>(servers, "host", "user", Clock.systemUTC());
     client.tryApplyChange(results, new SimpleNomadChange("change", "summary"));
   }
+
+  private void runTest(int concurrency, Duration timeout) {
+    NomadClient<String> client = new NomadClient<>(servers, "host", "user", Clock.systemUTC(), concurrency, timeout);
+    client.tryApplyChange(results, new SimpleNomadChange("change", "summary"));
+  }
 }
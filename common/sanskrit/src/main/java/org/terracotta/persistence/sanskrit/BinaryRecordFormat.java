@@ -0,0 +1,167 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.persistence.sanskrit;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.terracotta.persistence.sanskrit.MarkableLineParser.LS;
+
+/**
+ * The binary layout of the append log: a header followed by length-prefixed records.
+ * <p>
+ * Each record holds the object mapper version, the timestamp, the json and the hash of the record, each one prefixed
+ * by its length. The hash of a record chains the hash of the previous record with the digest of the record itself,
+ * so that the digests of all the records can be computed in parallel and only the cheap chaining is sequential.
+ */
+class BinaryRecordFormat {
+  // the text format never starts with a NUL character
+  private static final int MAGIC = 0x00534b52;
+  private static final byte VERSION = 1;
+  static final int HEADER_SIZE = 5;
+
+  static ByteBuffer header() {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).put(VERSION);
+    header.flip();
+    return header;
+  }
+
+  /**
+   * @return true if the content, read from its current position, starts with the binary format header
+   */
+  static boolean isBinary(ByteBuffer content) {
+    return content.remaining() >= HEADER_SIZE && content.getInt(content.position()) == MAGIC;
+  }
+
+  static String digest(String timestamp, String json) {
+    return HashUtils.generateHash(timestamp, LS, json);
+  }
+
+  static String chain(String previousHash, String digest) {
+    if (previousHash == null) {
+      return digest;
+    }
+    return HashUtils.generateHash(previousHash, LS, LS, digest);
+  }
+
+  static ByteBuffer encode(String version, String timestamp, String json, String hash) {
+    byte[][] fields = {
+        version.getBytes(StandardCharsets.UTF_8),
+        timestamp.getBytes(StandardCharsets.UTF_8),
+        json.getBytes(StandardCharsets.UTF_8),
+        hash.getBytes(StandardCharsets.UTF_8)
+    };
+    int length = 0;
+    for (byte[] field : fields) {
+      length += Integer.BYTES + field.length;
+    }
+    ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + length);
+    record.putInt(length);
+    for (byte[] field : fields) {
+      record.putInt(field.length).put(field);
+    }
+    record.flip();
+    return record;
+  }
+
+  /**
+   * Decodes the complete records of a binary log. A partially written record at the end of the log is ignored.
+   *
+   * @param content the whole log, including its header
+   */
+  static List<Record> decode(ByteBuffer content) throws SanskritException {
+    ByteBuffer log = content.duplicate();
+    if (!isBinary(log)) {
+      throw new SanskritException("Invalid binary append log header");
+    }
+    log.getInt();
+    byte version = log.get();
+    if (version != VERSION) {
+      throw new SanskritException("Unsupported binary append log version: " + version);
+    }
+
+    List<Record> records = new ArrayList<>();
+    while (log.remaining() >= Integer.BYTES) {
+      int length = log.getInt();
+      if (length < 0) {
+        throw new SanskritException("Invalid record length: " + length);
+      }
+      if (length > log.remaining()) {
+        break;
+      }
+      ByteBuffer record = log.slice();
+      record.limit(length);
+      log.position(log.position() + length);
+      records.add(new Record(readField(record), readField(record), readField(record), readField(record), log.position()));
+    }
+    return records;
+  }
+
+  private static String readField(ByteBuffer record) throws SanskritException {
+    if (record.remaining() < Integer.BYTES) {
+      throw new SanskritException("Invalid record");
+    }
+    int length = record.getInt();
+    if (length < 0 || length > record.remaining()) {
+      throw new SanskritException("Invalid record field length: " + length);
+    }
+    byte[] bytes = new byte[length];
+    record.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  static class Record {
+    private final String version;
+    private final String timestamp;
+    private final String json;
+    private final String hash;
+    private final long end;
+
+    Record(String version, String timestamp, String json, String hash, long end) {
+      this.version = version;
+      this.timestamp = timestamp;
+      this.json = json;
+      this.hash = hash;
+      this.end = end;
+    }
+
+    String getVersion() {
+      return version;
+    }
+
+    String getTimestamp() {
+      return timestamp;
+    }
+
+    String getJson() {
+      return json;
+    }
+
+    String getHash() {
+      return hash;
+    }
+
+    /**
+     * @return the position in the log right after this record
+     */
+    long getEnd() {
+      return end;
+    }
+  }
+}
@@ -30,4 +30,9 @@ public interface FilesystemDirectory {
   void delete(String filename) throws IOException;
 
   void backup(String filename) throws IOException;
+
+  /**
+   * Renames a file, atomically replacing the target file if it exists.
+   */
+  void move(String source, String target) throws IOException;
 }
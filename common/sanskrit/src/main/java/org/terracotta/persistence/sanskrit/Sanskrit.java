@@ -18,19 +18,50 @@ package org.terracotta.persistence.sanskrit;
 import org.terracotta.persistence.sanskrit.change.AddLongSanskritChange;
 import org.terracotta.persistence.sanskrit.change.AddObjectSanskritChange;
 import org.terracotta.persistence.sanskrit.change.AddStringSanskritChange;
+import org.terracotta.persistence.sanskrit.change.MuxSanskritChange;
 import org.terracotta.persistence.sanskrit.change.SanskritChange;
 import org.terracotta.persistence.sanskrit.change.UnsetKeySanskritChange;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.terracotta.persistence.sanskrit.Owner.own;
 
 public interface Sanskrit extends AutoCloseable {
 
+  /**
+   * Opens an append log which is never compacted.
+   */
   static Sanskrit init(FilesystemDirectory filesystemDirectory, ObjectMapperSupplier objectMapperSupplier) throws SanskritException {
+    return init(filesystemDirectory, objectMapperSupplier, SanskritImpl.NO_COMPACTION);
+  }
+
+  /**
+   * @param compactionThreshold the number of records after which the append log is compacted, 0 or less to never compact
+   */
+  static Sanskrit init(FilesystemDirectory filesystemDirectory, ObjectMapperSupplier objectMapperSupplier, int compactionThreshold) throws SanskritException {
+    return init(filesystemDirectory, objectMapperSupplier, compactionThreshold, false);
+  }
+
+  /**
+   * @param compactionThreshold the number of records after which the append log is compacted, 0 or less to never compact
+   * @param keepAppendLogOpen true to keep the append log open between appends, until the returned instance is closed
+   */
+  static Sanskrit init(FilesystemDirectory filesystemDirectory, ObjectMapperSupplier objectMapperSupplier, int compactionThreshold, boolean keepAppendLogOpen) throws SanskritException {
+    return init(filesystemDirectory, objectMapperSupplier, compactionThreshold, keepAppendLogOpen, RecordFormat.TEXT);
+  }
+
+  /**
+   * @param compactionThreshold the number of records after which the append log is compacted, 0 or less to never compact
+   * @param keepAppendLogOpen true to keep the append log open between appends, until the returned instance is closed
+   * @param recordFormat the format to write the records in, an existing log in another format being converted
+   */
+  static Sanskrit init(FilesystemDirectory filesystemDirectory, ObjectMapperSupplier objectMapperSupplier, int compactionThreshold, boolean keepAppendLogOpen,
+                       RecordFormat recordFormat) throws SanskritException {
     try (
         Owner<DirectoryLock, IOException> lockOwner = own(filesystemDirectory.lock(), IOException.class);
-        Owner<SanskritImpl, SanskritException> sanskritOwner = own(new SanskritImpl(filesystemDirectory, objectMapperSupplier), SanskritException.class)
+        Owner<SanskritImpl, SanskritException> sanskritOwner = own(new SanskritImpl(filesystemDirectory, objectMapperSupplier, compactionThreshold, keepAppendLogOpen, recordFormat), SanskritException.class)
     ) {
       return new LockReleasingSanskrit(
           new PersistentFailSanskrit(
@@ -69,6 +100,13 @@ public interface Sanskrit extends AutoCloseable {
 
   void applyChange(SanskritChange change) throws SanskritException;
 
+  /**
+   * Applies several changes in order as a single record of the append log, so with a single write and sync.
+   */
+  default void applyChanges(List<? extends SanskritChange> changes) throws SanskritException {
+    applyChange(new MuxSanskritChange(new ArrayList<>(changes)));
+  }
+
   MutableSanskritObject newMutableSanskritObject();
 
   void reset() throws SanskritException;
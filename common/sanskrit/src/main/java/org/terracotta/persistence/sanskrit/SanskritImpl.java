@@ -15,6 +15,7 @@
  */
 package org.terracotta.persistence.sanskrit;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terracotta.persistence.sanskrit.change.SanskritChange;
@@ -32,6 +33,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -40,6 +42,18 @@ import static org.terracotta.persistence.sanskrit.MarkableLineParser.LS;
 /**
  * The main class for reading and writing a Sanskrit append log.
  * This class is intended to be used by a single thread and so it is not thread-safe.
+ * <p>
+ * When a compaction threshold is given, the log is compacted once it holds more records than the threshold: the whole
+ * current state is written as a single snapshot record into a new log, which then replaces the old one. The snapshot
+ * record starts a new hash chain and its final hash is written to the free hash file before the old log is replaced, so
+ * an interrupted compaction is either completed or discarded by {@link #init()}. A compaction triggered by an append
+ * that fails before being committed does not fail the append and is retried on the next one.
+ * <p>
+ * When the append log is kept open, it is opened on the first append and reused by the following ones instead of being
+ * opened and positioned at its end for each change. The hash files are still written and flipped for each record.
+ * <p>
+ * The records are written either as text or in a binary format (see {@link RecordFormat}). An existing log is read in
+ * whatever format it was written, and converted through a compaction when it does not match the requested format.
  */
 public class SanskritImpl implements Sanskrit {
   private static final Logger LOGGER = LoggerFactory.getLogger(SanskritImpl.class);
@@ -47,95 +61,83 @@ public class SanskritImpl implements Sanskrit {
   private static final String APPEND_LOG_FILE = "append.log";
   private static final String HASH_0_FILE = "hash0";
   private static final String HASH_1_FILE = "hash1";
+  private static final String COMPACT_LOG_FILE = "append.log.compact";
   private static final String FORMAT_VERSION = "format version: ";
 
+  /**
+   * The compaction threshold suggested to the users who opt in the compaction, which is disabled by default.
+   */
+  public static final int RECOMMENDED_COMPACTION_THRESHOLD = 1000;
+  public static final int NO_COMPACTION = 0;
+
   private final FilesystemDirectory filesystemDirectory;
   private final ObjectMapperSupplier objectMapperSupplier;
+  private final int compactionThreshold;
+  private final boolean keepAppendLogOpen;
+  private final RecordFormat recordFormat;
 
-  private volatile MutableSanskritObject data;
+  private volatile SanskritObjectImpl data;
   private volatile String lastHash;
   private volatile String nextHashFile;
+  private volatile long recordCount;
+  private volatile FileData openAppendLog;
+  private volatile RecordFormat logFormat;
 
   public SanskritImpl(FilesystemDirectory filesystemDirectory, ObjectMapperSupplier objectMapperSupplier) throws SanskritException {
+    this(filesystemDirectory, objectMapperSupplier, NO_COMPACTION);
+  }
+
+  /**
+   * @param compactionThreshold the number of records after which the log is compacted, 0 or less to never compact
+   */
+  public SanskritImpl(FilesystemDirectory filesystemDirectory, ObjectMapperSupplier objectMapperSupplier, int compactionThreshold) throws SanskritException {
+    this(filesystemDirectory, objectMapperSupplier, compactionThreshold, false);
+  }
+
+  /**
+   * @param compactionThreshold the number of records after which the log is compacted, 0 or less to never compact
+   * @param keepAppendLogOpen true to keep the append log open between appends, until this instance is closed
+   */
+  public SanskritImpl(FilesystemDirectory filesystemDirectory, ObjectMapperSupplier objectMapperSupplier, int compactionThreshold, boolean keepAppendLogOpen) throws SanskritException {
+    this(filesystemDirectory, objectMapperSupplier, compactionThreshold, keepAppendLogOpen, RecordFormat.TEXT);
+  }
+
+  /**
+   * @param compactionThreshold the number of records after which the log is compacted, 0 or less to never compact
+   * @param keepAppendLogOpen true to keep the append log open between appends, until this instance is closed
+   * @param recordFormat the format to write the records in
+   */
+  public SanskritImpl(FilesystemDirectory filesystemDirectory, ObjectMapperSupplier objectMapperSupplier, int compactionThreshold, boolean keepAppendLogOpen,
+                      RecordFormat recordFormat) throws SanskritException {
     this.filesystemDirectory = filesystemDirectory;
     this.objectMapperSupplier = objectMapperSupplier;
+    this.compactionThreshold = compactionThreshold;
+    this.keepAppendLogOpen = keepAppendLogOpen;
+    this.recordFormat = recordFormat;
     init();
   }
 
   private void init() throws SanskritException {
     lastHash = null;
     nextHashFile = null;
-    this.data = newMutableSanskritObject();
+    recordCount = 0;
+    this.data = new SanskritObjectImpl(objectMapperSupplier);
 
     try {
+      recoverCompaction();
+
       List<String> filesToDelete = new ArrayList<>();
       String hash0 = getHashFromFile(HASH_0_FILE, filesToDelete);
       String hash1 = getHashFromFile(HASH_1_FILE, filesToDelete);
       HashChecker hashChecker = new HashChecker(hash0, hash1);
 
-      MutableSanskritObject result = newMutableSanskritObject();
+      SanskritObjectImpl result = new SanskritObjectImpl(objectMapperSupplier);
 
+      logFormat = recordFormat;
       try (FileData appendLog = filesystemDirectory.getFileData(APPEND_LOG_FILE)) {
         if (appendLog != null) {
-          InputStream appendLogStream = new BufferedInputStream(Channels.newInputStream(appendLog));
-          MarkableLineParser parser = new MarkableLineParser(appendLogStream);
-          Stream<String> lines = parser.lines();
-          Stream<Deque<String>> records = groupByEmptyLines(lines);
-
-          AtomicReference<SanskritException> error = new AtomicReference<>();
-          AtomicLong counter = new AtomicLong();
-          try {
-            records.forEach(record -> {
-              try {
-                if (record.size() < 3) {
-                  throw new SanskritException("Invalid record");
-                }
-
-                long idx = counter.incrementAndGet();
-
-                String timestamp;
-                String version;
-                String first = record.removeFirst();
-                if (first.startsWith(FORMAT_VERSION)) {
-                  // V2 and so on
-                  timestamp = record.removeFirst();
-                  version = first.substring(16);
-                } else {
-                  // V1 change format don't have a version flag
-                  timestamp = first;
-                  version = "";
-                }
-                String hash = record.removeLast();
-                String json = String.join(LS, record);
-
-                LOGGER.trace("init(): record {}: timestamp={}, version={}, hash={}, json={}", idx, timestamp, version, hash, json);
-
-                hash = checkHash(timestamp, json, hash);
-                String hashedHash = HashUtils.generateHash(hash);
-                boolean acceptRecord = hashChecker.check(hashedHash);
-
-                LOGGER.trace("init(): record {}: hash={}, hashedHash={}, acceptRecord={}", idx, hash, hashedHash, acceptRecord);
-
-                if (acceptRecord) {
-                  parser.mark();
-                  JsonUtils.parse(objectMapperSupplier, version, json, result);
-                  onNewRecord(timestamp, json);
-                  lastHash = hash;
-                }
-              } catch (SanskritException e) {
-                error.set(e);
-                throw new UncheckedSanskritException(e);
-              }
-            });
-          } catch (UncheckedSanskritException e) {
-            if (error.get() != null) {
-              throw error.get();
-            } else {
-              throw e;
-            }
-          }
-
-          long mark = parser.getMark();
+          logFormat = isBinary(appendLog) ? RecordFormat.BINARY : RecordFormat.TEXT;
+          long mark = logFormat == RecordFormat.BINARY ? replayBinary(appendLog, hashChecker, result) : replayText(appendLog, hashChecker, result);
           if (mark == 0) {
             filesToDelete.add("append.log");
           } else {
@@ -162,11 +164,208 @@ public class SanskritImpl implements Sanskrit {
       nextHashFile = hashChecker.nextHashFile();
 
       this.data = result;
+
+      if (recordCount == 0) {
+        logFormat = recordFormat;
+      } else if (logFormat != recordFormat) {
+        LOGGER.info("Converting {} from {} to {} records", APPEND_LOG_FILE, logFormat, recordFormat);
+        compact();
+      }
     } catch (IOException e) {
       throw new SanskritException(e);
     }
   }
 
+  private long replayText(FileData appendLog, HashChecker hashChecker, MutableSanskritObject result) throws SanskritException {
+    InputStream appendLogStream = new BufferedInputStream(Channels.newInputStream(appendLog));
+    MarkableLineParser parser = new MarkableLineParser(appendLogStream);
+    Stream<String> lines = parser.lines();
+    Stream<Deque<String>> records = groupByEmptyLines(lines);
+
+    AtomicReference<SanskritException> error = new AtomicReference<>();
+    AtomicLong counter = new AtomicLong();
+    try {
+      records.forEach(record -> {
+        try {
+          if (record.size() < 3) {
+            throw new SanskritException("Invalid record");
+          }
+
+          long idx = counter.incrementAndGet();
+
+          String timestamp;
+          String version;
+          String first = record.removeFirst();
+          if (first.startsWith(FORMAT_VERSION)) {
+            // V2 and so on
+            timestamp = record.removeFirst();
+            version = first.substring(16);
+          } else {
+            // V1 change format don't have a version flag
+            timestamp = first;
+            version = "";
+          }
+          String hash = record.removeLast();
+          String json = String.join(LS, record);
+
+          LOGGER.trace("init(): record {}: timestamp={}, version={}, hash={}, json={}", idx, timestamp, version, hash, json);
+
+          hash = checkHash(timestamp, json, hash);
+          String hashedHash = HashUtils.generateHash(hash);
+          boolean acceptRecord = hashChecker.check(hashedHash);
+
+          LOGGER.trace("init(): record {}: hash={}, hashedHash={}, acceptRecord={}", idx, hash, hashedHash, acceptRecord);
+
+          if (acceptRecord) {
+            parser.mark();
+            JsonUtils.parse(objectMapperSupplier, version, json, result);
+            onNewRecord(timestamp, json);
+            lastHash = hash;
+            recordCount++;
+          }
+        } catch (SanskritException e) {
+          error.set(e);
+          throw new UncheckedSanskritException(e);
+        }
+      });
+    } catch (UncheckedSanskritException e) {
+      if (error.get() != null) {
+        throw error.get();
+      } else {
+        throw e;
+      }
+    }
+
+    return parser.getMark();
+  }
+
+  /**
+   * Replays the records of a binary log. The digests and the json parsing of the records do not depend on each other
+   * and are computed in parallel: only the hash chaining and the application of the records are sequential.
+   */
+  private long replayBinary(FileData appendLog, HashChecker hashChecker, MutableSanskritObject result) throws SanskritException, IOException {
+    List<BinaryRecordFormat.Record> records = BinaryRecordFormat.decode(readFully(appendLog));
+    List<ParsedRecord> parsedRecords = records.parallelStream()
+        .map(ParsedRecord::new)
+        .collect(Collectors.toList());
+
+    long mark = 0;
+    for (int i = 0; i < records.size(); i++) {
+      BinaryRecordFormat.Record record = records.get(i);
+      ParsedRecord parsedRecord = parsedRecords.get(i);
+
+      String hash = BinaryRecordFormat.chain(lastHash, parsedRecord.digest);
+      if (!hash.equals(record.getHash())) {
+        throw new SanskritException("Hash mismatch. Got: " + record.getHash() + ". Computed: " + hash);
+      }
+      String hashedHash = HashUtils.generateHash(hash);
+      boolean acceptRecord = hashChecker.check(hashedHash);
+
+      LOGGER.trace("init(): record {}: timestamp={}, version={}, hash={}, acceptRecord={}", i + 1, record.getTimestamp(), record.getVersion(), hash, acceptRecord);
+
+      if (acceptRecord) {
+        if (parsedRecord.error != null) {
+          throw parsedRecord.error;
+        }
+        JsonUtils.apply(objectMapperSupplier, record.getVersion(), parsedRecord.json, result);
+        onNewRecord(record.getTimestamp(), record.getJson());
+        lastHash = hash;
+        recordCount++;
+        mark = record.getEnd();
+      }
+    }
+    return mark;
+  }
+
+  private class ParsedRecord {
+    private final String digest;
+    private final JsonNode json;
+    private final SanskritException error;
+
+    ParsedRecord(BinaryRecordFormat.Record record) {
+      this.digest = BinaryRecordFormat.digest(record.getTimestamp(), record.getJson());
+      JsonNode json = null;
+      SanskritException error = null;
+      try {
+        json = JsonUtils.readTree(objectMapperSupplier, record.getVersion(), record.getJson());
+      } catch (SanskritException e) {
+        error = e;
+      }
+      this.json = json;
+      this.error = error;
+    }
+  }
+
+  private static boolean isBinary(FileData fileData) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(BinaryRecordFormat.HEADER_SIZE);
+    while (header.hasRemaining() && fileData.read(header) != -1) {
+      // read the header
+    }
+    fileData.position(0);
+    header.flip();
+    return BinaryRecordFormat.isBinary(header);
+  }
+
+  /**
+   * Completes or discards a compaction that was interrupted: the compacted log replaces the append log only if a hash
+   * file holds the final hash of its snapshot record, meaning the compaction was committed.
+   */
+  private void recoverCompaction() throws SanskritException, IOException {
+    String finalHash;
+    try (FileData compactLog = filesystemDirectory.getFileData(COMPACT_LOG_FILE)) {
+      if (compactLog == null) {
+        return;
+      }
+      finalHash = getFinalHash(readFully(compactLog));
+    }
+
+    List<String> ignored = new ArrayList<>();
+    String hash0 = getHashFromFile(HASH_0_FILE, ignored);
+    String hash1 = getHashFromFile(HASH_1_FILE, ignored);
+
+    if (finalHash != null && (finalHash.equals(hash0) || finalHash.equals(hash1))) {
+      LOGGER.info("Completing interrupted compaction of: {}", APPEND_LOG_FILE);
+      filesystemDirectory.delete(finalHash.equals(hash0) ? HASH_1_FILE : HASH_0_FILE);
+      filesystemDirectory.move(COMPACT_LOG_FILE, APPEND_LOG_FILE);
+    } else {
+      LOGGER.info("Discarding interrupted compaction of: {}", APPEND_LOG_FILE);
+      filesystemDirectory.delete(COMPACT_LOG_FILE);
+    }
+  }
+
+  /**
+   * @return the final hash of the single record of a compacted log, or null if the record is incomplete
+   */
+  private static String getFinalHash(ByteBuffer compactedLog) {
+    if (BinaryRecordFormat.isBinary(compactedLog)) {
+      try {
+        List<BinaryRecordFormat.Record> records = BinaryRecordFormat.decode(compactedLog);
+        return records.size() == 1 ? HashUtils.generateHash(records.get(0).getHash()) : null;
+      } catch (SanskritException e) {
+        return null;
+      }
+    }
+
+    String text = StandardCharsets.UTF_8.decode(compactedLog).toString();
+    String recordEnd = LS + LS;
+    if (!text.endsWith(recordEnd)) {
+      return null;
+    }
+    String record = text.substring(0, text.length() - recordEnd.length());
+    return HashUtils.generateHash(record.substring(record.lastIndexOf(LS) + 1));
+  }
+
+  private static ByteBuffer readFully(FileData fileData) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocateDirect((int) fileData.size());
+    while (buffer.hasRemaining()) {
+      if (fileData.read(buffer) == -1) {
+        break;
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
   String getHashToDelete(HashChecker hashChecker) throws SanskritException {
     return hashChecker.done();
   }
@@ -220,7 +419,14 @@ public class SanskritImpl implements Sanskrit {
   }
 
   String calculateHash(String timestamp, String json) {
-    LOGGER.trace("calculateHash({}, {})", timestamp, json);
+    return calculateHash(logFormat, lastHash, timestamp, json);
+  }
+
+  private static String calculateHash(RecordFormat format, String lastHash, String timestamp, String json) {
+    LOGGER.trace("calculateHash({}, {}, {}, {})", format, lastHash, timestamp, json);
+    if (format == RecordFormat.BINARY) {
+      return BinaryRecordFormat.chain(lastHash, BinaryRecordFormat.digest(timestamp, json));
+    }
     if (lastHash == null) {
       return HashUtils.generateHash(
           timestamp,
@@ -244,7 +450,8 @@ public class SanskritImpl implements Sanskrit {
   }
 
   @Override
-  public void close() {
+  public void close() throws SanskritException {
+    closeAppendLog();
   }
 
   @Override
@@ -259,13 +466,77 @@ public class SanskritImpl implements Sanskrit {
 
   @Override
   public SanskritObject getObject(String key) {
-    return CopyUtils.makeCopy(objectMapperSupplier, data.getObject(key));
+    // copy-on-write: the returned object can be modified without changing the data
+    return data.getObject(key);
   }
 
   @Override
   public void applyChange(SanskritChange change) throws SanskritException {
-    change.accept(data);
+    SanskritObjectImpl next = data.snapshot();
+    change.accept(next);
     appendChange(change);
+    data = next;
+    if (compactionThreshold > 0 && recordCount > compactionThreshold) {
+      // the change is already persisted: an uncommitted compaction failing leaves the log as it was, so retry later
+      compact(true);
+    }
+  }
+
+  /**
+   * Replaces the append log by a new log holding a single snapshot record of the current state.
+   */
+  public void compact() throws SanskritException {
+    compact(false);
+  }
+
+  /**
+   * @param retryLater true to log a failure to write the compacted log and keep appending to the current one, the next
+   *                   append retrying the compaction
+   */
+  private void compact(boolean retryLater) throws SanskritException {
+    JsonSanskritChangeVisitor visitor = new JsonSanskritChangeVisitor(objectMapperSupplier);
+    data.accept(visitor);
+    String json = visitor.getJson(null);
+    String timestamp = getTimestamp();
+    // the snapshot starts a new hash chain
+    String hash = calculateHash(recordFormat, null, timestamp, json);
+    LOGGER.debug("Compacting {} records of: {}", recordCount, APPEND_LOG_FILE);
+
+    closeAppendLog();
+    try {
+      filesystemDirectory.delete(COMPACT_LOG_FILE);
+      try (FileData compactLog = filesystemDirectory.create(COMPACT_LOG_FILE, false)) {
+        if (recordFormat == RecordFormat.BINARY) {
+          write(compactLog, BinaryRecordFormat.header());
+        }
+        write(compactLog, formatRecord(recordFormat, timestamp, json, hash));
+      }
+    } catch (IOException | SanskritException e) {
+      if (!retryLater) {
+        throw e instanceof SanskritException ? (SanskritException) e : new SanskritException(e);
+      }
+      // a leftover compacted log has no matching hash file, so it would be discarded by init()
+      LOGGER.warn("Unable to compact {} records of: {}, the compaction will be retried on the next append", recordCount, APPEND_LOG_FILE, e);
+      return;
+    }
+
+    try {
+      // from here, the compaction is committed and would be completed by init()
+      try (FileData hashFile = createNewHashFile()) {
+        write(hashFile, HashUtils.generateHash(hash));
+      }
+
+      String previousHashFile = flipHashFile();
+      filesystemDirectory.delete(previousHashFile);
+      filesystemDirectory.move(COMPACT_LOG_FILE, APPEND_LOG_FILE);
+
+      nextHashFile = previousHashFile;
+      lastHash = hash;
+      recordCount = 1;
+      logFormat = recordFormat;
+    } catch (IOException e) {
+      throw new SanskritException(e);
+    }
   }
 
   @Override
@@ -275,6 +546,7 @@ public class SanskritImpl implements Sanskrit {
 
   @Override
   public void reset() throws SanskritException {
+    closeAppendLog();
     try {
       filesystemDirectory.delete(HASH_0_FILE);
       filesystemDirectory.delete(HASH_1_FILE);
@@ -305,22 +577,28 @@ public class SanskritImpl implements Sanskrit {
   void appendRecord(String timestamp, String json) throws SanskritException {
     LOGGER.trace("appendRecord({}, {})", timestamp, json);
     String hash = calculateHash(timestamp, json);
-    appendEntry((FORMAT_VERSION + objectMapperSupplier.getCurrentVersion()) + LS + timestamp + LS + json + LS + hash + LS + LS, hash);
+    appendEntry(formatRecord(logFormat, timestamp, json, hash), hash);
+    recordCount++;
+  }
+
+  private ByteBuffer formatRecord(RecordFormat format, String timestamp, String json, String hash) {
+    if (format == RecordFormat.BINARY) {
+      return BinaryRecordFormat.encode(objectMapperSupplier.getCurrentVersion(), timestamp, json, hash);
+    }
+    return StandardCharsets.UTF_8.encode((FORMAT_VERSION + objectMapperSupplier.getCurrentVersion()) + LS + timestamp + LS + json + LS + hash + LS + LS);
   }
 
   private String getTimestamp() {
     return Instant.now().toString();
   }
 
-  private void appendEntry(String logEntry, String entryHash) throws SanskritException {
-    LOGGER.trace("appendEntry({}, {})", logEntry, entryHash);
+  private void appendEntry(ByteBuffer logEntry, String entryHash) throws SanskritException {
+    LOGGER.trace("appendEntry({}, {})", logEntry.remaining(), entryHash);
     String finalHash = HashUtils.generateHash(entryHash);
     LOGGER.trace("appendEntry({}): finalHash: {}", entryHash, finalHash);
 
-    try (
-        FileData appendLog = getAppendLogForAppend();
-        FileData hashFile = createNewHashFile()
-    ) {
+    FileData appendLog = keepAppendLogOpen ? getOpenAppendLog() : getAppendLogForAppend();
+    try (FileData hashFile = createNewHashFile()) {
       write(appendLog, logEntry);
       write(hashFile, finalHash);
 
@@ -328,6 +606,38 @@ public class SanskritImpl implements Sanskrit {
       filesystemDirectory.delete(nextHashFile);
 
       lastHash = entryHash;
+    } catch (IOException e) {
+      // the position of a kept open log is unknown after a failure
+      closeAppendLog();
+      throw new SanskritException(e);
+    } catch (SanskritException e) {
+      closeAppendLog();
+      throw e;
+    } finally {
+      if (!keepAppendLogOpen) {
+        close(appendLog);
+      }
+    }
+  }
+
+  private FileData getOpenAppendLog() throws SanskritException {
+    if (openAppendLog == null) {
+      openAppendLog = getAppendLogForAppend();
+    }
+    return openAppendLog;
+  }
+
+  private void closeAppendLog() throws SanskritException {
+    FileData appendLog = openAppendLog;
+    openAppendLog = null;
+    if (appendLog != null) {
+      close(appendLog);
+    }
+  }
+
+  private static void close(FileData fileData) throws SanskritException {
+    try {
+      fileData.close();
     } catch (IOException e) {
       throw new SanskritException(e);
     }
@@ -345,6 +655,9 @@ public class SanskritImpl implements Sanskrit {
     try (Owner<FileData, IOException> appendLogOwner = Owner.own(filesystemDirectory.create(APPEND_LOG_FILE, true), IOException.class)) {
       FileData appendLog = appendLogOwner.borrow();
       appendLog.position(appendLog.size());
+      if (appendLog.size() == 0 && logFormat == RecordFormat.BINARY) {
+        write(appendLog, BinaryRecordFormat.header());
+      }
       return appendLogOwner.release();
     } catch (IOException e) {
       throw new SanskritException(e);
@@ -360,9 +673,11 @@ public class SanskritImpl implements Sanskrit {
   }
 
   private void write(FileData fileData, String text) throws SanskritException {
-    try {
-      ByteBuffer bytes = StandardCharsets.UTF_8.encode(text);
+    write(fileData, StandardCharsets.UTF_8.encode(text));
+  }
 
+  private void write(FileData fileData, ByteBuffer bytes) throws SanskritException {
+    try {
       while (bytes.hasRemaining()) {
         fileData.write(bytes);
       }
@@ -25,32 +25,66 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Optional;
 
+/**
+ * A {@link MutableSanskritObject} backed by a json tree.
+ * <p>
+ * The trees are copy-on-write: the nested objects and the snapshots share the tree they were created from and only
+ * copy it, shallowly, when they are first modified. A tree that may be shared is never modified in place, so that
+ * reading an object never requires copying it.
+ */
 public class SanskritObjectImpl implements MutableSanskritObject {
-  private final ObjectNode mappings;
   private final ObjectMapperSupplier objectMapperSupplier;
+  private ObjectNode mappings;
+  private boolean shared;
 
   public SanskritObjectImpl(ObjectMapperSupplier objectMapperSupplier) {
-    this(objectMapperSupplier, objectMapperSupplier.getObjectMapper().createObjectNode());
+    this(objectMapperSupplier, objectMapperSupplier.getObjectMapper().createObjectNode(), false);
   }
 
-  SanskritObjectImpl(ObjectMapperSupplier objectMapperSupplier, ObjectNode node) {
+  SanskritObjectImpl(ObjectMapperSupplier objectMapperSupplier, ObjectNode node, boolean shared) {
     this.objectMapperSupplier = objectMapperSupplier;
     this.mappings = node;
+    this.shared = shared;
+  }
+
+  /**
+   * @return an object sharing the mappings of this one, each of them copying the mappings before modifying them
+   */
+  SanskritObjectImpl snapshot() {
+    shared = true;
+    return new SanskritObjectImpl(objectMapperSupplier, mappings, true);
+  }
+
+  private ObjectNode ownMappings() {
+    if (shared) {
+      // the values are never modified in place, so they can still be shared
+      ObjectNode copy = mappings.objectNode();
+      copy.setAll(mappings);
+      mappings = copy;
+      shared = false;
+    }
+    return mappings;
   }
 
   @Override
   public void setString(String key, String value) {
-    mappings.put(key, value);
+    ownMappings().put(key, value);
   }
 
   @Override
   public void setLong(String key, long value) {
-    mappings.put(key, value);
+    ownMappings().put(key, value);
   }
 
   @Override
   public void setObject(String key, SanskritObject object) {
-    mappings.set(key, CopyUtils.makeCopy(objectMapperSupplier, object).mappings);
+    ObjectNode value;
+    if (object instanceof SanskritObjectImpl) {
+      value = ((SanskritObjectImpl) object).snapshot().mappings;
+    } else {
+      value = CopyUtils.makeCopy(objectMapperSupplier, object).mappings;
+    }
+    ownMappings().set(key, value);
   }
 
   @Override
@@ -58,7 +92,7 @@ public class SanskritObjectImpl implements MutableSanskritObject {
     if (o instanceof SanskritObject) {
       setObject(key, (SanskritObject) o);
     } else {
-      mappings.set(key, o instanceof JsonNode ? (JsonNode) o : objectMapperSupplier.getObjectMapper(version).valueToTree(o));
+      ownMappings().set(key, o instanceof JsonNode ? (JsonNode) o : objectMapperSupplier.getObjectMapper(version).valueToTree(o));
     }
   }
 
@@ -74,7 +108,7 @@ public class SanskritObjectImpl implements MutableSanskritObject {
       } else if (value.isLong()) {
         visitor.setLong(key, value.longValue());
       } else if (value.isObject()) {
-        visitor.setObject(key, new SanskritObjectImpl(objectMapperSupplier, (ObjectNode) value));
+        visitor.setObject(key, new SanskritObjectImpl(objectMapperSupplier, (ObjectNode) value, true));
       } else {
         // value IS always a JsonNode, so we do not care about the versioning for the mapping
         visitor.setExternal(key, value, null);
@@ -89,7 +123,8 @@ public class SanskritObjectImpl implements MutableSanskritObject {
       return null;
     }
     if (type.isInstance(jsonNode)) {
-      return type.cast(jsonNode);
+      // the tree may be shared: hand out a copy
+      return type.cast(jsonNode.deepCopy());
     }
     try {
       return type.cast(objectMapperSupplier.getObjectMapper(version).treeToValue(jsonNode, type));
@@ -120,12 +155,12 @@ public class SanskritObjectImpl implements MutableSanskritObject {
   public SanskritObject getObject(String key) {
     return Optional.ofNullable(mappings.get(key))
         .map(ObjectNode.class::cast)
-        .map(node -> new SanskritObjectImpl(objectMapperSupplier, node))
+        .map(node -> new SanskritObjectImpl(objectMapperSupplier, node, true))
         .orElse(null);
   }
 
   @Override
   public void removeKey(String key) {
-    mappings.remove(key);
+    ownMappings().remove(key);
   }
 }
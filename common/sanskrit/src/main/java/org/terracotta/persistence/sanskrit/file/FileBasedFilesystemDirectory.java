@@ -32,6 +32,8 @@ import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static java.nio.file.StandardOpenOption.CREATE;
 import static java.nio.file.StandardOpenOption.CREATE_NEW;
 import static java.nio.file.StandardOpenOption.READ;
@@ -97,4 +99,9 @@ public class FileBasedFilesystemDirectory implements FilesystemDirectory {
       org.terracotta.utilities.io.Files.relocate(path, dest);
     }
   }
+
+  @Override
+  public void move(String source, String target) throws IOException {
+    Files.move(directory.resolve(source), directory.resolve(target), ATOMIC_MOVE, REPLACE_EXISTING);
+  }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.persistence.sanskrit;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BinaryRecordFormatTest {
+  @Test
+  public void roundTrip() throws Exception {
+    ByteBuffer log = log(
+        BinaryRecordFormat.encode("v2", "2018-12-05T17:15:28Z", "{\"key\":\"Ɵ\"}", "hash1"),
+        BinaryRecordFormat.encode("", "2018-12-05T17:15:29Z", "{}", "hash2")
+    );
+
+    List<BinaryRecordFormat.Record> records = BinaryRecordFormat.decode(log);
+
+    assertEquals(2, records.size());
+    assertEquals("v2", records.get(0).getVersion());
+    assertEquals("2018-12-05T17:15:28Z", records.get(0).getTimestamp());
+    assertEquals("{\"key\":\"Ɵ\"}", records.get(0).getJson());
+    assertEquals("hash1", records.get(0).getHash());
+    assertEquals("", records.get(1).getVersion());
+    assertEquals(log.limit(), records.get(1).getEnd());
+  }
+
+  @Test
+  public void partialRecordIgnored() throws Exception {
+    ByteBuffer first = BinaryRecordFormat.encode("", "timestamp", "{}", "hash1");
+    ByteBuffer second = BinaryRecordFormat.encode("", "timestamp", "{}", "hash2");
+    second.limit(second.limit() - 3);
+
+    List<BinaryRecordFormat.Record> records = BinaryRecordFormat.decode(log(first, second));
+
+    assertEquals(1, records.size());
+    assertEquals(BinaryRecordFormat.HEADER_SIZE + first.capacity(), records.get(0).getEnd());
+  }
+
+  @Test
+  public void textIsNotBinary() throws Exception {
+    assertFalse(BinaryRecordFormat.isBinary(StandardCharsets.UTF_8.encode("format version: v2\n")));
+    assertTrue(BinaryRecordFormat.isBinary(BinaryRecordFormat.header()));
+
+    try {
+      BinaryRecordFormat.decode(StandardCharsets.UTF_8.encode("format version: v2\n"));
+      fail("Expected SanskritException");
+    } catch (SanskritException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void chain() {
+    String digest = BinaryRecordFormat.digest("timestamp", "{}");
+    assertEquals(HashUtils.generateHash("timestamp\n{}"), digest);
+    assertEquals(digest, BinaryRecordFormat.chain(null, digest));
+    assertEquals(HashUtils.generateHash("previous\n\n" + digest), BinaryRecordFormat.chain("previous", digest));
+  }
+
+  private static ByteBuffer log(ByteBuffer... records) {
+    int size = BinaryRecordFormat.HEADER_SIZE;
+    for (ByteBuffer record : records) {
+      size += record.remaining();
+    }
+    ByteBuffer log = ByteBuffer.allocate(size);
+    log.put(BinaryRecordFormat.header());
+    for (ByteBuffer record : records) {
+      log.put(record);
+    }
+    log.flip();
+    return log;
+  }
+}
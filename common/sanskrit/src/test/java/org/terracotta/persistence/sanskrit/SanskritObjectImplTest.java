@@ -72,4 +72,26 @@ public class SanskritObjectImplTest {
     object.setLong("A", 1L);
     assertEquals(1L, (long) object.getLong("A"));
   }
+
+  @Test
+  public void snapshotIsCopyOnWrite() {
+    SanskritObjectImpl child = new SanskritObjectImpl(objectMapperSupplier);
+    child.setString("A", "a");
+
+    SanskritObjectImpl object = new SanskritObjectImpl(objectMapperSupplier);
+    object.setObject("C", child);
+    child.setString("A", "b");
+    assertEquals("a", object.getObject("C").getString("A"));
+
+    SanskritObjectImpl snapshot = object.snapshot();
+    snapshot.setLong("B", 1L);
+    ((SanskritObjectImpl) snapshot.getObject("C")).setString("A", "c");
+    assertNull(object.getLong("B"));
+    assertEquals("a", object.getObject("C").getString("A"));
+
+    object.removeKey("C");
+    assertNull(object.getObject("C"));
+    assertEquals("a", snapshot.getObject("C").getString("A"));
+    assertEquals(1L, (long) snapshot.getLong("B"));
+  }
 }
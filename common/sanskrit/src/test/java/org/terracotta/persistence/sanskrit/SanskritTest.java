@@ -18,17 +18,23 @@ package org.terracotta.persistence.sanskrit;
 import org.junit.Before;
 import org.junit.Test;
 import org.terracotta.json.ObjectMapperFactory;
+import org.terracotta.persistence.sanskrit.change.AddLongSanskritChange;
+import org.terracotta.persistence.sanskrit.change.AddStringSanskritChange;
 import org.terracotta.persistence.sanskrit.change.SanskritChange;
 import org.terracotta.persistence.sanskrit.change.SanskritChangeBuilder;
+import org.terracotta.persistence.sanskrit.change.UnsetKeySanskritChange;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.terracotta.persistence.sanskrit.MarkableLineParser.LS;
 
@@ -440,6 +446,211 @@ public class SanskritTest {
     }
   }
 
+  @Test
+  public void compactsAfterThreshold() throws Exception {
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, objectMapperSupplier, 3)) {
+      for (int i = 0; i < 10; i++) {
+        sanskrit.setString("key" + i, "value" + i);
+      }
+      sanskrit.removeKey("key0");
+      sanskrit.setLong("key1", 1L);
+    }
+
+    assertTrue(recordCount(getFileText("append.log")) <= 3);
+    assertNullFiles("append.log.compact");
+
+    Map<String, Object> expected = makeMap("key1", 1L);
+    for (int i = 2; i < 10; i++) {
+      expected.put("key" + i, "value" + i);
+    }
+    loadAndAssertState(expected, "key0");
+
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, objectMapperSupplier, 3)) {
+      sanskrit.setString("key0", "again");
+    }
+    expected.put("key0", "again");
+    loadAndAssertState(expected);
+  }
+
+  @Test
+  public void compactionDisabled() throws Exception {
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, objectMapperSupplier, 0)) {
+      for (int i = 0; i < 10; i++) {
+        sanskrit.setString("key", "value" + i);
+      }
+    }
+
+    assertEquals(10, recordCount(getFileText("append.log")));
+    loadAndAssertState(makeMap("key", "value9"));
+  }
+
+  @Test
+  public void failedCompactionIsRetriedOnNextAppend() throws Exception {
+    AtomicBoolean failCompaction = new AtomicBoolean(true);
+    filesystemDirectory = new MemoryFilesystemDirectory() {
+      @Override
+      public FileData create(String filename, boolean canExist) throws IOException {
+        if (filename.equals("append.log.compact") && failCompaction.get()) {
+          throw new IOException("fail");
+        }
+        return super.create(filename, canExist);
+      }
+    };
+
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, objectMapperSupplier, 2)) {
+      sanskrit.setString("key1", "value1");
+      sanskrit.setString("key2", "value2");
+      sanskrit.setString("key3", "value3");
+      assertEquals("value3", sanskrit.getString("key3"));
+      assertEquals(3, recordCount(getFileText("append.log")));
+
+      failCompaction.set(false);
+      sanskrit.setString("key4", "value4");
+    }
+
+    assertEquals(1, recordCount(getFileText("append.log")));
+    loadAndAssertState(makeMap("key1", "value1", "key2", "value2", "key3", "value3", "key4", "value4"));
+  }
+
+  @Test
+  public void interruptedCompactionIsCompleted() throws Exception {
+    AtomicBoolean failMove = new AtomicBoolean(true);
+    filesystemDirectory = new MemoryFilesystemDirectory() {
+      @Override
+      public void move(String source, String target) throws IOException {
+        if (failMove.get()) {
+          throw new IOException("fail");
+        }
+        super.move(source, target);
+      }
+    };
+
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, objectMapperSupplier, 2)) {
+      sanskrit.setString("key1", "value1");
+      sanskrit.setString("key2", "value2");
+      try {
+        sanskrit.setString("key3", "value3");
+        fail("Expected SanskritException");
+      } catch (SanskritException e) {
+        // expected
+      }
+    }
+
+    failMove.set(false);
+    loadAndAssertState(makeMap("key1", "value1", "key2", "value2", "key3", "value3"));
+    assertEquals(1, recordCount(getFileText("append.log")));
+    assertNullFiles("append.log.compact");
+  }
+
+  @Test
+  public void uncommittedCompactionIsDiscarded() throws Exception {
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, objectMapperSupplier)) {
+      sanskrit.setString("key", "value");
+    }
+    String appendLog = getFileText("append.log");
+    createFileWithContent("append.log.compact", appendLog.replace("value", "other").substring(0, appendLog.length() - 10));
+
+    loadAndAssertState(makeMap("key", "value"));
+    assertAppendLog(appendLog);
+    assertNullFiles("append.log.compact");
+  }
+
+  @Test
+  public void applyChangesWritesSingleRecord() throws Exception {
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, objectMapperSupplier)) {
+      sanskrit.applyChanges(Arrays.asList(
+          new AddStringSanskritChange("key1", "value1"),
+          new AddLongSanskritChange("key2", 2L),
+          new UnsetKeySanskritChange("key1"),
+          new AddStringSanskritChange("key3", "value3")
+      ));
+      assertNull(sanskrit.getString("key1"));
+    }
+
+    assertEquals(1, recordCount(getFileText("append.log")));
+    loadAndAssertState(makeMap("key2", 2L, "key3", "value3"), "key1");
+  }
+
+  @Test
+  public void keepAppendLogOpen() throws Exception {
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, objectMapperSupplier, 3, true)) {
+      for (int i = 0; i < 10; i++) {
+        sanskrit.setString("key" + i, "value" + i);
+      }
+    }
+
+    Map<String, Object> expected = makeMap();
+    for (int i = 0; i < 10; i++) {
+      expected.put("key" + i, "value" + i);
+    }
+    loadAndAssertState(expected);
+
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, objectMapperSupplier, 0, true)) {
+      sanskrit.setString("key0", "again");
+      sanskrit.reset();
+      sanskrit.setString("key", "value");
+    }
+    loadAndAssertState(makeMap("key", "value"), "key0");
+  }
+
+  @Test
+  public void binaryRecords() throws Exception {
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, objectMapperSupplier, 0, false, RecordFormat.BINARY)) {
+      sanskrit.setString("key1", "value1");
+      sanskrit.setLong("key2", 2L);
+      sanskrit.setString("key3", "Ɵ");
+      sanskrit.removeKey("key1");
+    }
+
+    assertTrue(getFileText("append.log").startsWith("\0"));
+
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, objectMapperSupplier, 0, false, RecordFormat.BINARY)) {
+      assertState(sanskrit, makeMap("key2", 2L, "key3", "Ɵ"), "key1");
+      sanskrit.setString("key4", "value4");
+    }
+
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, objectMapperSupplier, 0, false, RecordFormat.BINARY)) {
+      assertState(sanskrit, makeMap("key2", 2L, "key3", "Ɵ", "key4", "value4"), "key1");
+    }
+  }
+
+  @Test
+  public void binaryPartialRecord() throws Exception {
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, objectMapperSupplier, 0, false, RecordFormat.BINARY)) {
+      sanskrit.setString("key", "value1");
+    }
+    String appendLog = getFileText("append.log");
+    String hash = getFileText("hash0");
+
+    try (FileData fileData = filesystemDirectory.create("append.log", true)) {
+      fileData.position(fileData.size());
+      fileData.write(ByteBuffer.wrap(new byte[]{0, 0, 1, 0, 42}));
+    }
+
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, objectMapperSupplier, 0, false, RecordFormat.BINARY)) {
+      assertEquals("value1", sanskrit.getString("key"));
+    }
+    assertAppendLog(appendLog);
+    assertFile("hash0", hash);
+  }
+
+  @Test
+  public void convertRecordFormat() throws Exception {
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, objectMapperSupplier)) {
+      sanskrit.setString("key1", "value1");
+      sanskrit.setString("key2", "value2");
+    }
+
+    try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, objectMapperSupplier, 0, false, RecordFormat.BINARY)) {
+      assertState(sanskrit, makeMap("key1", "value1", "key2", "value2"));
+      sanskrit.setString("key3", "value3");
+    }
+    assertTrue(getFileText("append.log").startsWith("\0"));
+
+    loadAndAssertState(makeMap("key1", "value1", "key2", "value2", "key3", "value3"));
+    assertEquals(1, recordCount(getFileText("append.log")));
+  }
+
   @Test(expected = SanskritException.class)
   public void shouldBeUnusableAfterFailure() throws Exception {
     try (Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, objectMapperSupplier)) {
@@ -463,6 +674,10 @@ public class SanskritTest {
     }
   }
 
+  private static int recordCount(String log) {
+    return log.split("format version: ", -1).length - 1;
+  }
+
   private static String lines(String... lines) {
     StringBuilder sb = new StringBuilder();
     for (String line : lines) {
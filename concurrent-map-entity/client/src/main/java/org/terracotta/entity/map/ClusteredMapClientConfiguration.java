@@ -0,0 +1,44 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map;
+
+/**
+ * Client side settings of a map, given as the user data when fetching it.
+ * <p>
+ * A {@link SerializerRegistry} or a {@link NearCacheConfiguration} can also be given alone.
+ */
+public final class ClusteredMapClientConfiguration {
+
+  private final SerializerRegistry serializers;
+  private final NearCacheConfiguration nearCache;
+
+  /**
+   * @param serializers the serializers of the key and value types
+   * @param nearCache the near cache settings, or null for no near cache
+   */
+  public ClusteredMapClientConfiguration(SerializerRegistry serializers, NearCacheConfiguration nearCache) {
+    this.serializers = serializers;
+    this.nearCache = nearCache;
+  }
+
+  public SerializerRegistry getSerializers() {
+    return serializers;
+  }
+
+  public NearCacheConfiguration getNearCache() {
+    return nearCache;
+  }
+}
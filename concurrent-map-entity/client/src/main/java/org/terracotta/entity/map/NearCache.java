@@ -0,0 +1,189 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * The values a client read from the server, by encoded key.
+ * <p>
+ * A value read while an invalidation arrived may be stale, so it is only cached if no invalidation was received since
+ * the read was sent, as told by the {@link #epoch() epoch}.
+ */
+class NearCache<V> implements NearCacheStatistics {
+
+  // LFU evicts the least read entry among the oldest ones
+  private static final int LFU_SAMPLE_SIZE = 16;
+
+  private final NearCacheConfiguration configuration;
+  private final LongSupplier timeSource;
+  private final LinkedHashMap<Object, CachedValue<V>> entries;
+  private long epoch;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong invalidations = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private final AtomicLong expirations = new AtomicLong();
+
+  NearCache(NearCacheConfiguration configuration) {
+    this(configuration, System::nanoTime);
+  }
+
+  NearCache(NearCacheConfiguration configuration, LongSupplier timeSource) {
+    this.configuration = configuration;
+    this.timeSource = timeSource;
+    this.entries = new LinkedHashMap<Object, CachedValue<V>>(16, 0.75f, configuration.getEviction() == NearCacheConfiguration.Eviction.LRU);
+  }
+
+  /**
+   * @return the cached value, or null on a miss
+   */
+  synchronized V get(Object key) {
+    CachedValue<V> cached = entries.get(key);
+    if (cached != null && cached.expiresAt != 0 && timeSource.getAsLong() - cached.expiresAt >= 0) {
+      entries.remove(key);
+      expirations.incrementAndGet();
+      cached = null;
+    }
+    if (cached == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    cached.reads++;
+    return cached.value;
+  }
+
+  /**
+   * @return the epoch to give back when caching the result of a read sent now
+   */
+  synchronized long epoch() {
+    return epoch;
+  }
+
+  /**
+   * Caches a value read from the server, unless an invalidation arrived since the read was sent.
+   */
+  synchronized void put(Object key, V value, long readEpoch) {
+    if (value == null || readEpoch != epoch) {
+      return;
+    }
+    long ttl = configuration.getTimeToLiveNanos();
+    long expiresAt = 0;
+    if (ttl > 0) {
+      // 0 means no expiry
+      expiresAt = (timeSource.getAsLong() + ttl) | 1;
+    }
+    // evicting first, so that the new entry is not the LFU victim
+    if (!entries.containsKey(key) && entries.size() >= configuration.getMaxEntries()) {
+      evict();
+    }
+    entries.put(key, new CachedValue<V>(value, expiresAt));
+  }
+
+  /**
+   * Drops a key modified by this client.
+   */
+  synchronized void remove(Object key) {
+    epoch++;
+    entries.remove(key);
+  }
+
+  /**
+   * Drops a key invalidated by the server.
+   */
+  synchronized void invalidate(Object key) {
+    epoch++;
+    if (entries.remove(key) != null) {
+      invalidations.incrementAndGet();
+    }
+  }
+
+  /**
+   * Drops all keys, for instance when the map is cleared or the server state is lost.
+   */
+  synchronized void clear() {
+    epoch++;
+    invalidations.addAndGet(entries.size());
+    entries.clear();
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<Object, CachedValue<V>>> it = entries.entrySet().iterator();
+    if (configuration.getEviction() == NearCacheConfiguration.Eviction.LRU) {
+      it.next();
+      it.remove();
+    } else {
+      Object victim = null;
+      long fewestReads = Long.MAX_VALUE;
+      for (int i = 0; i < LFU_SAMPLE_SIZE && it.hasNext(); i++) {
+        Map.Entry<Object, CachedValue<V>> entry = it.next();
+        if (entry.getValue().reads < fewestReads) {
+          fewestReads = entry.getValue().reads;
+          victim = entry.getKey();
+        }
+      }
+      entries.remove(victim);
+    }
+    evictions.incrementAndGet();
+  }
+
+  @Override
+  public long getHits() {
+    return hits.get();
+  }
+
+  @Override
+  public long getMisses() {
+    return misses.get();
+  }
+
+  @Override
+  public long getInvalidations() {
+    return invalidations.get();
+  }
+
+  @Override
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  @Override
+  public long getExpirations() {
+    return expirations.get();
+  }
+
+  @Override
+  public synchronized int getSize() {
+    return entries.size();
+  }
+
+  private static final class CachedValue<V> {
+    private final V value;
+    private final long expiresAt;
+    private long reads;
+
+    CachedValue(V value, long expiresAt) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings of the near cache of a map client, which keeps the values read from the server to serve the following
+ * reads locally. The server invalidates the cached entries modified by other clients.
+ */
+public final class NearCacheConfiguration {
+
+  /**
+   * Which entry is evicted when the near cache is full.
+   */
+  public enum Eviction {
+    /**
+     * The least recently read entry.
+     */
+    LRU,
+    /**
+     * The least often read entry, among the oldest ones.
+     */
+    LFU
+  }
+
+  private final int maxEntries;
+  private final Eviction eviction;
+  private final long timeToLiveNanos;
+
+  /**
+   * @param maxEntries the maximum number of entries held
+   * @param eviction the eviction policy
+   * @param timeToLive how long an entry is held, 0 to hold entries until evicted or invalidated
+   * @param unit the time to live unit
+   */
+  public NearCacheConfiguration(int maxEntries, Eviction eviction, long timeToLive, TimeUnit unit) {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("Invalid maximum entries: " + maxEntries);
+    }
+    if (timeToLive < 0) {
+      throw new IllegalArgumentException("Invalid time to live: " + timeToLive);
+    }
+    this.maxEntries = maxEntries;
+    this.eviction = eviction;
+    this.timeToLiveNanos = unit.toNanos(timeToLive);
+  }
+
+  public NearCacheConfiguration(int maxEntries) {
+    this(maxEntries, Eviction.LRU, 0, TimeUnit.NANOSECONDS);
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  public Eviction getEviction() {
+    return eviction;
+  }
+
+  public long getTimeToLiveNanos() {
+    return timeToLiveNanos;
+  }
+
+  @Override
+  public String toString() {
+    return "NearCacheConfiguration{maxEntries=" + maxEntries + ", eviction=" + eviction + ", timeToLiveNanos=" + timeToLiveNanos + '}';
+  }
+}
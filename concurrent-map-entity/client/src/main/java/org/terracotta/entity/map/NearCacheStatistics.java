@@ -0,0 +1,37 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map;
+
+/**
+ * Counters of a map near cache, meant to be exposed as statistics, for instance through a management registry.
+ */
+public interface NearCacheStatistics {
+
+  long getHits();
+
+  long getMisses();
+
+  /**
+   * @return the number of entries invalidated by the server
+   */
+  long getInvalidations();
+
+  long getEvictions();
+
+  long getExpirations();
+
+  int getSize();
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link ValueSerializer}s used by a map, by key or value type.
+ * <p>
+ * Built-in serializers handle {@code byte[]}, {@link ByteBuffer} and {@link UUID}; {@link Long}, {@link String} and
+ * the other primitive wrappers are sent as they are. Types without serializer fall back to Java serialization.
+ * A registry is given to a map as the user data when fetching it:
+ * <pre>{@code
+ * SerializerRegistry serializers = new SerializerRegistry().register(Person.class, new PersonSerializer());
+ * ConcurrentClusteredMap<Long, Person> map = entityRef.fetchEntity(serializers);
+ * map.setTypes(Long.class, Person.class);
+ * }</pre>
+ */
+public class SerializerRegistry {
+
+  private final Map<Class<?>, ValueSerializer<?>> serializers = new ConcurrentHashMap<Class<?>, ValueSerializer<?>>();
+
+  public SerializerRegistry() {
+    register(byte[].class, new ByteArraySerializer());
+    register(ByteBuffer.class, new ByteBufferSerializer());
+    register(UUID.class, new UUIDSerializer());
+  }
+
+  /**
+   * Registers the serializer of a type, replacing any previous one.
+   *
+   * @return this registry
+   */
+  public <T> SerializerRegistry register(Class<T> type, ValueSerializer<T> serializer) {
+    serializers.put(type, serializer);
+    return this;
+  }
+
+  /**
+   * @return the serializer registered for exactly this type, or null
+   */
+  @SuppressWarnings("unchecked")
+  public <T> ValueSerializer<T> getSerializer(Class<T> type) {
+    return (ValueSerializer<T>) serializers.get(type);
+  }
+
+  private static class ByteArraySerializer implements ValueSerializer<byte[]> {
+    @Override
+    public String getId() {
+      return "byte-array";
+    }
+
+    @Override
+    public byte[] serialize(byte[] value) {
+      return Arrays.copyOf(value, value.length);
+    }
+
+    @Override
+    public byte[] deserialize(byte[] bytes) {
+      return bytes;
+    }
+  }
+
+  private static class ByteBufferSerializer implements ValueSerializer<ByteBuffer> {
+    @Override
+    public String getId() {
+      return "byte-buffer";
+    }
+
+    @Override
+    public byte[] serialize(ByteBuffer value) {
+      byte[] bytes = new byte[value.remaining()];
+      value.duplicate().get(bytes);
+      return bytes;
+    }
+
+    @Override
+    public ByteBuffer deserialize(byte[] bytes) {
+      return ByteBuffer.wrap(bytes);
+    }
+  }
+
+  private static class UUIDSerializer implements ValueSerializer<UUID> {
+    @Override
+    public String getId() {
+      return "uuid";
+    }
+
+    @Override
+    public byte[] serialize(UUID value) {
+      return ByteBuffer.allocate(16).putLong(value.getMostSignificantBits()).putLong(value.getLeastSignificantBits()).array();
+    }
+
+    @Override
+    public UUID deserialize(byte[] bytes) {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      return new UUID(buffer.getLong(), buffer.getLong());
+    }
+  }
+}
@@ -15,19 +15,26 @@
  */
 package org.terracotta.entity.map;
 
+import org.terracotta.entity.EndpointDelegate;
 import org.terracotta.entity.EntityClientEndpoint;
 import org.terracotta.entity.map.common.BooleanResponse;
+import org.terracotta.entity.map.common.CachedGetOperation;
 import org.terracotta.entity.map.common.ClearOperation;
+import org.terracotta.entity.map.common.ClusteredMapConfiguration;
+import org.terracotta.entity.map.common.ClusteredMapIterator;
 import org.terracotta.entity.map.common.ConcurrentClusteredMap;
 import org.terracotta.entity.map.common.ConditionalRemoveOperation;
 import org.terracotta.entity.map.common.ConditionalReplaceOperation;
 import org.terracotta.entity.map.common.ContainsKeyOperation;
 import org.terracotta.entity.map.common.ContainsValueOperation;
-import org.terracotta.entity.map.common.EntrySetOperation;
 import org.terracotta.entity.map.common.EntrySetResponse;
+import org.terracotta.entity.map.common.GetAllOperation;
 import org.terracotta.entity.map.common.GetOperation;
-import org.terracotta.entity.map.common.KeySetOperation;
-import org.terracotta.entity.map.common.KeySetResponse;
+import org.terracotta.entity.map.common.InvalidationResponse;
+import org.terracotta.entity.map.common.IteratorBatchResponse;
+import org.terracotta.entity.map.common.IteratorCloseOperation;
+import org.terracotta.entity.map.common.IteratorNextOperation;
+import org.terracotta.entity.map.common.IteratorOpenOperation;
 import org.terracotta.entity.map.common.MapOperation;
 import org.terracotta.entity.map.common.MapResponse;
 import org.terracotta.entity.map.common.MapValueResponse;
@@ -35,18 +42,21 @@ import org.terracotta.entity.map.common.PutAllOperation;
 import org.terracotta.entity.map.common.PutIfAbsentOperation;
 import org.terracotta.entity.map.common.PutIfPresentOperation;
 import org.terracotta.entity.map.common.PutOperation;
+import org.terracotta.entity.map.common.RemoveAllOperation;
 import org.terracotta.entity.map.common.RemoveOperation;
 import org.terracotta.entity.map.common.SizeOperation;
 import org.terracotta.entity.map.common.SizeResponse;
-import org.terracotta.entity.map.common.ValueCollectionResponse;
-import org.terracotta.entity.map.common.ValuesOperation;
 
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import static org.terracotta.entity.map.ValueCodecFactory.getCodecForClass;
@@ -54,7 +64,12 @@ import static org.terracotta.entity.map.ValueCodecFactory.getCodecForClass;
 @SuppressWarnings("unchecked")
 public class TerracottaClusteredMap<K, V> implements ConcurrentClusteredMap<K, V> {
 
+  // entries per message of the bulk operations and collection views
+  static final int DEFAULT_BATCH_SIZE = 1000;
+
   private final EntityClientEndpoint<MapOperation, MapResponse> endpoint;
+  private final SerializerRegistry serializers;
+  private final NearCache<V> nearCache;
 
   private Class<K> keyClass;
   private Class<V> valueClass;
@@ -62,15 +77,57 @@ public class TerracottaClusteredMap<K, V> implements ConcurrentClusteredMap<K, V
   private ValueCodec<V> valueValueCodec;
 
   public TerracottaClusteredMap(EntityClientEndpoint<MapOperation, MapResponse> endpoint) {
+    this(endpoint, new SerializerRegistry());
+  }
+
+  public TerracottaClusteredMap(EntityClientEndpoint<MapOperation, MapResponse> endpoint, SerializerRegistry serializers) {
+    this(endpoint, serializers, null);
+  }
+
+  /**
+   * @param nearCacheConfiguration the near cache settings, or null for no near cache
+   */
+  public TerracottaClusteredMap(EntityClientEndpoint<MapOperation, MapResponse> endpoint, SerializerRegistry serializers,
+                                NearCacheConfiguration nearCacheConfiguration) {
     this.endpoint = endpoint;
+    this.serializers = serializers;
+    if (nearCacheConfiguration == null) {
+      this.nearCache = null;
+    } else {
+      this.nearCache = new NearCache<V>(nearCacheConfiguration);
+      endpoint.setDelegate(new NearCacheInvalidator<V>(nearCache));
+    }
   }
 
+  /**
+   * @return the near cache counters, or null if the map has no near cache
+   */
+  public NearCacheStatistics getNearCacheStatistics() {
+    return nearCache;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalArgumentException if the serializers picked for the types differ from the map configuration ones
+   */
   @Override
   public void setTypes(Class<K> keyClass, Class<V> valueClass) {
+    ValueCodec<K> keyCodec = getCodecForClass(keyClass, serializers);
+    ValueCodec<V> valueCodec = getCodecForClass(valueClass, serializers);
+    ClusteredMapConfiguration configuration = ClusteredMapConfiguration.decode(endpoint.getEntityConfiguration());
+    checkSerializer("key", configuration.getKeySerializerId(), keyCodec);
+    checkSerializer("value", configuration.getValueSerializerId(), valueCodec);
     this.keyClass = keyClass;
     this.valueClass = valueClass;
-    keyValueCodec = getCodecForClass(keyClass);
-    valueValueCodec = getCodecForClass(valueClass);
+    keyValueCodec = keyCodec;
+    valueValueCodec = valueCodec;
+  }
+
+  private static void checkSerializer(String role, String expectedId, ValueCodec<?> codec) {
+    if (expectedId != null && !expectedId.equals(codec.getId())) {
+      throw new IllegalArgumentException("The map requires the " + role + " serializer '" + expectedId + "' but '" + codec.getId() + "' is used");
+    }
   }
 
   @Override
@@ -116,22 +173,47 @@ public class TerracottaClusteredMap<K, V> implements ConcurrentClusteredMap<K, V
     if (!keyClass.isAssignableFrom(key.getClass())) {
       return null;
     }
-    MapValueResponse response = (MapValueResponse) invokeWithReturn(new GetOperation(keyValueCodec.encode((K) key)));
-    return valueValueCodec.decode(response.getValue());
+    Object encodedKey = keyValueCodec.encode((K) key);
+    if (nearCache == null) {
+      MapValueResponse response = (MapValueResponse) invokeWithReturn(new GetOperation(encodedKey));
+      return valueValueCodec.decode(response.getValue());
+    }
+
+    V value = nearCache.get(encodedKey);
+    if (value == null) {
+      long epoch = nearCache.epoch();
+      MapValueResponse response = (MapValueResponse) invokeWithReturn(new CachedGetOperation(encodedKey));
+      value = valueValueCodec.decode(response.getValue());
+      nearCache.put(encodedKey, value, epoch);
+    }
+    return value;
   }
 
   @Override
   public V put(K key, V value) {
-    MapValueResponse response = (MapValueResponse) invokeWithReturn(new PutOperation(keyValueCodec.encode(key), valueValueCodec.encode(value)));
+    Object encodedKey = keyValueCodec.encode(key);
+    MapValueResponse response = (MapValueResponse) invokeWithReturn(new PutOperation(encodedKey, valueValueCodec.encode(value)));
+    modified(encodedKey);
     return valueValueCodec.decode(response.getValue());
   }
 
+  /**
+   * Drops a key modified by this client from the near cache: the server only invalidates the other clients.
+   */
+  private void modified(Object encodedKey) {
+    if (nearCache != null) {
+      nearCache.remove(encodedKey);
+    }
+  }
+
   @Override
   public V remove(Object key) {
     if (!keyClass.isAssignableFrom(key.getClass())) {
       return null;
     }
-    MapValueResponse mapValueResponse = (MapValueResponse) invokeWithReturn(new RemoveOperation(keyValueCodec.encode((K) key)));
+    Object encodedKey = keyValueCodec.encode((K) key);
+    MapValueResponse mapValueResponse = (MapValueResponse) invokeWithReturn(new RemoveOperation(encodedKey));
+    modified(encodedKey);
     return valueValueCodec.decode(mapValueResponse.getValue());
   }
 
@@ -149,24 +231,118 @@ public class TerracottaClusteredMap<K, V> implements ConcurrentClusteredMap<K, V
 
   @Override
   public void putAll(Map<? extends K, ? extends V> m) {
+    // sent in chunks so that no message holds the whole map
     HashMap<Object, Object> input = new HashMap<Object, Object>();
     for (Entry<? extends K, ? extends V> entry : m.entrySet()) {
       input.put(keyValueCodec.encode(entry.getKey()), valueValueCodec.encode(entry.getValue()));
+      if (input.size() == DEFAULT_BATCH_SIZE) {
+        putAll(input);
+        input = new HashMap<Object, Object>();
+      }
+    }
+    if (!input.isEmpty()) {
+      putAll(input);
+    }
+  }
+
+  private void putAll(HashMap<Object, Object> entries) {
+    invokeWithReturn(new PutAllOperation(entries));
+    for (Object encodedKey : entries.keySet()) {
+      modified(encodedKey);
+    }
+  }
+
+  @Override
+  public Map<K, V> getAll(Collection<? extends K> keys) {
+    Map<K, V> result = new HashMap<K, V>();
+    List<Object> input = new ArrayList<Object>();
+    for (K key : keys) {
+      input.add(keyValueCodec.encode(key));
+      if (input.size() == DEFAULT_BATCH_SIZE) {
+        getAll(input, result);
+        input = new ArrayList<Object>();
+      }
+    }
+    if (!input.isEmpty()) {
+      getAll(input, result);
+    }
+    return result;
+  }
+
+  private void getAll(List<Object> keys, Map<K, V> result) {
+    EntrySetResponse response = (EntrySetResponse) invokeWithReturn(new GetAllOperation(keys));
+    for (Entry<Object, Object> entry : response.getEntrySet()) {
+      result.put(keyValueCodec.decode(entry.getKey()), valueValueCodec.decode(entry.getValue()));
     }
-    invokeWithReturn(new PutAllOperation(input));
+  }
+
+  @Override
+  public void removeAll(Collection<? extends K> keys) {
+    List<Object> input = new ArrayList<Object>();
+    for (K key : keys) {
+      input.add(keyValueCodec.encode(key));
+      if (input.size() == DEFAULT_BATCH_SIZE) {
+        removeAll(input);
+        input = new ArrayList<Object>();
+      }
+    }
+    if (!input.isEmpty()) {
+      removeAll(input);
+    }
+  }
+
+  private void removeAll(List<Object> keys) {
+    invokeWithReturn(new RemoveAllOperation(keys));
+    for (Object encodedKey : keys) {
+      modified(encodedKey);
+    }
+  }
+
+  @Override
+  public ClusteredMapIterator<K> keyIterator(int batchSize) {
+    return new BatchIterator<K>(IteratorOpenOperation.Kind.KEYS, batchSize) {
+      @Override
+      K decode(Object element) {
+        return keyValueCodec.decode(element);
+      }
+    };
+  }
+
+  @Override
+  public ClusteredMapIterator<V> valueIterator(int batchSize) {
+    return new BatchIterator<V>(IteratorOpenOperation.Kind.VALUES, batchSize) {
+      @Override
+      V decode(Object element) {
+        return valueValueCodec.decode(element);
+      }
+    };
+  }
+
+  @Override
+  public ClusteredMapIterator<Entry<K, V>> entryIterator(int batchSize) {
+    return new BatchIterator<Entry<K, V>>(IteratorOpenOperation.Kind.ENTRIES, batchSize) {
+      @Override
+      Entry<K, V> decode(Object element) {
+        Entry<Object, Object> entry = (Entry<Object, Object>) element;
+        return new AbstractMap.SimpleEntry<K, V>(keyValueCodec.decode(entry.getKey()), valueValueCodec.decode(entry.getValue()));
+      }
+    };
   }
 
   @Override
   public void clear() {
     invokeWithReturn(new ClearOperation());
+    if (nearCache != null) {
+      nearCache.clear();
+    }
   }
 
   @Override
   public Set<K> keySet() {
     Set<K> result = new HashSet<K>();
-    KeySetResponse keySetResponse = (KeySetResponse) invokeWithReturn(new KeySetOperation());
-    for (Object o : keySetResponse.getKeySet()) {
-      result.add(keyValueCodec.decode(o));
+    ClusteredMapIterator<K> iterator = keyIterator(DEFAULT_BATCH_SIZE);
+    while (iterator.hasNext()) {
+      result.add(iterator.next());
     }
     return result;
   }
@@ -174,9 +350,9 @@ public class TerracottaClusteredMap<K, V> implements ConcurrentClusteredMap<K, V
   @Override
   public Collection<V> values() {
     ArrayList<V> result = new ArrayList<V>();
-    ValueCollectionResponse response = (ValueCollectionResponse) invokeWithReturn(new ValuesOperation());
-    for (Object o : response.getValues()) {
-      result.add(valueValueCodec.decode(o));
+    ClusteredMapIterator<V> iterator = valueIterator(DEFAULT_BATCH_SIZE);
+    while (iterator.hasNext()) {
+      result.add(iterator.next());
     }
     return result;
   }
@@ -184,16 +360,18 @@ public class TerracottaClusteredMap<K, V> implements ConcurrentClusteredMap<K, V
   @Override
   public Set<Map.Entry<K, V>> entrySet() {
     HashSet<Entry<K, V>> result = new HashSet<Entry<K, V>>();
-    EntrySetResponse response = (EntrySetResponse) invokeWithReturn(new EntrySetOperation());
-    for (Entry<Object, Object> entry : response.getEntrySet()) {
-      result.add(new AbstractMap.SimpleEntry<K, V > (keyValueCodec.decode(entry.getKey()), valueValueCodec.decode(entry.getValue())));
+    ClusteredMapIterator<Entry<K, V>> iterator = entryIterator(DEFAULT_BATCH_SIZE);
+    while (iterator.hasNext()) {
+      result.add(iterator.next());
     }
     return result;
   }
 
   @Override
   public V putIfAbsent(K key, V value) {
-    MapValueResponse response = (MapValueResponse) invokeWithReturn(new PutIfAbsentOperation(keyValueCodec.encode(key), valueValueCodec.encode(value)));
+    Object encodedKey = keyValueCodec.encode(key);
+    MapValueResponse response = (MapValueResponse) invokeWithReturn(new PutIfAbsentOperation(encodedKey, valueValueCodec.encode(value)));
+    modified(encodedKey);
     return valueValueCodec.decode(response.getValue());
   }
 
@@ -205,20 +383,112 @@ public class TerracottaClusteredMap<K, V> implements ConcurrentClusteredMap<K, V
     if (!valueClass.isAssignableFrom(value.getClass())) {
       return false;
     }
-    MapOperation operation = new ConditionalRemoveOperation(keyValueCodec.encode((K) key), valueValueCodec.encode((V) value));
-    return ((BooleanResponse) invokeWithReturn(operation)).isTrue();
+    Object encodedKey = keyValueCodec.encode((K) key);
+    MapOperation operation = new ConditionalRemoveOperation(encodedKey, valueValueCodec.encode((V) value));
+    boolean removed = ((BooleanResponse) invokeWithReturn(operation)).isTrue();
+    modified(encodedKey);
+    return removed;
   }
 
   @Override
   public boolean replace(K key, V oldValue, V newValue) {
-    MapOperation operation = new ConditionalReplaceOperation(keyValueCodec.encode(key), valueValueCodec.encode(oldValue), valueValueCodec.encode(newValue));
-    return ((BooleanResponse) invokeWithReturn(operation)).isTrue();
+    Object encodedKey = keyValueCodec.encode(key);
+    MapOperation operation = new ConditionalReplaceOperation(encodedKey, valueValueCodec.encode(oldValue), valueValueCodec.encode(newValue));
+    boolean replaced = ((BooleanResponse) invokeWithReturn(operation)).isTrue();
+    modified(encodedKey);
+    return replaced;
   }
 
   @Override
   public V replace(K key, V value) {
-    MapOperation operation = new PutIfPresentOperation(keyValueCodec.encode(key), valueValueCodec.encode(value));
+    Object encodedKey = keyValueCodec.encode(key);
+    MapOperation operation = new PutIfPresentOperation(encodedKey, valueValueCodec.encode(value));
     MapValueResponse response = (MapValueResponse) invokeWithReturn(operation);
+    modified(encodedKey);
     return valueValueCodec.decode(response.getValue());
   }
+
+  /**
+   * Pulls the elements of a server side iterator one batch at a time, the next batch being fetched once the current
+   * one is consumed.
+   */
+  private abstract class BatchIterator<E> implements ClusteredMapIterator<E> {
+    private final int batchSize;
+    private final long id;
+    private Iterator<Object> batch;
+    private boolean last;
+
+    BatchIterator(IteratorOpenOperation.Kind kind, int batchSize) {
+      this.batchSize = batchSize;
+      IteratorBatchResponse response = (IteratorBatchResponse) invokeWithReturn(new IteratorOpenOperation(kind, batchSize));
+      this.id = response.getIteratorId();
+      this.batch = response.getElements().iterator();
+      this.last = response.isLast();
+    }
+
+    abstract E decode(Object element);
+
+    @Override
+    public boolean hasNext() {
+      while (!batch.hasNext() && !last) {
+        IteratorBatchResponse response = (IteratorBatchResponse) invokeWithReturn(new IteratorNextOperation(id, batchSize));
+        batch = response.getElements().iterator();
+        last = response.isLast();
+      }
+      return batch.hasNext();
+    }
+
+    @Override
+    public E next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return decode(batch.next());
+    }
+
+    @Override
+    public void close() {
+      if (!last) {
+        last = true;
+        batch = Collections.emptyIterator();
+        invokeWithReturn(new IteratorCloseOperation(id));
+      }
+    }
+  }
+
+  /**
+   * Applies the server invalidations to the near cache, which is dropped whole when the connection to the server is
+   * lost as the invalidations may have been lost too.
+   */
+  private static class NearCacheInvalidator<V> implements EndpointDelegate<MapResponse> {
+    private final NearCache<V> nearCache;
+
+    NearCacheInvalidator(NearCache<V> nearCache) {
+      this.nearCache = nearCache;
+    }
+
+    @Override
+    public void handleMessage(MapResponse message) {
+      if (message instanceof InvalidationResponse) {
+        InvalidationResponse invalidation = (InvalidationResponse) message;
+        if (invalidation.isAll()) {
+          nearCache.clear();
+        } else {
+          nearCache.invalidate(invalidation.getKey());
+        }
+      }
+    }
+
+    @Override
+    public byte[] createExtendedReconnectData() {
+      // the new active does not know which keys this client holds
+      nearCache.clear();
+      return new byte[0];
+    }
+
+    @Override
+    public void didDisconnectUnexpectedly() {
+      nearCache.clear();
+    }
+  }
 }
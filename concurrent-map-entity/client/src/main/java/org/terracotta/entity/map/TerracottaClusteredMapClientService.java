@@ -19,30 +19,45 @@ import org.terracotta.entity.EntityClientEndpoint;
 import org.terracotta.entity.EntityClientService;
 import org.terracotta.entity.MessageCodec;
 import org.terracotta.entity.map.common.ClusteredMapCodec;
+import org.terracotta.entity.map.common.ClusteredMapConfiguration;
 import org.terracotta.entity.map.common.ConcurrentClusteredMap;
 import org.terracotta.entity.map.common.MapOperation;
 import org.terracotta.entity.map.common.MapResponse;
 
 @SuppressWarnings("rawtypes")
-public class TerracottaClusteredMapClientService implements EntityClientService<ConcurrentClusteredMap, Void, MapOperation, MapResponse, Object> {
+public class TerracottaClusteredMapClientService implements EntityClientService<ConcurrentClusteredMap, ClusteredMapConfiguration, MapOperation, MapResponse, Object> {
   @Override
   public boolean handlesEntityType(Class<ConcurrentClusteredMap> cls) {
     return cls == ConcurrentClusteredMap.class;
   }
 
   @Override
-  public byte[] serializeConfiguration(Void configuration) {
-    return new byte[0];
+  public byte[] serializeConfiguration(ClusteredMapConfiguration configuration) {
+    if (configuration == null) {
+      return new byte[0];
+    }
+    return configuration.encode();
   }
 
   @Override
-  public Void deserializeConfiguration(byte[] configuration) {
-    return null;
+  public ClusteredMapConfiguration deserializeConfiguration(byte[] configuration) {
+    return ClusteredMapConfiguration.decode(configuration);
   }
 
   @SuppressWarnings("unchecked")
   @Override
   public ConcurrentClusteredMap create(EntityClientEndpoint endpoint, Object userData) {
+    if (userData instanceof ClusteredMapClientConfiguration) {
+      ClusteredMapClientConfiguration configuration = (ClusteredMapClientConfiguration) userData;
+      SerializerRegistry serializers = configuration.getSerializers() == null ? new SerializerRegistry() : configuration.getSerializers();
+      return new TerracottaClusteredMap(endpoint, serializers, configuration.getNearCache());
+    }
+    if (userData instanceof SerializerRegistry) {
+      return new TerracottaClusteredMap(endpoint, (SerializerRegistry) userData);
+    }
+    if (userData instanceof NearCacheConfiguration) {
+      return new TerracottaClusteredMap(endpoint, new SerializerRegistry(), (NearCacheConfiguration) userData);
+    }
     return new TerracottaClusteredMap(endpoint);
   }
 
@@ -22,6 +22,11 @@ import java.io.Serializable;
  */
 interface ValueCodec<T> {
 
+  /**
+   * @return the identifier of the encoding, checked against the map configuration
+   */
+  String getId();
+
   Object encode(T input);
 
   T decode(Object input);
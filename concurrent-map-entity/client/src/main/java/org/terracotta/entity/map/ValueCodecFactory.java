@@ -23,12 +23,25 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.Arrays;
 
 /**
  * ValueCodecFactory
  */
 public class ValueCodecFactory {
+
+  static final String IDENTITY = "identity";
+  static final String JAVA_SERIALIZATION = "java-serialization";
+
   static <T> ValueCodec<T> getCodecForClass(Class<T> clazz) {
+    return getCodecForClass(clazz, new SerializerRegistry());
+  }
+
+  static <T> ValueCodec<T> getCodecForClass(Class<T> clazz, SerializerRegistry serializers) {
+    ValueSerializer<T> serializer = serializers.getSerializer(clazz);
+    if (serializer != null) {
+      return new SerializerCodec<T>(serializer);
+    }
     if (!Serializable.class.isAssignableFrom(clazz)) {
       throw new IllegalArgumentException("The provided type is invalid as it is not Serializable " + clazz);
     }
@@ -43,6 +56,11 @@ public class ValueCodecFactory {
   }
 
   private static class IdentityCodec<T> implements ValueCodec<T> {
+    @Override
+    public String getId() {
+      return IDENTITY;
+    }
+
     @Override
     public Object encode(T input) {
       return input;
@@ -55,7 +73,46 @@ public class ValueCodecFactory {
     }
   }
 
+  /**
+   * Wraps the bytes of a {@link ValueSerializer}, hashed from the bytes so that the server side hash only depends on
+   * them.
+   */
+  private static class SerializerCodec<T> implements ValueCodec<T> {
+    private final ValueSerializer<T> serializer;
+
+    SerializerCodec(ValueSerializer<T> serializer) {
+      this.serializer = serializer;
+    }
+
+    @Override
+    public String getId() {
+      return serializer.getId();
+    }
+
+    @Override
+    public Object encode(T input) {
+      if (input == null) {
+        return null;
+      }
+      byte[] bytes = serializer.serialize(input);
+      return new ValueWrapper(Arrays.hashCode(bytes), bytes);
+    }
+
+    @Override
+    public T decode(Object input) {
+      if (input == null) {
+        return null;
+      }
+      return serializer.deserialize(((ValueWrapper) input).getValue());
+    }
+  }
+
   private static class SerializationWrapperCodec<T> implements ValueCodec<T> {
+    @Override
+    public String getId() {
+      return JAVA_SERIALIZATION;
+    }
+
     @Override
     public Object encode(T input) {
       if (input == null) {
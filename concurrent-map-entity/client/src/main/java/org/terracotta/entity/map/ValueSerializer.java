@@ -0,0 +1,37 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map;
+
+/**
+ * Turns the keys or values of a type into the bytes stored on the server.
+ * <p>
+ * The server compares and hashes those bytes, so equal objects must always give the same bytes. Serializers are
+ * registered per type in a {@link SerializerRegistry}; their {@link #getId() id} can be recorded in the map
+ * {@link org.terracotta.entity.map.common.ClusteredMapConfiguration configuration} so that all clients agree on it.
+ *
+ * @param <T> the serialized type
+ */
+public interface ValueSerializer<T> {
+
+  /**
+   * @return a name identifying the serializer and its format
+   */
+  String getId();
+
+  byte[] serialize(T value);
+
+  T deserialize(byte[] bytes);
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class NearCacheTest {
+
+  private long now = 0;
+
+  @Test
+  public void testLruEviction() {
+    NearCache<String> cache = new NearCache<String>(new NearCacheConfiguration(2));
+    cache.put(1L, "one", cache.epoch());
+    cache.put(2L, "two", cache.epoch());
+    assertThat(cache.get(1L), is("one"));
+    cache.put(3L, "three", cache.epoch());
+
+    assertThat(cache.get(2L), is(nullValue()));
+    assertThat(cache.get(1L), is("one"));
+    assertThat(cache.get(3L), is("three"));
+    assertThat(cache.getEvictions(), is(1L));
+    assertThat(cache.getHits(), is(3L));
+    assertThat(cache.getMisses(), is(1L));
+  }
+
+  @Test
+  public void testLfuEviction() {
+    NearCache<String> cache = new NearCache<String>(new NearCacheConfiguration(2, NearCacheConfiguration.Eviction.LFU, 0, TimeUnit.SECONDS));
+    cache.put(1L, "one", cache.epoch());
+    cache.put(2L, "two", cache.epoch());
+    cache.get(1L);
+    cache.get(1L);
+    cache.get(2L);
+    cache.put(3L, "three", cache.epoch());
+
+    assertThat(cache.get(2L), is(nullValue()));
+    assertThat(cache.get(1L), is("one"));
+  }
+
+  @Test
+  public void testTimeToLive() {
+    NearCache<String> cache = new NearCache<String>(new NearCacheConfiguration(10, NearCacheConfiguration.Eviction.LRU, 10, TimeUnit.NANOSECONDS), () -> now);
+    cache.put(1L, "one", cache.epoch());
+    now = 5;
+    assertThat(cache.get(1L), is("one"));
+    now = 11;
+    assertThat(cache.get(1L), is(nullValue()));
+    assertThat(cache.getExpirations(), is(1L));
+    assertThat(cache.getSize(), is(0));
+  }
+
+  @Test
+  public void testReadRacingInvalidationIsNotCached() {
+    NearCache<String> cache = new NearCache<String>(new NearCacheConfiguration(10));
+    long epoch = cache.epoch();
+    cache.invalidate(1L);
+    cache.put(1L, "stale", epoch);
+    assertThat(cache.get(1L), is(nullValue()));
+
+    cache.put(1L, "fresh", cache.epoch());
+    cache.invalidate(1L);
+    assertThat(cache.get(1L), is(nullValue()));
+    assertThat(cache.getInvalidations(), is(1L));
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map;
+
+import org.junit.Test;
+import org.terracotta.entity.map.common.ValueWrapper;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.terracotta.entity.map.ValueCodecFactory.getCodecForClass;
+
+public class ValueCodecFactoryTest {
+
+  @Test
+  public void testNativeTypesAreNotWrapped() {
+    ValueCodec<Long> codec = getCodecForClass(Long.class);
+    assertThat(codec.getId(), is(ValueCodecFactory.IDENTITY));
+    assertThat(codec.encode(42L), is((Object) 42L));
+  }
+
+  @Test
+  public void testBuiltInSerializers() {
+    UUID uuid = UUID.randomUUID();
+    ValueCodec<UUID> uuidCodec = getCodecForClass(UUID.class);
+    assertThat(uuidCodec.getId(), is("uuid"));
+    Object encoded = uuidCodec.encode(uuid);
+    assertThat(((ValueWrapper) encoded).getValue().length, is(16));
+    assertThat(uuidCodec.decode(encoded), is(uuid));
+
+    ValueCodec<ByteBuffer> bufferCodec = getCodecForClass(ByteBuffer.class);
+    ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 });
+    buffer.position(1);
+    assertThat(bufferCodec.decode(bufferCodec.encode(buffer)), is(ByteBuffer.wrap(new byte[] { 2, 3, 4 })));
+    assertThat(buffer.position(), is(1));
+
+    ValueCodec<byte[]> arrayCodec = getCodecForClass(byte[].class);
+    assertThat(arrayCodec.encode(new byte[] { 5, 6 }), is(arrayCodec.encode(new byte[] { 5, 6 })));
+  }
+
+  @Test
+  public void testRegisteredSerializer() {
+    SerializerRegistry registry = new SerializerRegistry().register(Name.class, new NameSerializer());
+    ValueCodec<Name> codec = getCodecForClass(Name.class, registry);
+    assertThat(codec.getId(), is("name"));
+
+    // equal objects map to equal wrappers, whatever their identity hash code
+    Object first = codec.encode(new Name("Tony"));
+    Object second = codec.encode(new Name("Tony"));
+    assertThat(first, is(second));
+    assertThat(first.hashCode(), is(second.hashCode()));
+    assertThat(codec.decode(first).value, is("Tony"));
+  }
+
+  @Test
+  public void testUnregisteredTypeFallsBackToSerialization() {
+    ValueCodec<StringBuilder> codec = getCodecForClass(StringBuilder.class);
+    assertThat(codec.getId(), is(ValueCodecFactory.JAVA_SERIALIZATION));
+    assertThat(codec.encode(new StringBuilder("a")) instanceof ValueWrapper, is(true));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnregisteredNonSerializableType() {
+    getCodecForClass(Name.class);
+  }
+
+  private static final class Name {
+    private final String value;
+
+    Name(String value) {
+      this.value = value;
+    }
+  }
+
+  private static class NameSerializer implements ValueSerializer<Name> {
+    @Override
+    public String getId() {
+      return "name";
+    }
+
+    @Override
+    public byte[] serialize(Name value) {
+      return value.value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Name deserialize(byte[] bytes) {
+      return new Name(new String(bytes, StandardCharsets.UTF_8));
+    }
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.common;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A get of a client holding the value in its near cache: the server tracks the client as holding the key, and sends
+ * it an {@link InvalidationResponse} once the key is modified.
+ */
+public class CachedGetOperation implements MapOperation {
+  private final Object key;
+
+  public CachedGetOperation(Object key) {
+    this.key = key;
+  }
+
+  public Object getKey() {
+    return key;
+  }
+
+  @Override
+  public Type operationType() {
+    return Type.CACHED_GET;
+  }
+
+  @Override
+  public void writeTo(DataOutput output) throws IOException {
+    PrimitiveCodec.writeTo(output, key);
+  }
+
+  static CachedGetOperation readFrom(DataInput input) throws IOException {
+    return new CachedGetOperation(PrimitiveCodec.readFrom(input));
+  }
+}
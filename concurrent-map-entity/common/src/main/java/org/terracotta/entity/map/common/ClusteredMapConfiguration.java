@@ -0,0 +1,144 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Server side settings of a clustered map, given when creating the entity.
+ * <p>
+ * The map is split in segments, each one being processed concurrently on the server. When an off-heap resource name
+ * is given, the map content is stored in off-heap memory reserved from that resource instead of on heap. Off-heap maps
+ * compare keys by their serialized bytes, as all maps already do for keys other than boxed primitives and strings:
+ * keys whose equal instances may serialize differently, such as hash based collections, may then not be found.
+ * <p>
+ * The key and value serializer ids, when set, are checked by the clients when setting the map types: all clients
+ * then send the same bytes for equal objects, keeping the server side hashing and equality consistent.
+ */
+public final class ClusteredMapConfiguration {
+
+  public static final int DEFAULT_SEGMENTS = 16;
+
+  private final int segments;
+  private final String offHeapResourceName;
+  private final String keySerializerId;
+  private final String valueSerializerId;
+
+  public ClusteredMapConfiguration(int segments, String offHeapResourceName, String keySerializerId, String valueSerializerId) {
+    if (segments < 1) {
+      throw new IllegalArgumentException("Invalid segment count: " + segments);
+    }
+    this.segments = segments;
+    this.offHeapResourceName = offHeapResourceName;
+    this.keySerializerId = keySerializerId;
+    this.valueSerializerId = valueSerializerId;
+  }
+
+  public ClusteredMapConfiguration(int segments, String offHeapResourceName) {
+    this(segments, offHeapResourceName, null, null);
+  }
+
+  public ClusteredMapConfiguration() {
+    this(DEFAULT_SEGMENTS, null);
+  }
+
+  public int getSegments() {
+    return segments;
+  }
+
+  /**
+   * @return the name of the off-heap resource storing the map, or null for on heap storage
+   */
+  public String getOffHeapResourceName() {
+    return offHeapResourceName;
+  }
+
+  /**
+   * @return the id of the serializer all clients must use for keys, or null if not enforced
+   */
+  public String getKeySerializerId() {
+    return keySerializerId;
+  }
+
+  /**
+   * @return the id of the serializer all clients must use for values, or null if not enforced
+   */
+  public String getValueSerializerId() {
+    return valueSerializerId;
+  }
+
+  public byte[] encode() {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream output = new DataOutputStream(bytes);
+      output.writeInt(segments);
+      writeOptional(output, offHeapResourceName);
+      writeOptional(output, keySerializerId);
+      writeOptional(output, valueSerializerId);
+      output.close();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * Decodes a configuration, missing settings taking their default value.
+   *
+   * @param bytes the encoded configuration, possibly empty
+   * @return the configuration
+   */
+  public static ClusteredMapConfiguration decode(byte[] bytes) {
+    if (bytes == null || bytes.length < 4) {
+      return new ClusteredMapConfiguration();
+    }
+    try {
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+      int segments = input.readInt();
+      String offHeapResourceName = readOptional(input);
+      String keySerializerId = readOptional(input);
+      String valueSerializerId = readOptional(input);
+      return new ClusteredMapConfiguration(segments, offHeapResourceName, keySerializerId, valueSerializerId);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Invalid clustered map configuration", e);
+    }
+  }
+
+  private static void writeOptional(DataOutputStream output, String value) throws IOException {
+    output.writeBoolean(value != null);
+    if (value != null) {
+      output.writeUTF(value);
+    }
+  }
+
+  private static String readOptional(DataInputStream input) throws IOException {
+    // settings added later are missing from older configurations
+    if (input.available() > 0 && input.readBoolean()) {
+      return input.readUTF();
+    }
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return "ClusteredMapConfiguration{segments=" + segments + ", offHeapResourceName=" + offHeapResourceName
+        + ", keySerializerId=" + keySerializerId + ", valueSerializerId=" + valueSerializerId + '}';
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.common;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * An iterator fetching the map content from the server one batch at a time.
+ * <p>
+ * The server holds the iteration state until the iterator is exhausted, closed or its client disconnects. It also
+ * drops the state of an iterator left unused for ten minutes, or of the least recently used one when a client opens
+ * more than 64 iterators: fetching from such an iterator then fails.
+ * Iterators do not support {@link #remove()} and are not thread safe.
+ *
+ * @param <E> the element type
+ */
+public interface ClusteredMapIterator<E> extends Iterator<E>, Closeable {
+
+  /**
+   * Releases the server side state of this iterator, if not exhausted yet.
+   */
+  @Override
+  void close();
+}
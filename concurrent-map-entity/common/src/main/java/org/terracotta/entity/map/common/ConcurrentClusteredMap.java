@@ -17,10 +17,16 @@ package org.terracotta.entity.map.common;
 
 import org.terracotta.connection.entity.Entity;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 
 public interface ConcurrentClusteredMap<K, V> extends ConcurrentMap<K, V>, Entity {
-  long VERSION = 1;
+  /**
+   * The entity version, 2 being the binary wire format: clients and servers of different versions cannot connect, so
+   * version 1 clients are rejected by version 2 servers.
+   */
+  long VERSION = 2;
 
   /**
    * Records the key and value classes to enable optimizations.
@@ -29,4 +35,43 @@ public interface ConcurrentClusteredMap<K, V> extends ConcurrentMap<K, V>, Entit
    * @param valueClass the value class
    */
   void setTypes(Class<K> keyClass, Class<V> valueClass);
+
+  /**
+   * Gets the mappings of several keys in a single server round trip.
+   *
+   * @param keys the keys to look up
+   * @return the mappings found, absent keys having no entry
+   */
+  Map<K, V> getAll(Collection<? extends K> keys);
+
+  /**
+   * Removes the mappings of several keys in a single server round trip.
+   *
+   * @param keys the keys to remove
+   */
+  void removeAll(Collection<? extends K> keys);
+
+  /**
+   * Iterates over the keys, fetching them from the server {@code batchSize} at a time.
+   *
+   * @param batchSize the number of keys fetched per server round trip
+   * @return the iterator, to close if not exhausted
+   */
+  ClusteredMapIterator<K> keyIterator(int batchSize);
+
+  /**
+   * Iterates over the values, fetching them from the server {@code batchSize} at a time.
+   *
+   * @param batchSize the number of values fetched per server round trip
+   * @return the iterator, to close if not exhausted
+   */
+  ClusteredMapIterator<V> valueIterator(int batchSize);
+
+  /**
+   * Iterates over the entries, fetching them from the server {@code batchSize} at a time.
+   *
+   * @param batchSize the number of entries fetched per server round trip
+   * @return the iterator, to close if not exhausted
+   */
+  ClusteredMapIterator<Map.Entry<K, V>> entryIterator(int batchSize);
 }
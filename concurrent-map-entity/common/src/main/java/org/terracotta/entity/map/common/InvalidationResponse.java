@@ -0,0 +1,73 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.common;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Sent by the server to the clients holding a key in their near cache once the key is modified, or once the map is
+ * cleared in which case all keys are invalidated.
+ */
+public class InvalidationResponse implements MapResponse {
+  private final Object key;
+  private final boolean all;
+
+  private InvalidationResponse(Object key, boolean all) {
+    this.key = key;
+    this.all = all;
+  }
+
+  public static InvalidationResponse key(Object key) {
+    return new InvalidationResponse(key, false);
+  }
+
+  public static InvalidationResponse all() {
+    return new InvalidationResponse(null, true);
+  }
+
+  /**
+   * @return the invalidated key, or null if {@link #isAll() all} keys are
+   */
+  public Object getKey() {
+    return key;
+  }
+
+  public boolean isAll() {
+    return all;
+  }
+
+  @Override
+  public Type responseType() {
+    return Type.INVALIDATION;
+  }
+
+  @Override
+  public void writeTo(DataOutput output) throws IOException {
+    output.writeBoolean(all);
+    if (!all) {
+      PrimitiveCodec.writeTo(output, key);
+    }
+  }
+
+  static InvalidationResponse readFrom(DataInput input) throws IOException {
+    if (input.readBoolean()) {
+      return all();
+    }
+    return key(PrimitiveCodec.readFrom(input));
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.common;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A batch of elements of a server side iterator. Once the last batch is sent, the server releases the iterator.
+ */
+public class IteratorBatchResponse implements MapResponse {
+  private final long iteratorId;
+  private final List<Object> elements;
+  private final boolean last;
+
+  public IteratorBatchResponse(long iteratorId, List<Object> elements, boolean last) {
+    this.iteratorId = iteratorId;
+    this.elements = elements;
+    this.last = last;
+  }
+
+  public long getIteratorId() {
+    return iteratorId;
+  }
+
+  /**
+   * @return the keys, values or {@link java.util.Map.Entry entries} of the batch
+   */
+  public List<Object> getElements() {
+    return elements;
+  }
+
+  public boolean isLast() {
+    return last;
+  }
+
+  @Override
+  public Type responseType() {
+    return Type.ITERATOR_BATCH;
+  }
+
+  @Override
+  public void writeTo(DataOutput output) throws IOException {
+    output.writeLong(iteratorId);
+    output.writeBoolean(last);
+    PrimitiveCodec.writeTo(output, elements);
+  }
+
+  @SuppressWarnings("unchecked")
+  static IteratorBatchResponse readFrom(DataInput input) throws IOException {
+    long iteratorId = input.readLong();
+    boolean last = input.readBoolean();
+    return new IteratorBatchResponse(iteratorId, (List<Object>) PrimitiveCodec.readFrom(input), last);
+  }
+}
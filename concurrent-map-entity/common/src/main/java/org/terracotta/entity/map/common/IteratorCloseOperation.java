@@ -0,0 +1,49 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.common;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Releases a server side iterator before it is exhausted.
+ */
+public class IteratorCloseOperation implements MapOperation {
+  private final long iteratorId;
+
+  public IteratorCloseOperation(long iteratorId) {
+    this.iteratorId = iteratorId;
+  }
+
+  public long getIteratorId() {
+    return iteratorId;
+  }
+
+  @Override
+  public Type operationType() {
+    return Type.ITERATOR_CLOSE;
+  }
+
+  @Override
+  public void writeTo(DataOutput output) throws IOException {
+    output.writeLong(iteratorId);
+  }
+
+  static IteratorCloseOperation readFrom(DataInput input) throws IOException {
+    return new IteratorCloseOperation(input.readLong());
+  }
+}
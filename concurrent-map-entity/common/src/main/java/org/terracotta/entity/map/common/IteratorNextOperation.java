@@ -0,0 +1,59 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.common;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Fetches the next batch of a server side iterator.
+ */
+public class IteratorNextOperation implements MapOperation {
+  private final long iteratorId;
+  private final int batchSize;
+
+  public IteratorNextOperation(long iteratorId, int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+    }
+    this.iteratorId = iteratorId;
+    this.batchSize = batchSize;
+  }
+
+  public long getIteratorId() {
+    return iteratorId;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  @Override
+  public Type operationType() {
+    return Type.ITERATOR_NEXT;
+  }
+
+  @Override
+  public void writeTo(DataOutput output) throws IOException {
+    output.writeLong(iteratorId);
+    output.writeInt(batchSize);
+  }
+
+  static IteratorNextOperation readFrom(DataInput input) throws IOException {
+    return new IteratorNextOperation(input.readLong(), input.readInt());
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.common;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Opens a server side iterator over the map, answered with the first {@link IteratorBatchResponse}.
+ */
+public class IteratorOpenOperation implements MapOperation {
+
+  /**
+   * What the iterator returns.
+   */
+  public enum Kind {
+    KEYS,
+    VALUES,
+    ENTRIES
+  }
+
+  private final Kind kind;
+  private final int batchSize;
+
+  public IteratorOpenOperation(Kind kind, int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+    }
+    this.kind = kind;
+    this.batchSize = batchSize;
+  }
+
+  public Kind getKind() {
+    return kind;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  @Override
+  public Type operationType() {
+    return Type.ITERATOR_OPEN;
+  }
+
+  @Override
+  public void writeTo(DataOutput output) throws IOException {
+    output.writeByte(kind.ordinal());
+    output.writeInt(batchSize);
+  }
+
+  static IteratorOpenOperation readFrom(DataInput input) throws IOException {
+    return new IteratorOpenOperation(Kind.values()[input.readByte()], input.readInt());
+  }
+}
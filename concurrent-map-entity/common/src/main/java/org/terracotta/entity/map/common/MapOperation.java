@@ -62,7 +62,28 @@ public interface MapOperation extends EntityMessage {
     PUT_IF_ABSENT,
     PUT_IF_PRESENT,
     CONDITIONAL_REMOVE,
-    CONDITIONAL_REPLACE;
+    CONDITIONAL_REPLACE,
+    GET_ALL {
+      @Override
+      public boolean replicate() { return false; }
+    },
+    REMOVE_ALL,
+    ITERATOR_OPEN {
+      @Override
+      public boolean replicate() { return false; }
+    },
+    ITERATOR_NEXT {
+      @Override
+      public boolean replicate() { return false; }
+    },
+    ITERATOR_CLOSE {
+      @Override
+      public boolean replicate() { return false; }
+    },
+    CACHED_GET {
+      @Override
+      public boolean replicate() { return false; }
+    };
 
     public boolean replicate() {
       return true;
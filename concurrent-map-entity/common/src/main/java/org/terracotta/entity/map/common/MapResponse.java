@@ -32,6 +32,8 @@ public interface MapResponse extends EntityResponse {
     KEY_SET,
     VALUE_COLLECTION,
     ENTRY_SET,
+    ITERATOR_BATCH,
+    INVALIDATION,
   }
 
   Type responseType();
@@ -15,16 +15,15 @@
  */
 package org.terracotta.entity.map.common;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 
 
 class OperationCodec {
   public static MapOperation decode(byte[] bytes) throws IOException {
-    ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes));
+    DataInput input = WireFormat.open(bytes);
     byte type = input.readByte();
 
     switch (MapOperation.Type.values()[type]) {
@@ -58,6 +57,18 @@ class OperationCodec {
         return ConditionalRemoveOperation.readFrom(input);
       case CONDITIONAL_REPLACE:
         return ConditionalReplaceOperation.readFrom(input);
+      case GET_ALL:
+        return GetAllOperation.readFrom(input);
+      case REMOVE_ALL:
+        return RemoveAllOperation.readFrom(input);
+      case ITERATOR_OPEN:
+        return IteratorOpenOperation.readFrom(input);
+      case ITERATOR_NEXT:
+        return IteratorNextOperation.readFrom(input);
+      case ITERATOR_CLOSE:
+        return IteratorCloseOperation.readFrom(input);
+      case CACHED_GET:
+        return CachedGetOperation.readFrom(input);
       default:
         throw new IllegalArgumentException("Unknown map operation type " + type);
     }
@@ -65,8 +76,9 @@ class OperationCodec {
 
   public static byte[] encode(MapOperation operation) throws IOException {
     ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-    ObjectOutputStream output = new ObjectOutputStream(byteOut);
+    DataOutputStream output = new DataOutputStream(byteOut);
 
+    output.writeByte(WireFormat.BINARY);
     output.writeByte(operation.operationType().ordinal());
     operation.writeTo(output);
 
@@ -18,35 +18,225 @@ package org.terracotta.entity.map.common;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+/**
+ * Writes the keys, values and collections carried by the map messages.
+ * <p>
+ * Primitive wrappers, strings, {@link ValueWrapper}s and the collections of those are written in a compact tagged
+ * binary layout; other objects fall back to Java serialization.
+ */
 public class PrimitiveCodec {
 
+  private static final byte NULL = 0;
+  private static final byte BOOLEAN = 1;
+  private static final byte BYTE = 2;
+  private static final byte SHORT = 3;
+  private static final byte CHARACTER = 4;
+  private static final byte INTEGER = 5;
+  private static final byte LONG = 6;
+  private static final byte FLOAT = 7;
+  private static final byte DOUBLE = 8;
+  private static final byte STRING = 9;
+  private static final byte VALUE_WRAPPER = 10;
+  private static final byte LIST = 11;
+  private static final byte SET = 12;
+  private static final byte MAP = 13;
+  private static final byte ENTRY = 14;
+  private static final byte SERIALIZED = 15;
+
   public static byte[] encode(Object o) throws IOException {
     ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-    ObjectOutputStream output = new ObjectOutputStream(bytes);
+    DataOutputStream output = new DataOutputStream(bytes);
     writeTo(output, o);
     output.close();
     return bytes.toByteArray();
   }
 
   public static Object decode(byte[] bytes) throws IOException {
-    ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes));
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
     return readFrom(input);
   }
 
-  public static Object readFrom(DataInput inputStream) throws IOException {
-    try {
-      return ((ObjectInputStream) inputStream).readObject();
-    } catch (ClassNotFoundException e) {
-      throw new RuntimeException(e);
+  public static void writeTo(DataOutput output, Object o) throws IOException {
+    if (o == null) {
+      output.writeByte(NULL);
+    } else if (o instanceof Long) {
+      output.writeByte(LONG);
+      output.writeLong((Long) o);
+    } else if (o instanceof Integer) {
+      output.writeByte(INTEGER);
+      output.writeInt((Integer) o);
+    } else if (o instanceof String) {
+      output.writeByte(STRING);
+      writeBytes(output, ((String) o).getBytes(StandardCharsets.UTF_8));
+    } else if (o instanceof ValueWrapper) {
+      // already serialized by the client: the bytes are passed through as they are
+      ValueWrapper wrapper = (ValueWrapper) o;
+      output.writeByte(VALUE_WRAPPER);
+      output.writeInt(wrapper.hashCode());
+      writeBytes(output, wrapper.getValue());
+    } else if (o instanceof Boolean) {
+      output.writeByte(BOOLEAN);
+      output.writeBoolean((Boolean) o);
+    } else if (o instanceof Byte) {
+      output.writeByte(BYTE);
+      output.writeByte((Byte) o);
+    } else if (o instanceof Short) {
+      output.writeByte(SHORT);
+      output.writeShort((Short) o);
+    } else if (o instanceof Character) {
+      output.writeByte(CHARACTER);
+      output.writeChar((Character) o);
+    } else if (o instanceof Float) {
+      output.writeByte(FLOAT);
+      output.writeFloat((Float) o);
+    } else if (o instanceof Double) {
+      output.writeByte(DOUBLE);
+      output.writeDouble((Double) o);
+    } else if (o instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) o;
+      output.writeByte(MAP);
+      output.writeInt(map.size());
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        writeTo(output, entry.getKey());
+        writeTo(output, entry.getValue());
+      }
+    } else if (o instanceof Map.Entry) {
+      Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+      output.writeByte(ENTRY);
+      writeTo(output, entry.getKey());
+      writeTo(output, entry.getValue());
+    } else if (o instanceof Collection) {
+      Collection<?> collection = (Collection<?>) o;
+      output.writeByte(o instanceof Set ? SET : LIST);
+      output.writeInt(collection.size());
+      for (Object element : collection) {
+        writeTo(output, element);
+      }
+    } else {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream objectOutput = new ObjectOutputStream(bytes);
+      objectOutput.writeObject(o);
+      objectOutput.close();
+      output.writeByte(SERIALIZED);
+      writeBytes(output, bytes.toByteArray());
+    }
+  }
+
+  /**
+   * Reads an object, the sizes read being checked against the bytes left when the input is an {@link InputStream}
+   * before anything is allocated for them.
+   */
+  public static Object readFrom(DataInput input) throws IOException {
+    byte tag = input.readByte();
+    switch (tag) {
+      case NULL:
+        return null;
+      case LONG:
+        return input.readLong();
+      case INTEGER:
+        return input.readInt();
+      case STRING:
+        return new String(readBytes(input), StandardCharsets.UTF_8);
+      case VALUE_WRAPPER: {
+        int hashCode = input.readInt();
+        return new ValueWrapper(hashCode, readBytes(input));
+      }
+      case BOOLEAN:
+        return input.readBoolean();
+      case BYTE:
+        return input.readByte();
+      case SHORT:
+        return input.readShort();
+      case CHARACTER:
+        return input.readChar();
+      case FLOAT:
+        return input.readFloat();
+      case DOUBLE:
+        return input.readDouble();
+      case MAP: {
+        int size = readSize(input);
+        Map<Object, Object> map = new HashMap<Object, Object>(capacity(size));
+        for (int i = 0; i < size; i++) {
+          map.put(readFrom(input), readFrom(input));
+        }
+        return map;
+      }
+      case ENTRY: {
+        Object key = readFrom(input);
+        return new AbstractMap.SimpleEntry<Object, Object>(key, readFrom(input));
+      }
+      case LIST: {
+        int size = readSize(input);
+        List<Object> list = new ArrayList<Object>(size);
+        for (int i = 0; i < size; i++) {
+          list.add(readFrom(input));
+        }
+        return list;
+      }
+      case SET: {
+        int size = readSize(input);
+        Set<Object> set = new HashSet<Object>(capacity(size));
+        for (int i = 0; i < size; i++) {
+          set.add(readFrom(input));
+        }
+        return set;
+      }
+      case SERIALIZED: {
+        ObjectInputStream objectInput = new ObjectInputStream(new ByteArrayInputStream(readBytes(input)));
+        try {
+          return objectInput.readObject();
+        } catch (ClassNotFoundException e) {
+          throw new RuntimeException(e);
+        } finally {
+          objectInput.close();
+        }
+      }
+      default:
+        throw new IOException("Unknown value tag " + tag);
+    }
+  }
+
+  private static void writeBytes(DataOutput output, byte[] bytes) throws IOException {
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static byte[] readBytes(DataInput input) throws IOException {
+    byte[] bytes = new byte[readSize(input)];
+    input.readFully(bytes);
+    return bytes;
+  }
+
+  /**
+   * Reads a number of bytes or elements, which cannot be more than the bytes left as every element takes at least one.
+   */
+  private static int readSize(DataInput input) throws IOException {
+    int size = input.readInt();
+    if (size < 0 || (input instanceof InputStream && size > ((InputStream) input).available())) {
+      throw new EOFException("Invalid size: " + size);
     }
+    return size;
   }
 
-  public static void writeTo(DataOutput os, Object o) throws IOException {
-    ((ObjectOutputStream) os).writeObject(o);
+  private static int capacity(int size) {
+    return Math.max(16, (int) (size / 0.75f) + 1);
   }
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.common;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+public class RemoveAllOperation implements MapOperation {
+  private final List<Object> keys;
+
+  public RemoveAllOperation(List<Object> keys) {
+    this.keys = keys;
+  }
+
+  public List<Object> getKeys() {
+    return keys;
+  }
+
+  @Override
+  public Type operationType() {
+    return Type.REMOVE_ALL;
+  }
+
+  @Override
+  public void writeTo(DataOutput output) throws IOException {
+    PrimitiveCodec.writeTo(output, keys);
+  }
+
+  @SuppressWarnings("unchecked")
+  static RemoveAllOperation readFrom(DataInput input) throws IOException {
+    return new RemoveAllOperation((List<Object>) PrimitiveCodec.readFrom(input));
+  }
+}
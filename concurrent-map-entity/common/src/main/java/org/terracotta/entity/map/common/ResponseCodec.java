@@ -15,16 +15,15 @@
  */
 package org.terracotta.entity.map.common;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 
 
 class ResponseCodec {
   public static MapResponse decode(byte[] bytes) throws IOException {
-    ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes));
+    DataInput input = WireFormat.open(bytes);
     byte type = input.readByte();
 
     switch (MapResponse.Type.values()[type]) {
@@ -42,6 +41,10 @@ class ResponseCodec {
         return ValueCollectionResponse.readFrom(input);
       case ENTRY_SET:
         return EntrySetResponse.readFrom(input);
+      case ITERATOR_BATCH:
+        return IteratorBatchResponse.readFrom(input);
+      case INVALIDATION:
+        return InvalidationResponse.readFrom(input);
       default:
         throw new IllegalArgumentException("Unknown map response type " + type);
     }
@@ -49,8 +52,9 @@ class ResponseCodec {
 
   public static byte[] encode(MapResponse response) throws IOException {
     ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-    ObjectOutputStream output = new ObjectOutputStream(byteOut);
+    DataOutputStream output = new DataOutputStream(byteOut);
 
+    output.writeByte(WireFormat.BINARY);
     output.writeByte(response.responseType().ordinal());
     response.writeTo(output);
 
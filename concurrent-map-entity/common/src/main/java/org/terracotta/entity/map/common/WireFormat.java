@@ -0,0 +1,51 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * The framing of the map messages.
+ * <p>
+ * Messages are written in the binary format: a {@link #BINARY} version byte, followed by the message type and its
+ * content, see {@link PrimitiveCodec}. The Java object stream messages of the previous
+ * {@link ConcurrentClusteredMap#VERSION version} are not decoded: clients of that version are rejected when fetching
+ * the entity, and any such message reaching the codec fails as an unsupported format.
+ */
+final class WireFormat {
+
+  static final byte BINARY = 1;
+
+  private WireFormat() {
+  }
+
+  /**
+   * @param bytes the encoded message
+   * @return an input positioned on the message type
+   */
+  static DataInput open(byte[] bytes) throws IOException {
+    if (bytes.length == 0) {
+      throw new IOException("Empty message");
+    }
+    if (bytes[0] != BINARY) {
+      throw new IOException("Unsupported message format " + bytes[0]);
+    }
+    return new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1));
+  }
+}
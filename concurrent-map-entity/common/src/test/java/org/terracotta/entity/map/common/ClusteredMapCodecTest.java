@@ -0,0 +1,111 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.common;
+
+import org.junit.Test;
+import org.terracotta.entity.MessageCodecException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class ClusteredMapCodecTest {
+
+  private final ClusteredMapCodec codec = new ClusteredMapCodec();
+
+  @Test
+  public void testOperationRoundTrip() throws Exception {
+    PutOperation put = (PutOperation) codec.decodeMessage(codec.encodeMessage(new PutOperation(42L, "answer")));
+    assertThat(put.getKey(), is((Object) 42L));
+    assertThat(put.getValue(), is((Object) "answer"));
+
+    ConditionalReplaceOperation replace = (ConditionalReplaceOperation) codec.decodeMessage(codec.encodeMessage(
+        new ConditionalReplaceOperation('c', (short) 3, new BigDecimal("1.5"))));
+    assertThat(replace.getKey(), is((Object) 'c'));
+    assertThat(replace.getOldValue(), is((Object) (short) 3));
+    assertThat(replace.getNewValue(), is((Object) new BigDecimal("1.5")));
+
+    Map<Object, Object> map = new HashMap<Object, Object>();
+    map.put(1L, null);
+    map.put("key", new ValueWrapper(3, new byte[] { 1, 2, 3 }));
+    map.put(2, 1.5d);
+    PutAllOperation putAll = (PutAllOperation) codec.decodeMessage(codec.encodeMessage(new PutAllOperation(map)));
+    assertThat(putAll.getMap(), is((Object) map));
+  }
+
+  @Test
+  public void testResponseRoundTrip() throws Exception {
+    Set<Map.Entry<Object, Object>> entries = new HashSet<Map.Entry<Object, Object>>();
+    entries.add(new AbstractMap.SimpleEntry<Object, Object>(1L, "one"));
+    entries.add(new AbstractMap.SimpleEntry<Object, Object>(2L, new ValueWrapper(2, new byte[] { 2 })));
+    EntrySetResponse entrySet = (EntrySetResponse) codec.decodeResponse(codec.encodeResponse(new EntrySetResponse(entries)));
+    assertThat(entrySet.getEntrySet(), is(entries));
+
+    List<Object> elements = new ArrayList<Object>(Arrays.asList("a", true, (byte) 1, 2.5f));
+    IteratorBatchResponse batch = (IteratorBatchResponse) codec.decodeResponse(codec.encodeResponse(new IteratorBatchResponse(7L, elements, true)));
+    assertThat(batch.getIteratorId(), is(7L));
+    assertThat(batch.getElements(), is(elements));
+    assertThat(batch.isLast(), is(true));
+  }
+
+  @Test
+  public void testValueWrapperIsNotSerializedAgain() throws Exception {
+    byte[] value = new byte[100];
+    byte[] encoded = codec.encodeMessage(new PutOperation(1L, new ValueWrapper(5, value)));
+    // format, type, key and value tags, long key, hash code, length and bytes
+    assertThat(encoded.length, is(1 + 1 + 1 + 8 + 1 + 4 + 4 + value.length));
+  }
+
+  @Test(expected = MessageCodecException.class)
+  public void testLegacyFormatIsRejected() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream output = new ObjectOutputStream(bytes);
+    output.writeByte(MapOperation.Type.PUT.ordinal());
+    output.writeObject(42L);
+    output.writeObject("answer");
+    output.close();
+
+    codec.decodeMessage(bytes.toByteArray());
+  }
+
+  @Test(expected = EOFException.class)
+  public void testOversizedLengthIsRejected() throws Exception {
+    byte[] encoded = PrimitiveCodec.encode("string");
+    // the length follows the tag
+    encoded[1] = 0x7F;
+    PrimitiveCodec.decode(encoded);
+  }
+
+  @Test(expected = EOFException.class)
+  public void testOversizedCollectionIsRejected() throws Exception {
+    byte[] encoded = PrimitiveCodec.encode(Arrays.asList(1L, 2L));
+    // the size follows the tag
+    encoded[1] = 0x7F;
+    PrimitiveCodec.decode(encoded);
+  }
+}
@@ -19,7 +19,10 @@ import org.junit.Test;
 import org.terracotta.connection.Connection;
 import org.terracotta.connection.ConnectionFactory;
 import org.terracotta.connection.entity.EntityRef;
+import org.terracotta.entity.map.NearCacheConfiguration;
+import org.terracotta.entity.map.TerracottaClusteredMap;
 import org.terracotta.entity.map.TerracottaClusteredMapClientService;
+import org.terracotta.entity.map.common.ClusteredMapIterator;
 import org.terracotta.entity.map.common.ConcurrentClusteredMap;
 import org.terracotta.entity.map.server.TerracottaClusteredMapService;
 import org.terracotta.passthrough.PassthroughClusterControl;
@@ -30,6 +33,9 @@ import org.terracotta.passthrough.PassthroughTestHelpers;
 
 import java.io.Serializable;
 import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 import static org.hamcrest.Matchers.containsInAnyOrder;
@@ -125,6 +131,75 @@ public class ClusteredConcurrentMapPassthroughTest {
     assertThat(clusteredMap.entrySet().size(), is(3));
   }
 
+  @Test
+  public void testKeysAcrossSegments() throws Exception {
+    for (long i = 0; i < 1000; i++) {
+      clusteredMap.put(i, Long.toString(i));
+    }
+
+    assertThat(clusteredMap.size(), is(1000));
+    assertThat(clusteredMap.keySet().size(), is(1000));
+    assertThat(clusteredMap.containsValue("999"), is(true));
+    for (long i = 0; i < 1000; i++) {
+      assertThat(clusteredMap.get(i), is(Long.toString(i)));
+    }
+
+    clusteredMap.clear();
+    assertThat(clusteredMap.isEmpty(), is(true));
+  }
+
+  @Test
+  public void testPagedOps() throws Exception {
+    Map<Long, String> content = new HashMap<Long, String>();
+    for (long i = 0; i < 2500; i++) {
+      content.put(i, Long.toString(i));
+    }
+    clusteredMap.putAll(content);
+    assertThat(clusteredMap.size(), is(2500));
+
+    Map<Long, String> found = new HashMap<Long, String>();
+    ClusteredMapIterator<Map.Entry<Long, String>> entries = clusteredMap.entryIterator(100);
+    while (entries.hasNext()) {
+      Map.Entry<Long, String> entry = entries.next();
+      found.put(entry.getKey(), entry.getValue());
+    }
+    assertThat(found, is(content));
+
+    ClusteredMapIterator<Long> keys = clusteredMap.keyIterator(10);
+    assertThat(keys.hasNext(), is(true));
+    keys.next();
+    keys.close();
+    assertThat(keys.hasNext(), is(false));
+
+    assertThat(clusteredMap.getAll(Arrays.asList(1L, 2L, 5000L)).keySet(), containsInAnyOrder(1L, 2L));
+    clusteredMap.removeAll(content.keySet());
+    assertThat(clusteredMap.isEmpty(), is(true));
+  }
+
+  @Test
+  public void testNearCacheInvalidation() throws Exception {
+    Connection connection = ConnectionFactory.connect(URI.create(CLUSTER_URI), new Properties());
+    EntityRef<ConcurrentClusteredMap, Object, Object> entityRef = connection.getEntityRef(ConcurrentClusteredMap.class, ConcurrentClusteredMap.VERSION, MAP_NAME);
+    TerracottaClusteredMap<Long, String> cachingMap = (TerracottaClusteredMap<Long, String>) entityRef.fetchEntity(new NearCacheConfiguration(100));
+    cachingMap.setTypes(Long.class, String.class);
+
+    clusteredMap.put(1L, "one");
+    assertThat(cachingMap.get(1L), is("one"));
+    assertThat(cachingMap.get(1L), is("one"));
+    assertThat(cachingMap.getNearCacheStatistics().getHits(), is(1L));
+
+    clusteredMap.put(1L, "uno");
+    long deadline = System.currentTimeMillis() + 10000;
+    while (cachingMap.getNearCacheStatistics().getInvalidations() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(cachingMap.get(1L), is("uno"));
+
+    cachingMap.put(1L, "eins");
+    assertThat(cachingMap.get(1L), is("eins"));
+    cachingMap.close();
+  }
+
   @Test
   public void testWithCustomType() throws Exception {
     Connection connection = ConnectionFactory.connect(URI.create(CLUSTER_URI), new Properties());
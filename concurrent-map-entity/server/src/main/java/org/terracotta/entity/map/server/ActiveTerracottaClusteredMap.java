@@ -17,47 +17,41 @@ package org.terracotta.entity.map.server;
 
 import org.terracotta.entity.ActiveInvokeContext;
 import org.terracotta.entity.ActiveServerEntity;
+import org.terracotta.entity.ClientCommunicator;
 import org.terracotta.entity.ClientDescriptor;
 import org.terracotta.entity.ConcurrencyStrategy;
+import org.terracotta.entity.EntityUserException;
 import org.terracotta.entity.PassiveSynchronizationChannel;
-import org.terracotta.entity.map.common.BooleanResponse;
-import org.terracotta.entity.map.common.ConditionalRemoveOperation;
-import org.terracotta.entity.map.common.ConditionalReplaceOperation;
-import org.terracotta.entity.map.common.ContainsKeyOperation;
-import org.terracotta.entity.map.common.ContainsValueOperation;
-import org.terracotta.entity.map.common.EntrySetResponse;
-import org.terracotta.entity.map.common.GetOperation;
-import org.terracotta.entity.map.common.KeySetResponse;
+import org.terracotta.entity.map.common.IteratorCloseOperation;
+import org.terracotta.entity.map.common.IteratorNextOperation;
+import org.terracotta.entity.map.common.IteratorOpenOperation;
 import org.terracotta.entity.map.common.MapOperation;
 import org.terracotta.entity.map.common.MapResponse;
-import org.terracotta.entity.map.common.MapValueResponse;
 import org.terracotta.entity.map.common.NullResponse;
 import org.terracotta.entity.map.common.PutAllOperation;
-import org.terracotta.entity.map.common.PutIfAbsentOperation;
-import org.terracotta.entity.map.common.PutIfPresentOperation;
-import org.terracotta.entity.map.common.PutOperation;
-import org.terracotta.entity.map.common.RemoveOperation;
-import org.terracotta.entity.map.common.SizeResponse;
-import org.terracotta.entity.map.common.ValueCollectionResponse;
-
-import java.util.AbstractMap;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
+import org.terracotta.entity.map.common.RemoveAllOperation;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 
 public class ActiveTerracottaClusteredMap implements ActiveServerEntity<MapOperation, MapResponse>  {
 
-  private static final int CONCURRENCY_KEY = 42;
+  private static final int SYNC_CHUNK_SIZE = 1024;
 
   // TODO Given the way a passive becomes active - this does not work ...
-  private final ConcurrentMap<Object, Object> map = new ConcurrentHashMap<Object, Object>();
-  
+  private final SegmentedMap map;
+  private final MapIterators iterators;
+  private final NearCacheTracker nearCaches;
+
+  ActiveTerracottaClusteredMap(SegmentedMap map, ClientCommunicator communicator) {
+    this.map = map;
+    this.iterators = new MapIterators(map);
+    this.nearCaches = new NearCacheTracker(communicator);
+  }
+
   @Override
   public void connected(ClientDescriptor clientDescriptor) {
   }
@@ -71,104 +65,62 @@ public class ActiveTerracottaClusteredMap implements ActiveServerEntity<MapOpera
 
   @Override
   public void disconnected(ClientDescriptor clientDescriptor) {
+    iterators.closeAll(clientDescriptor);
+    nearCaches.disconnected(clientDescriptor);
   }
 
   @Override
-  public MapResponse invokeActive(ActiveInvokeContext<MapResponse> context, MapOperation input) {
-    MapResponse response;
-    
-    switch (input.operationType()) {
-      case PUT: {
-        PutOperation putOperation = (PutOperation) input;
-        Object key = putOperation.getKey();
-        Object old = map.get(key);
-        map.put(key, putOperation.getValue());
-        response = new MapValueResponse(old);
-        break;
-      }
-      case GET: {
-        Object key = ((GetOperation) input).getKey();
-        response = new MapValueResponse(map.get(key));
-        break;
-      }
-      case REMOVE: {
-        Object key = ((RemoveOperation) input).getKey();
-        response = new MapValueResponse(map.remove(key));
-        break;
-      }
-      case CONTAINS_KEY: {
-        Object key = ((ContainsKeyOperation) input).getKey();
-        response = new BooleanResponse(map.containsKey(key));
-        break;
-      }
-      case CONTAINS_VALUE: {
-        Object value = ((ContainsValueOperation) input).getValue();
-        response = new BooleanResponse(map.containsValue(value));
-        break;
-      }
-      case CLEAR: {
-        map.clear();
-        // There is no response from the clear.
-        response = new NullResponse();
-        break;
-      }
-      case PUT_ALL: {
-        @SuppressWarnings("unchecked")
-        Map<Object, Object> newValues = (Map<Object, Object>) ((PutAllOperation)input).getMap();
-        map.putAll(newValues);
-        // There is no response from a put all.
-        response = new NullResponse();
-        break;
-      }
-      case KEY_SET: {
-        Set<Object> keySet = new HashSet<Object>();
-        keySet.addAll(map.keySet());
-        response = new KeySetResponse(keySet);
-        break;
-      }
-      case VALUES: {
-        Collection<Object> values = new ArrayList<Object>();
-        values.addAll(map.values());
-        response = new ValueCollectionResponse(values);
-        break;
-      }
-      case ENTRY_SET: {
-        Set<Map.Entry<Object, Object>> entrySet = new HashSet<Map.Entry<Object, Object>>();
-        for (Map.Entry<Object, Object> entry : map.entrySet()) {
-          entrySet.add(new AbstractMap.SimpleEntry<Object, Object > (entry.getKey(), entry.getValue()));
+  public MapResponse invokeActive(ActiveInvokeContext<MapResponse> context, MapOperation input) throws EntityUserException {
+    try {
+      switch (input.operationType()) {
+        case ITERATOR_OPEN: {
+          IteratorOpenOperation operation = (IteratorOpenOperation) input;
+          return iterators.open(context.getClientDescriptor(), operation.getKind(), operation.getBatchSize());
+        }
+        case ITERATOR_NEXT: {
+          IteratorNextOperation operation = (IteratorNextOperation) input;
+          return iterators.next(context.getClientDescriptor(), operation.getIteratorId(), operation.getBatchSize());
+        }
+        case ITERATOR_CLOSE:
+          iterators.close(context.getClientDescriptor(), ((IteratorCloseOperation) input).getIteratorId());
+          return new NullResponse();
+        case CACHED_GET:
+          nearCaches.track(context.getClientDescriptor(), SegmentedMap.keyOf(input));
+          return map.apply(input);
+        default: {
+          MapResponse response = map.apply(input);
+          if (input.operationType().replicate()) {
+            invalidateNearCaches(context.getClientDescriptor(), input);
+          }
+          return response;
         }
-        response = new EntrySetResponse(entrySet);
-        break;
-      }
-      case SIZE: {
-        response = new SizeResponse(map.size());
-        break;
-      }
-      case PUT_IF_ABSENT: {
-        PutIfAbsentOperation operation = (PutIfAbsentOperation) input;
-        response = new MapValueResponse(map.putIfAbsent(operation.getKey(), operation.getValue()));
-        break;
       }
-      case PUT_IF_PRESENT: {
-        PutIfPresentOperation operation = (PutIfPresentOperation) input;
-        response = new MapValueResponse(map.replace(operation.getKey(), operation.getValue()));
+    } catch (MapStorageFullException | UnsupportedKeyException | UnknownIteratorException e) {
+      throw new EntityUserException(e.getMessage(), e);
+    }
+  }
+
+  private void invalidateNearCaches(ClientDescriptor origin, MapOperation mutation) {
+    switch (mutation.operationType()) {
+      case CLEAR:
+        nearCaches.invalidateAll(origin);
         break;
-      }
-      case CONDITIONAL_REMOVE: {
-        ConditionalRemoveOperation operation = (ConditionalRemoveOperation) input;
-        response = new BooleanResponse(map.remove(operation.getKey(), operation.getValue()));
+      case PUT_ALL:
+        for (Object key : ((Map<?, ?>) ((PutAllOperation) mutation).getMap()).keySet()) {
+          nearCaches.invalidate(origin, key);
+        }
         break;
-      }
-      case CONDITIONAL_REPLACE: {
-        ConditionalReplaceOperation operation = (ConditionalReplaceOperation) input;
-        response = new BooleanResponse(map.replace(operation.getKey(), operation.getOldValue(), operation.getNewValue()));
+      case REMOVE_ALL:
+        for (Object key : ((RemoveAllOperation) mutation).getKeys()) {
+          nearCaches.invalidate(origin, key);
+        }
         break;
-      }
       default:
-        // Unknown message type.
-        throw new AssertionError("Unsupported message type: " + input.operationType());
+        Object key = SegmentedMap.keyOf(mutation);
+        if (key != null) {
+          nearCaches.invalidate(origin, key);
+        }
     }
-    return response;
   }
 
   @Override
@@ -184,25 +136,70 @@ public class ActiveTerracottaClusteredMap implements ActiveServerEntity<MapOpera
     map.clear();
   }
 
+  /**
+   * Routes single key operations to the concurrency key of their key's segment, so that operations on different
+   * segments run in parallel. Read-only operations spanning all segments use the universal key as the segments are
+   * concurrent maps, while the writing ones use the management key to be run alone.
+   */
   public static class MapConcurrencyStrategy implements ConcurrencyStrategy<MapOperation> {
 
+    private final int segments;
+
+    public MapConcurrencyStrategy(int segments) {
+      this.segments = segments;
+    }
+
     @Override
     public int concurrencyKey(MapOperation operation) {
-      return CONCURRENCY_KEY;
+      switch (operation.operationType()) {
+        case SIZE:
+        case CONTAINS_VALUE:
+        case KEY_SET:
+        case VALUES:
+        case ENTRY_SET:
+        case GET_ALL:
+        case ITERATOR_OPEN:
+        case ITERATOR_NEXT:
+        case ITERATOR_CLOSE:
+          return UNIVERSAL_KEY;
+        default:
+          Object key = SegmentedMap.keyOf(operation);
+          return key == null ? MANAGEMENT_KEY : keyFor(key);
+      }
     }
 
     @Override
     public Set<Integer> getKeysForSynchronization() {
-      return Collections.singleton(CONCURRENCY_KEY);
+      Set<Integer> keys = new LinkedHashSet<Integer>();
+      for (int i = 0; i < segments; i++) {
+        keys.add(i + 1);
+      }
+      return keys;
+    }
+
+    private int keyFor(Object key) {
+      // concurrency keys must be strictly positive
+      return SegmentedMap.segmentIndex(key, segments) + 1;
     }
   }
 
   @Override
   public void synchronizeKeyToPassive(PassiveSynchronizationChannel<MapOperation> syncChannel, int concurrencyKey) {
-    if (concurrencyKey != CONCURRENCY_KEY) {
-      throw new IllegalArgumentException("concurrencyKey should only be " + CONCURRENCY_KEY);
+    if (concurrencyKey < 1 || concurrencyKey > map.segmentCount()) {
+      throw new IllegalArgumentException("concurrencyKey should be between 1 and " + map.segmentCount());
     }
 
-    syncChannel.synchronizeToPassive(new SyncOperation(map));
+    // sent in chunks, so that an off-heap segment is never brought on heap as a whole
+    Map<Object, Object> chunk = new HashMap<Object, Object>();
+    for (Map.Entry<Object, Object> entry : map.segment(concurrencyKey - 1).entrySet()) {
+      chunk.put(entry.getKey(), entry.getValue());
+      if (chunk.size() == SYNC_CHUNK_SIZE) {
+        syncChannel.synchronizeToPassive(new SyncOperation(chunk));
+        chunk = new HashMap<Object, Object>();
+      }
+    }
+    if (!chunk.isEmpty()) {
+      syncChannel.synchronizeToPassive(new SyncOperation(chunk));
+    }
   }
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.server;
+
+import org.terracotta.entity.map.common.ValueWrapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns the keys and values of a map into bytes for off-heap storage.
+ * <p>
+ * The types clients send the most are written compactly, others are Java serialized. Equal keys of the compactly
+ * written types always give the same bytes, so stored keys can be compared without being deserialized; Java
+ * serialization giving no such guarantee, for instance for hash based collections, it is only used for values.
+ */
+final class EntrySerializer {
+
+  private static final byte LONG = 1;
+  private static final byte INTEGER = 2;
+  private static final byte STRING = 3;
+  private static final byte VALUE_WRAPPER = 4;
+  private static final byte SERIALIZED = 5;
+  private static final byte SHORT = 6;
+  private static final byte BYTE = 7;
+  private static final byte CHARACTER = 8;
+  private static final byte BOOLEAN = 9;
+  private static final byte FLOAT = 10;
+  private static final byte DOUBLE = 11;
+
+  private EntrySerializer() {
+  }
+
+  /**
+   * Serializes a key, which must be of a type giving the same bytes for equal instances: a boxed primitive, a string
+   * or a {@link ValueWrapper}, which clients use for all other key types and which equality is based on its bytes.
+   *
+   * @throws UnsupportedKeyException if the key is of another type
+   */
+  static byte[] serializeKey(Object key) {
+    if (!(key instanceof Long || key instanceof Integer || key instanceof Short || key instanceof Byte
+          || key instanceof Float || key instanceof Double || key instanceof Character || key instanceof Boolean
+          || key instanceof String || key instanceof ValueWrapper)) {
+      throw new UnsupportedKeyException("Off-heap maps cannot compare keys of type " + key.getClass().getName());
+    }
+    return serialize(key);
+  }
+
+  static byte[] serialize(Object object) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+      DataOutputStream output = new DataOutputStream(bytes);
+      if (object instanceof Long) {
+        output.writeByte(LONG);
+        output.writeLong((Long) object);
+      } else if (object instanceof Integer) {
+        output.writeByte(INTEGER);
+        output.writeInt((Integer) object);
+      } else if (object instanceof Short) {
+        output.writeByte(SHORT);
+        output.writeShort((Short) object);
+      } else if (object instanceof Byte) {
+        output.writeByte(BYTE);
+        output.writeByte((Byte) object);
+      } else if (object instanceof Character) {
+        output.writeByte(CHARACTER);
+        output.writeChar((Character) object);
+      } else if (object instanceof Boolean) {
+        output.writeByte(BOOLEAN);
+        output.writeBoolean((Boolean) object);
+      } else if (object instanceof Float) {
+        // the bits Float.equals compares
+        output.writeByte(FLOAT);
+        output.writeInt(Float.floatToIntBits((Float) object));
+      } else if (object instanceof Double) {
+        output.writeByte(DOUBLE);
+        output.writeLong(Double.doubleToLongBits((Double) object));
+      } else if (object instanceof String) {
+        output.writeByte(STRING);
+        output.write(((String) object).getBytes(StandardCharsets.UTF_8));
+      } else if (object instanceof ValueWrapper) {
+        ValueWrapper wrapper = (ValueWrapper) object;
+        output.writeByte(VALUE_WRAPPER);
+        output.writeInt(wrapper.hashCode());
+        output.write(wrapper.getValue());
+      } else {
+        output.writeByte(SERIALIZED);
+        ObjectOutputStream objectOutput = new ObjectOutputStream(output);
+        objectOutput.writeObject(object);
+        objectOutput.flush();
+      }
+      output.flush();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Cannot serialize " + object, e);
+    }
+  }
+
+  static Object deserialize(ByteBuffer buffer, int offset, int length) {
+    byte[] bytes = new byte[length];
+    ByteBuffer view = buffer.duplicate();
+    view.position(offset);
+    view.get(bytes);
+    try {
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes, 1, length - 1));
+      switch (bytes[0]) {
+        case LONG:
+          return input.readLong();
+        case INTEGER:
+          return input.readInt();
+        case SHORT:
+          return input.readShort();
+        case BYTE:
+          return input.readByte();
+        case CHARACTER:
+          return input.readChar();
+        case BOOLEAN:
+          return input.readBoolean();
+        case FLOAT:
+          return Float.intBitsToFloat(input.readInt());
+        case DOUBLE:
+          return Double.longBitsToDouble(input.readLong());
+        case STRING:
+          return new String(bytes, 1, length - 1, StandardCharsets.UTF_8);
+        case VALUE_WRAPPER: {
+          int hashCode = input.readInt();
+          byte[] value = new byte[length - 5];
+          input.readFully(value);
+          return new ValueWrapper(hashCode, value);
+        }
+        case SERIALIZED:
+          return new ObjectInputStream(input).readObject();
+        default:
+          throw new IllegalStateException("Unknown entry type " + bytes[0]);
+      }
+    } catch (IOException | ClassNotFoundException e) {
+      throw new IllegalStateException("Cannot deserialize entry", e);
+    }
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.server;
+
+import org.terracotta.entity.ClientDescriptor;
+import org.terracotta.entity.map.common.IteratorBatchResponse;
+import org.terracotta.entity.map.common.IteratorOpenOperation;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * The server side iterators opened by the clients.
+ * <p>
+ * An iterator walks the segments one after the other, so that only the current segment iterator is held, and is
+ * released once exhausted, explicitly closed or when its client disconnects. Iterators abandoned by a connected client
+ * are released too: opening an iterator drops the ones left unused for the idle timeout, and the least recently used
+ * iterator of its client if the client already holds the maximum number of iterators.
+ */
+class MapIterators {
+
+  static final long DEFAULT_IDLE_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(10);
+  static final int DEFAULT_MAX_ITERATORS_PER_CLIENT = 64;
+
+  private final SegmentedMap map;
+  private final long idleTimeoutNanos;
+  private final int maxIteratorsPerClient;
+  private final LongSupplier timeSource;
+  private final AtomicLong ids = new AtomicLong();
+  private final ConcurrentMap<Long, SegmentsIterator> iterators = new ConcurrentHashMap<Long, SegmentsIterator>();
+
+  MapIterators(SegmentedMap map) {
+    this(map, DEFAULT_IDLE_TIMEOUT_NANOS, DEFAULT_MAX_ITERATORS_PER_CLIENT, System::nanoTime);
+  }
+
+  MapIterators(SegmentedMap map, long idleTimeoutNanos, int maxIteratorsPerClient, LongSupplier timeSource) {
+    if (maxIteratorsPerClient < 1) {
+      throw new IllegalArgumentException("Invalid maximum iterators per client: " + maxIteratorsPerClient);
+    }
+    this.map = map;
+    this.idleTimeoutNanos = idleTimeoutNanos;
+    this.maxIteratorsPerClient = maxIteratorsPerClient;
+    this.timeSource = timeSource;
+  }
+
+  IteratorBatchResponse open(ClientDescriptor client, IteratorOpenOperation.Kind kind, int batchSize) {
+    long now = timeSource.getAsLong();
+    release(client, now);
+    SegmentsIterator iterator = new SegmentsIterator(ids.incrementAndGet(), client, kind, now);
+    iterators.put(iterator.id, iterator);
+    return iterator.next(batchSize, now);
+  }
+
+  /**
+   * Drops the idle iterators, and the least recently used one of the client if it holds the maximum.
+   */
+  private void release(ClientDescriptor client, long now) {
+    SegmentsIterator leastRecentlyUsed = null;
+    int held = 0;
+    for (Iterator<SegmentsIterator> it = iterators.values().iterator(); it.hasNext(); ) {
+      SegmentsIterator iterator = it.next();
+      if (now - iterator.lastUsed >= idleTimeoutNanos) {
+        it.remove();
+      } else if (iterator.client.equals(client)) {
+        held++;
+        if (leastRecentlyUsed == null || iterator.lastUsed - leastRecentlyUsed.lastUsed < 0) {
+          leastRecentlyUsed = iterator;
+        }
+      }
+    }
+    if (held >= maxIteratorsPerClient) {
+      iterators.remove(leastRecentlyUsed.id);
+    }
+  }
+
+  IteratorBatchResponse next(ClientDescriptor client, long id, int batchSize) {
+    SegmentsIterator iterator = iterators.get(id);
+    if (iterator == null || !iterator.client.equals(client)) {
+      throw new UnknownIteratorException("Unknown or expired iterator " + id);
+    }
+    return iterator.next(batchSize, timeSource.getAsLong());
+  }
+
+  void close(ClientDescriptor client, long id) {
+    SegmentsIterator iterator = iterators.get(id);
+    if (iterator != null && iterator.client.equals(client)) {
+      iterators.remove(id);
+    }
+  }
+
+  void closeAll(ClientDescriptor client) {
+    for (Iterator<SegmentsIterator> it = iterators.values().iterator(); it.hasNext(); ) {
+      if (it.next().client.equals(client)) {
+        it.remove();
+      }
+    }
+  }
+
+  private final class SegmentsIterator {
+    private final long id;
+    private final ClientDescriptor client;
+    private final IteratorOpenOperation.Kind kind;
+    private int segment = -1;
+    private Iterator<Map.Entry<Object, Object>> current = Collections.emptyIterator();
+    private volatile long lastUsed;
+
+    SegmentsIterator(long id, ClientDescriptor client, IteratorOpenOperation.Kind kind, long now) {
+      this.id = id;
+      this.client = client;
+      this.kind = kind;
+      this.lastUsed = now;
+    }
+
+    // a client fetches the batches of an iterator one at a time
+    synchronized IteratorBatchResponse next(int batchSize, long now) {
+      lastUsed = now;
+      List<Object> elements = new ArrayList<Object>(Math.min(batchSize, 1024));
+      while (elements.size() < batchSize && advance()) {
+        Map.Entry<Object, Object> entry = current.next();
+        switch (kind) {
+          case KEYS:
+            elements.add(entry.getKey());
+            break;
+          case VALUES:
+            elements.add(entry.getValue());
+            break;
+          case ENTRIES:
+            elements.add(new AbstractMap.SimpleEntry<Object, Object>(entry.getKey(), entry.getValue()));
+            break;
+          default:
+            throw new AssertionError("Unsupported iterator kind: " + kind);
+        }
+      }
+      boolean last = !advance();
+      if (last) {
+        iterators.remove(id);
+      }
+      return new IteratorBatchResponse(id, elements, last);
+    }
+
+    private boolean advance() {
+      while (!current.hasNext()) {
+        if (++segment >= map.segmentCount()) {
+          segment = map.segmentCount();
+          return false;
+        }
+        current = map.segment(segment).entrySet().iterator();
+      }
+      return true;
+    }
+  }
+}
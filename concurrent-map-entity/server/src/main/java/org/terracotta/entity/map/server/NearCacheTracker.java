@@ -0,0 +1,142 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.server;
+
+import org.terracotta.entity.ClientCommunicator;
+import org.terracotta.entity.ClientDescriptor;
+import org.terracotta.entity.MessageCodecException;
+import org.terracotta.entity.map.common.InvalidationResponse;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks which clients hold which keys in their near cache, to invalidate them when the keys are modified.
+ * <p>
+ * A client is tracked for a key from its cached get on until the key is modified: it is then sent an invalidation and
+ * forgotten until its next cached get. Tracking happens on the active only: after a fail-over, the clients drop their
+ * near cache when reconnecting.
+ * <p>
+ * Clients do not report the keys their near cache evicts, so the number of tracked keys is bounded: once it is reached,
+ * tracking a new key forgets the key tracked the longest ago, after invalidating it in the near cache of its holders.
+ */
+class NearCacheTracker {
+
+  static final int DEFAULT_MAX_TRACKED_KEYS = 1 << 20;
+
+  private final ClientCommunicator communicator;
+  private final int maxTrackedKeys;
+  // in tracking order, guarded by this
+  private final LinkedHashMap<Object, Set<ClientDescriptor>> holders = new LinkedHashMap<Object, Set<ClientDescriptor>>();
+  private final Set<ClientDescriptor> cachingClients = new HashSet<ClientDescriptor>();
+
+  NearCacheTracker(ClientCommunicator communicator) {
+    this(communicator, DEFAULT_MAX_TRACKED_KEYS);
+  }
+
+  NearCacheTracker(ClientCommunicator communicator, int maxTrackedKeys) {
+    if (maxTrackedKeys < 1) {
+      throw new IllegalArgumentException("Invalid maximum tracked keys: " + maxTrackedKeys);
+    }
+    this.communicator = communicator;
+    this.maxTrackedKeys = maxTrackedKeys;
+  }
+
+  void track(ClientDescriptor client, Object key) {
+    Object forgottenKey = null;
+    Set<ClientDescriptor> forgottenClients = null;
+    synchronized (this) {
+      cachingClients.add(client);
+      Set<ClientDescriptor> clients = holders.get(key);
+      if (clients == null) {
+        if (holders.size() >= maxTrackedKeys) {
+          Iterator<Map.Entry<Object, Set<ClientDescriptor>>> it = holders.entrySet().iterator();
+          Map.Entry<Object, Set<ClientDescriptor>> oldest = it.next();
+          it.remove();
+          forgottenKey = oldest.getKey();
+          forgottenClients = oldest.getValue();
+        }
+        clients = new HashSet<ClientDescriptor>();
+        holders.put(key, clients);
+      }
+      clients.add(client);
+    }
+    if (forgottenClients != null) {
+      for (ClientDescriptor holder : forgottenClients) {
+        send(holder, InvalidationResponse.key(forgottenKey));
+      }
+    }
+  }
+
+  /**
+   * Invalidates a key in the near cache of the clients holding it, except the modifying one which invalidates its own.
+   */
+  void invalidate(ClientDescriptor origin, Object key) {
+    Set<ClientDescriptor> clients;
+    synchronized (this) {
+      clients = holders.remove(key);
+    }
+    if (clients != null) {
+      for (ClientDescriptor client : clients) {
+        if (!client.equals(origin)) {
+          send(client, InvalidationResponse.key(key));
+        }
+      }
+    }
+  }
+
+  void invalidateAll(ClientDescriptor origin) {
+    List<ClientDescriptor> clients;
+    synchronized (this) {
+      holders.clear();
+      clients = new ArrayList<ClientDescriptor>(cachingClients);
+    }
+    for (ClientDescriptor client : clients) {
+      if (!client.equals(origin)) {
+        send(client, InvalidationResponse.all());
+      }
+    }
+  }
+
+  synchronized void disconnected(ClientDescriptor client) {
+    if (cachingClients.remove(client)) {
+      for (Iterator<Set<ClientDescriptor>> it = holders.values().iterator(); it.hasNext(); ) {
+        Set<ClientDescriptor> clients = it.next();
+        clients.remove(client);
+        if (clients.isEmpty()) {
+          it.remove();
+        }
+      }
+    }
+  }
+
+  synchronized int trackedKeys() {
+    return holders.size();
+  }
+
+  private void send(ClientDescriptor client, InvalidationResponse invalidation) {
+    try {
+      communicator.sendNoResponse(client, invalidation);
+    } catch (MessageCodecException e) {
+      throw new AssertionError("Cannot encode " + invalidation, e);
+    }
+  }
+}
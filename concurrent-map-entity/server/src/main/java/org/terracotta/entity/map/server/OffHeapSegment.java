@@ -0,0 +1,577 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.server;
+
+import org.terracotta.offheapresource.OffHeapResource;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A map segment keeping its keys and values serialized in off-heap pages.
+ * <p>
+ * Pages are reserved from an {@link OffHeapResource} before being allocated and released once they hold no live
+ * entry anymore, so that the resource accounting reflects the memory actually used. Entries are appended to the
+ * current page as {@code [hash][key length][value length][key][value]}; an entry which is removed or replaced is
+ * marked dead, and a mostly dead page has its live entries moved to the current page so it can be released.
+ * <p>
+ * Entries are found through an open addressing index of page addresses, held in primitive arrays. An entry's home
+ * slot is given by the high bits of its spread hash, so that the index is ordered by spread hash whatever its
+ * capacity: this lets iterators read it a few entries at a time, resuming from the last spread hash read even when
+ * the index was resized in the meantime.
+ * <p>
+ * Keys are compared by their serialized bytes, so only keys which equal instances serialize to the same bytes are
+ * accepted: see {@link EntrySerializer#serializeKey(Object)}.
+ * <p>
+ * All operations are synchronized: segments are meant to be small and accessed by few threads.
+ */
+class OffHeapSegment extends AbstractMap<Object, Object> implements ConcurrentMap<Object, Object> {
+
+  static final int DEFAULT_PAGE_SIZE = 64 * 1024;
+
+  private static final int HEADER_SIZE = 12;
+  private static final int DEAD = 0x80000000;
+  private static final long EMPTY = 0L;
+  private static final long TOMBSTONE = -1L;
+  private static final int INITIAL_INDEX_CAPACITY = 64;
+  // the spread hash following the last one, which ends the iterations
+  private static final long END = 1L << 32;
+  // entries deserialized at once by iterators
+  private static final int ITERATION_BATCH = 64;
+
+  private final OffHeapResource resource;
+  private final String resourceName;
+  private final int pageSize;
+
+  private final List<Page> pages = new ArrayList<Page>();
+  // pages which stopped being the current one, to check once the ongoing operation is done
+  private final Deque<Page> retired = new ArrayDeque<Page>();
+  private Page current;
+
+  private long[] addresses = new long[INITIAL_INDEX_CAPACITY];
+  private int[] hashes = new int[INITIAL_INDEX_CAPACITY];
+  private int shift = shiftFor(INITIAL_INDEX_CAPACITY);
+  private int size;
+  private int tombstones;
+
+  OffHeapSegment(OffHeapResource resource, String resourceName, int pageSize) {
+    this.resource = resource;
+    this.resourceName = resourceName;
+    this.pageSize = pageSize;
+  }
+
+  @Override
+  public synchronized int size() {
+    return size;
+  }
+
+  @Override
+  public synchronized boolean containsKey(Object key) {
+    return find(key.hashCode(), EntrySerializer.serializeKey(key)) >= 0;
+  }
+
+  @Override
+  public synchronized Object get(Object key) {
+    int slot = find(key.hashCode(), EntrySerializer.serializeKey(key));
+    return slot < 0 ? null : readValue(addresses[slot]);
+  }
+
+  @Override
+  public synchronized Object put(Object key, Object value) {
+    int hash = key.hashCode();
+    byte[] keyBytes = EntrySerializer.serializeKey(key);
+    int slot = find(hash, keyBytes);
+    if (slot < 0) {
+      insert(hash, keyBytes, EntrySerializer.serialize(value));
+      return null;
+    }
+    Object old = readValue(addresses[slot]);
+    update(slot, hash, keyBytes, EntrySerializer.serialize(value));
+    return old;
+  }
+
+  @Override
+  public synchronized Object remove(Object key) {
+    int slot = find(key.hashCode(), EntrySerializer.serializeKey(key));
+    if (slot < 0) {
+      return null;
+    }
+    Object old = readValue(addresses[slot]);
+    removeSlot(slot);
+    return old;
+  }
+
+  @Override
+  public synchronized Object putIfAbsent(Object key, Object value) {
+    int hash = key.hashCode();
+    byte[] keyBytes = EntrySerializer.serializeKey(key);
+    int slot = find(hash, keyBytes);
+    if (slot >= 0) {
+      return readValue(addresses[slot]);
+    }
+    insert(hash, keyBytes, EntrySerializer.serialize(value));
+    return null;
+  }
+
+  @Override
+  public synchronized boolean remove(Object key, Object value) {
+    int slot = find(key.hashCode(), EntrySerializer.serializeKey(key));
+    if (slot < 0 || !readValue(addresses[slot]).equals(value)) {
+      return false;
+    }
+    removeSlot(slot);
+    return true;
+  }
+
+  @Override
+  public synchronized boolean replace(Object key, Object oldValue, Object newValue) {
+    int hash = key.hashCode();
+    byte[] keyBytes = EntrySerializer.serializeKey(key);
+    int slot = find(hash, keyBytes);
+    if (slot < 0 || !readValue(addresses[slot]).equals(oldValue)) {
+      return false;
+    }
+    update(slot, hash, keyBytes, EntrySerializer.serialize(newValue));
+    return true;
+  }
+
+  @Override
+  public synchronized Object replace(Object key, Object value) {
+    int hash = key.hashCode();
+    byte[] keyBytes = EntrySerializer.serializeKey(key);
+    int slot = find(hash, keyBytes);
+    if (slot < 0) {
+      return null;
+    }
+    Object old = readValue(addresses[slot]);
+    update(slot, hash, keyBytes, EntrySerializer.serialize(value));
+    return old;
+  }
+
+  /**
+   * Releases all the pages back to the resource.
+   */
+  @Override
+  public synchronized void clear() {
+    for (Page page : pages) {
+      if (page != null) {
+        resource.release(page.buffer.capacity());
+      }
+    }
+    pages.clear();
+    retired.clear();
+    current = null;
+    addresses = new long[INITIAL_INDEX_CAPACITY];
+    hashes = new int[INITIAL_INDEX_CAPACITY];
+    shift = shiftFor(INITIAL_INDEX_CAPACITY);
+    size = 0;
+    tombstones = 0;
+  }
+
+  /**
+   * @return a read-only view of the entries, which iterators deserialize a few at a time. As for a
+   * {@link java.util.concurrent.ConcurrentHashMap}, iterators are weakly consistent: they return each entry present
+   * during the whole iteration exactly once, and may or may not return the entries added or removed meanwhile.
+   */
+  @Override
+  public Set<Entry<Object, Object>> entrySet() {
+    return new AbstractSet<Entry<Object, Object>>() {
+      @Override
+      public Iterator<Entry<Object, Object>> iterator() {
+        return new EntryIterator();
+      }
+
+      @Override
+      public int size() {
+        return OffHeapSegment.this.size();
+      }
+    };
+  }
+
+  /**
+   * Reads the entries which spread hash, taken unsigned, is at least {@code from}, stopping at a home slot boundary
+   * once at least {@code count} entries were read.
+   *
+   * @return the spread hash to read the next entries from, {@link #END} once the whole index was read
+   */
+  private synchronized long readEntries(long from, int count, List<Entry<Object, Object>> into) {
+    int capacity = addresses.length;
+    int mask = capacity - 1;
+    int start = (int) (from >>> shift);
+    int end = capacity;
+    int read = 0;
+    boolean wrapped = false;
+    // an entry is at its home slot or after it, before the next empty slot: the scan goes on past the last home slot
+    // to read until that empty slot, wrapping around the end of the index
+    for (int i = start; ; ) {
+      long address = addresses[i];
+      if (address == EMPTY) {
+        if (wrapped || end != capacity) {
+          break;
+        }
+      } else if (address != TOMBSTONE) {
+        int hash = hashes[i];
+        int home = home(hash);
+        // entries displaced past the end of the index are read once wrapped around
+        boolean displacedPastEnd = home > i;
+        if (displacedPastEnd == wrapped && home >= start && home < end && (spread(hash) & 0xffffffffL) >= from) {
+          into.add(new SimpleImmutableEntry<Object, Object>(readKey(address), readValue(address)));
+          read++;
+        }
+        if (read >= count && end == capacity && !wrapped) {
+          // only the entries of the home slots scanned so far are still to be found
+          end = i + 1;
+        }
+      }
+      i = (i + 1) & mask;
+      if (i == 0) {
+        wrapped = true;
+      }
+    }
+    return end == capacity ? END : (long) end << shift;
+  }
+
+  synchronized long reservedBytes() {
+    long reserved = 0;
+    for (Page page : pages) {
+      if (page != null) {
+        reserved += page.buffer.capacity();
+      }
+    }
+    return reserved;
+  }
+
+  private int find(int hash, byte[] keyBytes) {
+    int mask = addresses.length - 1;
+    for (int i = home(hash); ; i = (i + 1) & mask) {
+      long address = addresses[i];
+      if (address == EMPTY) {
+        return -1;
+      }
+      if (address != TOMBSTONE && hashes[i] == hash && keyEquals(address, keyBytes)) {
+        return i;
+      }
+    }
+  }
+
+  private void insert(int hash, byte[] keyBytes, byte[] valueBytes) {
+    long address = write(hash, keyBytes, valueBytes);
+    if ((size + tombstones + 1) * 2 > addresses.length) {
+      resize(size * 4 > addresses.length ? addresses.length * 2 : addresses.length);
+    }
+    int mask = addresses.length - 1;
+    int i = home(hash);
+    while (addresses[i] != EMPTY && addresses[i] != TOMBSTONE) {
+      i = (i + 1) & mask;
+    }
+    if (addresses[i] == TOMBSTONE) {
+      tombstones--;
+    }
+    addresses[i] = address;
+    hashes[i] = hash;
+    size++;
+    reclaimRetired();
+  }
+
+  private void update(int slot, int hash, byte[] keyBytes, byte[] valueBytes) {
+    long newAddress = write(hash, keyBytes, valueBytes);
+    long oldAddress = addresses[slot];
+    addresses[slot] = newAddress;
+    markDead(oldAddress);
+    reclaimRetired();
+  }
+
+  private void removeSlot(int slot) {
+    long address = addresses[slot];
+    addresses[slot] = TOMBSTONE;
+    size--;
+    tombstones++;
+    markDead(address);
+    reclaimRetired();
+  }
+
+  private void resize(int capacity) {
+    long[] oldAddresses = addresses;
+    int[] oldHashes = hashes;
+    addresses = new long[capacity];
+    hashes = new int[capacity];
+    shift = shiftFor(capacity);
+    tombstones = 0;
+    int mask = capacity - 1;
+    for (int j = 0; j < oldAddresses.length; j++) {
+      long address = oldAddresses[j];
+      if (address != EMPTY && address != TOMBSTONE) {
+        int i = home(oldHashes[j]);
+        while (addresses[i] != EMPTY) {
+          i = (i + 1) & mask;
+        }
+        addresses[i] = address;
+        hashes[i] = oldHashes[j];
+      }
+    }
+  }
+
+  private long write(int hash, byte[] keyBytes, byte[] valueBytes) {
+    int entrySize = HEADER_SIZE + keyBytes.length + valueBytes.length;
+    if (!makeRoom(entrySize)) {
+      throw new MapStorageFullException("Off-heap resource '" + resourceName + "' cannot fit " + Math.max(pageSize, entrySize) + " more bytes");
+    }
+    ByteBuffer buffer = current.buffer;
+    int offset = current.position;
+    buffer.putInt(offset, hash);
+    buffer.putInt(offset + 4, keyBytes.length);
+    buffer.putInt(offset + 8, valueBytes.length);
+    ByteBuffer view = buffer.duplicate();
+    view.position(offset + HEADER_SIZE);
+    view.put(keyBytes);
+    view.put(valueBytes);
+    current.position += entrySize;
+    current.liveBytes += entrySize;
+    return address(current.id, offset);
+  }
+
+  /**
+   * Makes the current page able to fit an entry, allocating a new one if needed.
+   *
+   * @return false if no page could be reserved from the resource
+   */
+  private boolean makeRoom(int entrySize) {
+    if (current != null && current.buffer.capacity() - current.position >= entrySize) {
+      return true;
+    }
+    Page page = allocate(Math.max(pageSize, entrySize));
+    if (page == null) {
+      return false;
+    }
+    if (current != null) {
+      retired.add(current);
+    }
+    current = page;
+    return true;
+  }
+
+  /**
+   * @return the allocated page, or null if its capacity could not be reserved from the resource
+   */
+  private Page allocate(int capacity) {
+    if (!resource.reserve(capacity)) {
+      return null;
+    }
+    int id = pages.indexOf(null);
+    if (id < 0) {
+      id = pages.size();
+      pages.add(null);
+    }
+    Page page = new Page(id, ByteBuffer.allocateDirect(capacity));
+    pages.set(id, page);
+    return page;
+  }
+
+  private void markDead(long address) {
+    Page page = pages.get(pageId(address));
+    int offset = offset(address);
+    int keyLength = page.buffer.getInt(offset + 4);
+    int entrySize = HEADER_SIZE + keyLength + page.buffer.getInt(offset + 8);
+    page.buffer.putInt(offset + 4, keyLength | DEAD);
+    page.liveBytes -= entrySize;
+    reclaim(page);
+  }
+
+  private void reclaim(Page page) {
+    if (page == current) {
+      return;
+    }
+    if (page.liveBytes == 0) {
+      free(page);
+    } else if (page.liveBytes < page.buffer.capacity() / 4) {
+      evacuate(page);
+    }
+  }
+
+  /**
+   * Frees or evacuates the pages left mostly dead when they stopped being the current page.
+   */
+  private void reclaimRetired() {
+    Page page;
+    while ((page = retired.poll()) != null) {
+      // the page may have been freed in the meantime
+      if (pages.get(page.id) == page) {
+        reclaim(page);
+      }
+    }
+  }
+
+  /**
+   * Moves the live entries of a page to the current one and releases it.
+   * <p>
+   * Evacuating follows a put, update or remove which is already applied, so it must not fail: when no page can be
+   * reserved for the entries left to move, it stops and the page is evacuated again the next time one of its entries
+   * dies.
+   */
+  private void evacuate(Page page) {
+    ByteBuffer buffer = page.buffer;
+    int offset = 0;
+    while (offset < page.position) {
+      int hash = buffer.getInt(offset);
+      int keyLength = buffer.getInt(offset + 4);
+      int valueLength = buffer.getInt(offset + 8);
+      int entrySize = HEADER_SIZE + (keyLength & ~DEAD) + valueLength;
+      if ((keyLength & DEAD) == 0) {
+        if (!makeRoom(entrySize)) {
+          return;
+        }
+        long oldAddress = address(page.id, offset);
+        byte[] keyBytes = new byte[keyLength];
+        byte[] valueBytes = new byte[valueLength];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + HEADER_SIZE);
+        view.get(keyBytes);
+        view.get(valueBytes);
+        long newAddress = write(hash, keyBytes, valueBytes);
+        addresses[slotOf(hash, oldAddress)] = newAddress;
+        // the copy is live now, should the evacuation stop before the end
+        buffer.putInt(offset + 4, keyLength | DEAD);
+        page.liveBytes -= entrySize;
+      }
+      offset += entrySize;
+    }
+    free(page);
+  }
+
+  private int slotOf(int hash, long address) {
+    int mask = addresses.length - 1;
+    int i = home(hash);
+    while (addresses[i] != address) {
+      if (addresses[i] == EMPTY) {
+        throw new IllegalStateException("Inconsistent off-heap index: no slot for entry at page " + pageId(address)
+            + ", offset " + offset(address));
+      }
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  private void free(Page page) {
+    pages.set(page.id, null);
+    resource.release(page.buffer.capacity());
+  }
+
+  private boolean keyEquals(long address, byte[] keyBytes) {
+    ByteBuffer buffer = pages.get(pageId(address)).buffer;
+    int offset = offset(address);
+    if (buffer.getInt(offset + 4) != keyBytes.length) {
+      return false;
+    }
+    int start = offset + HEADER_SIZE;
+    for (int i = 0; i < keyBytes.length; i++) {
+      if (buffer.get(start + i) != keyBytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Object readKey(long address) {
+    ByteBuffer buffer = pages.get(pageId(address)).buffer;
+    int offset = offset(address);
+    return EntrySerializer.deserialize(buffer, offset + HEADER_SIZE, buffer.getInt(offset + 4));
+  }
+
+  private Object readValue(long address) {
+    ByteBuffer buffer = pages.get(pageId(address)).buffer;
+    int offset = offset(address);
+    int keyLength = buffer.getInt(offset + 4);
+    return EntrySerializer.deserialize(buffer, offset + HEADER_SIZE + keyLength, buffer.getInt(offset + 8));
+  }
+
+  private static long address(int pageId, int offset) {
+    // page ids are offset by one so that no address is EMPTY
+    return ((long) (pageId + 1) << 32) | (offset & 0xffffffffL);
+  }
+
+  private static int pageId(long address) {
+    return (int) (address >>> 32) - 1;
+  }
+
+  private static int offset(long address) {
+    return (int) address;
+  }
+
+  private static int spread(int hash) {
+    return (hash ^ (hash >>> 16)) * 0x9E3779B9;
+  }
+
+  private int home(int hash) {
+    return spread(hash) >>> shift;
+  }
+
+  private static int shiftFor(int capacity) {
+    return Integer.numberOfLeadingZeros(capacity) + 1;
+  }
+
+  /**
+   * Deserializes the entries of the segment {@link #ITERATION_BATCH} at a time.
+   */
+  private final class EntryIterator implements Iterator<Entry<Object, Object>> {
+    private final List<Entry<Object, Object>> batch = new ArrayList<Entry<Object, Object>>(ITERATION_BATCH);
+    private int index;
+    private long next;
+
+    @Override
+    public boolean hasNext() {
+      while (index == batch.size() && next != END) {
+        batch.clear();
+        index = 0;
+        next = readEntries(next, ITERATION_BATCH, batch);
+      }
+      return index < batch.size();
+    }
+
+    @Override
+    public Entry<Object, Object> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return batch.get(index++);
+    }
+  }
+
+  private static final class Page {
+    private final int id;
+    private final ByteBuffer buffer;
+    private int position;
+    private int liveBytes;
+
+    Page(int id, ByteBuffer buffer) {
+      this.id = id;
+      this.buffer = buffer;
+    }
+
+    @Override
+    public String toString() {
+      return "Page{id=" + id + ", live=" + liveBytes + '/' + buffer.capacity() + '}';
+    }
+  }
+}
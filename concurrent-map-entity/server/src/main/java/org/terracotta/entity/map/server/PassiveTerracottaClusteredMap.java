@@ -15,55 +15,59 @@
  */
 package org.terracotta.entity.map.server;
 
-import org.omg.CORBA.Object;
+import org.terracotta.entity.EntityUserException;
 import org.terracotta.entity.InvokeContext;
 import org.terracotta.entity.PassiveServerEntity;
 import org.terracotta.entity.map.common.MapOperation;
 import org.terracotta.entity.map.common.MapResponse;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-
 /**
  * PassiveTerracottaClusteredMap
  */
 class PassiveTerracottaClusteredMap implements PassiveServerEntity<MapOperation, MapResponse> {
 
-  private final ConcurrentMap<Object, Object> map = new ConcurrentHashMap<Object, Object>();
+  private final SegmentedMap map;
+
+  PassiveTerracottaClusteredMap(SegmentedMap map) {
+    this.map = map;
+  }
 
   @Override
-  public void invokePassive(InvokeContext context, MapOperation message) {
-    // do assign received map to instance map
-    // or append content if message is an operation
+  public void invokePassive(InvokeContext context, MapOperation message) throws EntityUserException {
+    try {
+      if (message.operationType() == MapOperation.Type.SYNC_OP) {
+        // content of one segment of the active, or a chunk of it
+        map.putAll(((SyncOperation) message).getObjectMap());
+      } else {
+        map.apply(message);
+      }
+    } catch (MapStorageFullException | UnsupportedKeyException e) {
+      throw new EntityUserException(e.getMessage(), e);
+    }
   }
 
   @Override
   public void startSyncEntity() {
-    throw new UnsupportedOperationException("TODO Implement me!");
   }
 
   @Override
   public void endSyncEntity() {
-    throw new UnsupportedOperationException("TODO Implement me!");
   }
 
   @Override
   public void startSyncConcurrencyKey(int concurrencyKey) {
-    throw new UnsupportedOperationException("TODO Implement me!");
   }
 
   @Override
   public void endSyncConcurrencyKey(int concurrencyKey) {
-    throw new UnsupportedOperationException("TODO Implement me!");
   }
 
   @Override
   public void createNew() {
-    throw new UnsupportedOperationException("TODO Implement me!");
   }
 
   @Override
   public void destroy() {
-    throw new UnsupportedOperationException("TODO Implement me!");
+    map.clear();
   }
 }
@@ -0,0 +1,277 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.server;
+
+import org.terracotta.entity.map.common.BooleanResponse;
+import org.terracotta.entity.map.common.CachedGetOperation;
+import org.terracotta.entity.map.common.ConditionalRemoveOperation;
+import org.terracotta.entity.map.common.ConditionalReplaceOperation;
+import org.terracotta.entity.map.common.ContainsKeyOperation;
+import org.terracotta.entity.map.common.ContainsValueOperation;
+import org.terracotta.entity.map.common.EntrySetResponse;
+import org.terracotta.entity.map.common.GetAllOperation;
+import org.terracotta.entity.map.common.GetOperation;
+import org.terracotta.entity.map.common.KeySetResponse;
+import org.terracotta.entity.map.common.MapOperation;
+import org.terracotta.entity.map.common.MapResponse;
+import org.terracotta.entity.map.common.MapValueResponse;
+import org.terracotta.entity.map.common.NullResponse;
+import org.terracotta.entity.map.common.PutAllOperation;
+import org.terracotta.entity.map.common.PutIfAbsentOperation;
+import org.terracotta.entity.map.common.PutIfPresentOperation;
+import org.terracotta.entity.map.common.PutOperation;
+import org.terracotta.entity.map.common.RemoveAllOperation;
+import org.terracotta.entity.map.common.RemoveOperation;
+import org.terracotta.entity.map.common.SizeResponse;
+import org.terracotta.entity.map.common.ValueCollectionResponse;
+import org.terracotta.offheapresource.OffHeapResource;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The map content, split in segments by key hash, either on heap or off-heap.
+ * <p>
+ * Each segment matches a concurrency key of {@link ActiveTerracottaClusteredMap.MapConcurrencyStrategy}, so that
+ * operations on keys of different segments can run in parallel and each segment can be synchronized on its own.
+ */
+class SegmentedMap {
+
+  private final ConcurrentMap<Object, Object>[] segments;
+
+  SegmentedMap(int segmentCount) {
+    this(segmentCount, null, null);
+  }
+
+  /**
+   * @param segmentCount the number of segments
+   * @param offHeapResource the resource to store the content in, or null to store it on heap
+   * @param offHeapResourceName the name of the resource, for error reporting
+   */
+  @SuppressWarnings("unchecked")
+  SegmentedMap(int segmentCount, OffHeapResource offHeapResource, String offHeapResourceName) {
+    if (segmentCount < 1) {
+      throw new IllegalArgumentException("Invalid segment count: " + segmentCount);
+    }
+    segments = new ConcurrentMap[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      if (offHeapResource == null) {
+        segments[i] = new ConcurrentHashMap<Object, Object>();
+      } else {
+        segments[i] = new OffHeapSegment(offHeapResource, offHeapResourceName, OffHeapSegment.DEFAULT_PAGE_SIZE);
+      }
+    }
+  }
+
+  static int segmentIndex(Object key, int segmentCount) {
+    int h = key == null ? 0 : key.hashCode();
+    // spread the high bits, as ConcurrentHashMap does
+    h ^= (h >>> 16);
+    return (h & 0x7fffffff) % segmentCount;
+  }
+
+  int segmentCount() {
+    return segments.length;
+  }
+
+  ConcurrentMap<Object, Object> segment(int index) {
+    return segments[index];
+  }
+
+  private ConcurrentMap<Object, Object> segmentFor(Object key) {
+    return segments[segmentIndex(key, segments.length)];
+  }
+
+  /**
+   * @return the key of a single key operation, null for other operations
+   */
+  static Object keyOf(MapOperation operation) {
+    switch (operation.operationType()) {
+      case GET:
+        return ((GetOperation) operation).getKey();
+      case CACHED_GET:
+        return ((CachedGetOperation) operation).getKey();
+      case PUT:
+        return ((PutOperation) operation).getKey();
+      case REMOVE:
+        return ((RemoveOperation) operation).getKey();
+      case CONTAINS_KEY:
+        return ((ContainsKeyOperation) operation).getKey();
+      case PUT_IF_ABSENT:
+        return ((PutIfAbsentOperation) operation).getKey();
+      case PUT_IF_PRESENT:
+        return ((PutIfPresentOperation) operation).getKey();
+      case CONDITIONAL_REMOVE:
+        return ((ConditionalRemoveOperation) operation).getKey();
+      case CONDITIONAL_REPLACE:
+        return ((ConditionalReplaceOperation) operation).getKey();
+      default:
+        return null;
+    }
+  }
+
+  void putAll(Map<?, ?> entries) {
+    for (Map.Entry<?, ?> entry : entries.entrySet()) {
+      segmentFor(entry.getKey()).put(entry.getKey(), entry.getValue());
+    }
+  }
+
+  void clear() {
+    for (ConcurrentMap<Object, Object> segment : segments) {
+      segment.clear();
+    }
+  }
+
+  MapResponse apply(MapOperation input) {
+    MapResponse response;
+
+    switch (input.operationType()) {
+      case PUT: {
+        PutOperation putOperation = (PutOperation) input;
+        Object key = putOperation.getKey();
+        response = new MapValueResponse(segmentFor(key).put(key, putOperation.getValue()));
+        break;
+      }
+      case GET: {
+        Object key = ((GetOperation) input).getKey();
+        response = new MapValueResponse(segmentFor(key).get(key));
+        break;
+      }
+      case CACHED_GET: {
+        Object key = ((CachedGetOperation) input).getKey();
+        response = new MapValueResponse(segmentFor(key).get(key));
+        break;
+      }
+      case REMOVE: {
+        Object key = ((RemoveOperation) input).getKey();
+        response = new MapValueResponse(segmentFor(key).remove(key));
+        break;
+      }
+      case CONTAINS_KEY: {
+        Object key = ((ContainsKeyOperation) input).getKey();
+        response = new BooleanResponse(segmentFor(key).containsKey(key));
+        break;
+      }
+      case CONTAINS_VALUE: {
+        Object value = ((ContainsValueOperation) input).getValue();
+        boolean found = false;
+        for (ConcurrentMap<Object, Object> segment : segments) {
+          if (segment.containsValue(value)) {
+            found = true;
+            break;
+          }
+        }
+        response = new BooleanResponse(found);
+        break;
+      }
+      case CLEAR: {
+        clear();
+        // There is no response from the clear.
+        response = new NullResponse();
+        break;
+      }
+      case PUT_ALL: {
+        putAll((Map<?, ?>) ((PutAllOperation) input).getMap());
+        // There is no response from a put all.
+        response = new NullResponse();
+        break;
+      }
+      case KEY_SET: {
+        Set<Object> keySet = new HashSet<Object>();
+        for (ConcurrentMap<Object, Object> segment : segments) {
+          keySet.addAll(segment.keySet());
+        }
+        response = new KeySetResponse(keySet);
+        break;
+      }
+      case VALUES: {
+        Collection<Object> values = new ArrayList<Object>();
+        for (ConcurrentMap<Object, Object> segment : segments) {
+          values.addAll(segment.values());
+        }
+        response = new ValueCollectionResponse(values);
+        break;
+      }
+      case ENTRY_SET: {
+        Set<Map.Entry<Object, Object>> entrySet = new HashSet<Map.Entry<Object, Object>>();
+        for (ConcurrentMap<Object, Object> segment : segments) {
+          for (Map.Entry<Object, Object> entry : segment.entrySet()) {
+            entrySet.add(new AbstractMap.SimpleEntry<Object, Object>(entry.getKey(), entry.getValue()));
+          }
+        }
+        response = new EntrySetResponse(entrySet);
+        break;
+      }
+      case SIZE: {
+        long size = 0;
+        for (ConcurrentMap<Object, Object> segment : segments) {
+          size += segment.size();
+        }
+        response = new SizeResponse(size);
+        break;
+      }
+      case PUT_IF_ABSENT: {
+        PutIfAbsentOperation operation = (PutIfAbsentOperation) input;
+        response = new MapValueResponse(segmentFor(operation.getKey()).putIfAbsent(operation.getKey(), operation.getValue()));
+        break;
+      }
+      case PUT_IF_PRESENT: {
+        PutIfPresentOperation operation = (PutIfPresentOperation) input;
+        response = new MapValueResponse(segmentFor(operation.getKey()).replace(operation.getKey(), operation.getValue()));
+        break;
+      }
+      case CONDITIONAL_REMOVE: {
+        ConditionalRemoveOperation operation = (ConditionalRemoveOperation) input;
+        response = new BooleanResponse(segmentFor(operation.getKey()).remove(operation.getKey(), operation.getValue()));
+        break;
+      }
+      case CONDITIONAL_REPLACE: {
+        ConditionalReplaceOperation operation = (ConditionalReplaceOperation) input;
+        response = new BooleanResponse(segmentFor(operation.getKey()).replace(operation.getKey(), operation.getOldValue(), operation.getNewValue()));
+        break;
+      }
+      case GET_ALL: {
+        Set<Map.Entry<Object, Object>> entrySet = new HashSet<Map.Entry<Object, Object>>();
+        for (Object key : ((GetAllOperation) input).getKeys()) {
+          Object value = segmentFor(key).get(key);
+          if (value != null) {
+            entrySet.add(new AbstractMap.SimpleEntry<Object, Object>(key, value));
+          }
+        }
+        response = new EntrySetResponse(entrySet);
+        break;
+      }
+      case REMOVE_ALL: {
+        for (Object key : ((RemoveAllOperation) input).getKeys()) {
+          segmentFor(key).remove(key);
+        }
+        // There is no response from a remove all.
+        response = new NullResponse();
+        break;
+      }
+      default:
+        // Unknown message type.
+        throw new AssertionError("Unsupported message type: " + input.operationType());
+    }
+    return response;
+  }
+}
@@ -16,21 +16,32 @@
 package org.terracotta.entity.map.server;
 
 import org.terracotta.entity.ActiveServerEntity;
+import org.terracotta.entity.BasicServiceConfiguration;
+import org.terracotta.entity.ClientCommunicator;
 import org.terracotta.entity.ConcurrencyStrategy;
+import org.terracotta.entity.ConfigurationException;
 import org.terracotta.entity.EntityServerService;
 import org.terracotta.entity.MessageCodec;
 import org.terracotta.entity.PassiveServerEntity;
+import org.terracotta.entity.ServiceException;
 import org.terracotta.entity.ServiceRegistry;
 import org.terracotta.entity.SyncMessageCodec;
 import org.terracotta.entity.map.common.ClusteredMapCodec;
+import org.terracotta.entity.map.common.ClusteredMapConfiguration;
 import org.terracotta.entity.map.common.ConcurrentClusteredMap;
 import org.terracotta.entity.map.common.MapOperation;
 import org.terracotta.entity.map.common.MapResponse;
+import org.terracotta.offheapresource.OffHeapResource;
+import org.terracotta.offheapresource.OffHeapResourceIdentifier;
+import org.terracotta.offheapresource.OffHeapResources;
 
 /**
  * TerracottaClusteredMapService
+ * <p>
+ * The map segments and storage are set by the {@link ClusteredMapConfiguration} the entity was created with.
  */
 public class TerracottaClusteredMapService implements EntityServerService<MapOperation, MapResponse> {
+
   @Override
   public long getVersion() {
     return ConcurrentClusteredMap.VERSION;
@@ -42,18 +53,27 @@ public class TerracottaClusteredMapService implements EntityServerService<MapOpe
   }
 
   @Override
-  public ActiveServerEntity<MapOperation, MapResponse> createActiveEntity(ServiceRegistry registry, byte[] configuration) {
-    return new ActiveTerracottaClusteredMap();
+  public ActiveServerEntity<MapOperation, MapResponse> createActiveEntity(ServiceRegistry registry, byte[] configuration) throws ConfigurationException {
+    ClientCommunicator communicator;
+    try {
+      communicator = registry.getService(new BasicServiceConfiguration<>(ClientCommunicator.class));
+    } catch (ServiceException e) {
+      throw new ConfigurationException("Unable to retrieve ClientCommunicator: " + e.getMessage());
+    }
+    if (communicator == null) {
+      throw new ConfigurationException("No ClientCommunicator to invalidate near caches");
+    }
+    return new ActiveTerracottaClusteredMap(createMap(registry, configuration), communicator);
   }
 
   @Override
-  public PassiveServerEntity<MapOperation, MapResponse> createPassiveEntity(ServiceRegistry registry, byte[] configuration) {
-    return new PassiveTerracottaClusteredMap();
+  public PassiveServerEntity<MapOperation, MapResponse> createPassiveEntity(ServiceRegistry registry, byte[] configuration) throws ConfigurationException {
+    return new PassiveTerracottaClusteredMap(createMap(registry, configuration));
   }
 
   @Override
   public ConcurrencyStrategy<MapOperation> getConcurrencyStrategy(byte[] configuration) {
-    return new ActiveTerracottaClusteredMap.MapConcurrencyStrategy();
+    return new ActiveTerracottaClusteredMap.MapConcurrencyStrategy(ClusteredMapConfiguration.decode(configuration).getSegments());
   }
 
   @Override
@@ -65,4 +85,24 @@ public class TerracottaClusteredMapService implements EntityServerService<MapOpe
   public SyncMessageCodec<MapOperation> getSyncMessageCodec() {
     return new ClusteredMapSyncCodec();
   }
+
+  private static SegmentedMap createMap(ServiceRegistry registry, byte[] configuration) throws ConfigurationException {
+    ClusteredMapConfiguration mapConfiguration = ClusteredMapConfiguration.decode(configuration);
+    String resourceName = mapConfiguration.getOffHeapResourceName();
+    if (resourceName == null) {
+      return new SegmentedMap(mapConfiguration.getSegments());
+    }
+
+    OffHeapResources offHeapResources;
+    try {
+      offHeapResources = registry.getService(new BasicServiceConfiguration<>(OffHeapResources.class));
+    } catch (ServiceException e) {
+      throw new ConfigurationException("Unable to retrieve OffHeapResources: " + e.getMessage());
+    }
+    OffHeapResource offHeapResource = offHeapResources == null ? null : offHeapResources.getOffHeapResource(OffHeapResourceIdentifier.identifier(resourceName));
+    if (offHeapResource == null) {
+      throw new ConfigurationException("Unknown off-heap resource: " + resourceName);
+    }
+    return new SegmentedMap(mapConfiguration.getSegments(), offHeapResource, resourceName);
+  }
 }
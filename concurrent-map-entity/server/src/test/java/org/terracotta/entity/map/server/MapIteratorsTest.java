@@ -0,0 +1,101 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.server;
+
+import org.junit.Test;
+import org.terracotta.entity.ClientDescriptor;
+import org.terracotta.entity.map.common.IteratorBatchResponse;
+import org.terracotta.entity.map.common.IteratorOpenOperation;
+import org.terracotta.entity.map.common.PutOperation;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.fail;
+import static org.terracotta.entity.map.server.TestClients.client;
+
+public class MapIteratorsTest {
+
+  private final AtomicLong time = new AtomicLong();
+  private final SegmentedMap map = new SegmentedMap(4);
+  private final MapIterators iterators = new MapIterators(map, 100, 2, time::get);
+  private final ClientDescriptor client1 = client();
+  private final ClientDescriptor client2 = client();
+
+  @Test
+  public void testIdleIteratorExpires() throws Exception {
+    fill(10);
+    long id = iterators.open(client1, IteratorOpenOperation.Kind.KEYS, 2).getIteratorId();
+    time.addAndGet(60);
+    assertThat(iterators.next(client1, id, 2).isLast(), is(false));
+    time.addAndGet(60);
+    iterators.open(client2, IteratorOpenOperation.Kind.KEYS, 2);
+    assertThat(iterators.next(client1, id, 2).isLast(), is(false));
+
+    time.addAndGet(100);
+    iterators.open(client2, IteratorOpenOperation.Kind.KEYS, 2);
+    assertUnknown(client1, id);
+  }
+
+  @Test
+  public void testLeastRecentlyUsedIteratorDroppedBeyondMaximum() throws Exception {
+    fill(10);
+    long first = iterators.open(client1, IteratorOpenOperation.Kind.VALUES, 2).getIteratorId();
+    time.incrementAndGet();
+    long second = iterators.open(client1, IteratorOpenOperation.Kind.VALUES, 2).getIteratorId();
+    time.incrementAndGet();
+    iterators.next(client1, first, 2);
+    long other = iterators.open(client2, IteratorOpenOperation.Kind.VALUES, 2).getIteratorId();
+
+    long third = iterators.open(client1, IteratorOpenOperation.Kind.VALUES, 2).getIteratorId();
+    assertUnknown(client1, second);
+    iterators.next(client1, first, 2);
+    iterators.next(client1, third, 2);
+    iterators.next(client2, other, 2);
+  }
+
+  @Test
+  public void testOtherClientIteratorIsUnknown() throws Exception {
+    fill(10);
+    long id = iterators.open(client1, IteratorOpenOperation.Kind.ENTRIES, 2).getIteratorId();
+    assertUnknown(client2, id);
+  }
+
+  @Test
+  public void testExhaustedIteratorIsReleased() throws Exception {
+    fill(3);
+    IteratorBatchResponse batch = iterators.open(client1, IteratorOpenOperation.Kind.KEYS, 10);
+    assertThat(batch.getElements().size(), is(3));
+    assertThat(batch.isLast(), is(true));
+    assertUnknown(client1, batch.getIteratorId());
+  }
+
+  private void fill(int count) {
+    for (long i = 0; i < count; i++) {
+      map.apply(new PutOperation(i, "value" + i));
+    }
+  }
+
+  private void assertUnknown(ClientDescriptor client, long id) {
+    try {
+      iterators.next(client, id, 2);
+      fail("Expected UnknownIteratorException");
+    } catch (UnknownIteratorException e) {
+      // expected
+    }
+  }
+}
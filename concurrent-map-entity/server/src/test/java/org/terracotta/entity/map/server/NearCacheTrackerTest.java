@@ -0,0 +1,86 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.server;
+
+import org.junit.Test;
+import org.terracotta.entity.ClientCommunicator;
+import org.terracotta.entity.ClientDescriptor;
+import org.terracotta.entity.map.common.InvalidationResponse;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.terracotta.entity.map.server.TestClients.client;
+
+public class NearCacheTrackerTest {
+
+  private final List<String> sent = new ArrayList<String>();
+  private final ClientDescriptor client1 = client();
+  private final ClientDescriptor client2 = client();
+  private final NearCacheTracker tracker = new NearCacheTracker(communicator(), 2);
+
+  @Test
+  public void testInvalidatesOtherHolders() throws Exception {
+    tracker.track(client1, 1L);
+    tracker.track(client2, 1L);
+    tracker.invalidate(client1, 1L);
+    assertThat(sent, is(Arrays.asList("2:1")));
+    assertThat(tracker.trackedKeys(), is(0));
+
+    tracker.invalidate(client1, 1L);
+    assertThat(sent, is(Arrays.asList("2:1")));
+  }
+
+  @Test
+  public void testForgetsOldestKeyWhenFull() throws Exception {
+    tracker.track(client1, 1L);
+    tracker.track(client2, 2L);
+    tracker.track(client1, 2L);
+    tracker.track(client2, 3L);
+    assertThat(sent, is(Arrays.asList("1:1")));
+    assertThat(tracker.trackedKeys(), is(2));
+
+    tracker.invalidate(null, 1L);
+    assertThat(sent, is(Arrays.asList("1:1")));
+    tracker.invalidate(null, 2L);
+    assertThat(new HashSet<String>(sent), is((Set<String>) new HashSet<String>(Arrays.asList("1:1", "2:2", "1:2"))));
+  }
+
+  @Test
+  public void testDisconnectedClientIsForgotten() throws Exception {
+    tracker.track(client1, 1L);
+    tracker.track(client2, 2L);
+    tracker.disconnected(client1);
+    assertThat(tracker.trackedKeys(), is(1));
+
+    tracker.invalidateAll(null);
+    assertThat(sent, is(Arrays.asList("2:all")));
+  }
+
+  private ClientCommunicator communicator() {
+    return (ClientCommunicator) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ClientCommunicator.class }, (proxy, method, args) -> {
+      InvalidationResponse invalidation = (InvalidationResponse) args[1];
+      sent.add((args[0] == client1 ? "1" : "2") + ":" + (invalidation.isAll() ? "all" : invalidation.getKey()));
+      return null;
+    });
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.server;
+
+import org.junit.Test;
+import org.terracotta.entity.map.common.ValueWrapper;
+import org.terracotta.offheapresource.OffHeapResource;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class OffHeapSegmentTest {
+
+  private final CountingResource resource = new CountingResource(1024 * 1024);
+  private final OffHeapSegment segment = new OffHeapSegment(resource, "test", 1024);
+
+  @Test
+  public void testBasicOperations() throws Exception {
+    assertThat(segment.put(1L, "one"), is(nullValue()));
+    assertThat(segment.put(1L, "uno"), is((Object) "one"));
+    assertThat(segment.get(1L), is((Object) "uno"));
+    assertThat(segment.containsKey(1L), is(true));
+    assertThat(segment.containsKey(2L), is(false));
+
+    assertThat(segment.putIfAbsent(1L, "one"), is((Object) "uno"));
+    assertThat(segment.replace(1L, "one", "two"), is(false));
+    assertThat(segment.replace(1L, "uno", "one"), is(true));
+    assertThat(segment.remove(1L, "uno"), is(false));
+    assertThat(segment.remove(1L, "one"), is(true));
+    assertThat(segment.isEmpty(), is(true));
+  }
+
+  @Test
+  public void testManyEntries() throws Exception {
+    for (int i = 0; i < 5000; i++) {
+      segment.put("key" + i, new ValueWrapper(i, new byte[] { (byte) i, 1, 2 }));
+    }
+    assertThat(segment.size(), is(5000));
+    for (int i = 0; i < 5000; i += 2) {
+      assertThat(segment.remove("key" + i), is((Object) new ValueWrapper(i, new byte[] { (byte) i, 1, 2 })));
+    }
+    for (int i = 1; i < 5000; i += 2) {
+      assertThat(segment.get("key" + i), is((Object) new ValueWrapper(i, new byte[] { (byte) i, 1, 2 })));
+    }
+
+    Map<Object, Object> copy = new HashMap<Object, Object>(segment);
+    assertThat(copy.size(), is(2500));
+    assertThat(copy.get("key4999"), is((Object) new ValueWrapper(4999, new byte[] { (byte) 4999, 1, 2 })));
+  }
+
+  @Test
+  public void testReleasesUnusedPages() throws Exception {
+    for (long i = 0; i < 1000; i++) {
+      segment.put(i, "value" + i);
+    }
+    long reserved = resource.reserved;
+    assertThat(reserved, is(segment.reservedBytes()));
+
+    // overwriting everything kills the old pages, which get released
+    for (long i = 0; i < 1000; i++) {
+      segment.put(i, "other" + i);
+    }
+    assertThat(resource.reserved < 2 * reserved, is(true));
+    assertThat(resource.reserved, is(segment.reservedBytes()));
+    for (long i = 0; i < 1000; i++) {
+      assertThat(segment.get(i), is((Object) ("other" + i)));
+    }
+
+    segment.clear();
+    assertThat(resource.reserved, is(0L));
+  }
+
+  @Test
+  public void testLargeEntry() throws Exception {
+    String large = new String(new char[5000]).replace('\0', 'x');
+    segment.put(1L, large);
+    assertThat(segment.get(1L), is((Object) large));
+  }
+
+  @Test(expected = MapStorageFullException.class)
+  public void testFullResource() throws Exception {
+    OffHeapSegment small = new OffHeapSegment(new CountingResource(2048), "small", 1024);
+    for (long i = 0; i < 1000; i++) {
+      small.put(i, "value" + i);
+    }
+  }
+
+  @Test
+  public void testRemovesSucceedOnFullResource() throws Exception {
+    OffHeapSegment small = new OffHeapSegment(new CountingResource(2048), "small", 1024);
+    long count = 0;
+    try {
+      while (true) {
+        small.put(count, "value" + count);
+        count++;
+      }
+    } catch (MapStorageFullException e) {
+      // both pages are full
+    }
+
+    // the first page gets mostly dead while no page can be reserved to evacuate it
+    for (long i = 0; i < count; i++) {
+      if (i % 8 != 0) {
+        assertThat(small.remove(i), is((Object) ("value" + i)));
+      }
+    }
+    for (long i = 0; i < count; i += 8) {
+      assertThat(small.get(i), is((Object) ("value" + i)));
+    }
+    assertThat(small.size(), is((int) ((count + 7) / 8)));
+  }
+
+  @Test
+  public void testIteratorReadsEachEntryOnce() throws Exception {
+    for (long i = 0; i < 1000; i++) {
+      segment.put(i, "value" + i);
+    }
+    Set<Object> seen = new HashSet<Object>();
+    Iterator<Map.Entry<Object, Object>> iterator = segment.entrySet().iterator();
+    for (int i = 0; i < 500; i++) {
+      assertThat(seen.add(iterator.next().getKey()), is(true));
+    }
+    // resizes the index and moves entries between pages in the middle of the iteration
+    for (long i = 1000; i < 5000; i++) {
+      segment.put(i, "value" + i);
+    }
+    for (long i = 0; i < 1000; i++) {
+      segment.put(i, "other" + i);
+    }
+    while (iterator.hasNext()) {
+      assertThat(seen.add(iterator.next().getKey()), is(true));
+    }
+    for (long i = 0; i < 1000; i++) {
+      assertThat(seen.contains(i), is(true));
+    }
+  }
+
+  @Test
+  public void testIteratorAfterRemovals() throws Exception {
+    for (int i = 0; i < 3000; i++) {
+      segment.put(i, i);
+    }
+    for (int i = 0; i < 3000; i += 3) {
+      segment.remove(i);
+    }
+    Map<Object, Object> copy = new HashMap<Object, Object>();
+    for (Map.Entry<Object, Object> entry : segment.entrySet()) {
+      assertThat(copy.put(entry.getKey(), entry.getValue()), is(nullValue()));
+    }
+    assertThat(copy.size(), is(2000));
+    assertThat(segment.keySet().size(), is(2000));
+    assertThat(segment.containsValue(2999), is(true));
+    assertThat(segment.containsValue(2998), is(true));
+    assertThat(segment.containsValue(2997), is(false));
+  }
+
+  @Test
+  public void testBoxedPrimitiveKeys() throws Exception {
+    segment.put(1.5d, "double");
+    segment.put(1.5f, "float");
+    segment.put('c', "char");
+    segment.put(true, "boolean");
+    segment.put((short) 1, "short");
+    segment.put((byte) 1, "byte");
+    assertThat(segment.get(1.5d), is((Object) "double"));
+    assertThat(segment.get(1.5f), is((Object) "float"));
+    assertThat(segment.get('c'), is((Object) "char"));
+    assertThat(segment.get(true), is((Object) "boolean"));
+    assertThat(segment.get((short) 1), is((Object) "short"));
+    assertThat(segment.get((byte) 1), is((Object) "byte"));
+    assertThat(segment.keySet(), is((Set<Object>) new HashSet<Object>(Arrays.<Object>asList(1.5d, 1.5f, 'c', true, (short) 1, (byte) 1))));
+  }
+
+  @Test(expected = UnsupportedKeyException.class)
+  public void testNonCanonicalKey() throws Exception {
+    segment.put(new HashSet<Object>(Arrays.asList(1, 2)), "value");
+  }
+
+  private static class CountingResource implements OffHeapResource {
+    private final long capacity;
+    private long reserved;
+
+    CountingResource(long capacity) {
+      this.capacity = capacity;
+    }
+
+    @Override
+    public boolean reserve(long size) {
+      if (reserved + size > capacity) {
+        return false;
+      }
+      reserved += size;
+      return true;
+    }
+
+    @Override
+    public void release(long size) {
+      reserved -= size;
+    }
+
+    @Override
+    public long available() {
+      return capacity - reserved;
+    }
+
+    @Override
+    public long capacity() {
+      return capacity;
+    }
+
+    @Override
+    public boolean setCapacity(long size) {
+      return false;
+    }
+  }
+}
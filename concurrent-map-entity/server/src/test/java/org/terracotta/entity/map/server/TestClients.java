@@ -0,0 +1,44 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.server;
+
+import org.terracotta.entity.ClientDescriptor;
+
+import java.lang.reflect.Proxy;
+
+final class TestClients {
+
+  private TestClients() {
+  }
+
+  /**
+   * @return a client descriptor only equal to itself
+   */
+  static ClientDescriptor client() {
+    return (ClientDescriptor) Proxy.newProxyInstance(TestClients.class.getClassLoader(), new Class<?>[] { ClientDescriptor.class }, (proxy, method, args) -> {
+      switch (method.getName()) {
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "toString":
+          return "client@" + System.identityHashCode(proxy);
+        default:
+          throw new UnsupportedOperationException(method.getName());
+      }
+    });
+  }
+}
@@ -16,6 +16,7 @@
 package org.terracotta.dynamic_config.api.service;
 
 import org.terracotta.dynamic_config.api.model.Cluster;
+import org.terracotta.dynamic_config.api.model.ClusterIndex;
 import org.terracotta.dynamic_config.api.model.License;
 import org.terracotta.dynamic_config.api.model.NodeContext;
 
@@ -51,6 +52,17 @@ public interface TopologyService {
    */
   NodeContext getRuntimeNodeContext();
 
+  /**
+   * Returns an index of the topology returned by {@link #getRuntimeNodeContext()}, for the callers only needing to
+   * look up some nodes or stripes.
+   * <p>
+   * Contrary to {@link #getRuntimeNodeContext()}, the implementation can share the same index between all the callers
+   * until the runtime topology changes, so the indexed cluster must not be modified.
+   */
+  default ClusterIndex getRuntimeClusterIndex() {
+    return ClusterIndex.of(getRuntimeNodeContext().getCluster());
+  }
+
   /**
    * @return true if this node has been activated (is part of a named cluster that has been licensed)
    */
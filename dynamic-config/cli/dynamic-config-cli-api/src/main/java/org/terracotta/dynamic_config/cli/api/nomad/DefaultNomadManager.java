@@ -62,6 +62,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 import java.util.stream.Stream;
 
 import static java.util.Arrays.asList;
@@ -95,14 +96,15 @@ public class DefaultNomadManager<T> implements NomadManager<T> {
   public void runConfigurationDiscovery(Map<Endpoint, LogicalServerState> nodes, DiscoverResultsReceiver<T> results) {
     LOGGER.debug("Attempting to discover nodes: {}", nodes);
     List<Endpoint> orderedList = keepOnlineAndOrderPassivesFirst(nodes);
-    try (NomadClient<T> client = createDiagnosticNomadClient(orderedList)) {
+    try (NomadClient<T> client = createDiagnosticNomadClient(orderedList, activesLast(nodes))) {
       client.tryDiscovery(new MultiDiscoveryResultReceiver<>(asList(new LoggingResultReceiver<>(), results)));
     }
   }
 
   public void runClusterActivation(Collection<Endpoint> nodes, Cluster cluster, ChangeResultReceiver<T> results) {
     LOGGER.debug("Attempting to activate cluster: {}", cluster.toShapeString());
-    try (NomadClient<T> client = createDiagnosticNomadClient(new ArrayList<>(nodes))) {
+    // nodes being activated have no role yet: they can all be contacted at the same time
+    try (NomadClient<T> client = createDiagnosticNomadClient(new ArrayList<>(nodes), endpoint -> 0)) {
       client.tryApplyChange(new MultiChangeResultReceiver<>(asList(new LoggingResultReceiver<>(), results)), new ClusterActivationNomadChange(cluster));
     }
   }
@@ -119,7 +121,7 @@ public class DefaultNomadManager<T> implements NomadManager<T> {
   public void runConfigurationRepair(Map<Endpoint, LogicalServerState> onlineActivatedNodes, int totalNodeCount, RecoveryResultReceiver<T> results, ChangeRequestState forcedState) {
     LOGGER.debug("Attempting to repair configuration on nodes: {}", onlineActivatedNodes.keySet());
     List<Endpoint> orderedList = keepOnlineAndOrderPassivesFirst(onlineActivatedNodes);
-    try (NomadClient<T> client = createDiagnosticNomadClient(orderedList)) {
+    try (NomadClient<T> client = createDiagnosticNomadClient(orderedList, activesLast(onlineActivatedNodes))) {
       client.tryRecovery(new MultiRecoveryResultReceiver<>(asList(new LoggingResultReceiver<>(), results)), totalNodeCount, forcedState);
     }
   }
@@ -127,15 +129,15 @@ public class DefaultNomadManager<T> implements NomadManager<T> {
   /**
    * create a nomad client that is preparing through diagnostic port and committing through diagnostic port
    */
-  private NomadClient<T> createDiagnosticNomadClient(List<Endpoint> expectedOnlineNodes) {
+  private NomadClient<T> createDiagnosticNomadClient(List<Endpoint> expectedOnlineNodes, ToIntFunction<Endpoint> orderGroup) {
     LOGGER.trace("createDiagnosticNomadClient({})", expectedOnlineNodes);
     // create normal diagnostic endpoints
-    List<NomadEndpoint<T>> nomadEndpoints = createDiagnosticNomadEndpoints(expectedOnlineNodes);
+    List<NomadEndpoint<T>> nomadEndpoints = createDiagnosticNomadEndpoints(expectedOnlineNodes, orderGroup);
     // create the client
     String host = environment.getHost();
     String user = environment.getUser();
     Clock clock = environment.getClock();
-    return new NomadClient<>(nomadEndpoints, host, user, clock);
+    return new NomadClient<>(nomadEndpoints, host, user, clock, environment.getConcurrency(), environment.getTimeout());
   }
 
   /**
@@ -192,7 +194,7 @@ public class DefaultNomadManager<T> implements NomadManager<T> {
       List<Endpoint> orderedList = keepOnlineAndOrderPassivesFirst(onlineNodes);
       Collections.reverse(orderedList); // put actives first
       LOGGER.trace("Connecting to diagnostic ports: {}", orderedList);
-      nomadEndpoints = createDiagnosticNomadEndpoints(orderedList);
+      nomadEndpoints = createDiagnosticNomadEndpoints(orderedList, activesFirst(onlineNodes));
     } catch (RuntimeException e) {
       // close the entity channels if we cannot manage to open the endpoints
       cleanup.run();
@@ -201,7 +203,7 @@ public class DefaultNomadManager<T> implements NomadManager<T> {
 
     // override the diagnostic endpoints to go over the entity channel for the nomad commit phase
     ConcurrentMap<UID, CompletableFuture<AcceptRejectResponse>> cache = new ConcurrentHashMap<>(stripeEndpoints.size());
-    nomadEndpoints = nomadEndpoints.stream().map(e -> new NomadEndpoint<T>(e.getAddress(), e) {
+    nomadEndpoints = nomadEndpoints.stream().map(e -> new NomadEndpoint<T>(e.getAddress(), e, e.getOrderGroup()) {
       @SuppressWarnings("OptionalGetWithoutIsPresent")
       @Override
       public AcceptRejectResponse commit(CommitMessage message) throws NomadException {
@@ -257,7 +259,7 @@ public class DefaultNomadManager<T> implements NomadManager<T> {
     String host = environment.getHost();
     String user = environment.getUser();
     Clock clock = environment.getClock();
-    return new NomadClient<T>(nomadEndpoints, host, user, clock) {
+    return new NomadClient<T>(nomadEndpoints, host, user, clock, environment.getConcurrency(), environment.getTimeout()) {
       @Override
       public void close() {
         try {
@@ -270,9 +272,10 @@ public class DefaultNomadManager<T> implements NomadManager<T> {
   }
 
   /**
-   * build a list of endpoints through diagnostic port, keeping the same order wanted by user
+   * build a list of endpoints through diagnostic port, keeping the same order wanted by user.
+   * Nomad messages are only sent concurrently to the endpoints of a same order group.
    */
-  private List<NomadEndpoint<T>> createDiagnosticNomadEndpoints(List<Endpoint> expectedOnlineNodes) {
+  private List<NomadEndpoint<T>> createDiagnosticNomadEndpoints(List<Endpoint> expectedOnlineNodes, ToIntFunction<Endpoint> orderGroup) {
     LOGGER.trace("createDiagnosticNomadEndpoints({})", expectedOnlineNodes);
 
     // connect and concurrently open a diagnostic connection
@@ -283,7 +286,7 @@ public class DefaultNomadManager<T> implements NomadManager<T> {
       DiagnosticService diagnosticService = diagnosticServices.getDiagnosticService(endpoint.getNodeUID()).get();
       @SuppressWarnings("unchecked")
       NomadServer<T> nomadServer = diagnosticService.getProxy(NomadServer.class);
-      return new NomadEndpoint<T>(endpoint.getAddress(), nomadServer) {
+      return new NomadEndpoint<T>(endpoint.getAddress(), nomadServer, orderGroup.applyAsInt(endpoint)) {
         @Override
         public void close() {
           diagnosticService.close();
@@ -304,6 +307,20 @@ public class DefaultNomadManager<T> implements NomadManager<T> {
     ).map(Map.Entry::getKey).collect(toList());
   }
 
+  /**
+   * Order groups keeping the passives before the actives
+   */
+  private static ToIntFunction<Endpoint> activesLast(Map<Endpoint, LogicalServerState> nodes) {
+    return endpoint -> nodes.get(endpoint).isActive() ? 1 : 0;
+  }
+
+  /**
+   * Order groups keeping the actives before the passives
+   */
+  private static ToIntFunction<Endpoint> activesFirst(Map<Endpoint, LogicalServerState> nodes) {
+    return endpoint -> nodes.get(endpoint).isActive() ? 0 : 1;
+  }
+
   private static void checkServerStates(Map<Endpoint, LogicalServerState> expectedOnlineNodes) {
     // find any illegal state that should prevent any Nomad access
     for (Map.Entry<Endpoint, LogicalServerState> entry : expectedOnlineNodes.entrySet()) {
@@ -186,7 +186,7 @@ public class ManagementCommonEntity implements CommonServerEntity<EntityMessage,
         public void onNodeRemoval(UID stripeUID, Node removedNode) {
           Map<String, String> data = new TreeMap<>();
           data.put("stripeUID", stripeUID.toString());
-          data.put("stripeName", topologyService.getRuntimeNodeContext().getCluster().getStripe(stripeUID).get().getName());
+          data.put("stripeName", topologyService.getRuntimeClusterIndex().getStripe(stripeUID).get().getName());
           data.put("nodeName", removedNode.getName());
           data.put("nodeHostname", removedNode.getHostname());
           data.put("nodeAddress", removedNode.getInternalAddress().toString());
@@ -199,7 +199,7 @@ public class ManagementCommonEntity implements CommonServerEntity<EntityMessage,
         public void onNodeAddition(UID stripeUID, Node addedNode) {
           Map<String, String> data = new TreeMap<>();
           data.put("stripeUID", stripeUID.toString());
-          data.put("stripeName", topologyService.getRuntimeNodeContext().getCluster().getStripe(stripeUID).get().getName());
+          data.put("stripeName", topologyService.getRuntimeClusterIndex().getStripe(stripeUID).get().getName());
           data.put("nodeName", addedNode.getName());
           data.put("nodeHostname", addedNode.getHostname());
           data.put("nodeAddress", addedNode.getInternalAddress().toString());
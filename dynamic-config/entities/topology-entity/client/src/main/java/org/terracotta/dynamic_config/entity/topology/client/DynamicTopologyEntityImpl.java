@@ -25,6 +25,7 @@ import org.terracotta.dynamic_config.api.model.Stripe;
 import org.terracotta.dynamic_config.api.model.UID;
 import org.terracotta.dynamic_config.entity.topology.common.Message;
 import org.terracotta.dynamic_config.entity.topology.common.Response;
+import org.terracotta.dynamic_config.entity.topology.common.TopologyEvent;
 import org.terracotta.dynamic_config.entity.topology.common.Type;
 import org.terracotta.entity.EndpointDelegate;
 import org.terracotta.entity.EntityClientEndpoint;
@@ -33,7 +34,9 @@ import org.terracotta.entity.MessageCodecException;
 import org.terracotta.exception.EntityException;
 
 import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -42,6 +45,7 @@ import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_HAS_
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_LICENSE;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_MUST_BE_RESTARTED;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_RUNTIME_CLUSTER;
+import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_TOPOLOGY_SNAPSHOT;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_UPCOMING_CLUSTER;
 
 /**
@@ -54,6 +58,16 @@ class DynamicTopologyEntityImpl implements DynamicTopologyEntity {
   private final Settings settings;
 
   private volatile Listener listener = new Listener() {};
+  private volatile boolean versioned;
+
+  // topology of the last versioned event, guarded by topologyLock
+  private final Object topologyLock = new Object();
+  private long topologyVersion;
+  private Cluster topology;
+  // while stale, the events received wait for a topology snapshot fetched by a resync thread
+  private boolean stale;
+  private boolean resyncRunning;
+  private final Queue<TopologyEvent> pendingEvents = new ArrayDeque<>();
 
   public DynamicTopologyEntityImpl(EntityClientEndpoint<Message, Response> endpoint, Settings settings) {
     this.endpoint = endpoint;
@@ -64,6 +78,10 @@ class DynamicTopologyEntityImpl implements DynamicTopologyEntity {
       public void handleMessage(Response messageFromServer) {
         try {
           LOGGER.trace("handleMessage({})", messageFromServer);
+          if (messageFromServer.getPayload() instanceof TopologyEvent) {
+            onTopologyEvent(messageFromServer.getPayload());
+            return;
+          }
           switch (messageFromServer.getType()) {
             case EVENT_NODE_ADDITION: {
               List<Object> payload = messageFromServer.getPayload();
@@ -100,7 +118,8 @@ class DynamicTopologyEntityImpl implements DynamicTopologyEntity {
 
       @Override
       public byte[] createExtendedReconnectData() {
-        return new byte[0];
+        // tells the server we were receiving versioned events
+        return versioned ? new byte[]{1} : new byte[0];
       }
 
       @Override
@@ -118,6 +137,18 @@ class DynamicTopologyEntityImpl implements DynamicTopologyEntity {
   @Override
   public void setListener(Listener listener) {
     this.listener = listener == null ? new Listener() {} : listener;
+    if (listener != null && !versioned) {
+      // switch to versioned events: from now on, the server only sends the topology changes
+      try {
+        updateTopology(request(REQ_TOPOLOGY_SNAPSHOT, TopologyEvent.class));
+        versioned = true;
+      } catch (TimeoutException | RuntimeException e) {
+        // i.e. older server: keep on receiving the whole topology with each event
+        LOGGER.debug("Unable to fetch the topology snapshot: {}", e.getMessage(), e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
   }
 
   @Override
@@ -150,6 +181,136 @@ class DynamicTopologyEntityImpl implements DynamicTopologyEntity {
     return endpoint.release();
   }
 
+  /**
+   * Applies a versioned event to the local topology and notifies the listener.
+   * <p>
+   * This runs on the thread delivering the server messages, which must not block on a request: when some versions are
+   * missing, the topology is marked stale and a snapshot is fetched from another thread, which then delivers the events
+   * received meanwhile in order.
+   */
+  private void onTopologyEvent(TopologyEvent event) {
+    Cluster cluster;
+    synchronized (topologyLock) {
+      cluster = stale ? null : applyTopologyEvent(event);
+      if (cluster == null) {
+        stale = true;
+        pendingEvents.add(event);
+        if (!resyncRunning) {
+          resyncRunning = true;
+          Thread resync = new Thread(this::resync, "DynamicTopologyEntity-resync");
+          resync.setDaemon(true);
+          resync.start();
+        }
+        return;
+      }
+    }
+    notifyListener(event, cluster);
+  }
+
+  private void resync() {
+    while (true) {
+      try {
+        updateTopology(request(REQ_TOPOLOGY_SNAPSHOT, TopologyEvent.class));
+      } catch (TimeoutException | RuntimeException e) {
+        // the pending events are kept: the next event received retries
+        LOGGER.warn("Unable to fetch the topology snapshot, the topology stays stale: {}", e.getMessage(), e);
+        synchronized (topologyLock) {
+          resyncRunning = false;
+        }
+        return;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        synchronized (topologyLock) {
+          resyncRunning = false;
+        }
+        return;
+      }
+      if (deliverPendingEvents()) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return false if some versions are still missing after the last snapshot
+   */
+  private boolean deliverPendingEvents() {
+    while (true) {
+      TopologyEvent event;
+      Cluster cluster;
+      synchronized (topologyLock) {
+        event = pendingEvents.peek();
+        if (event == null) {
+          stale = false;
+          resyncRunning = false;
+          return true;
+        }
+        cluster = applyTopologyEvent(event);
+        if (cluster == null) {
+          return false;
+        }
+        pendingEvents.remove();
+      }
+      notifyListener(event, cluster);
+    }
+  }
+
+  private void notifyListener(TopologyEvent event, Cluster cluster) {
+    switch (event.getType()) {
+      case EVENT_NODE_ADDITION:
+        listener.onNodeAddition(cluster, event.getNode().getUID());
+        break;
+      case EVENT_NODE_REMOVAL:
+        listener.onNodeRemoval(cluster, event.getStripeUID(), event.getNode());
+        break;
+      case EVENT_SETTING_CHANGED:
+        listener.onSettingChange(cluster, event.getConfiguration());
+        break;
+      case EVENT_STRIPE_ADDITION:
+        listener.onStripeAddition(cluster, event.getStripe().getUID());
+        break;
+      case EVENT_STRIPE_REMOVAL:
+        listener.onStripeRemoval(cluster, event.getStripe());
+        break;
+      default:
+        throw new AssertionError(event);
+    }
+  }
+
+  /**
+   * Applies a versioned event to the local topology, guarded by topologyLock
+   *
+   * @return a copy of the updated topology, given to the listener, or null if some versions are missing
+   */
+  private Cluster applyTopologyEvent(TopologyEvent event) {
+    if (event.getCluster() != null) {
+      topology = event.getCluster();
+      topologyVersion = event.getVersion();
+      return topology.clone();
+    }
+    if (topology != null && event.getVersion() == topologyVersion + 1) {
+      topology = event.applyTo(topology);
+      topologyVersion = event.getVersion();
+      return topology.clone();
+    }
+    if (topology != null && event.getVersion() <= topologyVersion) {
+      // already included in the last snapshot
+      return topology.clone();
+    }
+    LOGGER.debug("Missing topology versions: local version: {}, received: {}", topologyVersion, event);
+    return null;
+  }
+
+  private Cluster updateTopology(TopologyEvent snapshot) {
+    synchronized (topologyLock) {
+      if (topology == null || snapshot.getVersion() >= topologyVersion) {
+        topology = snapshot.getCluster();
+        topologyVersion = snapshot.getVersion();
+      }
+      return topology.clone();
+    }
+  }
+
   public <T> T request(Type messageType, Class<T> type) throws TimeoutException, InterruptedException {
     LOGGER.trace("request({})", messageType);
     Duration requestTimeout = settings.getRequestTimeout();
@@ -52,6 +52,7 @@ import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_HAS_
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_LICENSE;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_MUST_BE_RESTARTED;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_RUNTIME_CLUSTER;
+import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_TOPOLOGY_SNAPSHOT;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_UPCOMING_CLUSTER;
 import static org.terracotta.runnel.EnumMappingBuilder.newEnumMappingBuilder;
 import static org.terracotta.runnel.StructBuilder.newStructBuilder;
@@ -77,6 +78,7 @@ public class Codec implements MessageCodec<Message, Response> {
           .mapping(EVENT_SETTING_CHANGED, 8)
           .mapping(EVENT_STRIPE_ADDITION, 9)
           .mapping(EVENT_STRIPE_REMOVAL, 10)
+          .mapping(REQ_TOPOLOGY_SNAPSHOT, 11)
           .build())
       .struct(REQ_LICENSE.name(), 20, newStructBuilder()
           .string("date", 10)
@@ -118,6 +120,14 @@ public class Codec implements MessageCodec<Message, Response> {
           .string("stripe", 10)
           .string("cluster", 20)
           .build())
+      .struct("TOPOLOGY_EVENT", 140, newStructBuilder()  // since V3
+          .int64("version", 10)
+          .string("cluster", 20)
+          .string("stripeUID", 30)
+          .string("node", 40)
+          .string("stripe", 50)
+          .string("configuration", 60)
+          .build())
       .build();
 
   @Override
@@ -151,6 +161,11 @@ public class Codec implements MessageCodec<Message, Response> {
       Type type = response.getType();
       StructEncoder<Void> encoder = struct.encoder();
       encoder.enm("type", type);
+      if (response.getPayload() instanceof TopologyEvent) {
+        // since V3: topology snapshots and versioned events
+        encodeTopologyEvent(encoder, response.getPayload());
+        return encoder.encode().array();
+      }
       switch (type) {
         case REQ_LICENSE: {
           License license = response.getPayload();
@@ -265,9 +280,14 @@ public class Codec implements MessageCodec<Message, Response> {
         case REQ_RUNTIME_CLUSTER:
         case REQ_UPCOMING_CLUSTER:
           return new Response(type, decodeCluster(decoder.string(type.name())));
+        case REQ_TOPOLOGY_SNAPSHOT:
+          return new Response(type, decodeTopologyEvent(type, decoder));
         case EVENT_NODE_ADDITION: {
           // since V2
           StructDecoder<?> event = decoder.struct(type.name());
+          if (event == null) {
+            return new Response(type, decodeTopologyEvent(type, decoder));
+          }
           UID nodeUID = UID.valueOf(event.string("nodeUID"));
           Cluster cluster = decodeCluster(event.string("cluster"));
           return new Response(type, asList(cluster, nodeUID));
@@ -275,6 +295,9 @@ public class Codec implements MessageCodec<Message, Response> {
         case EVENT_NODE_REMOVAL: {
           // since V2
           StructDecoder<?> event = decoder.struct(type.name());
+          if (event == null) {
+            return new Response(type, decodeTopologyEvent(type, decoder));
+          }
           UID stripeUID = UID.valueOf(event.string("stripeUID"));
           Node removedNode = decodeNode(event.string("node"));
           Cluster cluster = decodeCluster(event.string("cluster"));
@@ -282,6 +305,9 @@ public class Codec implements MessageCodec<Message, Response> {
         }
         case EVENT_SETTING_CHANGED: {
           StructDecoder<?> event = decoder.struct(type.name());
+          if (event == null) {
+            return new Response(type, decodeTopologyEvent(type, decoder));
+          }
           final String configuration = event.string("configuration");
           final String cluster = event.string("cluster");
           return new Response(type, asList(decodeCluster(cluster), decodeConfiguration(configuration)));
@@ -289,6 +315,9 @@ public class Codec implements MessageCodec<Message, Response> {
         case EVENT_STRIPE_ADDITION: {
           // since V2
           StructDecoder<?> event = decoder.struct("EVENT_STRIPE_ADDITION_V2");
+          if (event == null) {
+            return new Response(type, decodeTopologyEvent(type, decoder));
+          }
           UID stripeUID = UID.valueOf(event.string("stripeUID"));
           Cluster cluster = decodeCluster(event.string("cluster"));
           return new Response(type, asList(cluster, stripeUID));
@@ -296,6 +325,9 @@ public class Codec implements MessageCodec<Message, Response> {
         case EVENT_STRIPE_REMOVAL:
           // since V2
           StructDecoder<?> event = decoder.struct("EVENT_STRIPE_REMOVAL_V2");
+          if (event == null) {
+            return new Response(type, decodeTopologyEvent(type, decoder));
+          }
           Stripe stripe = decodeStripe(event.string("stripe"));
           Cluster cluster = decodeCluster(event.string("cluster"));
           return new Response(type, asList(cluster, stripe));
@@ -308,6 +340,44 @@ public class Codec implements MessageCodec<Message, Response> {
     }
   }
 
+  private void encodeTopologyEvent(StructEncoder<Void> encoder, TopologyEvent event) {
+    StructEncoder<StructEncoder<Void>> eventEncoder = encoder.struct("TOPOLOGY_EVENT");
+    eventEncoder.int64("version", event.getVersion());
+    if (event.getCluster() != null) {
+      eventEncoder.string("cluster", encodeCluster(event.getCluster()));
+    }
+    if (event.getStripeUID() != null) {
+      eventEncoder.string("stripeUID", event.getStripeUID().toString());
+    }
+    if (event.getNode() != null) {
+      eventEncoder.string("node", encodeNode(event.getNode()));
+    }
+    if (event.getStripe() != null) {
+      eventEncoder.string("stripe", encodeStripe(event.getStripe()));
+    }
+    if (event.getConfiguration() != null) {
+      eventEncoder.string("configuration", encodeConfiguration(event.getConfiguration()));
+    }
+  }
+
+  private TopologyEvent decodeTopologyEvent(Type type, StructDecoder<Void> decoder) {
+    StructDecoder<StructDecoder<Void>> event = decoder.struct("TOPOLOGY_EVENT");
+    long version = event.int64("version");
+    String cluster = event.string("cluster");
+    String stripeUID = event.string("stripeUID");
+    String node = event.string("node");
+    String stripe = event.string("stripe");
+    String configuration = event.string("configuration");
+    return new TopologyEvent(
+        type,
+        version,
+        cluster == null ? null : decodeCluster(cluster),
+        stripeUID == null ? null : UID.valueOf(stripeUID),
+        node == null ? null : decodeNode(node),
+        stripe == null ? null : decodeStripe(stripe),
+        configuration == null ? null : decodeConfiguration(configuration));
+  }
+
   // the encode / decode methods below re-uses the inner mapping mechanism we have
 
   private String encodeCluster(Cluster cluster) {
@@ -0,0 +1,186 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.dynamic_config.entity.topology.common;
+
+import org.terracotta.dynamic_config.api.model.Cluster;
+import org.terracotta.dynamic_config.api.model.Configuration;
+import org.terracotta.dynamic_config.api.model.Node;
+import org.terracotta.dynamic_config.api.model.Stripe;
+import org.terracotta.dynamic_config.api.model.UID;
+
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A versioned topology event, sent to the clients which have requested a topology snapshot.
+ * <p>
+ * The event only carries the change made to the topology. A client holding the topology of the previous version
+ * applies the change locally with {@link #applyTo(Cluster)}. The whole topology is only included when the change
+ * cannot be applied to the previous topology, or when the client needs to catch up (i.e. after a failover).
+ * A topology snapshot is an event without any change.
+ *
+ * @author Mathieu Carbou
+ */
+public class TopologyEvent {
+
+  private final Type type;
+  private final long version;
+  private final Cluster cluster;
+  private final UID stripeUID;
+  private final Node node;
+  private final Stripe stripe;
+  private final Configuration configuration;
+
+  public TopologyEvent(Type type, long version, Cluster cluster, UID stripeUID, Node node, Stripe stripe, Configuration configuration) {
+    this.type = requireNonNull(type);
+    this.version = version;
+    this.cluster = cluster;
+    this.stripeUID = stripeUID;
+    this.node = node;
+    this.stripe = stripe;
+    this.configuration = configuration;
+  }
+
+  public static TopologyEvent snapshot(long version, Cluster cluster) {
+    return new TopologyEvent(Type.REQ_TOPOLOGY_SNAPSHOT, version, requireNonNull(cluster), null, null, null, null);
+  }
+
+  public static TopologyEvent nodeAddition(UID stripeUID, Node addedNode) {
+    return new TopologyEvent(Type.EVENT_NODE_ADDITION, 0, null, stripeUID, addedNode, null, null);
+  }
+
+  public static TopologyEvent nodeRemoval(UID stripeUID, Node removedNode) {
+    return new TopologyEvent(Type.EVENT_NODE_REMOVAL, 0, null, stripeUID, removedNode, null, null);
+  }
+
+  public static TopologyEvent stripeAddition(Stripe addedStripe) {
+    return new TopologyEvent(Type.EVENT_STRIPE_ADDITION, 0, null, null, null, addedStripe, null);
+  }
+
+  public static TopologyEvent stripeRemoval(Stripe removedStripe) {
+    return new TopologyEvent(Type.EVENT_STRIPE_REMOVAL, 0, null, null, null, removedStripe, null);
+  }
+
+  public static TopologyEvent settingChange(Configuration configuration) {
+    return new TopologyEvent(Type.EVENT_SETTING_CHANGED, 0, null, null, null, null, configuration);
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * @return the topology version after this event
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * @return the whole topology after this event, or null if the change has to be applied to the previous topology
+   */
+  public Cluster getCluster() {
+    return cluster;
+  }
+
+  public UID getStripeUID() {
+    return stripeUID;
+  }
+
+  public Node getNode() {
+    return node;
+  }
+
+  public Stripe getStripe() {
+    return stripe;
+  }
+
+  public Configuration getConfiguration() {
+    return configuration;
+  }
+
+  public TopologyEvent withVersion(long version) {
+    return new TopologyEvent(type, version, cluster, stripeUID, node, stripe, configuration);
+  }
+
+  public TopologyEvent withCluster(Cluster cluster) {
+    return new TopologyEvent(type, version, cluster, stripeUID, node, stripe, configuration);
+  }
+
+  /**
+   * Applies the change of this event to the topology of the previous version
+   *
+   * @param cluster the topology to update
+   * @return the updated topology
+   */
+  public Cluster applyTo(Cluster cluster) {
+    switch (type) {
+      case EVENT_NODE_ADDITION:
+        cluster.getStripe(stripeUID).orElseThrow(() -> new IllegalArgumentException("Stripe UID: " + stripeUID + " not found")).addNode(node.clone());
+        break;
+      case EVENT_NODE_REMOVAL:
+        cluster.getStripe(stripeUID).orElseThrow(() -> new IllegalArgumentException("Stripe UID: " + stripeUID + " not found")).removeNode(node.getUID());
+        break;
+      case EVENT_STRIPE_ADDITION:
+        cluster.addStripe(stripe.clone());
+        break;
+      case EVENT_STRIPE_REMOVAL:
+        cluster.removeStripe(stripe.getUID());
+        break;
+      case EVENT_SETTING_CHANGED:
+        configuration.apply(cluster);
+        break;
+      case REQ_TOPOLOGY_SNAPSHOT:
+        break;
+      default:
+        throw new AssertionError(type);
+    }
+    return cluster;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof TopologyEvent)) return false;
+    TopologyEvent that = (TopologyEvent) o;
+    return getVersion() == that.getVersion() &&
+        getType() == that.getType() &&
+        Objects.equals(getCluster(), that.getCluster()) &&
+        Objects.equals(getStripeUID(), that.getStripeUID()) &&
+        Objects.equals(getNode(), that.getNode()) &&
+        Objects.equals(getStripe(), that.getStripe()) &&
+        Objects.equals(getConfiguration(), that.getConfiguration());
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(getType(), getVersion(), getCluster(), getStripeUID(), getNode(), getStripe(), getConfiguration());
+  }
+
+  @Override
+  public String toString() {
+    return "TopologyEvent{" +
+        "type=" + type +
+        ", version=" + version +
+        ", full=" + (cluster != null) +
+        ", stripeUID=" + stripeUID +
+        ", node=" + (node == null ? null : node.getName()) +
+        ", stripe=" + (stripe == null ? null : stripe.getName()) +
+        ", configuration=" + configuration +
+        '}';
+  }
+}
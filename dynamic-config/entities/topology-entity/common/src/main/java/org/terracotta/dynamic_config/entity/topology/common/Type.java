@@ -28,5 +28,6 @@ public enum Type {
   EVENT_NODE_REMOVAL,
   EVENT_SETTING_CHANGED,
   EVENT_STRIPE_ADDITION,
-  EVENT_STRIPE_REMOVAL
+  EVENT_STRIPE_REMOVAL,
+  REQ_TOPOLOGY_SNAPSHOT
 }
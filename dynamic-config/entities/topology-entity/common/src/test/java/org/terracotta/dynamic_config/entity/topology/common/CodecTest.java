@@ -43,6 +43,7 @@ import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_HAS_
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_LICENSE;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_MUST_BE_RESTARTED;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_RUNTIME_CLUSTER;
+import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_TOPOLOGY_SNAPSHOT;
 import static org.terracotta.dynamic_config.entity.topology.common.Type.REQ_UPCOMING_CLUSTER;
 
 /**
@@ -75,6 +76,29 @@ public class CodecTest {
 
     test(EVENT_STRIPE_ADDITION, asList(cluster, stripe.getUID()));
     test(EVENT_STRIPE_REMOVAL, asList(cluster, stripe));
+
+    test(REQ_TOPOLOGY_SNAPSHOT, TopologyEvent.snapshot(3, cluster));
+    test(EVENT_NODE_ADDITION, TopologyEvent.nodeAddition(stripe.getUID(), node).withVersion(4));
+    test(EVENT_NODE_REMOVAL, TopologyEvent.nodeRemoval(stripe.getUID(), node).withVersion(5).withCluster(cluster));
+    test(EVENT_SETTING_CHANGED, TopologyEvent.settingChange(Configuration.valueOf("cluster-name=foo")).withVersion(6));
+    test(EVENT_STRIPE_ADDITION, TopologyEvent.stripeAddition(stripe).withVersion(7));
+    test(EVENT_STRIPE_REMOVAL, TopologyEvent.stripeRemoval(stripe).withVersion(8));
+  }
+
+  @Test
+  public void test_apply_topology_event() {
+    Node node = newTestNode("foo", "localhost", 9410);
+    Node node2 = newTestNode("foo2", "localhost", 9411, Testing.N_UIDS[2]);
+    Stripe stripe = newTestStripe("stripe1").addNodes(node);
+    Cluster cluster = Testing.newTestCluster("bar", stripe);
+
+    Cluster updated = cluster.clone();
+    updated.getStripe(stripe.getUID()).get().addNode(node2.clone());
+    assertThat(TopologyEvent.nodeAddition(stripe.getUID(), node2).applyTo(cluster.clone()), is(equalTo(updated)));
+    assertThat(TopologyEvent.nodeRemoval(stripe.getUID(), node2).applyTo(updated.clone()), is(equalTo(cluster)));
+
+    updated = cluster.clone().setName("foo");
+    assertThat(TopologyEvent.settingChange(Configuration.valueOf("cluster-name=foo")).applyTo(cluster.clone()), is(equalTo(updated)));
   }
 
   private static void test(Type type, Object payload) throws MessageCodecException {
@@ -26,6 +26,7 @@ import org.terracotta.dynamic_config.api.model.nomad.SettingNomadChange;
 import org.terracotta.dynamic_config.api.service.TopologyService;
 import org.terracotta.dynamic_config.entity.topology.common.Message;
 import org.terracotta.dynamic_config.entity.topology.common.Response;
+import org.terracotta.dynamic_config.entity.topology.common.TopologyEvent;
 import org.terracotta.dynamic_config.server.api.DynamicConfigEventService;
 import org.terracotta.dynamic_config.server.api.DynamicConfigListener;
 import org.terracotta.dynamic_config.server.api.EventRegistration;
@@ -59,6 +60,15 @@ public class DynamicTopologyActiveServerEntity implements ActiveServerEntity<Mes
   private final DynamicConfigEventService eventService;
   private final ClientCommunicator clientCommunicator;
   private final Collection<ClientDescriptor> clients = ConcurrentHashMap.newKeySet();
+  // clients having requested a topology snapshot: they receive versioned events
+  private final Collection<ClientDescriptor> versionedClients = ConcurrentHashMap.newKeySet();
+  // versioned clients without a topology to apply the next change to (i.e. after a failover)
+  private final Collection<ClientDescriptor> staleClients = ConcurrentHashMap.newKeySet();
+  private final Object topologyLock = new Object();
+
+  // guarded by topologyLock
+  private long topologyVersion;
+  private Cluster lastTopology;
 
   private volatile EventRegistration eventRegistration;
 
@@ -80,6 +90,8 @@ public class DynamicTopologyActiveServerEntity implements ActiveServerEntity<Mes
   @Override
   public void disconnected(ClientDescriptor clientDescriptor) {
     clients.remove(clientDescriptor);
+    versionedClients.remove(clientDescriptor);
+    staleClients.remove(clientDescriptor);
   }
 
   @Override
@@ -102,6 +114,11 @@ public class DynamicTopologyActiveServerEntity implements ActiveServerEntity<Mes
   @Override
   public ReconnectHandler startReconnect() {
     return (clientDescriptor, extendedReconnectData) -> {
+      if (extendedReconnectData != null && extendedReconnectData.length > 0 && extendedReconnectData[0] == 1) {
+        // the client was receiving versioned events from another server: send it the whole topology with the next event
+        versionedClients.add(clientDescriptor);
+        staleClients.add(clientDescriptor);
+      }
     };
   }
 
@@ -124,6 +141,17 @@ public class DynamicTopologyActiveServerEntity implements ActiveServerEntity<Mes
       case REQ_LICENSE: {
         return new Response(message.getType(), topologyService.getLicense().orElse(null));
       }
+      case REQ_TOPOLOGY_SNAPSHOT: {
+        synchronized (topologyLock) {
+          if (lastTopology == null) {
+            lastTopology = topologyService.getRuntimeNodeContext().getCluster();
+          }
+          ClientDescriptor client = context.getClientDescriptor();
+          versionedClients.add(client);
+          staleClients.remove(client);
+          return new Response(message.getType(), TopologyEvent.snapshot(topologyVersion, lastTopology));
+        }
+      }
       default:
         throw new AssertionError(message);
     }
@@ -132,6 +160,10 @@ public class DynamicTopologyActiveServerEntity implements ActiveServerEntity<Mes
   @Override
   public void addStateTo(StateDumpCollector stateDumpCollector) {
     stateDumpCollector.addState("clients", clients.stream().map(Object::toString).collect(toList()));
+    stateDumpCollector.addState("versionedClients", versionedClients.stream().map(Object::toString).collect(toList()));
+    synchronized (topologyLock) {
+      stateDumpCollector.addState("topologyVersion", Long.toString(topologyVersion));
+    }
   }
 
   private void listen() {
@@ -141,49 +173,82 @@ public class DynamicTopologyActiveServerEntity implements ActiveServerEntity<Mes
         public void onNodeAddition(UID stripeUID, Node addedNode) {
           Cluster cluster = topologyService.getRuntimeNodeContext().getCluster();
           cluster.getStripe(stripeUID).get().addNode(addedNode);
-          fire(new Response(EVENT_NODE_ADDITION, asList(cluster, addedNode.getUID())));
+          fire(new Response(EVENT_NODE_ADDITION, asList(cluster, addedNode.getUID())), TopologyEvent.nodeAddition(stripeUID, addedNode), cluster);
         }
 
         @Override
         public void onNodeRemoval(UID stripeUID, Node removedNode) {
           Cluster cluster = topologyService.getRuntimeNodeContext().getCluster();
           cluster.getStripe(stripeUID).get().removeNode(removedNode.getUID());
-          fire(new Response(EVENT_NODE_REMOVAL, asList(cluster, stripeUID, removedNode)));
+          fire(new Response(EVENT_NODE_REMOVAL, asList(cluster, stripeUID, removedNode)), TopologyEvent.nodeRemoval(stripeUID, removedNode), cluster);
         }
 
         @Override
         public void onStripeAddition(Stripe addedStripe) {
           Cluster cluster = topologyService.getRuntimeNodeContext().getCluster();
           cluster.addStripe(addedStripe);
-          fire(new Response(EVENT_STRIPE_ADDITION, asList(cluster, addedStripe.getUID())));
+          fire(new Response(EVENT_STRIPE_ADDITION, asList(cluster, addedStripe.getUID())), TopologyEvent.stripeAddition(addedStripe), cluster);
         }
 
         @Override
         public void onStripeRemoval(Stripe removedStripe) {
           Cluster cluster = topologyService.getRuntimeNodeContext().getCluster();
           cluster.removeStripe(removedStripe.getUID());
-          fire(new Response(EVENT_STRIPE_REMOVAL, asList(cluster, removedStripe)));
+          fire(new Response(EVENT_STRIPE_REMOVAL, asList(cluster, removedStripe)), TopologyEvent.stripeRemoval(removedStripe), cluster);
         }
 
         @Override
         public void onSettingChanged(SettingNomadChange change, Cluster updated) {
           Configuration configuration = change.toConfiguration(updated);
-          fire(new Response(EVENT_SETTING_CHANGED, asList(updated, configuration)));
+          fire(new Response(EVENT_SETTING_CHANGED, asList(updated, configuration)), TopologyEvent.settingChange(configuration), updated);
         }
       });
     }
   }
 
-  private void fire(Response msg) {
-    if (!clients.isEmpty()) {
-      LOGGER.trace("fire({}): clients: {}", msg, clients);
+  /**
+   * Sends an event to the clients.
+   * <p>
+   * The clients which have requested a topology snapshot receive a versioned event with only the change, unless the
+   * change applied to the topology of the previous event does not give the updated topology. The other clients
+   * receive the whole topology.
+   */
+  private void fire(Response msg, TopologyEvent change, Cluster updated) {
+    synchronized (topologyLock) {
+      long version = ++topologyVersion;
+      Cluster previous = lastTopology;
+      lastTopology = updated;
+
+      if (clients.isEmpty()) {
+        return;
+      }
+      LOGGER.trace("fire({}): version: {}, clients: {}", msg, version, clients);
+
+      TopologyEvent full = change.withVersion(version).withCluster(updated);
+      TopologyEvent delta = canApply(change, previous, updated) ? change.withVersion(version) : full;
+      Response fullResponse = new Response(msg.getType(), full);
+      Response deltaResponse = delta == full ? fullResponse : new Response(msg.getType(), delta);
+
       for (ClientDescriptor client : clients) {
+        Response response = !versionedClients.contains(client) ? msg : staleClients.remove(client) ? fullResponse : deltaResponse;
         try {
-          clientCommunicator.sendNoResponse(client, msg);
+          clientCommunicator.sendNoResponse(client, response);
         } catch (MessageCodecException e) {
           throw new AssertionError(e); // should never occur
         }
       }
     }
   }
+
+  private static boolean canApply(TopologyEvent change, Cluster previous, Cluster updated) {
+    if (previous == null) {
+      return false;
+    }
+    try {
+      return change.applyTo(previous.clone()).equals(updated);
+    } catch (RuntimeException e) {
+      LOGGER.trace("canApply({}): {}", change, e.getMessage(), e);
+      return false;
+    }
+  }
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.dynamic_config.api.model;
+
+import org.terracotta.inet.InetSocketAddressUtils;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A read-only index of the nodes and stripes of a cluster, answering the lookups by UID, name or address in constant
+ * time instead of scanning all the stripes like the {@link Cluster} methods do.
+ * <p>
+ * {@link #of(Cluster)} does not copy the cluster: the index is only valid as long as the indexed cluster is not modified.
+ * {@link #copyOf(Cluster)} indexes a private copy instead, so that the index can be shared between threads and kept
+ * until the topology changes.
+ */
+public final class ClusterIndex {
+
+  private final Cluster cluster;
+  private final Map<UID, Node> nodes = new HashMap<>();
+  private final Map<String, Node> nodesByName = new HashMap<>();
+  // built on first use: the addresses of the nodes can still contain some substitution parameters before activation
+  private volatile Map<InetSocketAddress, Node> nodesByAddress;
+  private final Map<UID, Stripe> stripes = new HashMap<>();
+  private final Map<UID, Stripe> stripesByNode = new HashMap<>();
+  private final Map<UID, Integer> stripeIds = new HashMap<>();
+
+  private ClusterIndex(Cluster cluster) {
+    this.cluster = requireNonNull(cluster);
+    List<Stripe> stripes = cluster.getStripes();
+    for (int i = 0; i < stripes.size(); i++) {
+      Stripe stripe = stripes.get(i);
+      // first one wins, like the scans of the cluster
+      this.stripes.putIfAbsent(stripe.getUID(), stripe);
+      stripeIds.putIfAbsent(stripe.getUID(), i + 1);
+      for (Node node : stripe.getNodes()) {
+        nodes.putIfAbsent(node.getUID(), node);
+        nodesByName.putIfAbsent(node.getName(), node);
+        stripesByNode.putIfAbsent(node.getUID(), stripe);
+      }
+    }
+  }
+
+  /**
+   * Indexes this cluster, which must not be modified while the index is in use
+   */
+  public static ClusterIndex of(Cluster cluster) {
+    return new ClusterIndex(cluster);
+  }
+
+  /**
+   * Indexes a copy of this cluster
+   */
+  public static ClusterIndex copyOf(Cluster cluster) {
+    return new ClusterIndex(cluster.clone());
+  }
+
+  /**
+   * @return the indexed cluster, which must not be modified
+   */
+  public Cluster getCluster() {
+    return cluster;
+  }
+
+  public Optional<Node> getNode(UID nodeUID) {
+    return Optional.ofNullable(nodes.get(nodeUID));
+  }
+
+  public Optional<Node> getNodeByName(String name) {
+    return Optional.ofNullable(nodesByName.get(name));
+  }
+
+  /**
+   * @return the node having this internal or public address
+   */
+  public Optional<Node> getNodeByAddress(InetSocketAddress address) {
+    Map<InetSocketAddress, Node> nodesByAddress = this.nodesByAddress;
+    if (nodesByAddress == null) {
+      // concurrent callers can build the same map twice, which is harmless
+      nodesByAddress = new HashMap<>();
+      for (Node node : cluster.getNodes()) {
+        nodesByAddress.putIfAbsent(addressKey(node.getInternalAddress()), node);
+        Optional<InetSocketAddress> publicAddress = node.getPublicAddress();
+        if (publicAddress.isPresent()) {
+          nodesByAddress.putIfAbsent(addressKey(publicAddress.get()), node);
+        }
+      }
+      this.nodesByAddress = nodesByAddress;
+    }
+    return Optional.ofNullable(nodesByAddress.get(addressKey(address)));
+  }
+
+  public Optional<Stripe> getStripe(UID stripeUID) {
+    return Optional.ofNullable(stripes.get(stripeUID));
+  }
+
+  public Optional<Stripe> getStripeByNode(UID nodeUID) {
+    return Optional.ofNullable(stripesByNode.get(nodeUID));
+  }
+
+  public OptionalInt getStripeId(UID stripeUID) {
+    Integer id = stripeIds.get(stripeUID);
+    return id == null ? OptionalInt.empty() : OptionalInt.of(id);
+  }
+
+  public OptionalInt getStripeIdByNode(UID nodeUID) {
+    Stripe stripe = stripesByNode.get(nodeUID);
+    return stripe == null ? OptionalInt.empty() : getStripeId(stripe.getUID());
+  }
+
+  public boolean containsNode(UID nodeUID) {
+    return nodes.containsKey(nodeUID);
+  }
+
+  public boolean containsNode(String nodeName) {
+    return nodesByName.containsKey(nodeName);
+  }
+
+  private static InetSocketAddress addressKey(InetSocketAddress address) {
+    // same equality as Node.hasAddress()
+    return InetSocketAddressUtils.encloseInBracketsIfIpv6(address);
+  }
+
+  @Override
+  public String toString() {
+    return "ClusterIndex{" + cluster.toShapeString() + '}';
+  }
+}
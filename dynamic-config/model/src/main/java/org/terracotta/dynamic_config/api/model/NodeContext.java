@@ -34,12 +34,15 @@ public class NodeContext implements Cloneable {
   private final Stripe stripe;
 
   public NodeContext(Cluster cluster, UID nodeUID) {
-    requireNonNull(nodeUID);
+    this(ClusterIndex.of(requireNonNull(cluster)), nodeUID);
+  }
+
+  private NodeContext(ClusterIndex index, UID nodeUID) {
     this.nodeUID = requireNonNull(nodeUID);
-    this.cluster = requireNonNull(cluster);
-    this.node = cluster.getNode(nodeUID)
+    this.cluster = index.getCluster();
+    this.node = index.getNode(nodeUID)
         .orElseThrow(() -> new IllegalArgumentException("Node UID: " + nodeUID + " not found in cluster: " + cluster.toShapeString()));
-    this.stripe = cluster.getStripeByNode(nodeUID).get();
+    this.stripe = index.getStripeByNode(nodeUID).get();
   }
 
   public Cluster getCluster() {
@@ -111,16 +114,19 @@ public class NodeContext implements Cloneable {
     // If the updated topology does not contain the node anymore (removal ?) and a base config was there (topology change)
     // then we isolate the node in its own cluster
 
+    // the updated cluster is indexed once for all the lookups below
+    ClusterIndex index = ClusterIndex.of(updated);
+
     // find by UID
-    return updated.containsNode(nodeUID) ?
-        Optional.of(new NodeContext(updated, nodeUID)) :
+    return index.containsNode(nodeUID) ?
+        Optional.of(new NodeContext(index, nodeUID)) :
         // find by name
-        updated.containsNode(node.getName()) ?
-            Optional.of(new NodeContext(updated, updated.getNodeByName(node.getName()).get().getUID())) :
+        index.containsNode(node.getName()) ?
+            Optional.of(new NodeContext(index, index.getNodeByName(node.getName()).get().getUID())) :
             // find by internal address (which never changes)
             updated.getNodes().stream()
                 .filter(n -> n.getInternalAddress().equals(node.getInternalAddress()))
-                .map(n -> new NodeContext(updated, n.getUID()))
+                .map(n -> new NodeContext(index, n.getUID()))
                 .findAny();
   }
 
@@ -67,7 +67,8 @@ public class NameGenerator {
     ThreadLocalRandom random = ThreadLocalRandom.current();
     Stripe stripe = cluster.getStripe(stripeUID).get();
     assignFriendlyStripeName(cluster, stripe, random);
-    stripe.getNodes().forEach(node -> assignFriendlyNodeName(cluster, node.getUID(), random));
+    // the stripe is already known: no need to look it up again for each of its nodes
+    stripe.getNodes().forEach(node -> assignFriendlyNodeName(stripe, node, random));
   }
 
   /**
@@ -87,9 +88,11 @@ public class NameGenerator {
   }
 
   private static void assignFriendlyNodeName(Cluster cluster, UID nodeUID, Random random) {
-    Node node = cluster.getNode(nodeUID).get();
+    assignFriendlyNodeName(cluster.getStripeByNode(nodeUID).get(), cluster.getNode(nodeUID).get(), random);
+  }
+
+  private static void assignFriendlyNodeName(Stripe stripe, Node node, Random random) {
     if (nameCanBeSet(node)) {
-      Stripe stripe = cluster.getStripeByNode(node.getUID()).get();
       List<String> used = stripe.getNodes().stream().map(Node::getName).collect(toList());
       List<String> dict = readLines("dict/greek.txt");
       node.setName(pickRandomNodeName(dict, used, random, stripe.getName() + "-"));
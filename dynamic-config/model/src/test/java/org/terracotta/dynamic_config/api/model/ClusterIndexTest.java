@@ -0,0 +1,99 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.dynamic_config.api.model;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.terracotta.dynamic_config.api.model.Testing.N_UIDS;
+import static org.terracotta.dynamic_config.api.model.Testing.S_UIDS;
+
+public class ClusterIndexTest {
+
+  Node node1 = Testing.newTestNode("node1", "localhost", 9410, N_UIDS[1]);
+  Node node2 = Testing.newTestNode("node2", "localhost", 9411, N_UIDS[2])
+      .setPublicHostname("public-host")
+      .setPublicPort(19411);
+  Node node3 = Testing.newTestNode("node3", "localhost", 9412, N_UIDS[3]);
+
+  Stripe stripe1 = Testing.newTestStripe("stripe1", S_UIDS[1]).addNodes(node1, node2);
+  Stripe stripe2 = Testing.newTestStripe("stripe2", S_UIDS[2]).addNodes(node3);
+  Cluster cluster = Testing.newTestCluster("c", stripe1, stripe2);
+
+  @Test
+  public void test_lookups_match_cluster() {
+    ClusterIndex index = ClusterIndex.of(cluster);
+
+    assertThat(index.getCluster(), is(sameInstance(cluster)));
+    for (Node node : cluster.getNodes()) {
+      assertThat(index.getNode(node.getUID()), is(equalTo(cluster.getNode(node.getUID()))));
+      assertThat(index.getNodeByName(node.getName()), is(equalTo(cluster.getNodeByName(node.getName()))));
+      assertThat(index.getStripeByNode(node.getUID()), is(equalTo(cluster.getStripeByNode(node.getUID()))));
+      assertThat(index.getStripeIdByNode(node.getUID()), is(equalTo(cluster.getStripeIdByNode(node.getUID()))));
+      assertTrue(index.containsNode(node.getUID()));
+      assertTrue(index.containsNode(node.getName()));
+    }
+    for (Stripe stripe : cluster.getStripes()) {
+      assertThat(index.getStripe(stripe.getUID()), is(equalTo(cluster.getStripe(stripe.getUID()))));
+      assertThat(index.getStripeId(stripe.getUID()), is(equalTo(cluster.getStripeId(stripe.getUID()))));
+    }
+  }
+
+  @Test
+  public void test_missing() {
+    ClusterIndex index = ClusterIndex.of(cluster);
+
+    assertThat(index.getNode(N_UIDS[9]), is(Optional.empty()));
+    assertThat(index.getNodeByName("foo"), is(Optional.empty()));
+    assertThat(index.getStripe(S_UIDS[9]), is(Optional.empty()));
+    assertThat(index.getStripeByNode(N_UIDS[9]), is(Optional.empty()));
+    assertThat(index.getStripeId(S_UIDS[9]), is(OptionalInt.empty()));
+    assertThat(index.getStripeIdByNode(N_UIDS[9]), is(OptionalInt.empty()));
+    assertThat(index.getNodeByAddress(InetSocketAddress.createUnresolved("localhost", 1)), is(Optional.empty()));
+    assertFalse(index.containsNode(N_UIDS[9]));
+    assertFalse(index.containsNode("foo"));
+  }
+
+  @Test
+  public void test_getNodeByAddress() {
+    ClusterIndex index = ClusterIndex.of(cluster);
+
+    assertThat(index.getNodeByAddress(InetSocketAddress.createUnresolved("localhost", 9410)).get(), is(sameInstance(node1)));
+    assertThat(index.getNodeByAddress(InetSocketAddress.createUnresolved("localhost", 9411)).get(), is(sameInstance(node2)));
+    assertThat(index.getNodeByAddress(InetSocketAddress.createUnresolved("public-host", 19411)).get(), is(sameInstance(node2)));
+  }
+
+  @Test
+  public void test_copyOf() {
+    ClusterIndex index = ClusterIndex.copyOf(cluster);
+    assertThat(index.getCluster(), is(not(sameInstance(cluster))));
+    assertThat(index.getCluster(), is(equalTo(cluster)));
+
+    cluster.removeStripe(S_UIDS[2]);
+    assertTrue(index.containsNode(N_UIDS[3]));
+    assertThat(index.getStripeIdByNode(N_UIDS[3]), is(OptionalInt.of(2)));
+  }
+}
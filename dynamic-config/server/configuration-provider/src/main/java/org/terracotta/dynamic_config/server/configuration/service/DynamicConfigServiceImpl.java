@@ -22,6 +22,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terracotta.dynamic_config.api.model.Cluster;
+import org.terracotta.dynamic_config.api.model.ClusterIndex;
 import org.terracotta.dynamic_config.api.model.FailoverPriority;
 import org.terracotta.dynamic_config.api.model.License;
 import org.terracotta.dynamic_config.api.model.Node;
@@ -86,6 +87,8 @@ public class DynamicConfigServiceImpl implements TopologyService, DynamicConfigS
 
   private volatile NodeContext upcomingNodeContext;
   private volatile NodeContext runtimeNodeContext;
+  // lazily built from a copy of the runtime topology, and reset each time the runtime topology changes
+  private volatile ClusterIndex runtimeClusterIndex;
   private volatile boolean clusterActivated;
 
   public DynamicConfigServiceImpl(NodeContext nodeContext, LicenseService licenseService, NomadServerManager nomadServerManager, ObjectMapperFactory objectMapperFactory, Server server) {
@@ -256,6 +259,7 @@ public class DynamicConfigServiceImpl implements TopologyService, DynamicConfigS
           if (nomadChange.canUpdateRuntimeTopology(runtimeNodeContext)) {
             Cluster runtimeCluster = nomadChange.apply(runtimeNodeContext.getCluster());
             runtimeNodeContext = runtimeNodeContext.withCluster(runtimeCluster).orElseGet(runtimeNodeContext::alone);
+            runtimeClusterIndex = null;
           }
         }
       }
@@ -282,6 +286,21 @@ public class DynamicConfigServiceImpl implements TopologyService, DynamicConfigS
     return runtimeNodeContext.clone();
   }
 
+  @Override
+  public ClusterIndex getRuntimeClusterIndex() {
+    ClusterIndex index = runtimeClusterIndex;
+    if (index == null) {
+      synchronized (this) {
+        index = runtimeClusterIndex;
+        if (index == null) {
+          // one copy per topology change instead of one copy per call
+          runtimeClusterIndex = index = ClusterIndex.copyOf(runtimeNodeContext.getCluster());
+        }
+      }
+    }
+    return index;
+  }
+
   @Override
   public boolean isActivated() {
     return clusterActivated;
@@ -323,6 +342,7 @@ public class DynamicConfigServiceImpl implements TopologyService, DynamicConfigS
 
     // When node is not yet activated, runtimeNodeContext == upcomingNodeContext
     this.runtimeNodeContext = upcomingNodeContext;
+    this.runtimeClusterIndex = null;
   }
 
   @Override
@@ -27,6 +27,7 @@ import org.terracotta.dynamic_config.api.model.nomad.FormatUpgradeNomadChange;
 import org.terracotta.dynamic_config.api.service.FormatUpgrade;
 import org.terracotta.dynamic_config.server.api.DynamicConfigEventFiring;
 import org.terracotta.dynamic_config.server.api.DynamicConfigNomadServer;
+import org.terracotta.dynamic_config.server.configuration.nomad.persistence.CachingConfigStorage;
 import org.terracotta.dynamic_config.server.configuration.nomad.persistence.ClusterConfigFilename;
 import org.terracotta.dynamic_config.server.configuration.nomad.persistence.Config;
 import org.terracotta.dynamic_config.server.configuration.nomad.persistence.ConfigStorageAdapter;
@@ -51,6 +52,7 @@ import org.terracotta.nomad.server.NomadException;
 import org.terracotta.persistence.sanskrit.ObjectMapperSupplier;
 import org.terracotta.persistence.sanskrit.Sanskrit;
 import org.terracotta.persistence.sanskrit.SanskritException;
+import org.terracotta.persistence.sanskrit.SanskritImpl;
 import org.terracotta.persistence.sanskrit.file.FileBasedFilesystemDirectory;
 
 import java.nio.file.Path;
@@ -85,7 +87,8 @@ public class NomadServerFactory {
         .withVersions(objectMapperV1, "", Version.V1.getValue())
         .withVersions(objectMapper, Version.V2.getValue());
 
-    Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, objectMapperSupplier);
+    // the nomad server is single threaded and owns the directory lock: the append log can stay open between changes
+    Sanskrit sanskrit = Sanskrit.init(filesystemDirectory, objectMapperSupplier, SanskritImpl.RECOMMENDED_COMPACTION_THRESHOLD, true);
 
     Path clusterDir = configurationManager.getClusterPath();
     InitialConfigStorage configStorage = new InitialConfigStorage(new ConfigStorageAdapter(new FileConfigStorage(clusterDir, nodeName)) {
@@ -98,7 +101,8 @@ public class NomadServerFactory {
       }
     });
 
-    SanskritNomadServerState serverState = new SanskritNomadServerState(sanskrit, configStorage, new DefaultHashComputer());
+    CachingConfigStorage configCache = new CachingConfigStorage(configStorage);
+    SanskritNomadServerState serverState = new SanskritNomadServerState(sanskrit, configCache, new DefaultHashComputer());
 
     DynamicConfigNomadServer nomadServer = new SingleThreadedNomadServer(new DynamicConfigNomadServerImpl(serverState)) {
       @Override
@@ -131,6 +135,7 @@ public class NomadServerFactory {
 
       @Override
       public void close() {
+        LOGGER.debug("Configuration cache statistics: {}", configCache);
         try {
           sanskrit.close();
         } catch (SanskritException e) {
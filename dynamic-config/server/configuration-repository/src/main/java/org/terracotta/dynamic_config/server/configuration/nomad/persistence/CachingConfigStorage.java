@@ -0,0 +1,171 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.dynamic_config.server.configuration.nomad.persistence;
+
+import org.terracotta.dynamic_config.api.model.NodeContext;
+import org.terracotta.nomad.server.NomadException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the most recently used configurations in memory, so that they are not parsed again on each lookup.
+ * <p>
+ * A cached configuration is checked against a given hash only once: later checks against the same hash are skipped.
+ * The cached configuration of a version is dropped when this version is saved, and all of them on reset.
+ * Each lookup returns a copy, the configurations being mutable.
+ */
+public class CachingConfigStorage extends ConfigStorageAdapter {
+  public static final int DEFAULT_MAX_ENTRIES = 32;
+
+  private final Map<Long, Entry> entries;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder loadTimeNanos = new LongAdder();
+  private long generation;
+
+  public CachingConfigStorage(ConfigStorage delegate) {
+    this(delegate, DEFAULT_MAX_ENTRIES);
+  }
+
+  public CachingConfigStorage(ConfigStorage delegate, int maxEntries) {
+    super(delegate);
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("Invalid max entries: " + maxEntries);
+    }
+    this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  @Override
+  public Config getConfig(long version) throws ConfigStorageException {
+    return copy(load(version).config);
+  }
+
+  /**
+   * Loads a configuration and checks its hash, unless this configuration was already checked against this hash.
+   */
+  public Config getConfig(long version, String expectedHash, HashComputer hashComputer) throws ConfigStorageException, NomadException {
+    Entry entry = load(version);
+    String verifiedHash = entry.verifiedHash;
+    if (verifiedHash == null || !verifiedHash.equals(expectedHash)) {
+      hashComputer.checkHash(entry.config, expectedHash);
+      entry.verifiedHash = expectedHash;
+    }
+    return copy(entry.config);
+  }
+
+  @Override
+  public void saveConfig(long version, NodeContext config) throws ConfigStorageException {
+    try {
+      super.saveConfig(version, config);
+    } finally {
+      synchronized (entries) {
+        generation++;
+        entries.remove(version);
+      }
+    }
+  }
+
+  @Override
+  public void reset() throws ConfigStorageException {
+    try {
+      super.reset();
+    } finally {
+      synchronized (entries) {
+        generation++;
+        entries.clear();
+      }
+    }
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * @return the ratio of lookups served from memory, between 0 and 1
+   */
+  public double getHitRate() {
+    long hitCount = hits.sum();
+    long total = hitCount + misses.sum();
+    return total == 0 ? 0 : (double) hitCount / total;
+  }
+
+  /**
+   * @return the average time spent loading a configuration from the underlying storage
+   */
+  public long getAverageLoadTime(TimeUnit unit) {
+    long missCount = misses.sum();
+    return missCount == 0 ? 0 : unit.convert(loadTimeNanos.sum() / missCount, TimeUnit.NANOSECONDS);
+  }
+
+  private Entry load(long version) throws ConfigStorageException {
+    long loadGeneration;
+    synchronized (entries) {
+      Entry entry = entries.get(version);
+      if (entry != null) {
+        hits.increment();
+        return entry;
+      }
+      loadGeneration = generation;
+    }
+
+    misses.increment();
+    long start = System.nanoTime();
+    Entry entry = new Entry(super.getConfig(version));
+    loadTimeNanos.add(System.nanoTime() - start);
+
+    synchronized (entries) {
+      // do not cache a configuration that was saved or reset while it was loaded
+      if (generation == loadGeneration) {
+        entries.put(version, entry);
+      }
+    }
+    return entry;
+  }
+
+  private static Config copy(Config config) {
+    return new Config(config.getTopology().clone(), config.getVersion());
+  }
+
+  @Override
+  public String toString() {
+    return "CachingConfigStorage{hits=" + getHitCount() + ", misses=" + getMissCount()
+        + ", averageLoadTime=" + getAverageLoadTime(TimeUnit.MILLISECONDS) + "ms}";
+  }
+
+  private static class Entry {
+    private final Config config;
+    private volatile String verifiedHash;
+
+    Entry(Config config) {
+      this.config = config;
+    }
+  }
+}
@@ -53,10 +53,14 @@ import static org.terracotta.dynamic_config.server.configuration.nomad.persisten
 
 public class SanskritNomadServerState implements NomadServerState<NodeContext> {
   private final Sanskrit sanskrit;
-  private final ConfigStorage configStorage;
+  private final CachingConfigStorage configStorage;
   private final HashComputer hashComputer;
 
   public SanskritNomadServerState(Sanskrit sanskrit, ConfigStorage configStorage, HashComputer hashComputer) {
+    this(sanskrit, new CachingConfigStorage(configStorage), hashComputer);
+  }
+
+  public SanskritNomadServerState(Sanskrit sanskrit, CachingConfigStorage configStorage, HashComputer hashComputer) {
     this.sanskrit = sanskrit;
     this.configStorage = configStorage;
     this.hashComputer = hashComputer;
@@ -144,9 +148,9 @@ public class SanskritNomadServerState implements NomadServerState<NodeContext> {
       Instant creationTimestamp = Instant.parse(child.getString(CHANGE_CREATION_TIMESTAMP));
 
       // loads the config file as it was written by the nomad system
-      Config config = configStorage.getConfig(version);
+      Config config;
       try {
-        hashComputer.checkHash(config, expectedHash);
+        config = configStorage.getConfig(version, expectedHash, hashComputer);
       } catch (NomadException e) {
         throw new NomadException("Bad hash for change: " + changeUuid + ". " + e.getMessage());
       }
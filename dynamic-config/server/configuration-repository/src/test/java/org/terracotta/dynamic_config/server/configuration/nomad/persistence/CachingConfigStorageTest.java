@@ -0,0 +1,107 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.dynamic_config.server.configuration.nomad.persistence;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.terracotta.dynamic_config.api.model.NodeContext;
+import org.terracotta.dynamic_config.api.model.Testing;
+import org.terracotta.dynamic_config.api.model.Version;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.terracotta.dynamic_config.api.model.Testing.newTestStripe;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CachingConfigStorageTest {
+
+  NodeContext topology = new NodeContext(Testing.newTestCluster("bar", newTestStripe("stripe1").addNodes(Testing.newTestNode("node-1", "localhost"))), Testing.N_UIDS[1]);
+
+  @Mock
+  private ConfigStorage underlying;
+
+  @Mock
+  private HashComputer hashComputer;
+
+  @Test
+  public void cachesConfigs() throws Exception {
+    Config config = new Config(topology, Version.CURRENT);
+    when(underlying.getConfig(1L)).thenReturn(config);
+
+    CachingConfigStorage storage = new CachingConfigStorage(underlying);
+    assertEquals(config, storage.getConfig(1L));
+    Config cached = storage.getConfig(1L);
+    assertEquals(config, cached);
+    assertThat(cached.getTopology(), is(not(sameInstance(topology))));
+
+    verify(underlying, times(1)).getConfig(1L);
+    assertThat(storage.getHitCount(), is(1L));
+    assertThat(storage.getMissCount(), is(1L));
+    assertThat(storage.getHitRate(), is(0.5));
+  }
+
+  @Test
+  public void saveAndResetInvalidate() throws Exception {
+    when(underlying.getConfig(1L)).thenReturn(new Config(topology, Version.CURRENT));
+
+    CachingConfigStorage storage = new CachingConfigStorage(underlying);
+    storage.getConfig(1L);
+    storage.saveConfig(1L, topology);
+    storage.getConfig(1L);
+    storage.reset();
+    storage.getConfig(1L);
+
+    verify(underlying).saveConfig(1L, topology);
+    verify(underlying).reset();
+    verify(underlying, times(3)).getConfig(1L);
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsed() throws Exception {
+    when(underlying.getConfig(1L)).thenReturn(new Config(topology, Version.CURRENT));
+    when(underlying.getConfig(2L)).thenReturn(new Config(topology, Version.CURRENT));
+
+    CachingConfigStorage storage = new CachingConfigStorage(underlying, 1);
+    storage.getConfig(1L);
+    storage.getConfig(2L);
+    storage.getConfig(1L);
+
+    verify(underlying, times(2)).getConfig(1L);
+    verify(underlying, times(1)).getConfig(2L);
+  }
+
+  @Test
+  public void checksHashOnce() throws Exception {
+    when(underlying.getConfig(1L)).thenReturn(new Config(topology, Version.CURRENT));
+
+    CachingConfigStorage storage = new CachingConfigStorage(underlying);
+    storage.getConfig(1L, "hash", hashComputer);
+    storage.getConfig(1L, "hash", hashComputer);
+    verify(hashComputer, times(1)).checkHash(any(Config.class), any(String.class));
+
+    storage.getConfig(1L, "other", hashComputer);
+    verify(hashComputer, times(2)).checkHash(any(Config.class), any(String.class));
+  }
+}
@@ -15,7 +15,6 @@
  */
 package org.terracotta.healthchecker;
 
-import java.util.Timer;
 import java.util.concurrent.Future;
 import org.terracotta.connection.entity.Entity;
 
@@ -30,5 +29,10 @@ interface HealthCheck extends Entity {
    */
    Future<String> ping(String message);
    
-   Timer getTimer();
+  /**
+   *  Check if this health checker was closed, or lost its connection, so that probes should stop
+   *
+   * @return true if the health checker is closed
+   */
+   boolean isClosed();
 }
@@ -19,12 +19,11 @@ import java.io.IOException;
 import java.util.LinkedHashSet;
 import java.util.Properties;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terracotta.connection.Connection;
@@ -33,6 +32,7 @@ import org.terracotta.exception.ConnectionClosedException;
 import org.terracotta.exception.EntityNotFoundException;
 import org.terracotta.exception.EntityNotProvidedException;
 import org.terracotta.exception.EntityVersionMismatchException;
+import org.terracotta.lease.ConnectionScheduler;
 
 /**
  *
@@ -44,7 +44,8 @@ public class HealthCheckerFactory {
   private static final String NAME = "staticHealthChecker";
   /**
    * Start a health checker on a connection.  Adding a timeout manager to a connection 
-   * starts a new thread that will periodically ping the server to make sure it is up and running
+   * schedules a task on the scheduler shared by all connections that will periodically ping the server
+   * to make sure it is up and running
    * 
    * @param connection the connection to be monitored
    * @param probeFrequencyPerMinute the frequency which to ping a server per minute
@@ -59,7 +60,7 @@ public class HealthCheckerFactory {
       if (probeFrequencyPerMinute < 1 || probeFrequencyPerMinute > 120) {
         throw new IllegalArgumentException("probe frequency must be greater than zero and less than 120");
       }
-      return new HealthCheckTimeoutManager(connection, hc).start(probeTimeoutInMillis, probeFrequencyPerMinute);
+      return new HealthCheckTimeoutManager(connection, hc, ConnectionScheduler.getSharedInstance()).start(probeTimeoutInMillis, probeFrequencyPerMinute);
     } catch (EntityNotProvidedException notvalid) {
       throw new IllegalStateException("healthchecker entity is not installed with the name " + NAME, notvalid);
     } catch (EntityNotFoundException notfound) {
@@ -69,40 +70,171 @@ public class HealthCheckerFactory {
     }
   }
   
+  /**
+   * Probes a connection from the {@link ConnectionScheduler} shared by all connections. A probe cycle is a chain of
+   * steps, each one scheduling the next: pings are sent from the worker threads of the scheduler, as sending may
+   * block, while the answers are polled from its timer threads, at growing intervals bounded by the probe period.
+   */
   private static class HealthCheckTimeoutManager implements TimeoutManager {
     
+    private static final long FIRST_POLL_MILLIS = 1L;
+
     private final Connection root;
     private final HealthCheck checker;
     private final Set<TimeoutListener> listeners = new LinkedHashSet<TimeoutListener>();
-    private final Timer driver;
+    private final ConnectionScheduler scheduler;
+    private final AtomicBoolean probing = new AtomicBoolean();
+    private boolean closed;
+    private volatile boolean stopped;
+    private volatile Future<?> cycles;
+    private volatile Future<?> logging;
+    private volatile long averagePingTime;
+    private long timeout;
+    private long basePeriod;
+//  the state of the ongoing probe cycle, only accessed by its steps which never overlap
     private long iteration;
     private String currentMsg;
     private Future<String> currentProbe;
-    private boolean closed;
+    private long cycleStart;
+    private long period;
+    private long probeDeadline;
+    private long pollDelay;
     private long totalTime;
     private int observations;
 
-    public HealthCheckTimeoutManager(Connection conn, HealthCheck checker) {
+    private final Runnable sendProbe = new Runnable() {
+      @Override
+      public void run() {
+        sendProbe();
+      }
+    };
+    private final Runnable poll = new Runnable() {
+      @Override
+      public void run() {
+        poll();
+      }
+    };
+    private final Runnable probeFailed = new Runnable() {
+      @Override
+      public void run() {
+        probeFailed();
+      }
+    };
+    private final Runnable close = new Runnable() {
+      @Override
+      public void run() {
+        closeConnection();
+      }
+    };
+
+    public HealthCheckTimeoutManager(Connection conn, HealthCheck checker, ConnectionScheduler scheduler) {
       this.root = conn;
       this.checker = checker;
-      driver = checker.getTimer();
+      this.scheduler = scheduler;
     }
     
-    public synchronized boolean probe(long timeout) throws InterruptedException, ExecutionException {
+    private void startCycle() {
+      if (stopped) {
+        return;
+      }
+      if (checker.isClosed()) {
+        stop();
+        return;
+      }
+//  a cycle still waiting for its probe to be answered absorbs the next ones
+      if (probing.compareAndSet(false, true)) {
+        cycleStart = System.nanoTime();
+        period = basePeriod;
+        dispatch(sendProbe);
+      }
+    }
+
+    private void sendProbe() {
+      if (stopped) {
+        return;
+      }
       if (currentProbe == null || currentProbe.isDone()) {
         currentMsg = "ping-" + (iteration++);
         try {
           currentProbe = checker.ping(currentMsg);
         } catch (Throwable t) {
-          throw new ExecutionException(t);
+          closeConnection();
+          return;
         }
       }
+      probeDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(period);
+      pollDelay = FIRST_POLL_MILLIS;
+      schedulePoll();
+    }
 
-      try {
-        return currentMsg.equals(currentProbe.get(timeout, TimeUnit.MILLISECONDS));
-      } catch (TimeoutException te) {
-        return false;
+    private void schedulePoll() {
+      long remaining = TimeUnit.NANOSECONDS.toMillis(probeDeadline - System.nanoTime());
+      scheduler.schedule(poll, Math.max(0L, Math.min(pollDelay, remaining)), TimeUnit.MILLISECONDS);
+      pollDelay *= 2;
+    }
+
+//  runs on a timer thread of the scheduler so it must not block, anything that may is dispatched
+    private void poll() {
+      if (stopped) {
+        return;
       }
+      if (currentProbe.isDone()) {
+        try {
+          if (currentMsg.equals(currentProbe.get(0, TimeUnit.MILLISECONDS))) {
+            probeAnswered();
+          } else {
+            failProbe();
+          }
+        } catch (ExecutionException ee) {
+          scheduler.executeClose(close);
+        } catch (InterruptedException ie) {
+          scheduler.executeClose(close);
+        } catch (TimeoutException te) {
+          failProbe();
+        }
+      } else if (System.nanoTime() - probeDeadline < 0) {
+        schedulePoll();
+      } else {
+        failProbe();
+      }
+    }
+
+    private void probeAnswered() {
+      long nanos = System.nanoTime() - cycleStart;
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("ping time:" + TimeUnit.MICROSECONDS.convert(nanos, TimeUnit.NANOSECONDS) + "µs");
+      }
+      updateMovingAverage(nanos);
+      probing.set(false);
+    }
+
+    private void probeFailed() {
+      if (stopped) {
+        return;
+      }
+      long lapse = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - cycleStart);
+      if (lapse < timeout) {
+        fireProbeListeners();
+        if (timeout - lapse < period) {
+          period = timeout - lapse;
+        }
+        sendProbe();
+      } else {
+        closeConnection();
+      }
+    }
+
+    private void failProbe() {
+//  a connection to close must not wait for a worker, those may all be blocked on unanswered requests
+      if (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - cycleStart) < timeout) {
+        dispatch(probeFailed);
+      } else {
+        scheduler.executeClose(close);
+      }
+    }
+
+    private void dispatch(Runnable step) {
+      scheduler.scheduleBlocking(step, 0L, TimeUnit.MILLISECONDS);
     }
     
     private void updateMovingAverage(long time) {
@@ -112,54 +244,49 @@ public class HealthCheckerFactory {
       if (observations > 100) {
         totalTime -= (totalTime/observations--);
       }
+      averagePingTime = totalTime/observations;
     }
     
     private void logMovingAverage() {
-      LOG.info("moving average ping time:" + TimeUnit.MICROSECONDS.convert(totalTime/observations, TimeUnit.NANOSECONDS) + "µs");
+      LOG.info("moving average ping time:" + TimeUnit.MICROSECONDS.convert(averagePingTime, TimeUnit.NANOSECONDS) + "µs");
     }
     
     public TimeoutManager start(final long timeout, final long cyclesPerMin) {
-      TimerTask task = new TimerTask() {
+      this.timeout = timeout;
+      this.basePeriod = (timeout < 60000/cyclesPerMin) ? timeout : 60000/cyclesPerMin;
+      cycles = scheduler.scheduleAtFixedRate(new Runnable() {
         @Override
         public void run() {
-          long period = (timeout < 60000/cyclesPerMin) ? timeout : 60000/cyclesPerMin;
-          long start = System.currentTimeMillis();
-          long nanos = System.nanoTime();
-          try {
-            while (!probe(period)) {
-              long lapse = System.currentTimeMillis() - start;
-              if (lapse < timeout) {
-                fireProbeListeners();
-                if (timeout - lapse < period) {
-                  period = timeout - lapse;
-                }
-              } else {
-                closeConnection();
-              }
-            }
-            nanos = System.nanoTime() - nanos;
-            if (LOG.isDebugEnabled()) {
-              LOG.debug("ping time:" + TimeUnit.MICROSECONDS.convert(nanos, TimeUnit.NANOSECONDS) + "µs");
-            }
-            updateMovingAverage(nanos);
-          } catch (ExecutionException ee) {
-            closeConnection();
-          } catch (InterruptedException ie) {
-            closeConnection();
-          }
+          startCycle();
         }
-      };
-      driver.scheduleAtFixedRate(task, 0, 60000/cyclesPerMin);
-      driver.scheduleAtFixedRate(new TimerTask() {
+      }, 0, 60000/cyclesPerMin, TimeUnit.MILLISECONDS);
+      logging = scheduler.scheduleAtFixedRate(new Runnable() {
         @Override
         public void run() {
           logMovingAverage();
         }
-      }, 60000, 60000);
+      }, 60000, 60000, TimeUnit.MILLISECONDS);
+//  the first cycle may already have stopped the manager
+      if (stopped) {
+        stop();
+      }
       return this;
     }
+
+    private void stop() {
+      stopped = true;
+      Future<?> cycles = this.cycles;
+      if (cycles != null) {
+        cycles.cancel(false);
+      }
+      Future<?> logging = this.logging;
+      if (logging != null) {
+        logging.cancel(false);
+      }
+    }
     
     private synchronized void closeConnection() {
+      stop();
       try {
         closed = true;
         root.close();
@@ -15,9 +15,9 @@
  */
 package org.terracotta.healthchecker;
 
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -27,7 +27,10 @@ import org.junit.Test;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.terracotta.connection.Connection;
@@ -69,22 +72,10 @@ public class HealthCheckerFactoryTest {
     EntityRef ref = mock(EntityRef.class);
     HealthCheck hc = mock(HealthCheck.class);
     when(ref.fetchEntity(null)).thenReturn(hc);
-    final Timer timer = new Timer();
-    when(hc.getTimer()).thenReturn(timer);
     when(hc.ping(anyString())).thenThrow(new IllegalStateException("not connected"));
     when(connection.getEntityRef(any(Class.class), anyLong(), anyString())).thenReturn(ref);
     TimeoutManager result = HealthCheckerFactory.startHealthChecker(connection, 60, 60000);
-    final Semaphore latch = new Semaphore(0);
-    TimerTask tt = new TimerTask() {
-      @Override
-      public void run() {
-        timer.cancel();
-        latch.release();
-      }
-    };
-    timer.schedule(tt, 0);
-    latch.acquire();
-    verify(connection).close();
+    verify(connection, timeout(5000)).close();
     try {
       result.addTimeoutListener(new TimeoutListener() {
         @Override
@@ -102,5 +93,58 @@ public class HealthCheckerFactoryTest {
 //  expected;
     }
   }
+
+  @Test
+  public void testAnsweredProbesKeepConnection() throws Throwable {
+    Connection connection = mock(Connection.class);
+
+    EntityRef ref = mock(EntityRef.class);
+    HealthCheck hc = mock(HealthCheck.class);
+    when(ref.fetchEntity(null)).thenReturn(hc);
+    when(hc.ping(anyString())).thenAnswer(invocation -> CompletableFuture.completedFuture(invocation.getArgument(0)));
+    when(connection.getEntityRef(any(Class.class), anyLong(), anyString())).thenReturn(ref);
+    TimeoutManager result = HealthCheckerFactory.startHealthChecker(connection, 120, 1000);
+    verify(hc, timeout(5000).atLeast(3)).ping(anyString());
+    verify(connection, never()).close();
+    Assert.assertTrue(result.isConnected());
+
+//  probes stop once the health checker is closed
+    when(hc.isClosed()).thenReturn(true);
+    Thread.sleep(1000);
+    clearInvocations(hc);
+    Thread.sleep(1000);
+    verify(hc, never()).ping(anyString());
+  }
+
+  @Test
+  public void testCloseOnTimeout() throws Throwable {
+    Connection connection = mock(Connection.class);
+
+    EntityRef ref = mock(EntityRef.class);
+    HealthCheck hc = mock(HealthCheck.class);
+    when(ref.fetchEntity(null)).thenReturn(hc);
+    when(hc.ping(anyString())).thenReturn(new CompletableFuture<String>());
+    when(connection.getEntityRef(any(Class.class), anyLong(), anyString())).thenReturn(ref);
+    final CountDownLatch failed = new CountDownLatch(1);
+    final CountDownLatch closed = new CountDownLatch(1);
+    TimeoutManager result = HealthCheckerFactory.startHealthChecker(connection, 120, 1500);
+    result.addTimeoutListener(new TimeoutListener() {
+      @Override
+      public void connectionClosed(Connection target) {
+        closed.countDown();
+      }
+
+      @Override
+      public void probeFailed(Connection target) {
+        failed.countDown();
+      }
+    });
+    Assert.assertTrue(failed.await(5, TimeUnit.SECONDS));
+    Assert.assertTrue(closed.await(5, TimeUnit.SECONDS));
+    verify(connection).close();
+//  the probe sent is still outstanding, so no other is sent
+    verify(hc).ping(anyString());
+    Assert.assertFalse(result.isConnected());
+  }
   
 }
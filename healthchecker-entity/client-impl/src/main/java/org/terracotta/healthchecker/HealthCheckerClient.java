@@ -15,7 +15,6 @@
  */
 package org.terracotta.healthchecker;
 
-import java.util.Timer;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -32,11 +31,10 @@ import org.terracotta.entity.MessageCodecException;
 public class HealthCheckerClient implements HealthCheck {
   
   private final EntityClientEndpoint<HealthCheckReq, HealthCheckRsp> endpoint;
-  private final Timer driver;
+  private volatile boolean closed;
 
   public HealthCheckerClient(EntityClientEndpoint<HealthCheckReq, HealthCheckRsp> endpoint) {
     this.endpoint = endpoint;
-    this.driver = new Timer("healthcheck timer - " + endpoint.hashCode(), true);
     this.endpoint.setDelegate(new HealthCheckerDelegate());
   }
 
@@ -94,13 +92,13 @@ public class HealthCheckerClient implements HealthCheck {
 
   @Override
   public void close() {
+    closed = true;
     endpoint.close();
-    driver.cancel();
   }
 
   @Override
-  public Timer getTimer() {
-    return driver;
+  public boolean isClosed() {
+    return closed;
   }
 
   class HealthCheckerDelegate implements EndpointDelegate<HealthCheckRsp> {
@@ -117,7 +115,7 @@ public class HealthCheckerClient implements HealthCheck {
 
     @Override
     public void didDisconnectUnexpectedly() {
-      driver.cancel();
+      closed = true;
     }
   }
 }
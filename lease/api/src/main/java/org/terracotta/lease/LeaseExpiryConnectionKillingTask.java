@@ -0,0 +1,102 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.lease;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terracotta.connection.Connection;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically checks the lease of a connection, closing the connection once its lease has expired. The checks run on
+ * the timer threads of the scheduler while closing the connection, which may block, is handed over to a close task.
+ */
+public class LeaseExpiryConnectionKillingTask implements Runnable, Closeable {
+  private static Logger LOGGER = LoggerFactory.getLogger(LeaseExpiryConnectionKillingTask.class);
+
+  static final long CHECK_INTERVAL_MILLIS = 200L;
+
+  private final LeaseMaintainer leaseMaintainer;
+  private final Connection connection;
+  private final ConnectionScheduler scheduler;
+
+  private volatile boolean shutdown = false;
+  private volatile Future<?> checks;
+
+  LeaseExpiryConnectionKillingTask(LeaseMaintainer leaseMaintainer, Connection connection, ConnectionScheduler scheduler) {
+    this.leaseMaintainer = leaseMaintainer;
+    this.connection = connection;
+    this.scheduler = scheduler;
+  }
+
+  void start() {
+    checks = scheduler.scheduleAtFixedRate(this, 0L, CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    if (shutdown) {
+      checks.cancel(false);
+    }
+  }
+
+  @Override
+  public void run() {
+    if (shutdown) {
+      return;
+    }
+
+    final Lease lease = leaseMaintainer.getCurrentLease();
+
+    if (!(lease instanceof NullLease)) {
+      boolean validLease = lease.isValidAndContiguous(lease);
+      if (!validLease) {
+        stopChecks();
+        scheduler.executeClose(new Runnable() {
+          @Override
+          public void run() {
+            closeConnection(lease);
+          }
+        });
+      }
+    }
+  }
+
+  private void closeConnection(Lease lease) {
+    try {
+      LOGGER.info("Lease lost, so closing connection to server: " + lease);
+      connection.close();
+    } catch (IOException e) {
+      LOGGER.error("Closing connection, due to lease expiry, caused an error", e);
+    } catch (IllegalStateException e) {
+      // Already closed.
+    }
+  }
+
+  private void stopChecks() {
+    shutdown = true;
+    Future<?> future = checks;
+    if (future != null) {
+      future.cancel(false);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    // Only need to stop the checks: we do not want to interrupt a connection.close() call
+    stopChecks();
+  }
+}
@@ -36,6 +36,8 @@ public class LeaseMaintainerFactory {
   /**
    * Creates a LeaseMaintainer to maintain a lease on the connection. This should only be called once for any one
    * Connection.
+   * <p>
+   * Lease renewals and lease expiry checks are driven by the {@link ConnectionScheduler} shared by all connections.
    *
    * @param connection the connection on which leases should be maintained
    * @return the LeaseMaintainer that will maintain leases on the connection
@@ -48,13 +50,14 @@ public class LeaseMaintainerFactory {
     LeaseMaintainerImpl leaseMaintainer = new LeaseMaintainerImpl(leaseAcquirer);
     leaseReconnectListener.setUnderlying(leaseMaintainer);
 
-    LeaseMaintenanceThread leaseMaintenanceThread = new LeaseMaintenanceThread(leaseMaintainer);
-    LeaseExpiryConnectionKillingThread leaseExpiryConnectionKillingThread = new LeaseExpiryConnectionKillingThread(leaseMaintainer, connection);
+    ConnectionScheduler scheduler = ConnectionScheduler.getSharedInstance();
+    LeaseMaintenanceTask leaseMaintenanceTask = new LeaseMaintenanceTask(leaseMaintainer, scheduler);
+    LeaseExpiryConnectionKillingTask leaseExpiryConnectionKillingTask = new LeaseExpiryConnectionKillingTask(leaseMaintainer, connection, scheduler);
 
-    leaseMaintenanceThread.start();
-    leaseExpiryConnectionKillingThread.start();
+    leaseMaintenanceTask.start();
+    leaseExpiryConnectionKillingTask.start();
 
-    return new CleaningLeaseMaintainer(leaseMaintainer, connection, leaseMaintenanceThread, leaseExpiryConnectionKillingThread);
+    return new CleaningLeaseMaintainer(leaseMaintainer, connection, leaseMaintenanceTask, leaseExpiryConnectionKillingTask);
   }
 
   private static LeaseAcquirer getLeaseAcquirer(Connection connection, LeaseReconnectListener leaseReconnectListener) {
@@ -0,0 +1,104 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.lease;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terracotta.exception.ConnectionClosedException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refreshes the lease of a connection, then schedules the next refresh for when the lease is due for renewal. As lease
+ * requests block, the refreshes run as blocking tasks of the scheduler.
+ */
+class LeaseMaintenanceTask implements Runnable, Closeable {
+  private static Logger LOGGER = LoggerFactory.getLogger(LeaseMaintenanceTask.class);
+  // delays the retry after an unexpected failure, which is unlikely to go away immediately
+  static final long UNEXPECTED_FAILURE_RETRY_DELAY = 1000L;
+
+  private final LeaseMaintainerImpl leaseMaintainer;
+  private final ConnectionScheduler scheduler;
+
+  private volatile boolean shutdown = false;
+  private volatile Future<?> nextRefresh;
+
+  LeaseMaintenanceTask(LeaseMaintainerImpl leaseMaintainer, ConnectionScheduler scheduler) {
+    this.leaseMaintainer = leaseMaintainer;
+    this.scheduler = scheduler;
+  }
+
+  void start() {
+    scheduleRefresh(0L);
+  }
+
+  @Override
+  public void run() {
+    if (shutdown) {
+      return;
+    }
+
+    long waitLength = 0L;
+    try {
+      waitLength = leaseMaintainer.refreshLease();
+
+      if (LOGGER.isDebugEnabled()) {
+        LOGGER.debug("Lease refresh wait: " + waitLength);
+      }
+    } catch (ConnectionClosedException e) {
+      return;
+    } catch (InterruptedException e) {
+      //reschedule and check
+    } catch (LeaseException e) {
+      LOGGER.error("Error obtaining lease", e);
+    } catch (RuntimeException e) {
+      //force a clean shutdown by silencing exceptions received after being shutdown
+      if (shutdown) {
+        return;
+      }
+      // rethrowing would only fail the future of this run, which nobody reads, and stop the refreshes
+      LOGGER.error("Unexpected error refreshing lease", e);
+      waitLength = UNEXPECTED_FAILURE_RETRY_DELAY;
+    }
+
+    scheduleRefresh(waitLength);
+  }
+
+  private void scheduleRefresh(long waitLength) {
+    if (shutdown) {
+      return;
+    }
+    Future<?> refresh = scheduler.scheduleBlocking(this, waitLength, TimeUnit.MILLISECONDS);
+    nextRefresh = refresh;
+    // a close racing with the scheduling may have missed the new refresh
+    if (shutdown) {
+      refresh.cancel(true);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    // We need to shutdown and interrupt as we may be in a blocking call
+    shutdown = true;
+    Future<?> refresh = nextRefresh;
+    if (refresh != null) {
+      refresh.cancel(true);
+    }
+  }
+}
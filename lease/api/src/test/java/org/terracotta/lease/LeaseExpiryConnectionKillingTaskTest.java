@@ -18,24 +18,26 @@ package org.terracotta.lease;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
-import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.terracotta.connection.Connection;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertTrue;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.doThrow;
-import static org.mockito.Mockito.timeout;
-import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
-public class LeaseExpiryConnectionKillingThreadTest {
-  @Spy
-  private TestTimeSource timeSource = new TestTimeSource();
+public class LeaseExpiryConnectionKillingTaskTest {
+  private final TestTimeSource timeSource = new TestTimeSource();
 
   @Mock
   private LeaseMaintainerImpl leaseMaintainer;
@@ -43,41 +45,52 @@ public class LeaseExpiryConnectionKillingThreadTest {
   @Mock
   private Connection connection;
 
-  private LeaseExpiryConnectionKillingThread thread;
+  @Mock
+  private ConnectionScheduler scheduler;
+
+  @Mock
+  private Future<Object> checks;
+
+  private LeaseExpiryConnectionKillingTask task;
 
   @Before
   public void before() throws Exception {
     TimeSourceProvider.setTimeSource(timeSource);
-    thread = new LeaseExpiryConnectionKillingThread(leaseMaintainer, connection);
+    task = new LeaseExpiryConnectionKillingTask(leaseMaintainer, connection, scheduler);
+    lenient().doReturn(checks).when(scheduler).scheduleAtFixedRate(any(Runnable.class), anyLong(), anyLong(), any(TimeUnit.class));
   }
 
   @Test
-  public void threadBasics() throws Exception {
-    assertEquals("LeaseExpiryConnectionKillingThread", thread.getName());
-    assertTrue(thread.isDaemon());
+  public void startSchedulesPeriodicChecks() throws Exception {
+    task.start();
+    verify(scheduler).scheduleAtFixedRate(task, 0L, 200L, TimeUnit.MILLISECONDS);
   }
 
   @Test
   public void whenLeaseIsValidConnectionIsNotClosed() throws Exception {
     when(leaseMaintainer.getCurrentLease()).thenReturn(new LeaseImpl(timeSource, 100L, 200L));
-    thread.start();
-    verify(timeSource, timeout(1000L).times(1)).sleep(200L);
+    task.start();
+    task.run();
+    verify(checks, never()).cancel(false);
     verifyNoMoreInteractions(connection);
   }
 
   @Test
   public void whenLeaseWasNeverValidConnectionIsNotClosed() throws Exception {
     when(leaseMaintainer.getCurrentLease()).thenReturn(new NullLease());
-    thread.start();
-    verify(timeSource, timeout(1000L).times(1)).sleep(200L);
+    task.start();
+    task.run();
+    verify(checks, never()).cancel(false);
     verifyNoMoreInteractions(connection);
   }
 
   @Test
   public void whenLeaseBecomesInvalidConnectionIsClosed() throws Exception {
     when(leaseMaintainer.getCurrentLease()).thenReturn(new LeaseImpl(timeSource, -200L, -100L));
-    thread.start();
-    thread.join();
+    task.start();
+    task.run();
+    verify(checks).cancel(false);
+    closeConnection();
     verify(connection).close();
   }
 
@@ -85,8 +98,26 @@ public class LeaseExpiryConnectionKillingThreadTest {
   public void whenLeaseBecomesInvalidConnectionIsClosedCopingWithConnectionAlreadyClosed() throws Exception {
     when(leaseMaintainer.getCurrentLease()).thenReturn(new LeaseImpl(timeSource, -200L, -100L));
     doThrow(IllegalStateException.class).when(connection).close();
-    thread.start();
-    thread.join();
+    task.start();
+    task.run();
+    closeConnection();
     verify(connection).close();
   }
+
+  @Test
+  public void closeStopsChecks() throws Exception {
+    task.start();
+    task.close();
+    verify(checks).cancel(false);
+
+    task.run();
+    verify(leaseMaintainer, never()).getCurrentLease();
+  }
+
+  private void closeConnection() {
+    // closing the connection may block, so it is handed over to a close task
+    ArgumentCaptor<Runnable> closing = ArgumentCaptor.forClass(Runnable.class);
+    verify(scheduler).executeClose(closing.capture());
+    closing.getValue().run();
+  }
 }
@@ -19,12 +19,13 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
-import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.terracotta.connection.Connection;
 import org.terracotta.connection.entity.EntityRef;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -34,8 +35,7 @@ import static org.terracotta.lease.LeaseEntityConstants.ENTITY_VERSION;
 
 @RunWith(MockitoJUnitRunner.class)
 public class LeaseMaintainerFactoryTest {
-  @Spy
-  private TestTimeSource timeSource = new TestTimeSource();
+  private final TestTimeSource timeSource = new TestTimeSource();
 
   @Mock
   private Connection connection;
@@ -52,29 +52,25 @@ public class LeaseMaintainerFactoryTest {
 
     when(connection.getEntityRef(LeaseAcquirer.class, ENTITY_VERSION, ENTITY_NAME)).thenReturn(entityRef);
     when(entityRef.fetchEntity(any())).thenReturn(leaseAcquirer);
-    when(leaseAcquirer.acquireLease()).thenReturn(6000L);
+    // renewals are due every 200ms
+    when(leaseAcquirer.acquireLease()).thenReturn(600L);
   }
 
   @Test
   public void objectsWiredTogetherCorrectly() throws Exception {
     LeaseMaintainer leaseMaintainer = LeaseMaintainerFactory.createLeaseMaintainer(connection);
 
-    verify(timeSource, timeout(1000L).times(1)).sleep(2000L);
-    verify(leaseAcquirer, times(1)).acquireLease();
-    verify(leaseAcquirer, times(0)).close();
-
-    timeSource.tickMillis(5000L);
-
-    verify(timeSource, timeout(1000L).times(2)).sleep(2000L);
-    verify(leaseAcquirer, times(2)).acquireLease();
+    verify(leaseAcquirer, timeout(5000L).atLeast(2)).acquireLease();
     verify(leaseAcquirer, times(0)).close();
 
     leaseMaintainer.close();
 
-    timeSource.tickMillis(5000L);
-
-    verify(timeSource, timeout(1000L).times(2)).sleep(2000L);
-    verify(leaseAcquirer, times(2)).acquireLease();
     verify(leaseAcquirer, times(1)).close();
+    clearInvocations(leaseAcquirer);
+
+    Thread.sleep(1000L);
+
+    verify(leaseAcquirer, never()).acquireLease();
+    verify(connection, never()).close();
   }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.lease;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.terracotta.exception.ConnectionClosedException;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LeaseMaintenanceTaskTest {
+  @Mock
+  private LeaseMaintainerImpl leaseMaintainer;
+
+  @Mock
+  private ConnectionScheduler scheduler;
+
+  @Mock
+  private Future<Object> future;
+
+  private LeaseMaintenanceTask task;
+
+  @Before
+  public void before() throws Exception {
+    task = new LeaseMaintenanceTask(leaseMaintainer, scheduler);
+    lenient().doReturn(future).when(scheduler).scheduleBlocking(any(Runnable.class), anyLong(), any(TimeUnit.class));
+  }
+
+  @Test
+  public void startSchedulesImmediateRefresh() throws Exception {
+    task.start();
+
+    verify(scheduler).scheduleBlocking(task, 0L, TimeUnit.MILLISECONDS);
+    verify(leaseMaintainer, never()).refreshLease();
+  }
+
+  @Test
+  public void refreshSchedulesNextRefresh() throws Exception {
+    when(leaseMaintainer.refreshLease()).thenReturn(2000L, 0L);
+
+    task.run();
+
+    verify(leaseMaintainer, times(1)).refreshLease();
+    verify(scheduler).scheduleBlocking(task, 2000L, TimeUnit.MILLISECONDS);
+
+    task.run();
+
+    verify(leaseMaintainer, times(2)).refreshLease();
+    verify(scheduler).scheduleBlocking(task, 0L, TimeUnit.MILLISECONDS);
+  }
+
+  @Test
+  public void failedRefreshIsRetried() throws Exception {
+    when(leaseMaintainer.refreshLease()).thenThrow(new LeaseException("failed"));
+
+    task.run();
+
+    verify(scheduler).scheduleBlocking(task, 0L, TimeUnit.MILLISECONDS);
+  }
+
+  @Test
+  public void unexpectedFailureIsLoggedAndRetried() throws Exception {
+    when(leaseMaintainer.refreshLease()).thenThrow(new IllegalStateException("unexpected"));
+
+    task.run();
+
+    verify(scheduler).scheduleBlocking(task, LeaseMaintenanceTask.UNEXPECTED_FAILURE_RETRY_DELAY, TimeUnit.MILLISECONDS);
+  }
+
+  @Test
+  public void closedConnectionStopsRefreshes() throws Exception {
+    when(leaseMaintainer.refreshLease()).thenThrow(new ConnectionClosedException("Connection closed"));
+
+    task.run();
+
+    verify(scheduler, never()).scheduleBlocking(any(Runnable.class), anyLong(), any(TimeUnit.class));
+  }
+
+  @Test
+  public void closeCancelsNextRefresh() throws Exception {
+    task.start();
+    task.close();
+
+    verify(future).cancel(true);
+
+    task.run();
+
+    verify(leaseMaintainer, never()).refreshLease();
+    verify(scheduler, times(1)).scheduleBlocking(any(Runnable.class), anyLong(), any(TimeUnit.class));
+  }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.lease;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A process-wide scheduler for the periodic work of client connections: lease renewals, lease expiry checks and
+ * health check probes.
+ * <p>
+ * The tasks of all connections are fired by a small pool of timer threads, sized with the {@value #THREADS_PROPERTY}
+ * system property, rather than by mostly sleeping threads dedicated to each connection. Timer threads must never
+ * block, or the tasks of every other connection would be late: a task making a blocking call, such as a lease request,
+ * is scheduled with {@link #scheduleBlocking(Runnable, long, TimeUnit)} and then runs on a worker thread. Worker
+ * threads only live while such calls are in progress, and there are at most as many as set with the
+ * {@value #WORKERS_PROPERTY} system property. Once all of them are busy the scheduler is saturated: due blocking tasks
+ * wait in order for a free worker, and the time they wait counts as scheduling lag.
+ * <p>
+ * Closing a connection is what releases the workers blocked on its unanswered requests, so closes never wait for a
+ * worker: they are run with {@link #executeClose(Runnable)} on threads of their own, outside of the bounded pool.
+ * <p>
+ * The scheduling lag, how late tasks start compared to when they were due, is recorded so that an overloaded
+ * scheduler can be detected.
+ */
+public class ConnectionScheduler {
+  public static final String THREADS_PROPERTY = "terracotta.connection.scheduler.threads";
+  public static final int DEFAULT_THREADS = 2;
+  public static final String WORKERS_PROPERTY = "terracotta.connection.scheduler.workers";
+  public static final int DEFAULT_WORKERS = 16;
+
+  private static final long WORKER_KEEP_ALIVE_SECONDS = 60L;
+
+  private final ScheduledThreadPoolExecutor timer;
+  private final ThreadPoolExecutor workers;
+  private final ThreadPoolExecutor closers;
+
+  private final LongAdder executions = new LongAdder();
+  private final LongAdder totalLagNanos = new LongAdder();
+  private final AtomicLong maxLagNanos = new AtomicLong();
+
+  public ConnectionScheduler(String name, int threads) {
+    this(name, threads, DEFAULT_WORKERS);
+  }
+
+  /**
+   * @param name the prefix of the thread names
+   * @param threads the number of timer threads
+   * @param maxWorkers the maximum number of worker threads running blocking tasks at once
+   */
+  public ConnectionScheduler(String name, int threads, int maxWorkers) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Invalid thread count: " + threads);
+    }
+    if (maxWorkers < 1) {
+      throw new IllegalArgumentException("Invalid worker count: " + maxWorkers);
+    }
+    this.timer = new ScheduledThreadPoolExecutor(threads, new DaemonThreadFactory(name + "-timer"));
+    this.timer.setRemoveOnCancelPolicy(true);
+    this.timer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    // the queue is unbounded so that no blocking task is ever rejected, the pool grows up to the core size
+    this.workers = new ThreadPoolExecutor(maxWorkers, maxWorkers, WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory(name + "-worker"));
+    this.workers.allowCoreThreadTimeOut(true);
+    // at most one close per connection, so this pool is bounded by the number of connections
+    this.closers = new ThreadPoolExecutor(0, Integer.MAX_VALUE, WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+        new SynchronousQueue<Runnable>(), new DaemonThreadFactory(name + "-closer"));
+  }
+
+  /**
+   * @return the scheduler shared by all the connections of this process
+   */
+  public static ConnectionScheduler getSharedInstance() {
+    return SharedInstance.INSTANCE;
+  }
+
+  static int getConfiguredThreads() {
+    int threads = Integer.getInteger(THREADS_PROPERTY, DEFAULT_THREADS);
+    return threads < 1 ? DEFAULT_THREADS : threads;
+  }
+
+  static int getConfiguredWorkers() {
+    int workers = Integer.getInteger(WORKERS_PROPERTY, DEFAULT_WORKERS);
+    return workers < 1 ? DEFAULT_WORKERS : workers;
+  }
+
+  /**
+   * Schedules a task on a timer thread. The task must not block.
+   *
+   * @param task the task to run
+   * @param delay the time from now after which the task is due
+   * @param unit the unit of the delay
+   * @return the future of the task, to cancel it
+   */
+  public Future<?> schedule(Runnable task, long delay, TimeUnit unit) {
+    return timer.schedule(new LagRecordingTask(task, dueNanos(delay, unit), 0L), delay, unit);
+  }
+
+  /**
+   * Schedules a task on a timer thread, to run periodically until cancelled. The task must not block.
+   *
+   * @param task the task to run
+   * @param initialDelay the time from now after which the first run is due
+   * @param period the time between two consecutive runs
+   * @param unit the unit of the delay and period
+   * @return the future of the task, to cancel it
+   */
+  public Future<?> scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+    LagRecordingTask recordingTask = new LagRecordingTask(task, dueNanos(initialDelay, unit), unit.toNanos(period));
+    return timer.scheduleAtFixedRate(recordingTask, initialDelay, period, unit);
+  }
+
+  /**
+   * Schedules a task that may block, to run on a worker thread once due, or once a worker is free if all are busy.
+   * Cancelling the returned future with interruption interrupts the task if it is running.
+   *
+   * @param task the task to run
+   * @param delay the time from now after which the task is due
+   * @param unit the unit of the delay
+   * @return the future of the task, to cancel it
+   */
+  public Future<?> scheduleBlocking(Runnable task, long delay, TimeUnit unit) {
+    final BlockingTask blockingTask = new BlockingTask(task, dueNanos(delay, unit));
+    blockingTask.timerFuture = timer.schedule(new Runnable() {
+      @Override
+      public void run() {
+        workers.execute(blockingTask);
+      }
+    }, delay, unit);
+    return blockingTask;
+  }
+
+  /**
+   * Runs a task closing a connection right away, on a thread outside of the worker pool, so that it is never queued
+   * behind the blocked requests it would release.
+   *
+   * @param task the task to run
+   */
+  public void executeClose(Runnable task) {
+    closers.execute(task);
+  }
+
+  /**
+   * @return the number of task runs so far
+   */
+  public long getExecutionCount() {
+    return executions.sum();
+  }
+
+  /**
+   * @param unit the unit of the result
+   * @return the largest scheduling lag observed so far
+   */
+  public long getMaximumLag(TimeUnit unit) {
+    return unit.convert(maxLagNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @param unit the unit of the result
+   * @return the average scheduling lag over all the task runs so far
+   */
+  public long getAverageLag(TimeUnit unit) {
+    long count = executions.sum();
+    return count == 0 ? 0L : unit.convert(totalLagNanos.sum() / count, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @return the number of worker threads currently running blocking tasks
+   */
+  public int getActiveWorkerCount() {
+    return workers.getActiveCount();
+  }
+
+  /**
+   * @return the number of due blocking tasks waiting for a free worker
+   */
+  public int getQueuedBlockingTaskCount() {
+    return workers.getQueue().size();
+  }
+
+  /**
+   * Stops the scheduler, interrupting the running tasks. The shared instance lives as long as the process and must not
+   * be shut down.
+   */
+  public void shutdown() {
+    timer.shutdownNow();
+    workers.shutdownNow();
+    closers.shutdownNow();
+  }
+
+  private static long dueNanos(long delay, TimeUnit unit) {
+    return System.nanoTime() + unit.toNanos(Math.max(0L, delay));
+  }
+
+  private void recordLag(long dueNanos) {
+    long lag = Math.max(0L, System.nanoTime() - dueNanos);
+    executions.increment();
+    totalLagNanos.add(lag);
+    maxLagNanos.accumulateAndGet(lag, Math::max);
+  }
+
+  private static class SharedInstance {
+    private static final ConnectionScheduler INSTANCE = new ConnectionScheduler("ConnectionScheduler", getConfiguredThreads(), getConfiguredWorkers());
+  }
+
+  private class LagRecordingTask implements Runnable {
+    private final Runnable task;
+    private final long periodNanos;
+    // only accessed by the runs of the task, which never overlap
+    private long dueNanos;
+
+    LagRecordingTask(Runnable task, long dueNanos, long periodNanos) {
+      this.task = task;
+      this.dueNanos = dueNanos;
+      this.periodNanos = periodNanos;
+    }
+
+    @Override
+    public void run() {
+      recordLag(dueNanos);
+      dueNanos += periodNanos;
+      task.run();
+    }
+  }
+
+  private class BlockingTask extends FutureTask<Void> {
+    private final long dueNanos;
+    private volatile Future<?> timerFuture;
+
+    BlockingTask(Runnable task, long dueNanos) {
+      super(task, null);
+      this.dueNanos = dueNanos;
+    }
+
+    @Override
+    public void run() {
+      if (!isDone()) {
+        recordLag(dueNanos);
+      }
+      super.run();
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      timerFuture.cancel(false);
+      return super.cancel(mayInterruptIfRunning);
+    }
+  }
+
+  private static class DaemonThreadFactory implements ThreadFactory {
+    private final String prefix;
+    private final AtomicInteger count = new AtomicInteger();
+
+    DaemonThreadFactory(String prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
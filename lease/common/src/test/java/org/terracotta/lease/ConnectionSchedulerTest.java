@@ -0,0 +1,238 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.lease;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionSchedulerTest {
+  private final ConnectionScheduler scheduler = new ConnectionScheduler("test", 1);
+
+  @After
+  public void after() {
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void runsTasksWhenDue() throws Exception {
+    final CountDownLatch ran = new CountDownLatch(1);
+    long start = System.nanoTime();
+    scheduler.schedule(new Runnable() {
+      @Override
+      public void run() {
+        ran.countDown();
+      }
+    }, 200L, TimeUnit.MILLISECONDS);
+
+    assertTrue(ran.await(5L, TimeUnit.SECONDS));
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200L));
+    assertEquals(1L, scheduler.getExecutionCount());
+  }
+
+  @Test
+  public void runsPeriodicTasksUntilCancelled() throws Exception {
+    final CountDownLatch ran = new CountDownLatch(3);
+    Future<?> future = scheduler.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        ran.countDown();
+      }
+    }, 0L, 10L, TimeUnit.MILLISECONDS);
+
+    assertTrue(ran.await(5L, TimeUnit.SECONDS));
+    future.cancel(false);
+    assertTrue(future.isCancelled());
+  }
+
+  @Test
+  public void blockingTasksDoNotDelayOtherTasks() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch ran = new CountDownLatch(1);
+    scheduler.scheduleBlocking(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }, 0L, TimeUnit.MILLISECONDS);
+    scheduler.scheduleBlocking(new Runnable() {
+      @Override
+      public void run() {
+        ran.countDown();
+      }
+    }, 10L, TimeUnit.MILLISECONDS);
+
+    assertTrue(ran.await(5L, TimeUnit.SECONDS));
+    release.countDown();
+  }
+
+  @Test
+  public void cancellingBlockingTaskInterruptsIt() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    Future<?> future = scheduler.scheduleBlocking(new Runnable() {
+      @Override
+      public void run() {
+        started.countDown();
+        try {
+          Thread.sleep(TimeUnit.MINUTES.toMillis(1L));
+        } catch (InterruptedException e) {
+          interrupted.countDown();
+        }
+      }
+    }, 0L, TimeUnit.MILLISECONDS);
+
+    assertTrue(started.await(5L, TimeUnit.SECONDS));
+    future.cancel(true);
+    assertTrue(interrupted.await(5L, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void cancelledBlockingTaskDoesNotRun() throws Exception {
+    final AtomicBoolean ran = new AtomicBoolean();
+    Future<?> future = scheduler.scheduleBlocking(new Runnable() {
+      @Override
+      public void run() {
+        ran.set(true);
+      }
+    }, 100L, TimeUnit.MILLISECONDS);
+
+    future.cancel(true);
+    Thread.sleep(300L);
+
+    assertFalse(ran.get());
+    assertEquals(0L, scheduler.getExecutionCount());
+  }
+
+  @Test
+  public void recordsSchedulingLag() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch ran = new CountDownLatch(1);
+    // the only timer thread is kept busy, so that the next task starts late
+    scheduler.schedule(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }, 0L, TimeUnit.MILLISECONDS);
+    scheduler.schedule(new Runnable() {
+      @Override
+      public void run() {
+        ran.countDown();
+      }
+    }, 0L, TimeUnit.MILLISECONDS);
+
+    Thread.sleep(200L);
+    release.countDown();
+
+    assertTrue(ran.await(5L, TimeUnit.SECONDS));
+    assertEquals(2L, scheduler.getExecutionCount());
+    assertTrue(scheduler.getMaximumLag(TimeUnit.MILLISECONDS) >= 200L);
+    assertTrue(scheduler.getAverageLag(TimeUnit.MILLISECONDS) >= 100L);
+  }
+
+  @Test
+  public void saturatedWorkersQueueBlockingTasks() throws Exception {
+    ConnectionScheduler saturated = new ConnectionScheduler("saturated", 1, 1);
+    try {
+      final CountDownLatch release = new CountDownLatch(1);
+      final CountDownLatch ran = new CountDownLatch(1);
+      saturated.scheduleBlocking(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }, 0L, TimeUnit.MILLISECONDS);
+      saturated.scheduleBlocking(new Runnable() {
+        @Override
+        public void run() {
+          ran.countDown();
+        }
+      }, 0L, TimeUnit.MILLISECONDS);
+
+      Thread.sleep(200L);
+      assertEquals(1, saturated.getActiveWorkerCount());
+      assertEquals(1, saturated.getQueuedBlockingTaskCount());
+      assertEquals(1L, ran.getCount());
+
+      release.countDown();
+      assertTrue(ran.await(5L, TimeUnit.SECONDS));
+      assertTrue(saturated.getMaximumLag(TimeUnit.MILLISECONDS) >= 200L);
+    } finally {
+      saturated.shutdown();
+    }
+  }
+
+  @Test
+  public void closesDoNotWaitForSaturatedWorkers() throws Exception {
+    ConnectionScheduler saturated = new ConnectionScheduler("saturated", 1, 1);
+    try {
+      final CountDownLatch release = new CountDownLatch(1);
+      final CountDownLatch closed = new CountDownLatch(1);
+      saturated.scheduleBlocking(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }, 0L, TimeUnit.MILLISECONDS);
+      saturated.executeClose(new Runnable() {
+        @Override
+        public void run() {
+          closed.countDown();
+          release.countDown();
+        }
+      });
+
+      assertTrue(closed.await(5L, TimeUnit.SECONDS));
+    } finally {
+      saturated.shutdown();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void needsAWorker() {
+    new ConnectionScheduler("test", 1, 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void needsAThread() {
+    new ConnectionScheduler("test", 0);
+  }
+}
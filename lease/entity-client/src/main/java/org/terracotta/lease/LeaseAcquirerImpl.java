@@ -20,13 +20,19 @@ import org.terracotta.entity.InvokeFuture;
 import org.terracotta.entity.MessageCodecException;
 import org.terracotta.exception.EntityException;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 
 class LeaseAcquirerImpl implements LeaseAcquirer, LeaseReconnectListener, LeaseReconnectDataSupplier {
+  // until a lease is granted, after which a request outliving the last lease length is pointless
+  static final long INITIAL_REQUEST_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
   private final EntityClientEndpoint<LeaseMessage, LeaseResponse> endpoint;
   private final LeaseReconnectListener reconnectListener;
   private final AtomicLong connectionSequenceNumber = new AtomicLong();
   private volatile boolean reconnecting;
+  private volatile long requestTimeoutMillis = INITIAL_REQUEST_TIMEOUT_MILLIS;
 
   LeaseAcquirerImpl(EntityClientEndpoint<LeaseMessage, LeaseResponse> endpoint, LeaseReconnectListener reconnectListener) {
     this.endpoint = endpoint;
@@ -49,7 +55,7 @@ class LeaseAcquirerImpl implements LeaseAcquirer, LeaseReconnectListener, LeaseR
               .ackCompleted()
               .invoke();
 
-      LeaseRequestResult leaseRequestResult = (LeaseRequestResult) invokeFuture.get();
+      LeaseRequestResult leaseRequestResult = (LeaseRequestResult) invokeFuture.getWithTimeout(requestTimeoutMillis, TimeUnit.MILLISECONDS);
 
       if (!leaseRequestResult.isConnectionGood()) {
         throw new LeaseReconnectingException("Attempted to acquire a lease but fail-over occurred");
@@ -59,7 +65,13 @@ class LeaseAcquirerImpl implements LeaseAcquirer, LeaseReconnectListener, LeaseR
         throw new LeaseException("Unable to obtain lease, the connection is being closed because the lease was not renewed soon enough");
       }
 
-      return leaseRequestResult.getLeaseLength();
+      long leaseLength = leaseRequestResult.getLeaseLength();
+      if (leaseLength > 0) {
+        requestTimeoutMillis = leaseLength;
+      }
+      return leaseLength;
+    } catch (TimeoutException e) {
+      throw new LeaseException("Lease request not answered within " + requestTimeoutMillis + "ms");
     } catch (MessageCodecException e) {
       throw new LeaseException(e);
     } catch (EntityException e) {
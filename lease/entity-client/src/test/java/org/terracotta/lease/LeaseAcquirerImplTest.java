@@ -25,8 +25,12 @@ import org.terracotta.entity.EntityClientEndpoint;
 import org.terracotta.entity.InvocationBuilder;
 import org.terracotta.entity.InvokeFuture;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -59,7 +63,7 @@ public class LeaseAcquirerImplTest {
     when(invocationBuilder.replicate(any(Boolean.class))).thenReturn(invocationBuilder);
     when(invocationBuilder.ackCompleted()).thenReturn(invocationBuilder);
     when(invocationBuilder.invoke()).thenReturn(invokeFuture);
-    when(invokeFuture.get()).thenReturn(leaseRequestResult);
+    when(invokeFuture.getWithTimeout(anyLong(), any(TimeUnit.class))).thenReturn(leaseRequestResult);
 
     leaseAcquirer = new LeaseAcquirerImpl(endpoint, reconnectListener);
   }
@@ -88,6 +92,23 @@ public class LeaseAcquirerImplTest {
     assertEquals(0, leaseRequest.getConnectionSequenceNumber());
   }
 
+  @Test(expected = LeaseException.class)
+  public void unansweredLeaseRequestTimesOut() throws Exception {
+    when(invokeFuture.getWithTimeout(anyLong(), any(TimeUnit.class))).thenThrow(new TimeoutException());
+    leaseAcquirer.acquireLease();
+  }
+
+  @Test
+  public void leaseRequestsTimeOutAfterTheLastLeaseLength() throws Exception {
+    when(leaseRequestResult.isConnectionGood()).thenReturn(true);
+    when(leaseRequestResult.isLeaseGranted()).thenReturn(true);
+    when(leaseRequestResult.getLeaseLength()).thenReturn(4000L);
+    leaseAcquirer.acquireLease();
+    verify(invokeFuture).getWithTimeout(LeaseAcquirerImpl.INITIAL_REQUEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    leaseAcquirer.acquireLease();
+    verify(invokeFuture).getWithTimeout(4000L, TimeUnit.MILLISECONDS);
+  }
+
   @Test(expected = LeaseReconnectingException.class)
   public void whenReconnectingDoesNotSendLeaseRequests() throws Exception {
     leaseAcquirer.reconnecting();
@@ -20,4 +20,6 @@ import java.util.concurrent.TimeUnit;
 public class LeaseConstants {
   public static final long MAX_LEASE_LENGTH = TimeUnit.MILLISECONDS.convert(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
   public static final long DEFAULT_LEASE_LENGTH = TimeUnit.MILLISECONDS.convert(150, TimeUnit.SECONDS);
+  public static final String EXPIRY_PRECISION_PROPERTY = "terracotta.lease.expiry.precision";
+  public static final long DEFAULT_EXPIRY_PRECISION = 200L;
 }
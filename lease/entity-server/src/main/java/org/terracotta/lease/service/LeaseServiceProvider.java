@@ -60,12 +60,22 @@ public class LeaseServiceProvider implements ServiceProvider, Closeable {
     }
     TimeSource timeSource = TimeSourceProvider.getTimeSource();
     proxyClientConnectionCloser = new ProxyClientConnectionCloser();
-    leaseState = new LeaseState(timeSource, proxyClientConnectionCloser);
-    leaseMonitorThread = new LeaseMonitorThread(timeSource, leaseState);
+    long expiryPrecision = getExpiryPrecision();
+    leaseState = new LeaseState(timeSource, proxyClientConnectionCloser, expiryPrecision);
+    leaseMonitorThread = new LeaseMonitorThread(timeSource, leaseState, expiryPrecision);
     leaseMonitorThread.start();
     return true;
   }
 
+  private static long getExpiryPrecision() {
+    long expiryPrecision = Long.getLong(LeaseConstants.EXPIRY_PRECISION_PROPERTY, LeaseConstants.DEFAULT_EXPIRY_PRECISION);
+    if (expiryPrecision <= 0) {
+      LOGGER.warn("Non-positive lease expiry precision: " + expiryPrecision + ", using default value: " + LeaseConstants.DEFAULT_EXPIRY_PRECISION);
+      return LeaseConstants.DEFAULT_EXPIRY_PRECISION;
+    }
+    return expiryPrecision;
+  }
+
   @Override
   public <T> T getService(long consumerID, ServiceConfiguration<T> serviceConfiguration) {
     if (serviceConfiguration.getServiceType() == LeaseConfiguration.class) {
@@ -22,14 +22,22 @@ import org.terracotta.lease.TimeSource;
  * and the thread dies.
  */
 public class LeaseMonitorThread extends Thread {
-  private static final long LEASE_CHECK_INTERVAL_MILLIS = 200L;
-
   private final TimeSource timeSource;
   private final LeaseState leaseState;
+  private final long leaseCheckIntervalMillis;
 
   public LeaseMonitorThread(TimeSource timeSource, LeaseState leaseState) {
+    this(timeSource, leaseState, LeaseState.DEFAULT_EXPIRY_PRECISION_MILLIS);
+  }
+
+  /**
+   * @param leaseCheckIntervalMillis the interval between two checks, which should match the expiry precision of the
+   *                                 lease state
+   */
+  public LeaseMonitorThread(TimeSource timeSource, LeaseState leaseState, long leaseCheckIntervalMillis) {
     this.timeSource = timeSource;
     this.leaseState = leaseState;
+    this.leaseCheckIntervalMillis = leaseCheckIntervalMillis;
     setName("LeaseMonitorThread");
     setDaemon(true);
   }
@@ -40,7 +48,7 @@ public class LeaseMonitorThread extends Thread {
       leaseState.checkLeases();
 
       try {
-        timeSource.sleep(LEASE_CHECK_INTERVAL_MILLIS);
+        timeSource.sleep(leaseCheckIntervalMillis);
       } catch (InterruptedException e) {
         Thread.currentThread().interrupt();
         return;
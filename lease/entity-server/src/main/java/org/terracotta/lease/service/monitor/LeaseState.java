@@ -21,26 +21,61 @@ import org.terracotta.entity.ClientDescriptor;
 import org.terracotta.entity.StateDumpCollector;
 import org.terracotta.entity.StateDumpable;
 import org.terracotta.lease.TimeSource;
+import org.terracotta.lease.service.LeaseConstants;
 import org.terracotta.lease.service.closer.ClientConnectionCloser;
 
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
  * The central component of the connection leasing code. This object holds the state of the leases for each client and
  * allows updates to that state in a thread-safe way.
+ * <p>
+ * The clients are also scheduled in a timer wheel, in the slot of the tick in which their lease expires, so that
+ * checking the leases only looks at the clients whose lease may be due instead of all of them. A renewed lease is
+ * simply scheduled in its new slot: the stale entry is moved or dropped when its slot comes up.
  */
 public class LeaseState implements StateDumpable {
   private static Logger LOGGER = LoggerFactory.getLogger(LeaseState.class);
 
+  static final long DEFAULT_EXPIRY_PRECISION_MILLIS = LeaseConstants.DEFAULT_EXPIRY_PRECISION;
+  // leases longer than a turn of the wheel are looked at once per turn
+  private static final int WHEEL_SIZE = 1024;
+
   private final TimeSource timeSource;
   private final ClientConnectionCloser clientConnectionCloser;
   private final ConcurrentHashMap<ClientDescriptor, Lease> leases = new ConcurrentHashMap<>();
 
+  private final long tickNanos;
+  private final long origin;
+  private final Set<ClientDescriptor>[] wheel;
+  // the first tick not entirely checked yet, only used by checkLeases()
+  private long nextTick;
+
   public LeaseState(TimeSource timeSource, ClientConnectionCloser clientConnectionCloser) {
+    this(timeSource, clientConnectionCloser, DEFAULT_EXPIRY_PRECISION_MILLIS);
+  }
+
+  /**
+   * @param expiryPrecisionMillis the duration of a tick of the timer wheel, which should match the interval between
+   *                              two calls to {@link #checkLeases()}
+   */
+  @SuppressWarnings("unchecked")
+  public LeaseState(TimeSource timeSource, ClientConnectionCloser clientConnectionCloser, long expiryPrecisionMillis) {
+    if (expiryPrecisionMillis <= 0) {
+      throw new IllegalArgumentException("Only positive expiry precisions are acceptable");
+    }
     this.timeSource = timeSource;
     this.clientConnectionCloser = clientConnectionCloser;
+    this.tickNanos = TimeUnit.MILLISECONDS.toNanos(expiryPrecisionMillis);
+    this.origin = timeSource.nanoTime();
+    this.wheel = new Set[WHEEL_SIZE];
+    for (int i = 0; i < WHEEL_SIZE; i++) {
+      wheel[i] = ConcurrentHashMap.newKeySet();
+    }
   }
 
   public void disconnected(ClientDescriptor clientDescriptor) {
@@ -61,6 +96,7 @@ public class LeaseState implements StateDumpable {
 
     ValidLease newLease = createLease(leaseLength);
     leases.put(clientDescriptor, newLease);
+    schedule(clientDescriptor, newLease);
   }
 
   public boolean acquireLease(ClientDescriptor clientDescriptor, long leaseLength) {
@@ -72,6 +108,7 @@ public class LeaseState implements StateDumpable {
       if (currentLease == null) {
         Lease existingLease = leases.putIfAbsent(clientDescriptor, newLease);
         if (existingLease == null) {
+          schedule(clientDescriptor, newLease);
           return true;
         }
       } else {
@@ -86,6 +123,7 @@ public class LeaseState implements StateDumpable {
 
         boolean replaced = leases.replace(clientDescriptor, currentLease, newLease);
         if (replaced) {
+          schedule(clientDescriptor, newLease);
           return true;
         }
       }
@@ -97,37 +135,76 @@ public class LeaseState implements StateDumpable {
     return new ValidLease(leaseExpiry);
   }
 
-  void checkLeases() {
+  private void schedule(ClientDescriptor clientDescriptor, ValidLease lease) {
+    wheel[slot(lease)].add(clientDescriptor);
+  }
+
+  private int slot(ValidLease lease) {
+    return slot(Math.floorDiv(lease.getLeaseExpiry() - origin, tickNanos));
+  }
+
+  private static int slot(long tick) {
+    return (int) Math.floorMod(tick, (long) WHEEL_SIZE);
+  }
+
+  synchronized void checkLeases() {
     LOGGER.debug("Checking leases");
     long now = timeSource.nanoTime();
+    long currentTick = Math.floorDiv(now - origin, tickNanos);
+
+    // The current tick is checked again next time, for the leases expiring later within this tick
+    long firstTick = Math.max(nextTick, currentTick - WHEEL_SIZE + 1);
+    for (long tick = firstTick; tick <= currentTick; tick++) {
+      checkSlot(slot(tick), now);
+    }
+    nextTick = currentTick;
+  }
+
+  private void checkSlot(int slot, long now) {
+    // The iterator from ConcurrentHashMap.keySet() is guaranteed not to throw a ConcurrentModificationException
+    // We rely on that guarantee here because the leases may be renewed and rescheduled during the iteration.
+    for (Iterator<ClientDescriptor> it = wheel[slot].iterator(); it.hasNext(); ) {
+      ClientDescriptor clientDescriptor = it.next();
+      Lease lease = checkLease(clientDescriptor, now);
 
-    // The iterator from ConcurrentHashMap.iterator() is guaranteed not to throw a ConcurrentModificationException
-    // We rely on that guarantee here because we may modify the leases map inside the iteration.
-    for (ClientDescriptor clientDescriptor : leases.keySet()) {
-      checkLease(clientDescriptor, now);
+      if (lease instanceof ValidLease && slot((ValidLease) lease) == slot) {
+        continue; // Still valid and due in this slot, either later in this tick or in a later turn of the wheel
+      }
+
+      // Expired, disconnected, reconnecting or renewed since it was scheduled here
+      it.remove();
+
+      // The lease may have been renewed concurrently, and its scheduling undone by the removal above
+      Lease currentLease = leases.get(clientDescriptor);
+      if (currentLease instanceof ValidLease) {
+        schedule(clientDescriptor, (ValidLease) currentLease);
+      }
     }
   }
 
-  private void checkLease(ClientDescriptor clientDescriptor, long now) {
+  /**
+   * @return the lease of the client after the check
+   */
+  private Lease checkLease(ClientDescriptor clientDescriptor, long now) {
     while (true) {
       Lease lease = leases.get(clientDescriptor);
 
       if (lease == null) {
-        return; // Some other thread called checkLeases() and expired the lease
+        return null; // The client has disconnected
       }
 
       if (lease instanceof ExpiredLease) {
         if (LOGGER.isTraceEnabled()) {
           LOGGER.trace("Lease for client: " + clientDescriptor + " is an ExpiredLease");
         }
-        return; // Some other thread is expiring this lease - leave it alone
+        return lease; // Some other thread is expiring this lease - leave it alone
       }
 
       if (!lease.isExpired(now)) {
         if (LOGGER.isTraceEnabled()) {
           LOGGER.trace("Lease for client: " + clientDescriptor + " is still valid: " + lease);
         }
-        return; // The lease is still valid so no change needed
+        return lease; // The lease is still valid so no change needed
       }
 
       Lease expiredLease = new ExpiredLease();
@@ -136,7 +213,7 @@ public class LeaseState implements StateDumpable {
       if (replaced) {
         LOGGER.info("Closing connection to client: " + clientDescriptor + " due to lease expiry");
         clientConnectionCloser.closeClientConnection(clientDescriptor);
-        return;
+        return expiredLease;
       }
 
       // Otherwise loop because another thread updated the lease whilst we looked at it
@@ -35,6 +35,10 @@ class ValidLease implements Lease {
     return true;
   }
 
+  long getLeaseExpiry() {
+    return leaseExpiry;
+  }
+
   boolean expiresBefore(ValidLease newLease) {
     return leaseExpiry - newLease.leaseExpiry < 0;
   }
@@ -140,6 +140,42 @@ public class LeaseStateTest {
     verify(clientConnectionCloser).closeClientConnection(clientDescriptor1);
   }
 
+  @Test
+  public void renewedLeasesOnlyExpireWhenDue() {
+    leaseState = new LeaseState(timeSource, clientConnectionCloser, 10L);
+    assertTrue(leaseState.acquireLease(clientDescriptor1, 20L));
+    assertTrue(leaseState.acquireLease(clientDescriptor2, 20L));
+
+    timeSource.tickMillis(15L);
+    assertTrue(leaseState.acquireLease(clientDescriptor1, 20L));
+
+    timeSource.tickMillis(10L);
+    leaseState.checkLeases();
+    verify(clientConnectionCloser).closeClientConnection(clientDescriptor2);
+    verifyNoMoreInteractions(clientConnectionCloser);
+
+    timeSource.tickMillis(15L);
+    leaseState.checkLeases();
+    verify(clientConnectionCloser).closeClientConnection(clientDescriptor1);
+    verifyNoMoreInteractions(clientConnectionCloser);
+  }
+
+  @Test
+  public void leasesLongerThanATurnOfTheTimerWheelExpire() {
+    leaseState = new LeaseState(timeSource, clientConnectionCloser, 1L);
+    assertTrue(leaseState.acquireLease(clientDescriptor1, 5000L));
+
+    for (int i = 0; i < 49; i++) {
+      timeSource.tickMillis(100L);
+      leaseState.checkLeases();
+    }
+    verifyNoMoreInteractions(clientConnectionCloser);
+
+    timeSource.tickMillis(101L);
+    leaseState.checkLeases();
+    verify(clientConnectionCloser).closeClientConnection(clientDescriptor1);
+  }
+
   @Test
   public void testStateDump() {
     MockStateDumpCollector stateDumper = new MockStateDumpCollector();
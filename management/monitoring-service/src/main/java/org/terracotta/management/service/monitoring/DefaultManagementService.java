@@ -70,7 +70,7 @@ class DefaultManagementService implements ManagementService, TopologyEventListen
   @Override
   public Cluster readTopology() {
     LOGGER.trace("[{}] readTopology()", consumerId);
-    return topologyService.getClusterCopy();
+    return topologyService.getClusterSnapshot();
   }
 
   @Override
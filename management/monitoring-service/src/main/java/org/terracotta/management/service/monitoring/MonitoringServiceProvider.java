@@ -93,7 +93,7 @@ public class MonitoringServiceProvider implements ServiceProvider, Closeable {
     }
 
     if (topologyService.isCurrentServerActive()) {
-      dump.addState("cluster", topologyService.getClusterCopy().toMap());
+      dump.addState("cluster", topologyService.getClusterSnapshot().toMap());
     } else {
       dump.addState("status", "This is a passive server, so it is unaware of connected clients and other stripe members.");
     }
@@ -56,6 +56,8 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -89,6 +91,11 @@ class TopologyService implements PlatformListener {
 
   private volatile Server currentActive;
 
+  // The cluster above is the working copy, only updated by the platform callbacks.
+  // Readers share an immutable copy of it, which is only rebuilt on the first read following a change.
+  private final AtomicLong topologyVersion = new AtomicLong();
+  private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
   TopologyService(FiringService firingService, PlatformConfiguration platformConfiguration) {
     org.terracotta.dynamic_config.api.service.TopologyService topologyService =
         platformConfiguration.getExtendedConfiguration(org.terracotta.dynamic_config.api.service.TopologyService.class).iterator().next();
@@ -106,6 +113,7 @@ class TopologyService implements PlatformListener {
   @Override
   public synchronized void serverDidBecomeActive(PlatformServer self) {
     LOGGER.trace("[0] serverDidBecomeActive({})", self.getServerName());
+    topologyChanged();
 
     Server server = Server.create(self.getServerName())
         .setBindAddress(self.getBindAddress())
@@ -133,6 +141,7 @@ class TopologyService implements PlatformListener {
   @Override
   public synchronized void serverDidJoinStripe(PlatformServer platformServer) {
     LOGGER.trace("[0] serverDidJoinStripe({})", platformServer.getServerName());
+    topologyChanged();
 
     Server server = Server.create(platformServer.getServerName())
         .setBindAddress(platformServer.getBindAddress())
@@ -153,6 +162,7 @@ class TopologyService implements PlatformListener {
   @Override
   public synchronized void serverDidLeaveStripe(PlatformServer platformServer) {
     LOGGER.trace("[0] serverDidLeaveStripe({})", platformServer.getServerName());
+    topologyChanged();
 
     stripe.getServerByName(platformServer.getServerName()).ifPresent(server -> {
       Context context = server.getContext();
@@ -167,6 +177,7 @@ class TopologyService implements PlatformListener {
   @Override
   public synchronized void serverEntityCreated(PlatformServer sender, PlatformEntity platformEntity) {
     LOGGER.trace("[0] serverEntityCreated({}, {})", sender.getServerName(), platformEntity);
+    topologyChanged();
 
     if (platformEntity.isActive && !sender.getServerName().equals(getActiveServer().getServerName())) {
       Utils.warnOrAssert(LOGGER, "[0] serverEntityCreated({}, {}): Server is not current active server but it created an active entity", sender.getServerName(), platformEntity);
@@ -209,6 +220,7 @@ class TopologyService implements PlatformListener {
   @Override
   public synchronized void serverEntityDestroyed(PlatformServer sender, PlatformEntity platformEntity) {
     LOGGER.trace("[0] serverEntityDestroyed({}, {})", sender.getServerName(), platformEntity);
+    topologyChanged();
 
     if (platformEntity.isActive && !sender.getServerName().equals(getActiveServer().getServerName())) {
       Utils.warnOrAssert(LOGGER, "[0] serverEntityDestroyed({}, {}): Server is not current active server but it destroyed an active entity", sender.getServerName(), platformEntity);
@@ -243,6 +255,7 @@ class TopologyService implements PlatformListener {
   @Override
   public synchronized void clientConnected(PlatformServer currentActive, PlatformConnectedClient platformConnectedClient) {
     LOGGER.trace("[0] clientConnected({})", platformConnectedClient);
+    topologyChanged();
 
     stripe.getServerByName(currentActive.getServerName())
         .ifPresent(server -> {
@@ -264,6 +277,7 @@ class TopologyService implements PlatformListener {
   @Override
   public synchronized void clientAddProperty(PlatformConnectedClient platformClient, String key, String value) {
     LOGGER.trace("[0] client property added ({}, key:{}, value:{})", platformClient, key, value);
+    topologyChanged();
 
     stripe.getServerByName(currentActive.getServerName())
         .ifPresent(server -> {
@@ -280,6 +294,7 @@ class TopologyService implements PlatformListener {
   @Override
   public synchronized void clientDisconnected(PlatformServer currentActive, PlatformConnectedClient platformConnectedClient) {
     LOGGER.trace("[0] clientDisconnected({})", platformConnectedClient);
+    topologyChanged();
 
     stripe.getServerByName(currentActive.getServerName())
         .ifPresent(server -> {
@@ -299,6 +314,7 @@ class TopologyService implements PlatformListener {
   @Override
   public synchronized void clientFetch(PlatformConnectedClient platformConnectedClient, PlatformEntity platformEntity, ClientDescriptor clientDescriptor) {
     LOGGER.trace("[0] clientFetch({}, {})", platformConnectedClient, platformEntity);
+    topologyChanged();
 
     Server currentActive = getActiveServer();
     ClientIdentifier clientIdentifier = toClientIdentifier(platformConnectedClient);
@@ -319,6 +335,7 @@ class TopologyService implements PlatformListener {
   @Override
   public synchronized void clientUnfetch(PlatformConnectedClient platformConnectedClient, PlatformEntity platformEntity, ClientDescriptor clientDescriptor) {
     LOGGER.trace("[0] clientUnfetch({}, {})", platformConnectedClient, platformEntity);
+    topologyChanged();
 
     Server currentActive = getActiveServer();
     ClientIdentifier clientIdentifier = toClientIdentifier(platformConnectedClient);
@@ -340,6 +357,7 @@ class TopologyService implements PlatformListener {
   @Override
   public synchronized void serverStateChanged(PlatformServer sender, ServerState serverState) {
     LOGGER.trace("[0] serverStateChanged({}, {})", sender.getServerName(), serverState.getState());
+    topologyChanged();
 
     stripe.getServerByName(sender.getServerName()).ifPresent(server -> {
       Server.State oldState = server.getState();
@@ -403,7 +421,10 @@ class TopologyService implements PlatformListener {
     whenFetchClient(consumerId, clientDescriptor).executeOrDelay("client-registry", client -> {
       boolean hadRegistry = client.getManagementRegistry().isPresent();
       LOGGER.trace("[{}] willSetClientManagementRegistry({}, {})", consumerId, clientDescriptor, newRegistry);
-      client.setManagementRegistry(newRegistry);
+      synchronized (this) {
+        topologyChanged();
+        client.setManagementRegistry(newRegistry);
+      }
       if (!hadRegistry) {
         LOGGER.info("[{}] New management registry received from client {}", consumerId, clientDescriptor);
         firingService.fireNotification(new ContextualNotification(client.getContext(), Notification.CLIENT_REGISTRY_AVAILABLE.name()));
@@ -420,7 +441,10 @@ class TopologyService implements PlatformListener {
       Set<String> newTags = new HashSet<>(Arrays.asList(tags));
       if (!currtags.equals(newTags)) {
         LOGGER.trace("[{}] willSetClientTags({}, {})", consumerId, clientDescriptor, Arrays.toString(tags));
-        client.setTags(tags);
+        synchronized (this) {
+          topologyChanged();
+          client.setTags(tags);
+        }
         firingService.fireNotification(new ContextualNotification(client.getContext(), Notification.CLIENT_TAGS_UPDATED.name()));
       }
     });
@@ -473,7 +497,10 @@ class TopologyService implements PlatformListener {
         LOGGER.trace("[{}] setManagementRegistry({}, {})", consumerId, serverName, names);
       }
       boolean hadRegistry = serverEntity.getManagementRegistry().isPresent();
-      serverEntity.setManagementRegistry(newRegistry);
+      synchronized (this) {
+        topologyChanged();
+        serverEntity.setManagementRegistry(newRegistry);
+      }
       if (!hadRegistry) {
         firingService.fireNotification(new ContextualNotification(serverEntity.getContext(), Notification.ENTITY_REGISTRY_AVAILABLE.name()));
       }
@@ -510,7 +537,32 @@ class TopologyService implements PlatformListener {
         .map(Client::getContext);
   }
 
-  synchronized Cluster getClusterCopy() {
+  /**
+   * @return the current topology, shared between all the callers, which must not modify it
+   */
+  Cluster getClusterSnapshot() {
+    Snapshot current = snapshot.get();
+    if (current != null && current.version == topologyVersion.get()) {
+      return current.cluster;
+    }
+    Snapshot updated;
+    synchronized (this) {
+      // the version is read before the copy: a concurrent change will be seen by the next reader
+      updated = new Snapshot(topologyVersion.get(), copy(cluster));
+    }
+    snapshot.accumulateAndGet(updated, (prev, next) -> prev != null && prev.version > next.version ? prev : next);
+    return updated.cluster;
+  }
+
+  /**
+   * Called before any change of the topology done by the platform callbacks, so that the listeners of the
+   * notifications they fire never read the previous snapshot
+   */
+  private void topologyChanged() {
+    topologyVersion.incrementAndGet();
+  }
+
+  private static Cluster copy(Cluster cluster) {
     try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
       try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
         oos.writeObject(cluster);
@@ -560,6 +612,16 @@ class TopologyService implements PlatformListener {
     return entities.computeIfAbsent(consumerId, key -> new ExecutionChain<>());
   }
 
+  private static final class Snapshot {
+    final long version;
+    final Cluster cluster;
+
+    Snapshot(long version, Cluster cluster) {
+      this.version = version;
+      this.cluster = cluster;
+    }
+  }
+
   private static ClientIdentifier toClientIdentifier(PlatformConnectedClient connection) {
     return ClientIdentifier.create(
         connection.clientPID,
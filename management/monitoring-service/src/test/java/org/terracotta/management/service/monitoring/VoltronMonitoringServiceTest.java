@@ -61,6 +61,8 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.stream.Collectors;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -207,6 +209,18 @@ public class VoltronMonitoringServiceTest {
     assertThat(notificationTypes(messages), equalTo(Arrays.asList("CLIENT_DISCONNECTED")));
   }
 
+  @Test
+  public void test_topology_shared_until_changed() throws Exception {
+    Cluster cluster = managementService.readTopology();
+    assertThat(managementService.readTopology(), sameInstance(cluster));
+
+    activePlatformListener.addNode(active, CLIENTS_PATH, "client-2", new PlatformConnectedClient("uuid-2", "name", InetAddress.getByName("localhost"), 1235, InetAddress.getByName("localhost"), 5679, 222));
+    Cluster updated = managementService.readTopology();
+    assertThat(updated, not(sameInstance(cluster)));
+    assertThat(updated.getClientCount(), equalTo(cluster.getClientCount() + 1));
+    assertThat(managementService.readTopology(), sameInstance(updated));
+  }
+
   @Test
   public void test_add_new_entity() throws Exception {
     activePlatformListener.addNode(active, ENTITIES_PATH, "entity-2", new PlatformEntity("entityType", "entityName-2", 2, true));
@@ -15,9 +15,14 @@
  */
 package org.terracotta.runnel;
 
+import org.terracotta.runnel.decoding.IndexedStructDecoder;
+import org.terracotta.runnel.decoding.LazyStructDecoder;
 import org.terracotta.runnel.decoding.StructDecoder;
+import org.terracotta.runnel.decoding.fields.ArrayField;
+import org.terracotta.runnel.decoding.fields.EnumField;
 import org.terracotta.runnel.decoding.fields.Field;
 import org.terracotta.runnel.decoding.fields.StructField;
+import org.terracotta.runnel.encoding.IndexedStructEncoder;
 import org.terracotta.runnel.encoding.StructEncoder;
 import org.terracotta.runnel.utils.ReadBuffer;
 
@@ -65,6 +70,78 @@ public class Struct {
     return new StructDecoder<Void>(root, new ReadBuffer(byteBuffer));
   }
 
+  /**
+   * Create a non-thread safe decoder allowing random access to the fields of the present structure.
+   * The structure is scanned once to locate its fields, which are only decoded when read.
+   * Note: this method is thread-safe.
+   * @param byteBuffer the byte buffer containing the data to be decoded, its position gets moved after the structure.
+   * @return the decoder.
+   */
+  public LazyStructDecoder lazyDecoder(ByteBuffer byteBuffer) {
+    root.checkFullyInitialized();
+    return new LazyStructDecoder(root, byteBuffer);
+  }
+
+  /**
+   * Resolve a field of the present structure, for use with the indexed encoder and decoder.
+   * Resolved fields are immutable and can be kept in constants and shared across threads.
+   * Note: this method is thread-safe.
+   * @param name the field name.
+   * @param fieldClazz the expected field type.
+   * @return the field.
+   */
+  public <F extends Field> F field(String name, Class<F> fieldClazz) {
+    root.checkFullyInitialized();
+    return root.getMetadata().resolveField(name, fieldClazz, null);
+  }
+
+  /**
+   * Resolve an enum field of the present structure, for use with the indexed encoder and decoder.
+   * Note: this method is thread-safe.
+   * @param name the field name.
+   * @param <E> the enumeration's actual type.
+   * @return the field.
+   */
+  @SuppressWarnings("unchecked")
+  public <E> EnumField<E> enumField(String name) {
+    return (EnumField<E>) field(name, EnumField.class);
+  }
+
+  /**
+   * Resolve an array field of the present structure, for use with the indexed encoder and decoder.
+   * Note: this method is thread-safe.
+   * @param name the field name.
+   * @param subFieldClazz the expected type of the array's elements.
+   * @return the field.
+   */
+  public ArrayField arrayField(String name, Class<? extends Field> subFieldClazz) {
+    root.checkFullyInitialized();
+    return root.getMetadata().resolveField(name, ArrayField.class, subFieldClazz);
+  }
+
+  /**
+   * Create a non-thread safe encoder writing straight into the passed byte buffer, with fields previously resolved
+   * with {@link #field(String, Class)}.
+   * Note: this method is thread-safe.
+   * @param byteBuffer the byte buffer to write the encoded structure into, starting at its current position.
+   * @return the encoder.
+   */
+  public IndexedStructEncoder indexedEncoder(ByteBuffer byteBuffer) {
+    root.checkFullyInitialized();
+    return new IndexedStructEncoder(byteBuffer);
+  }
+
+  /**
+   * Create a non-thread safe decoder reading with fields previously resolved with {@link #field(String, Class)}.
+   * Note: this method is thread-safe.
+   * @param byteBuffer the byte buffer containing the data to be decoded.
+   * @return the decoder.
+   */
+  public IndexedStructDecoder indexedDecoder(ByteBuffer byteBuffer) {
+    root.checkFullyInitialized();
+    return new IndexedStructDecoder(byteBuffer);
+  }
+
   /**
    * Recursively decode a byte buffer according to the present structure and print the decoded outcome to a print stream.
    * Note: this method is thread-safe.
@@ -0,0 +1,373 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.decoding;
+
+import org.terracotta.runnel.decoding.fields.ArrayField;
+import org.terracotta.runnel.decoding.fields.BoolField;
+import org.terracotta.runnel.decoding.fields.ByteBufferField;
+import org.terracotta.runnel.decoding.fields.CharField;
+import org.terracotta.runnel.decoding.fields.EnumField;
+import org.terracotta.runnel.decoding.fields.Field;
+import org.terracotta.runnel.decoding.fields.FloatingPoint64Field;
+import org.terracotta.runnel.decoding.fields.Int32Field;
+import org.terracotta.runnel.decoding.fields.Int64Field;
+import org.terracotta.runnel.decoding.fields.StringField;
+import org.terracotta.runnel.decoding.fields.StructField;
+import org.terracotta.runnel.utils.CorruptDataException;
+import org.terracotta.runnel.utils.LimitReachedException;
+import org.terracotta.runnel.utils.StringTool;
+
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A decoder reading structured data described by a {@link org.terracotta.runnel.Struct} with fields resolved ahead
+ * of time with {@link org.terracotta.runnel.Struct#field(String, Class)}.
+ * <p>
+ * Primitive values are returned unboxed: their accessors throw {@link NoSuchElementException} when the field is
+ * absent from the data, which can be checked beforehand with {@link #has(Field)}. Object values are returned as
+ * null when absent. Sub-structures and arrays are read in place, without allocating any nested decoder.
+ * <p>
+ * Like with {@link StructDecoder}, fields must be read in the order they were defined in the structure.
+ * Note: Instances of this class are not thread-safe.
+ */
+public class IndexedStructDecoder {
+
+  private static final int INITIAL_DEPTH = 8;
+  private static final int STRUCT = -1;
+
+  private final ByteBuffer byteBuffer;
+
+  // one entry per open structure or array, the root structure being at depth 0
+  private int[] limits = new int[INITIAL_DEPTH];
+  private int[] readAheadIndexes = new int[INITIAL_DEPTH];
+  private int[] lastIndexes = new int[INITIAL_DEPTH];
+  private int[] remainingElements = new int[INITIAL_DEPTH];
+  private int depth;
+
+  public IndexedStructDecoder(ByteBuffer byteBuffer) {
+    this.byteBuffer = byteBuffer;
+    this.depth = -1;
+    push(STRUCT);
+  }
+
+  /**
+   * Check if a field is present in the data.
+   * @param field the field.
+   * @return true if the field can be read.
+   */
+  public boolean has(Field field) {
+    if (remainingElements[depth] != STRUCT) {
+      throw new IllegalStateException("Array elements must be read with element accessors");
+    }
+    int index = field.index();
+    if (index < lastIndexes[depth]) {
+      throw new IllegalArgumentException("No such field left : '" + field.name() + "'");
+    }
+    lastIndexes[depth] = index;
+
+    int limit = limits[depth];
+    int readAheadIndex = readAheadIndexes[depth];
+    while (true) {
+      if (readAheadIndex < 0) {
+        if (byteBuffer.position() == limit) {
+          return false;
+        }
+        readAheadIndex = readVlqInt();
+        readAheadIndexes[depth] = readAheadIndex;
+      }
+      if (readAheadIndex >= index) {
+        return readAheadIndex == index;
+      }
+      // skip all fields with a lower index than the requested field's
+      skip(readVlqInt());
+      readAheadIndex = readAheadIndexes[depth] = -1;
+    }
+  }
+
+  public boolean bool(BoolField field) {
+    moveTo(field);
+    return readBool();
+  }
+
+  public char chr(CharField field) {
+    moveTo(field);
+    return readChr();
+  }
+
+  public int int32(Int32Field field) {
+    moveTo(field);
+    return readInt32();
+  }
+
+  public long int64(Int64Field field) {
+    moveTo(field);
+    return readInt64();
+  }
+
+  public double fp64(FloatingPoint64Field field) {
+    moveTo(field);
+    return readFp64();
+  }
+
+  /**
+   * Decode an enumeration.
+   * @param field the field.
+   * @param <E> the enumeration's actual type.
+   * @return the decoded value, or null if it was absent from the data or could not be mapped.
+   */
+  public <E> E enm(EnumField<E> field) {
+    if (!has(field)) {
+      return null;
+    }
+    consumeIndex();
+    readVlqInt();
+    return field.getEnumMapping().toEnum(readVlqInt());
+  }
+
+  public String string(StringField field) {
+    if (!has(field)) {
+      return null;
+    }
+    consumeIndex();
+    return readString(readVlqInt());
+  }
+
+  public ByteBuffer byteBuffer(ByteBufferField field) {
+    if (!has(field)) {
+      return null;
+    }
+    consumeIndex();
+    return readByteBuffer(readVlqInt());
+  }
+
+  /**
+   * Start decoding a sub-structure, all following reads being made from it until {@link #end()} is called.
+   * @param field the structure field, resolved from the parent structure.
+   * @return true if the sub-structure was present, false otherwise in which case {@link #end()} must not be called.
+   */
+  public boolean struct(StructField field) {
+    if (!has(field)) {
+      return false;
+    }
+    consumeIndex();
+    push(STRUCT);
+    return true;
+  }
+
+  /**
+   * Start decoding an array. Value elements are read with the {@code *Value()} accessors while sub-structure elements
+   * are started with {@link #next()}. Whatever its elements, the array must be ended with {@link #end()}.
+   * @param field the array field, resolved from the parent structure.
+   * @return the array length, or -1 if it was absent in which case {@link #end()} must not be called.
+   */
+  public int array(ArrayField field) {
+    if (!has(field)) {
+      return -1;
+    }
+    consumeIndex();
+    push(0);
+    int length = readVlqInt();
+    remainingElements[depth] = length;
+    return length;
+  }
+
+  /**
+   * Start decoding the next sub-structure element of the current array, until {@link #end()} is called.
+   */
+  public void next() {
+    nextElement();
+    push(STRUCT);
+  }
+
+  /**
+   * Skip whatever was not read from the current sub-structure or array and go back to its parent.
+   */
+  public void end() {
+    if (depth == 0) {
+      throw new IllegalStateException("Cannot end root decoder");
+    }
+    byteBuffer.position(limits[depth]);
+    depth--;
+  }
+
+  public boolean boolValue() {
+    nextElement();
+    return readBool();
+  }
+
+  public char chrValue() {
+    nextElement();
+    return readChr();
+  }
+
+  public int int32Value() {
+    nextElement();
+    return readInt32();
+  }
+
+  public long int64Value() {
+    nextElement();
+    return readInt64();
+  }
+
+  public double fp64Value() {
+    nextElement();
+    return readFp64();
+  }
+
+  public String stringValue() {
+    nextElement();
+    return readString(readVlqInt());
+  }
+
+  public ByteBuffer byteBufferValue() {
+    nextElement();
+    return readByteBuffer(readVlqInt());
+  }
+
+  private void moveTo(Field field) {
+    if (!has(field)) {
+      throw new NoSuchElementException("Field '" + field.name() + "' was not found in stream");
+    }
+    consumeIndex();
+  }
+
+  private void consumeIndex() {
+    readAheadIndexes[depth] = -1;
+  }
+
+  private void nextElement() {
+    if (remainingElements[depth] <= 0) {
+      throw new IllegalStateException(remainingElements[depth] == STRUCT ? "Not decoding an array" : "No array element left");
+    }
+    remainingElements[depth]--;
+  }
+
+  private boolean readBool() {
+    checkSize(1);
+    return byteBuffer.get() != (byte) 0;
+  }
+
+  private char readChr() {
+    checkSize(2);
+    return byteBuffer.getChar();
+  }
+
+  private int readInt32() {
+    checkSize(4);
+    return byteBuffer.getInt();
+  }
+
+  private long readInt64() {
+    checkSize(8);
+    return byteBuffer.getLong();
+  }
+
+  private double readFp64() {
+    checkSize(8);
+    return byteBuffer.getDouble();
+  }
+
+  private void checkSize(int expected) {
+    int size = readVlqInt();
+    if (size != expected) {
+      throw new CorruptDataException("Expected field size of " + expected + ", read : " + size);
+    }
+    ensureAvailable(size);
+  }
+
+  private void push(int elements) {
+    int limit;
+    if (depth < 0) {
+      limit = byteBuffer.limit();
+    } else {
+      limit = limits[depth];
+    }
+    int size = readVlqInt();
+    int newLimit = byteBuffer.position() + size;
+    if (newLimit > limit) {
+      throw new LimitReachedException();
+    }
+
+    depth++;
+    if (depth == limits.length) {
+      limits = Arrays.copyOf(limits, depth * 2);
+      readAheadIndexes = Arrays.copyOf(readAheadIndexes, depth * 2);
+      lastIndexes = Arrays.copyOf(lastIndexes, depth * 2);
+      remainingElements = Arrays.copyOf(remainingElements, depth * 2);
+    }
+    limits[depth] = newLimit;
+    readAheadIndexes[depth] = -1;
+    lastIndexes[depth] = -1;
+    remainingElements[depth] = elements;
+  }
+
+  private int readVlqInt() {
+    int value = 0;
+    for (int i = 0; i < 5; i++) {
+      ensureAvailable(1);
+      int b = byteBuffer.get();
+      value |= b & 0x7F;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+      value <<= 7;
+    }
+    throw new IllegalArgumentException("Cannot decode value greater than Integer.MAX_VALUE");
+  }
+
+  private void skip(int size) {
+    if (size < 0) {
+      throw new IllegalArgumentException("size cannot be < 0");
+    }
+    ensureAvailable(size);
+    byteBuffer.position(byteBuffer.position() + size);
+  }
+
+  private void ensureAvailable(int size) {
+    int limit = depth < 0 ? byteBuffer.limit() : limits[depth];
+    if (byteBuffer.position() + size > limit) {
+      throw new LimitReachedException();
+    }
+  }
+
+  private ByteBuffer readByteBuffer(int size) {
+    ensureAvailable(size);
+    ByteBuffer slice = byteBuffer.slice();
+    slice.limit(size);
+    byteBuffer.position(byteBuffer.position() + size);
+    return slice;
+  }
+
+  private String readString(int size) {
+    ByteBuffer binary = readByteBuffer(size);
+    try {
+      String ret = StringTool.attemptDecodeAsAscii(binary);
+      if (ret != null) {
+        return ret;
+      }
+      return StringTool.decodeString(binary, binary.remaining());
+    } catch (UTFDataFormatException e) {
+      CorruptDataException cde = new CorruptDataException("Unexpected encoding");
+      cde.addSuppressed(e);
+      throw cde;
+    }
+  }
+
+}
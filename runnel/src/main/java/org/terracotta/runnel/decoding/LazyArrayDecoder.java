@@ -0,0 +1,54 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.decoding;
+
+import org.terracotta.runnel.decoding.fields.ValueField;
+import org.terracotta.runnel.utils.ReadBuffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A decoder allowing random access to the elements of an array of values.
+ * Note: Instances of this class are not thread-safe.
+ */
+public class LazyArrayDecoder<T> {
+
+  private final ValueField<T> arrayedField;
+  private final ByteBuffer byteBuffer;
+  private final int[] positions;
+
+  LazyArrayDecoder(ValueField<T> arrayedField, ByteBuffer byteBuffer, int position) {
+    this.arrayedField = arrayedField;
+    this.byteBuffer = byteBuffer;
+    this.positions = LazyStructArrayDecoder.scanElements(byteBuffer, position);
+  }
+
+  public int length() {
+    return positions.length;
+  }
+
+  /**
+   * Decode an element.
+   * @param i the element's position in the array.
+   * @return the decoded element.
+   * @throws IndexOutOfBoundsException if there is no such element.
+   */
+  public T value(int i) {
+    byteBuffer.position(positions[i]);
+    return arrayedField.decode(new ReadBuffer(byteBuffer));
+  }
+
+}
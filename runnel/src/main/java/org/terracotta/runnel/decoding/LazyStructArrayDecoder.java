@@ -0,0 +1,77 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.decoding;
+
+import org.terracotta.runnel.decoding.fields.StructField;
+import org.terracotta.runnel.utils.CorruptDataException;
+import org.terracotta.runnel.utils.ReadBuffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A decoder allowing random access to the elements of an array of structures.
+ * Elements are only scanned when they are accessed.
+ * Note: Instances of this class are not thread-safe.
+ */
+public class LazyStructArrayDecoder {
+
+  private final StructField field;
+  private final ByteBuffer byteBuffer;
+  private final int[] positions;
+
+  LazyStructArrayDecoder(StructField field, ByteBuffer byteBuffer, int position) {
+    this.field = field;
+    this.byteBuffer = byteBuffer;
+    this.positions = scanElements(byteBuffer, position);
+  }
+
+  public int length() {
+    return positions.length;
+  }
+
+  /**
+   * Create a decoder for an element.
+   * @param i the element's position in the array.
+   * @return the element's decoder.
+   * @throws IndexOutOfBoundsException if there is no such element.
+   */
+  public LazyStructDecoder get(int i) {
+    return new LazyStructDecoder(field, byteBuffer, positions[i]);
+  }
+
+  /**
+   * Scan an array, all elements of which being made of a size followed by that many bytes.
+   * @return the position of every element's size.
+   */
+  static int[] scanElements(ByteBuffer byteBuffer, int position) {
+    byteBuffer.position(position);
+    ReadBuffer readBuffer = new ReadBuffer(byteBuffer);
+    int size = readBuffer.getVlqInt();
+    readBuffer = readBuffer.limit(size);
+    int length = readBuffer.getVlqInt();
+    if (length > size) {
+      throw new CorruptDataException("Array length " + length + " exceeds its size of " + size + " bytes");
+    }
+
+    int[] positions = new int[length];
+    for (int i = 0; i < length; i++) {
+      positions[i] = byteBuffer.position();
+      readBuffer.skip(readBuffer.getVlqInt());
+    }
+    return positions;
+  }
+
+}
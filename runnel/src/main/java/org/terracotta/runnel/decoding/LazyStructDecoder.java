@@ -0,0 +1,221 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.decoding;
+
+import org.terracotta.runnel.decoding.fields.ArrayField;
+import org.terracotta.runnel.decoding.fields.BoolField;
+import org.terracotta.runnel.decoding.fields.ByteBufferField;
+import org.terracotta.runnel.decoding.fields.CharField;
+import org.terracotta.runnel.decoding.fields.EnumField;
+import org.terracotta.runnel.decoding.fields.Field;
+import org.terracotta.runnel.decoding.fields.FloatingPoint64Field;
+import org.terracotta.runnel.decoding.fields.Int32Field;
+import org.terracotta.runnel.decoding.fields.Int64Field;
+import org.terracotta.runnel.decoding.fields.StringField;
+import org.terracotta.runnel.decoding.fields.StructField;
+import org.terracotta.runnel.decoding.fields.ValueField;
+import org.terracotta.runnel.metadata.Metadata;
+import org.terracotta.runnel.utils.CorruptDataException;
+import org.terracotta.runnel.utils.ReadBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A decoder allowing random access to the fields of structured data described by a {@link org.terracotta.runnel.Struct}.
+ * <p>
+ * The structure is scanned once when the decoder is created to build a table of the offsets of its fields, skipping
+ * over their contents. Fields can then be read in any order and any number of times, only the fields actually read
+ * being decoded. Fields with an index unknown to the structure are skipped like {@link org.terracotta.runnel.Struct#dump}
+ * does, so data encoded by a newer or older version of the structure can be read.
+ * Note: Instances of this class are not thread-safe.
+ */
+public class LazyStructDecoder implements PrimitiveDecodingSupport {
+
+  private static final int INITIAL_CAPACITY = 8;
+
+  private final Metadata metadata;
+  private final ByteBuffer byteBuffer;
+  private int[] fieldIndexes = new int[INITIAL_CAPACITY];
+  private int[] fieldPositions = new int[INITIAL_CAPACITY];
+  private int fieldCount;
+
+  /**
+   * Create a decoder for the structure starting at the current position of the passed byte buffer.
+   * The position of the passed byte buffer is moved right after the structure.
+   * @param structField the structure field.
+   * @param byteBuffer the byte buffer containing the structure.
+   */
+  public LazyStructDecoder(StructField structField, ByteBuffer byteBuffer) {
+    this(structField, byteBuffer.duplicate(), byteBuffer.position());
+    byteBuffer.position(this.byteBuffer.position());
+  }
+
+  LazyStructDecoder(StructField structField, ByteBuffer byteBuffer, int position) {
+    this.metadata = structField.getMetadata();
+    this.byteBuffer = byteBuffer;
+    scan(position);
+  }
+
+  private void scan(int position) {
+    byteBuffer.position(position);
+    ReadBuffer readBuffer = new ReadBuffer(byteBuffer);
+    int size = readBuffer.getVlqInt();
+    readBuffer = readBuffer.limit(size);
+
+    int lastIndex = -1;
+    while (!readBuffer.limitReached()) {
+      int index = readBuffer.getVlqInt();
+      if (index <= lastIndex) {
+        throw new CorruptDataException("Field indexes are not in growing order : " + index + " after " + lastIndex);
+      }
+      lastIndex = index;
+      if (fieldCount == fieldIndexes.length) {
+        fieldIndexes = Arrays.copyOf(fieldIndexes, fieldCount * 2);
+        fieldPositions = Arrays.copyOf(fieldPositions, fieldCount * 2);
+      }
+      fieldIndexes[fieldCount] = index;
+      fieldPositions[fieldCount] = byteBuffer.position();
+      fieldCount++;
+      readBuffer.skip(readBuffer.getVlqInt());
+    }
+  }
+
+  /**
+   * Check if a field is present in the data.
+   * @param name the field name.
+   * @return true if the field is present.
+   */
+  public boolean has(String name) {
+    return position(metadata.resolveField(name)) >= 0;
+  }
+
+  @Override
+  public Boolean bool(String name) {
+    return value(metadata.resolveField(name, BoolField.class, null));
+  }
+
+  @Override
+  public Character chr(String name) {
+    return value(metadata.resolveField(name, CharField.class, null));
+  }
+
+  @Override
+  public Integer int32(String name) {
+    return value(metadata.resolveField(name, Int32Field.class, null));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <E> Enm<E> enm(String name) {
+    Enm<E> enm = (Enm<E>) value(metadata.resolveField(name, EnumField.class, null));
+    if (enm == null) {
+      return new Enm<E>(name);
+    }
+    return enm;
+  }
+
+  @Override
+  public Long int64(String name) {
+    return value(metadata.resolveField(name, Int64Field.class, null));
+  }
+
+  @Override
+  public Double fp64(String name) {
+    return value(metadata.resolveField(name, FloatingPoint64Field.class, null));
+  }
+
+  @Override
+  public String string(String name) {
+    return value(metadata.resolveField(name, StringField.class, null));
+  }
+
+  @Override
+  public ByteBuffer byteBuffer(String name) {
+    return value(metadata.resolveField(name, ByteBufferField.class, null));
+  }
+
+  public LazyArrayDecoder<Boolean> bools(String name) {
+    return valueArray(name, BoolField.class);
+  }
+
+  public LazyArrayDecoder<Character> chrs(String name) {
+    return valueArray(name, CharField.class);
+  }
+
+  public LazyArrayDecoder<Integer> int32s(String name) {
+    return valueArray(name, Int32Field.class);
+  }
+
+  public LazyArrayDecoder<Long> int64s(String name) {
+    return valueArray(name, Int64Field.class);
+  }
+
+  public LazyArrayDecoder<Double> fp64s(String name) {
+    return valueArray(name, FloatingPoint64Field.class);
+  }
+
+  public LazyArrayDecoder<String> strings(String name) {
+    return valueArray(name, StringField.class);
+  }
+
+  public LazyArrayDecoder<ByteBuffer> byteBuffers(String name) {
+    return valueArray(name, ByteBufferField.class);
+  }
+
+  public LazyStructDecoder struct(String name) {
+    StructField field = metadata.resolveField(name, StructField.class, null);
+    int position = position(field);
+    if (position < 0) {
+      return null;
+    }
+    return new LazyStructDecoder(field, byteBuffer, position);
+  }
+
+  public LazyStructArrayDecoder structs(String name) {
+    ArrayField field = metadata.resolveField(name, ArrayField.class, StructField.class);
+    int position = position(field);
+    if (position < 0) {
+      return null;
+    }
+    return new LazyStructArrayDecoder((StructField) field.subField(), byteBuffer, position);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> LazyArrayDecoder<T> valueArray(String name, Class<? extends ValueField<T>> clazz) {
+    ArrayField field = metadata.resolveField(name, ArrayField.class, clazz);
+    int position = position(field);
+    if (position < 0) {
+      return null;
+    }
+    return new LazyArrayDecoder<T>((ValueField<T>) field.subField(), byteBuffer, position);
+  }
+
+  private <T> T value(ValueField<T> field) {
+    int position = position(field);
+    if (position < 0) {
+      return null;
+    }
+    byteBuffer.position(position);
+    return field.decode(new ReadBuffer(byteBuffer));
+  }
+
+  private int position(Field field) {
+    int i = Arrays.binarySearch(fieldIndexes, 0, fieldCount, field.index());
+    return i < 0 ? -1 : fieldPositions[i];
+  }
+
+}
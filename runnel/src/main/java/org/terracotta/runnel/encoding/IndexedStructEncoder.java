@@ -0,0 +1,311 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.encoding;
+
+import org.terracotta.runnel.decoding.fields.ArrayField;
+import org.terracotta.runnel.decoding.fields.BoolField;
+import org.terracotta.runnel.decoding.fields.ByteBufferField;
+import org.terracotta.runnel.decoding.fields.CharField;
+import org.terracotta.runnel.decoding.fields.EnumField;
+import org.terracotta.runnel.decoding.fields.Field;
+import org.terracotta.runnel.decoding.fields.FloatingPoint64Field;
+import org.terracotta.runnel.decoding.fields.Int32Field;
+import org.terracotta.runnel.decoding.fields.Int64Field;
+import org.terracotta.runnel.decoding.fields.StringField;
+import org.terracotta.runnel.decoding.fields.StructField;
+import org.terracotta.runnel.utils.VLQ;
+import org.terracotta.runnel.utils.WriteBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An encoder writing structured data described by a {@link org.terracotta.runnel.Struct} straight into a byte buffer.
+ * <p>
+ * Fields are referenced with the instances returned by {@link org.terracotta.runnel.Struct#field(String, Class)}
+ * instead of their names, so no lookup nor intermediate data holder is needed. Nested structures and arrays are
+ * written in place, their size being back-patched when they are ended; for that reason, the buffer must have a few
+ * bytes of headroom left after the encoded structure.
+ * <p>
+ * The produced bytes are identical to the ones produced by {@link StructEncoder}.
+ * Note: Instances of this class are not thread-safe.
+ */
+public class IndexedStructEncoder {
+
+  private static final int INITIAL_DEPTH = 8;
+
+  private final ByteBuffer byteBuffer;
+  private final WriteBuffer writeBuffer;
+
+  // one entry per open structure or array, the root structure being at depth 0
+  private int[] reservedPositions = new int[INITIAL_DEPTH];
+  private int[] lastIndexes = new int[INITIAL_DEPTH];
+  private int[] remainingElements = new int[INITIAL_DEPTH];
+  private int depth;
+
+  public IndexedStructEncoder(ByteBuffer byteBuffer) {
+    this.byteBuffer = byteBuffer;
+    this.writeBuffer = new WriteBuffer(byteBuffer);
+    this.depth = -1;
+    push(-1);
+  }
+
+  public IndexedStructEncoder bool(BoolField field, boolean value) {
+    putIndex(field);
+    writeBuffer.putVlqInt(1);
+    writeBuffer.putBoolean(value);
+    return this;
+  }
+
+  public IndexedStructEncoder chr(CharField field, char value) {
+    putIndex(field);
+    writeBuffer.putVlqInt(2);
+    writeBuffer.putChar(value);
+    return this;
+  }
+
+  public <E> IndexedStructEncoder enm(EnumField<E> field, E value) {
+    int intValue = field.getEnumMapping().toInt(value);
+    putIndex(field);
+    writeBuffer.putVlqInt(VLQ.encodedSize(intValue));
+    writeBuffer.putVlqInt(intValue);
+    return this;
+  }
+
+  public IndexedStructEncoder int32(Int32Field field, int value) {
+    putIndex(field);
+    writeBuffer.putVlqInt(4);
+    writeBuffer.putInt(value);
+    return this;
+  }
+
+  public IndexedStructEncoder int64(Int64Field field, long value) {
+    putIndex(field);
+    writeBuffer.putVlqInt(8);
+    writeBuffer.putLong(value);
+    return this;
+  }
+
+  public IndexedStructEncoder fp64(FloatingPoint64Field field, double value) {
+    putIndex(field);
+    writeBuffer.putVlqInt(8);
+    writeBuffer.putDouble(value);
+    return this;
+  }
+
+  public IndexedStructEncoder string(StringField field, String value) {
+    if (value != null) {
+      putIndex(field);
+      writeBuffer.putString(value);
+    }
+    return this;
+  }
+
+  public IndexedStructEncoder byteBuffer(ByteBufferField field, ByteBuffer value) {
+    putIndex(field);
+    writeBuffer.putVlqInt(value.remaining());
+    writeBuffer.putByteBuffer(value);
+    return this;
+  }
+
+  /**
+   * Start encoding a sub-structure, all following fields belonging to it until {@link #end()} is called.
+   * @param field the structure field, resolved from the parent structure.
+   * @return this encoder.
+   */
+  public IndexedStructEncoder struct(StructField field) {
+    putIndex(field);
+    push(-1);
+    return this;
+  }
+
+  /**
+   * Start encoding an array of sub-structures of known length. Each element must be started with {@link #add()}
+   * and ended with {@link #end()}, and the array itself must be ended with {@link #end()} once all elements were added.
+   * @param field the array field, resolved from the parent structure.
+   * @param length the number of elements that will be added.
+   * @return this encoder.
+   */
+  public IndexedStructEncoder structs(ArrayField field, int length) {
+    checkSubField(field, StructField.class);
+    putIndex(field);
+    push(length);
+    writeBuffer.putVlqInt(length);
+    return this;
+  }
+
+  /**
+   * Start encoding the next element of the current array of sub-structures.
+   * @return this encoder.
+   */
+  public IndexedStructEncoder add() {
+    if (remainingElements[depth] <= 0) {
+      throw new IllegalStateException(remainingElements[depth] < 0 ? "Not encoding an array" : "All array elements already added");
+    }
+    remainingElements[depth]--;
+    push(-1);
+    return this;
+  }
+
+  /**
+   * End the current sub-structure, sub-structure array element or sub-structure array.
+   * @return this encoder.
+   */
+  public IndexedStructEncoder end() {
+    if (depth == 0) {
+      throw new IllegalStateException("Cannot end root encoder");
+    }
+    if (remainingElements[depth] > 0) {
+      throw new IllegalStateException("Missing array elements : " + remainingElements[depth]);
+    }
+    writeBuffer.backPatchVlqInt(reservedPositions[depth]);
+    depth--;
+    return this;
+  }
+
+  public IndexedStructEncoder bools(ArrayField field, boolean[] values) {
+    checkSubField(field, BoolField.class);
+    putIndex(field);
+    writeBuffer.putVlqInt(VLQ.encodedSize(values.length) + values.length * 2);
+    writeBuffer.putVlqInt(values.length);
+    for (boolean value : values) {
+      writeBuffer.putVlqInt(1);
+      writeBuffer.putBoolean(value);
+    }
+    return this;
+  }
+
+  public IndexedStructEncoder chrs(ArrayField field, char[] values) {
+    checkSubField(field, CharField.class);
+    putIndex(field);
+    writeBuffer.putVlqInt(VLQ.encodedSize(values.length) + values.length * 3);
+    writeBuffer.putVlqInt(values.length);
+    for (char value : values) {
+      writeBuffer.putVlqInt(2);
+      writeBuffer.putChar(value);
+    }
+    return this;
+  }
+
+  public IndexedStructEncoder int32s(ArrayField field, int[] values) {
+    checkSubField(field, Int32Field.class);
+    putIndex(field);
+    writeBuffer.putVlqInt(VLQ.encodedSize(values.length) + values.length * 5);
+    writeBuffer.putVlqInt(values.length);
+    for (int value : values) {
+      writeBuffer.putVlqInt(4);
+      writeBuffer.putInt(value);
+    }
+    return this;
+  }
+
+  public IndexedStructEncoder int64s(ArrayField field, long[] values) {
+    checkSubField(field, Int64Field.class);
+    putIndex(field);
+    writeBuffer.putVlqInt(VLQ.encodedSize(values.length) + values.length * 9);
+    writeBuffer.putVlqInt(values.length);
+    for (long value : values) {
+      writeBuffer.putVlqInt(8);
+      writeBuffer.putLong(value);
+    }
+    return this;
+  }
+
+  public IndexedStructEncoder fp64s(ArrayField field, double[] values) {
+    checkSubField(field, FloatingPoint64Field.class);
+    putIndex(field);
+    writeBuffer.putVlqInt(VLQ.encodedSize(values.length) + values.length * 9);
+    writeBuffer.putVlqInt(values.length);
+    for (double value : values) {
+      writeBuffer.putVlqInt(8);
+      writeBuffer.putDouble(value);
+    }
+    return this;
+  }
+
+  public IndexedStructEncoder strings(ArrayField field, String[] values) {
+    checkSubField(field, StringField.class);
+    putIndex(field);
+    int reservedPosition = writeBuffer.reserveVlqInt();
+    writeBuffer.putVlqInt(values.length);
+    for (String value : values) {
+      writeBuffer.putString(value);
+    }
+    writeBuffer.backPatchVlqInt(reservedPosition);
+    return this;
+  }
+
+  public IndexedStructEncoder byteBuffers(ArrayField field, ByteBuffer[] values) {
+    checkSubField(field, ByteBufferField.class);
+    putIndex(field);
+    int reservedPosition = writeBuffer.reserveVlqInt();
+    writeBuffer.putVlqInt(values.length);
+    for (ByteBuffer value : values) {
+      writeBuffer.putVlqInt(value.remaining());
+      writeBuffer.putByteBuffer(value);
+    }
+    writeBuffer.backPatchVlqInt(reservedPosition);
+    return this;
+  }
+
+  /**
+   * Complete the encoding of the root structure.
+   * @return the byte buffer the structure was encoded into, positioned right after the encoded bytes.
+   */
+  public ByteBuffer encode() {
+    if (depth != 0) {
+      throw new IllegalStateException("Cannot encode while sub-structures or arrays are not ended");
+    }
+    writeBuffer.backPatchVlqInt(reservedPositions[0]);
+    depth = -1;
+    return byteBuffer;
+  }
+
+  private void putIndex(Field field) {
+    if (depth < 0) {
+      throw new IllegalStateException("Encoding already completed");
+    }
+    if (remainingElements[depth] >= 0) {
+      throw new IllegalStateException("Array elements must be started with add()");
+    }
+    int index = field.index();
+    if (index <= lastIndexes[depth]) {
+      throw new IllegalArgumentException("No such field left : '" + field.name() + "'");
+    }
+    lastIndexes[depth] = index;
+    writeBuffer.putVlqInt(index);
+  }
+
+  private void push(int elements) {
+    depth++;
+    if (depth == reservedPositions.length) {
+      reservedPositions = Arrays.copyOf(reservedPositions, depth * 2);
+      lastIndexes = Arrays.copyOf(lastIndexes, depth * 2);
+      remainingElements = Arrays.copyOf(remainingElements, depth * 2);
+    }
+    reservedPositions[depth] = writeBuffer.reserveVlqInt();
+    lastIndexes[depth] = -1;
+    remainingElements[depth] = elements;
+  }
+
+  private static void checkSubField(ArrayField field, Class<? extends Field> subFieldClazz) {
+    Field subField = field.subField();
+    if (subField.getClass() != subFieldClazz) {
+      throw new IllegalArgumentException("Invalid subtype for field '" + field.name() + "', expected : '" + subFieldClazz.getSimpleName() + "' but was '" + subField.getClass().getSimpleName() + "'");
+    }
+  }
+
+}
@@ -40,6 +40,7 @@ import org.terracotta.runnel.metadata.FieldSearcher;
 import org.terracotta.runnel.utils.VLQ;
 import org.terracotta.runnel.utils.WriteBuffer;
 
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -277,6 +278,38 @@ public class StructEncoder<P> implements PrimitiveEncodingSupport<StructEncoder<
     return performEncoding(bb, size);
   }
 
+  /**
+   * Encode the structure in the passed byte buffer in a single pass, without sizing it first: the size of the
+   * structure and of every nested structure and array is back-patched once its content is written.
+   * The produced bytes are identical to the ones produced by {@link #encode(ByteBuffer)}, but the buffer must have
+   * a few bytes of headroom left after the encoded structure.
+   * <p>
+   * This makes it possible to encode into pooled buffers, direct or not, of a size that is not known to be large
+   * enough: should the buffer overflow, its position is reset before the {@link BufferOverflowException} is thrown
+   * so that the encoding can be retried with a larger buffer.
+   * @param bb the byte buffer to fill with the encoded structure.
+   * @return the passed-in byte buffer.
+   * @throws BufferOverflowException if the buffer is too small.
+   */
+  public ByteBuffer encodeStreaming(ByteBuffer bb) throws BufferOverflowException {
+    if (parent != null) {
+      throw new IllegalStateException("Cannot encode non-root encoder");
+    }
+    int start = bb.position();
+    try {
+      WriteBuffer writeBuffer = new WriteBuffer(bb);
+      int reservedPosition = writeBuffer.reserveVlqInt();
+      for (DataHolder dataHolder : data) {
+        dataHolder.encodeStreaming(writeBuffer, true);
+      }
+      writeBuffer.backPatchVlqInt(reservedPosition);
+      return bb;
+    } catch (BufferOverflowException e) {
+      bb.position(start);
+      throw e;
+    }
+  }
+
   private int calculateSize() {
     int size = 0;
     for (DataHolder dataHolder : data) {
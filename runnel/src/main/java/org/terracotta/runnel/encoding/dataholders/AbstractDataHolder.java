@@ -47,4 +47,16 @@ public abstract class AbstractDataHolder implements DataHolder {
 
   protected abstract void encodeValue(WriteBuffer writeBuffer);
 
+  /**
+   * The size of simple values is cheap to compute, so they are encoded as usual.
+   */
+  @Override
+  public void encodeStreaming(WriteBuffer writeBuffer, boolean withIndex) {
+    encode(writeBuffer, withIndex);
+  }
+
+  protected int index() {
+    return index;
+  }
+
 }
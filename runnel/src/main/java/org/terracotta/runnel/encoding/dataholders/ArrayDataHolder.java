@@ -56,4 +56,17 @@ public class ArrayDataHolder extends AbstractDataHolder {
       value.encode(writeBuffer, false);
     }
   }
+
+  @Override
+  public void encodeStreaming(WriteBuffer writeBuffer, boolean withIndex) {
+    if (withIndex) {
+      writeBuffer.putVlqInt(index());
+    }
+    int reservedPosition = writeBuffer.reserveVlqInt();
+    writeBuffer.putVlqInt(values.size()); // length field
+    for (DataHolder value : values) {
+      value.encodeStreaming(writeBuffer, false);
+    }
+    writeBuffer.backPatchVlqInt(reservedPosition);
+  }
 }
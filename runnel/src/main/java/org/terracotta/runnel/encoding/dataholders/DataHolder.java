@@ -32,4 +32,12 @@ public interface DataHolder {
 
   void encode(WriteBuffer writeBuffer, boolean withIndex);
 
+  /**
+   * Encode without relying on the byte size being known upfront: nested data holders reserve room for their size
+   * then back-patch it once their content is written. The output is the same as {@link #encode(WriteBuffer, boolean)}.
+   * @param writeBuffer the buffer to write to.
+   * @param withIndex true if the index must be written.
+   */
+  void encodeStreaming(WriteBuffer writeBuffer, boolean withIndex);
+
 }
@@ -53,4 +53,16 @@ public class StructDataHolder extends AbstractDataHolder {
       value.encode(writeBuffer, true);
     }
   }
+
+  @Override
+  public void encodeStreaming(WriteBuffer writeBuffer, boolean withIndex) {
+    if (withIndex) {
+      writeBuffer.putVlqInt(index());
+    }
+    int reservedPosition = writeBuffer.reserveVlqInt();
+    for (DataHolder value : values) {
+      value.encodeStreaming(writeBuffer, true);
+    }
+    writeBuffer.backPatchVlqInt(reservedPosition);
+  }
 }
@@ -0,0 +1,1221 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.mapping;
+
+import org.terracotta.runnel.EnumMapping;
+import org.terracotta.runnel.EnumMappingBuilder;
+import org.terracotta.runnel.Struct;
+import org.terracotta.runnel.StructBuilder;
+import org.terracotta.runnel.decoding.ArrayDecoder;
+import org.terracotta.runnel.decoding.Enm;
+import org.terracotta.runnel.decoding.IndexedStructDecoder;
+import org.terracotta.runnel.decoding.StructArrayDecoder;
+import org.terracotta.runnel.decoding.StructDecoder;
+import org.terracotta.runnel.decoding.fields.ArrayField;
+import org.terracotta.runnel.decoding.fields.BoolField;
+import org.terracotta.runnel.decoding.fields.ByteBufferField;
+import org.terracotta.runnel.decoding.fields.CharField;
+import org.terracotta.runnel.decoding.fields.EnumField;
+import org.terracotta.runnel.decoding.fields.FloatingPoint64Field;
+import org.terracotta.runnel.decoding.fields.Int32Field;
+import org.terracotta.runnel.decoding.fields.Int64Field;
+import org.terracotta.runnel.decoding.fields.StringField;
+import org.terracotta.runnel.decoding.fields.StructField;
+import org.terracotta.runnel.encoding.ArrayEncoder;
+import org.terracotta.runnel.encoding.IndexedStructEncoder;
+import org.terracotta.runnel.encoding.StructEncoder;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Factory of {@link Property} instances, one implementation per kind of java field.
+ */
+final class Properties {
+
+  private Properties() {
+  }
+
+  static Property create(Field field, RunnelField annotation) {
+    if (Modifier.isStatic(field.getModifiers())) {
+      throw new IllegalArgumentException("Static field cannot be mapped : " + field);
+    }
+    String name = annotation.name().isEmpty() ? field.getName() : annotation.name();
+    int index = annotation.index();
+    Class<?> type = field.getType();
+
+    MethodHandle getter;
+    MethodHandle setter;
+    try {
+      field.setAccessible(true);
+      getter = MethodHandles.lookup().unreflectGetter(field);
+      setter = MethodHandles.lookup().unreflectSetter(field);
+    } catch (IllegalAccessException | RuntimeException e) {
+      throw new IllegalArgumentException("Cannot access field " + field, e);
+    }
+
+    if (type == int.class) {
+      return new Int32Property(name, index, getter, setter);
+    } else if (type == long.class) {
+      return new Int64Property(name, index, getter, setter);
+    } else if (type == double.class) {
+      return new FloatingPoint64Property(name, index, getter, setter);
+    } else if (type == boolean.class) {
+      return new BoolProperty(name, index, getter, setter);
+    } else if (type == char.class) {
+      return new CharProperty(name, index, getter, setter);
+    }
+
+    getter = getter.asType(MethodType.methodType(Object.class, Object.class));
+    setter = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+    for (ValueKind kind : ValueKind.values()) {
+      if (kind.type == type) {
+        return new ValueProperty(name, index, getter, setter, kind);
+      }
+    }
+    for (ArrayKind kind : ArrayKind.values()) {
+      if (kind.type == type) {
+        return new ArrayProperty(name, index, getter, setter, kind);
+      }
+    }
+    if (type.isEnum()) {
+      return new EnumProperty(name, index, getter, setter, enumMapping(type));
+    }
+    if (type.isArray() && isMapped(type.getComponentType())) {
+      return new StructsProperty(name, index, getter, setter, type.getComponentType(), true);
+    }
+    if (type == List.class) {
+      Type genericType = field.getGenericType();
+      if (genericType instanceof ParameterizedType) {
+        Type elementType = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+        if (elementType instanceof Class && isMapped((Class<?>) elementType)) {
+          return new StructsProperty(name, index, getter, setter, (Class<?>) elementType, false);
+        }
+      }
+    }
+    if (isMapped(type)) {
+      return new StructProperty(name, index, getter, setter, type);
+    }
+    throw new IllegalArgumentException("Unsupported type for field " + field);
+  }
+
+  private static boolean isMapped(Class<?> type) {
+    for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+      for (Field field : c.getDeclaredFields()) {
+        if (field.isAnnotationPresent(RunnelField.class)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static EnumMapping<Object> enumMapping(Class<?> enumType) {
+    EnumMappingBuilder builder = EnumMappingBuilder.newEnumMappingBuilder(enumType);
+    for (Object constant : enumType.getEnumConstants()) {
+      RunnelEnumValue value;
+      try {
+        value = enumType.getField(((Enum<?>) constant).name()).getAnnotation(RunnelEnumValue.class);
+      } catch (NoSuchFieldException e) {
+        throw new AssertionError(e);
+      }
+      if (value == null) {
+        throw new IllegalArgumentException("Enum constant " + constant + " of " + enumType.getName() + " is not annotated with @" + RunnelEnumValue.class.getSimpleName());
+      }
+      builder.mapping(constant, value.value());
+    }
+    return builder.build();
+  }
+
+  static final class Int32Property extends Property {
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    private Int32Field field;
+
+    Int32Property(String name, int index, MethodHandle getter, MethodHandle setter) {
+      super(name, index);
+      this.getter = getter.asType(MethodType.methodType(int.class, Object.class));
+      this.setter = setter.asType(MethodType.methodType(void.class, Object.class, int.class));
+    }
+
+    @Override
+    void define(StructBuilder builder) {
+      builder.int32(name, index);
+    }
+
+    @Override
+    void resolve(Struct struct) {
+      field = struct.field(name, Int32Field.class);
+    }
+
+    @Override
+    void encode(IndexedStructEncoder encoder, Object target) throws Throwable {
+      encoder.int32(field, (int) getter.invokeExact(target));
+    }
+
+    @Override
+    void decode(IndexedStructDecoder decoder, Object target) throws Throwable {
+      if (decoder.has(field)) {
+        setter.invokeExact(target, decoder.int32(field));
+      }
+    }
+
+    @Override
+    void encode(StructEncoder<?> encoder, Object target) throws Throwable {
+      encoder.int32(name, (int) getter.invokeExact(target));
+    }
+
+    @Override
+    void decode(StructDecoder<?> decoder, Object target) throws Throwable {
+      Integer value = decoder.int32(name);
+      if (value != null) {
+        setter.invokeExact(target, (int) value);
+      }
+    }
+  }
+
+  static final class Int64Property extends Property {
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    private Int64Field field;
+
+    Int64Property(String name, int index, MethodHandle getter, MethodHandle setter) {
+      super(name, index);
+      this.getter = getter.asType(MethodType.methodType(long.class, Object.class));
+      this.setter = setter.asType(MethodType.methodType(void.class, Object.class, long.class));
+    }
+
+    @Override
+    void define(StructBuilder builder) {
+      builder.int64(name, index);
+    }
+
+    @Override
+    void resolve(Struct struct) {
+      field = struct.field(name, Int64Field.class);
+    }
+
+    @Override
+    void encode(IndexedStructEncoder encoder, Object target) throws Throwable {
+      encoder.int64(field, (long) getter.invokeExact(target));
+    }
+
+    @Override
+    void decode(IndexedStructDecoder decoder, Object target) throws Throwable {
+      if (decoder.has(field)) {
+        setter.invokeExact(target, decoder.int64(field));
+      }
+    }
+
+    @Override
+    void encode(StructEncoder<?> encoder, Object target) throws Throwable {
+      encoder.int64(name, (long) getter.invokeExact(target));
+    }
+
+    @Override
+    void decode(StructDecoder<?> decoder, Object target) throws Throwable {
+      Long value = decoder.int64(name);
+      if (value != null) {
+        setter.invokeExact(target, (long) value);
+      }
+    }
+  }
+
+  static final class FloatingPoint64Property extends Property {
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    private FloatingPoint64Field field;
+
+    FloatingPoint64Property(String name, int index, MethodHandle getter, MethodHandle setter) {
+      super(name, index);
+      this.getter = getter.asType(MethodType.methodType(double.class, Object.class));
+      this.setter = setter.asType(MethodType.methodType(void.class, Object.class, double.class));
+    }
+
+    @Override
+    void define(StructBuilder builder) {
+      builder.fp64(name, index);
+    }
+
+    @Override
+    void resolve(Struct struct) {
+      field = struct.field(name, FloatingPoint64Field.class);
+    }
+
+    @Override
+    void encode(IndexedStructEncoder encoder, Object target) throws Throwable {
+      encoder.fp64(field, (double) getter.invokeExact(target));
+    }
+
+    @Override
+    void decode(IndexedStructDecoder decoder, Object target) throws Throwable {
+      if (decoder.has(field)) {
+        setter.invokeExact(target, decoder.fp64(field));
+      }
+    }
+
+    @Override
+    void encode(StructEncoder<?> encoder, Object target) throws Throwable {
+      encoder.fp64(name, (double) getter.invokeExact(target));
+    }
+
+    @Override
+    void decode(StructDecoder<?> decoder, Object target) throws Throwable {
+      Double value = decoder.fp64(name);
+      if (value != null) {
+        setter.invokeExact(target, (double) value);
+      }
+    }
+  }
+
+  static final class BoolProperty extends Property {
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    private BoolField field;
+
+    BoolProperty(String name, int index, MethodHandle getter, MethodHandle setter) {
+      super(name, index);
+      this.getter = getter.asType(MethodType.methodType(boolean.class, Object.class));
+      this.setter = setter.asType(MethodType.methodType(void.class, Object.class, boolean.class));
+    }
+
+    @Override
+    void define(StructBuilder builder) {
+      builder.bool(name, index);
+    }
+
+    @Override
+    void resolve(Struct struct) {
+      field = struct.field(name, BoolField.class);
+    }
+
+    @Override
+    void encode(IndexedStructEncoder encoder, Object target) throws Throwable {
+      encoder.bool(field, (boolean) getter.invokeExact(target));
+    }
+
+    @Override
+    void decode(IndexedStructDecoder decoder, Object target) throws Throwable {
+      if (decoder.has(field)) {
+        setter.invokeExact(target, decoder.bool(field));
+      }
+    }
+
+    @Override
+    void encode(StructEncoder<?> encoder, Object target) throws Throwable {
+      encoder.bool(name, (boolean) getter.invokeExact(target));
+    }
+
+    @Override
+    void decode(StructDecoder<?> decoder, Object target) throws Throwable {
+      Boolean value = decoder.bool(name);
+      if (value != null) {
+        setter.invokeExact(target, (boolean) value);
+      }
+    }
+  }
+
+  static final class CharProperty extends Property {
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    private CharField field;
+
+    CharProperty(String name, int index, MethodHandle getter, MethodHandle setter) {
+      super(name, index);
+      this.getter = getter.asType(MethodType.methodType(char.class, Object.class));
+      this.setter = setter.asType(MethodType.methodType(void.class, Object.class, char.class));
+    }
+
+    @Override
+    void define(StructBuilder builder) {
+      builder.chr(name, index);
+    }
+
+    @Override
+    void resolve(Struct struct) {
+      field = struct.field(name, CharField.class);
+    }
+
+    @Override
+    void encode(IndexedStructEncoder encoder, Object target) throws Throwable {
+      encoder.chr(field, (char) getter.invokeExact(target));
+    }
+
+    @Override
+    void decode(IndexedStructDecoder decoder, Object target) throws Throwable {
+      if (decoder.has(field)) {
+        setter.invokeExact(target, decoder.chr(field));
+      }
+    }
+
+    @Override
+    void encode(StructEncoder<?> encoder, Object target) throws Throwable {
+      encoder.chr(name, (char) getter.invokeExact(target));
+    }
+
+    @Override
+    void decode(StructDecoder<?> decoder, Object target) throws Throwable {
+      Character value = decoder.chr(name);
+      if (value != null) {
+        setter.invokeExact(target, (char) value);
+      }
+    }
+  }
+
+  /**
+   * Nullable values, which are not encoded when null.
+   */
+  enum ValueKind {
+    BOOL(Boolean.class, BoolField.class) {
+      @Override
+      void define(StructBuilder builder, String name, int index) {
+        builder.bool(name, index);
+      }
+
+      @Override
+      void encode(IndexedStructEncoder encoder, org.terracotta.runnel.decoding.fields.Field field, Object value) {
+        encoder.bool((BoolField) field, (Boolean) value);
+      }
+
+      @Override
+      Object decode(IndexedStructDecoder decoder, org.terracotta.runnel.decoding.fields.Field field) {
+        return decoder.has(field) ? decoder.bool((BoolField) field) : null;
+      }
+
+      @Override
+      void encode(StructEncoder<?> encoder, String name, Object value) {
+        encoder.bool(name, (Boolean) value);
+      }
+
+      @Override
+      Object decode(StructDecoder<?> decoder, String name) {
+        return decoder.bool(name);
+      }
+    },
+    CHR(Character.class, CharField.class) {
+      @Override
+      void define(StructBuilder builder, String name, int index) {
+        builder.chr(name, index);
+      }
+
+      @Override
+      void encode(IndexedStructEncoder encoder, org.terracotta.runnel.decoding.fields.Field field, Object value) {
+        encoder.chr((CharField) field, (Character) value);
+      }
+
+      @Override
+      Object decode(IndexedStructDecoder decoder, org.terracotta.runnel.decoding.fields.Field field) {
+        return decoder.has(field) ? decoder.chr((CharField) field) : null;
+      }
+
+      @Override
+      void encode(StructEncoder<?> encoder, String name, Object value) {
+        encoder.chr(name, (Character) value);
+      }
+
+      @Override
+      Object decode(StructDecoder<?> decoder, String name) {
+        return decoder.chr(name);
+      }
+    },
+    INT32(Integer.class, Int32Field.class) {
+      @Override
+      void define(StructBuilder builder, String name, int index) {
+        builder.int32(name, index);
+      }
+
+      @Override
+      void encode(IndexedStructEncoder encoder, org.terracotta.runnel.decoding.fields.Field field, Object value) {
+        encoder.int32((Int32Field) field, (Integer) value);
+      }
+
+      @Override
+      Object decode(IndexedStructDecoder decoder, org.terracotta.runnel.decoding.fields.Field field) {
+        return decoder.has(field) ? decoder.int32((Int32Field) field) : null;
+      }
+
+      @Override
+      void encode(StructEncoder<?> encoder, String name, Object value) {
+        encoder.int32(name, (Integer) value);
+      }
+
+      @Override
+      Object decode(StructDecoder<?> decoder, String name) {
+        return decoder.int32(name);
+      }
+    },
+    INT64(Long.class, Int64Field.class) {
+      @Override
+      void define(StructBuilder builder, String name, int index) {
+        builder.int64(name, index);
+      }
+
+      @Override
+      void encode(IndexedStructEncoder encoder, org.terracotta.runnel.decoding.fields.Field field, Object value) {
+        encoder.int64((Int64Field) field, (Long) value);
+      }
+
+      @Override
+      Object decode(IndexedStructDecoder decoder, org.terracotta.runnel.decoding.fields.Field field) {
+        return decoder.has(field) ? decoder.int64((Int64Field) field) : null;
+      }
+
+      @Override
+      void encode(StructEncoder<?> encoder, String name, Object value) {
+        encoder.int64(name, (Long) value);
+      }
+
+      @Override
+      Object decode(StructDecoder<?> decoder, String name) {
+        return decoder.int64(name);
+      }
+    },
+    FP64(Double.class, FloatingPoint64Field.class) {
+      @Override
+      void define(StructBuilder builder, String name, int index) {
+        builder.fp64(name, index);
+      }
+
+      @Override
+      void encode(IndexedStructEncoder encoder, org.terracotta.runnel.decoding.fields.Field field, Object value) {
+        encoder.fp64((FloatingPoint64Field) field, (Double) value);
+      }
+
+      @Override
+      Object decode(IndexedStructDecoder decoder, org.terracotta.runnel.decoding.fields.Field field) {
+        return decoder.has(field) ? decoder.fp64((FloatingPoint64Field) field) : null;
+      }
+
+      @Override
+      void encode(StructEncoder<?> encoder, String name, Object value) {
+        encoder.fp64(name, (Double) value);
+      }
+
+      @Override
+      Object decode(StructDecoder<?> decoder, String name) {
+        return decoder.fp64(name);
+      }
+    },
+    STRING(String.class, StringField.class) {
+      @Override
+      void define(StructBuilder builder, String name, int index) {
+        builder.string(name, index);
+      }
+
+      @Override
+      void encode(IndexedStructEncoder encoder, org.terracotta.runnel.decoding.fields.Field field, Object value) {
+        encoder.string((StringField) field, (String) value);
+      }
+
+      @Override
+      Object decode(IndexedStructDecoder decoder, org.terracotta.runnel.decoding.fields.Field field) {
+        return decoder.string((StringField) field);
+      }
+
+      @Override
+      void encode(StructEncoder<?> encoder, String name, Object value) {
+        encoder.string(name, (String) value);
+      }
+
+      @Override
+      Object decode(StructDecoder<?> decoder, String name) {
+        return decoder.string(name);
+      }
+    },
+    BYTE_BUFFER(ByteBuffer.class, ByteBufferField.class) {
+      @Override
+      void define(StructBuilder builder, String name, int index) {
+        builder.byteBuffer(name, index);
+      }
+
+      @Override
+      void encode(IndexedStructEncoder encoder, org.terracotta.runnel.decoding.fields.Field field, Object value) {
+        encoder.byteBuffer((ByteBufferField) field, (ByteBuffer) value);
+      }
+
+      @Override
+      Object decode(IndexedStructDecoder decoder, org.terracotta.runnel.decoding.fields.Field field) {
+        return decoder.byteBuffer((ByteBufferField) field);
+      }
+
+      @Override
+      void encode(StructEncoder<?> encoder, String name, Object value) {
+        encoder.byteBuffer(name, (ByteBuffer) value);
+      }
+
+      @Override
+      Object decode(StructDecoder<?> decoder, String name) {
+        return decoder.byteBuffer(name);
+      }
+    };
+
+    private final Class<?> type;
+    private final Class<? extends org.terracotta.runnel.decoding.fields.Field> fieldType;
+
+    ValueKind(Class<?> type, Class<? extends org.terracotta.runnel.decoding.fields.Field> fieldType) {
+      this.type = type;
+      this.fieldType = fieldType;
+    }
+
+    abstract void define(StructBuilder builder, String name, int index);
+
+    abstract void encode(IndexedStructEncoder encoder, org.terracotta.runnel.decoding.fields.Field field, Object value);
+
+    abstract Object decode(IndexedStructDecoder decoder, org.terracotta.runnel.decoding.fields.Field field);
+
+    abstract void encode(StructEncoder<?> encoder, String name, Object value);
+
+    abstract Object decode(StructDecoder<?> decoder, String name);
+  }
+
+  static final class ValueProperty extends Property {
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    private final ValueKind kind;
+    private org.terracotta.runnel.decoding.fields.Field field;
+
+    ValueProperty(String name, int index, MethodHandle getter, MethodHandle setter, ValueKind kind) {
+      super(name, index);
+      this.getter = getter;
+      this.setter = setter;
+      this.kind = kind;
+    }
+
+    @Override
+    void define(StructBuilder builder) {
+      kind.define(builder, name, index);
+    }
+
+    @Override
+    void resolve(Struct struct) {
+      field = struct.field(name, kind.fieldType);
+    }
+
+    @Override
+    void encode(IndexedStructEncoder encoder, Object target) throws Throwable {
+      Object value = getter.invokeExact(target);
+      if (value != null) {
+        kind.encode(encoder, field, value);
+      }
+    }
+
+    @Override
+    void decode(IndexedStructDecoder decoder, Object target) throws Throwable {
+      Object value = kind.decode(decoder, field);
+      if (value != null) {
+        setter.invokeExact(target, value);
+      }
+    }
+
+    @Override
+    void encode(StructEncoder<?> encoder, Object target) throws Throwable {
+      Object value = getter.invokeExact(target);
+      if (value != null) {
+        kind.encode(encoder, name, value);
+      }
+    }
+
+    @Override
+    void decode(StructDecoder<?> decoder, Object target) throws Throwable {
+      Object value = kind.decode(decoder, name);
+      if (value != null) {
+        setter.invokeExact(target, value);
+      }
+    }
+  }
+
+  static final class EnumProperty extends Property {
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    private final EnumMapping<Object> enumMapping;
+    private EnumField<Object> field;
+
+    EnumProperty(String name, int index, MethodHandle getter, MethodHandle setter, EnumMapping<Object> enumMapping) {
+      super(name, index);
+      this.getter = getter;
+      this.setter = setter;
+      this.enumMapping = enumMapping;
+    }
+
+    @Override
+    void define(StructBuilder builder) {
+      builder.enm(name, index, enumMapping);
+    }
+
+    @Override
+    void resolve(Struct struct) {
+      field = struct.enumField(name);
+    }
+
+    @Override
+    void encode(IndexedStructEncoder encoder, Object target) throws Throwable {
+      Object value = getter.invokeExact(target);
+      if (value != null) {
+        encoder.enm(field, value);
+      }
+    }
+
+    @Override
+    void decode(IndexedStructDecoder decoder, Object target) throws Throwable {
+      Object value = decoder.enm(field);
+      if (value != null) {
+        setter.invokeExact(target, value);
+      }
+    }
+
+    @Override
+    void encode(StructEncoder<?> encoder, Object target) throws Throwable {
+      Object value = getter.invokeExact(target);
+      if (value != null) {
+        encoder.enm(name, value);
+      }
+    }
+
+    @Override
+    void decode(StructDecoder<?> decoder, Object target) throws Throwable {
+      Enm<Object> enm = decoder.enm(name);
+      if (enm.isValid()) {
+        setter.invokeExact(target, enm.get());
+      }
+    }
+  }
+
+  /**
+   * Arrays of values, which are not encoded when null. Their elements cannot be null.
+   */
+  enum ArrayKind {
+    BOOLS(boolean[].class, BoolField.class) {
+      @Override
+      void define(StructBuilder builder, String name, int index) {
+        builder.bools(name, index);
+      }
+
+      @Override
+      void encode(IndexedStructEncoder encoder, ArrayField field, Object array) {
+        encoder.bools(field, (boolean[]) array);
+      }
+
+      @Override
+      Object decode(IndexedStructDecoder decoder, int length) {
+        boolean[] array = new boolean[length];
+        for (int i = 0; i < length; i++) {
+          array[i] = decoder.boolValue();
+        }
+        return array;
+      }
+
+      @Override
+      void encode(StructEncoder<?> encoder, String name, Object array) {
+        ArrayEncoder<Boolean, ?> arrayEncoder = encoder.bools(name);
+        for (boolean value : (boolean[]) array) {
+          arrayEncoder.value(value);
+        }
+        arrayEncoder.end();
+      }
+
+      @Override
+      Object decode(StructDecoder<?> decoder, String name) {
+        ArrayDecoder<Boolean, ?> arrayDecoder = decoder.bools(name);
+        if (arrayDecoder == null) {
+          return null;
+        }
+        boolean[] array = new boolean[arrayDecoder.length()];
+        for (int i = 0; i < array.length; i++) {
+          array[i] = arrayDecoder.value();
+        }
+        arrayDecoder.end();
+        return array;
+      }
+    },
+    CHRS(char[].class, CharField.class) {
+      @Override
+      void define(StructBuilder builder, String name, int index) {
+        builder.chrs(name, index);
+      }
+
+      @Override
+      void encode(IndexedStructEncoder encoder, ArrayField field, Object array) {
+        encoder.chrs(field, (char[]) array);
+      }
+
+      @Override
+      Object decode(IndexedStructDecoder decoder, int length) {
+        char[] array = new char[length];
+        for (int i = 0; i < length; i++) {
+          array[i] = decoder.chrValue();
+        }
+        return array;
+      }
+
+      @Override
+      void encode(StructEncoder<?> encoder, String name, Object array) {
+        ArrayEncoder<Character, ?> arrayEncoder = encoder.chrs(name);
+        for (char value : (char[]) array) {
+          arrayEncoder.value(value);
+        }
+        arrayEncoder.end();
+      }
+
+      @Override
+      Object decode(StructDecoder<?> decoder, String name) {
+        ArrayDecoder<Character, ?> arrayDecoder = decoder.chrs(name);
+        if (arrayDecoder == null) {
+          return null;
+        }
+        char[] array = new char[arrayDecoder.length()];
+        for (int i = 0; i < array.length; i++) {
+          array[i] = arrayDecoder.value();
+        }
+        arrayDecoder.end();
+        return array;
+      }
+    },
+    INT32S(int[].class, Int32Field.class) {
+      @Override
+      void define(StructBuilder builder, String name, int index) {
+        builder.int32s(name, index);
+      }
+
+      @Override
+      void encode(IndexedStructEncoder encoder, ArrayField field, Object array) {
+        encoder.int32s(field, (int[]) array);
+      }
+
+      @Override
+      Object decode(IndexedStructDecoder decoder, int length) {
+        int[] array = new int[length];
+        for (int i = 0; i < length; i++) {
+          array[i] = decoder.int32Value();
+        }
+        return array;
+      }
+
+      @Override
+      void encode(StructEncoder<?> encoder, String name, Object array) {
+        ArrayEncoder<Integer, ?> arrayEncoder = encoder.int32s(name);
+        for (int value : (int[]) array) {
+          arrayEncoder.value(value);
+        }
+        arrayEncoder.end();
+      }
+
+      @Override
+      Object decode(StructDecoder<?> decoder, String name) {
+        ArrayDecoder<Integer, ?> arrayDecoder = decoder.int32s(name);
+        if (arrayDecoder == null) {
+          return null;
+        }
+        int[] array = new int[arrayDecoder.length()];
+        for (int i = 0; i < array.length; i++) {
+          array[i] = arrayDecoder.value();
+        }
+        arrayDecoder.end();
+        return array;
+      }
+    },
+    INT64S(long[].class, Int64Field.class) {
+      @Override
+      void define(StructBuilder builder, String name, int index) {
+        builder.int64s(name, index);
+      }
+
+      @Override
+      void encode(IndexedStructEncoder encoder, ArrayField field, Object array) {
+        encoder.int64s(field, (long[]) array);
+      }
+
+      @Override
+      Object decode(IndexedStructDecoder decoder, int length) {
+        long[] array = new long[length];
+        for (int i = 0; i < length; i++) {
+          array[i] = decoder.int64Value();
+        }
+        return array;
+      }
+
+      @Override
+      void encode(StructEncoder<?> encoder, String name, Object array) {
+        ArrayEncoder<Long, ?> arrayEncoder = encoder.int64s(name);
+        for (long value : (long[]) array) {
+          arrayEncoder.value(value);
+        }
+        arrayEncoder.end();
+      }
+
+      @Override
+      Object decode(StructDecoder<?> decoder, String name) {
+        ArrayDecoder<Long, ?> arrayDecoder = decoder.int64s(name);
+        if (arrayDecoder == null) {
+          return null;
+        }
+        long[] array = new long[arrayDecoder.length()];
+        for (int i = 0; i < array.length; i++) {
+          array[i] = arrayDecoder.value();
+        }
+        arrayDecoder.end();
+        return array;
+      }
+    },
+    FP64S(double[].class, FloatingPoint64Field.class) {
+      @Override
+      void define(StructBuilder builder, String name, int index) {
+        builder.fp64s(name, index);
+      }
+
+      @Override
+      void encode(IndexedStructEncoder encoder, ArrayField field, Object array) {
+        encoder.fp64s(field, (double[]) array);
+      }
+
+      @Override
+      Object decode(IndexedStructDecoder decoder, int length) {
+        double[] array = new double[length];
+        for (int i = 0; i < length; i++) {
+          array[i] = decoder.fp64Value();
+        }
+        return array;
+      }
+
+      @Override
+      void encode(StructEncoder<?> encoder, String name, Object array) {
+        ArrayEncoder<Double, ?> arrayEncoder = encoder.fp64s(name);
+        for (double value : (double[]) array) {
+          arrayEncoder.value(value);
+        }
+        arrayEncoder.end();
+      }
+
+      @Override
+      Object decode(StructDecoder<?> decoder, String name) {
+        ArrayDecoder<Double, ?> arrayDecoder = decoder.fp64s(name);
+        if (arrayDecoder == null) {
+          return null;
+        }
+        double[] array = new double[arrayDecoder.length()];
+        for (int i = 0; i < array.length; i++) {
+          array[i] = arrayDecoder.value();
+        }
+        arrayDecoder.end();
+        return array;
+      }
+    },
+    STRINGS(String[].class, StringField.class) {
+      @Override
+      void define(StructBuilder builder, String name, int index) {
+        builder.strings(name, index);
+      }
+
+      @Override
+      void encode(IndexedStructEncoder encoder, ArrayField field, Object array) {
+        encoder.strings(field, (String[]) array);
+      }
+
+      @Override
+      Object decode(IndexedStructDecoder decoder, int length) {
+        String[] array = new String[length];
+        for (int i = 0; i < length; i++) {
+          array[i] = decoder.stringValue();
+        }
+        return array;
+      }
+
+      @Override
+      void encode(StructEncoder<?> encoder, String name, Object array) {
+        ArrayEncoder<String, ?> arrayEncoder = encoder.strings(name);
+        for (String value : (String[]) array) {
+          arrayEncoder.value(value);
+        }
+        arrayEncoder.end();
+      }
+
+      @Override
+      Object decode(StructDecoder<?> decoder, String name) {
+        ArrayDecoder<String, ?> arrayDecoder = decoder.strings(name);
+        if (arrayDecoder == null) {
+          return null;
+        }
+        String[] array = new String[arrayDecoder.length()];
+        for (int i = 0; i < array.length; i++) {
+          array[i] = arrayDecoder.value();
+        }
+        arrayDecoder.end();
+        return array;
+      }
+    };
+
+    private final Class<?> type;
+    private final Class<? extends org.terracotta.runnel.decoding.fields.Field> elementFieldType;
+
+    ArrayKind(Class<?> type, Class<? extends org.terracotta.runnel.decoding.fields.Field> elementFieldType) {
+      this.type = type;
+      this.elementFieldType = elementFieldType;
+    }
+
+    abstract void define(StructBuilder builder, String name, int index);
+
+    abstract void encode(IndexedStructEncoder encoder, ArrayField field, Object array);
+
+    abstract Object decode(IndexedStructDecoder decoder, int length);
+
+    abstract void encode(StructEncoder<?> encoder, String name, Object array);
+
+    abstract Object decode(StructDecoder<?> decoder, String name);
+  }
+
+  static final class ArrayProperty extends Property {
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    private final ArrayKind kind;
+    private ArrayField field;
+
+    ArrayProperty(String name, int index, MethodHandle getter, MethodHandle setter, ArrayKind kind) {
+      super(name, index);
+      this.getter = getter;
+      this.setter = setter;
+      this.kind = kind;
+    }
+
+    @Override
+    void define(StructBuilder builder) {
+      kind.define(builder, name, index);
+    }
+
+    @Override
+    void resolve(Struct struct) {
+      field = struct.arrayField(name, kind.elementFieldType);
+    }
+
+    @Override
+    void encode(IndexedStructEncoder encoder, Object target) throws Throwable {
+      Object array = array(target);
+      if (array != null) {
+        kind.encode(encoder, field, array);
+      }
+    }
+
+    @Override
+    void decode(IndexedStructDecoder decoder, Object target) throws Throwable {
+      int length = decoder.array(field);
+      if (length >= 0) {
+        Object array = kind.decode(decoder, length);
+        decoder.end();
+        setter.invokeExact(target, array);
+      }
+    }
+
+    @Override
+    void encode(StructEncoder<?> encoder, Object target) throws Throwable {
+      Object array = array(target);
+      if (array != null) {
+        kind.encode(encoder, name, array);
+      }
+    }
+
+    @Override
+    void decode(StructDecoder<?> decoder, Object target) throws Throwable {
+      Object array = kind.decode(decoder, name);
+      if (array != null) {
+        setter.invokeExact(target, array);
+      }
+    }
+
+    private Object array(Object target) throws Throwable {
+      Object array = getter.invokeExact(target);
+      // only the arrays of strings can hold nulls
+      if (array instanceof Object[]) {
+        checkNoNullElement(Arrays.asList((Object[]) array));
+      }
+      return array;
+    }
+  }
+
+  static final class StructProperty extends Property {
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    private final StructCodec<Object> codec;
+    private StructField field;
+
+    @SuppressWarnings("unchecked")
+    StructProperty(String name, int index, MethodHandle getter, MethodHandle setter, Class<?> type) {
+      super(name, index);
+      this.getter = getter;
+      this.setter = setter;
+      this.codec = (StructCodec<Object>) StructCodec.forClass(type);
+    }
+
+    @Override
+    void define(StructBuilder builder) {
+      builder.struct(name, index, codec.struct());
+    }
+
+    @Override
+    void resolve(Struct struct) {
+      field = struct.field(name, StructField.class);
+    }
+
+    @Override
+    void encode(IndexedStructEncoder encoder, Object target) throws Throwable {
+      Object value = getter.invokeExact(target);
+      if (value != null) {
+        encoder.struct(field);
+        codec.encodeFields(encoder, value);
+        encoder.end();
+      }
+    }
+
+    @Override
+    void decode(IndexedStructDecoder decoder, Object target) throws Throwable {
+      if (decoder.struct(field)) {
+        Object value = codec.decodeFields(decoder);
+        decoder.end();
+        setter.invokeExact(target, value);
+      }
+    }
+
+    @Override
+    void encode(StructEncoder<?> encoder, Object target) throws Throwable {
+      Object value = getter.invokeExact(target);
+      if (value != null) {
+        encoder.struct(name, value, codec);
+      }
+    }
+
+    @Override
+    void decode(StructDecoder<?> decoder, Object target) throws Throwable {
+      StructDecoder<?> structDecoder = decoder.struct(name);
+      if (structDecoder != null) {
+        Object value = codec.decode(structDecoder);
+        structDecoder.end();
+        setter.invokeExact(target, value);
+      }
+    }
+  }
+
+  /**
+   * Arrays or lists of mapped classes, which are not encoded when null. Their elements cannot be null.
+   */
+  static final class StructsProperty extends Property {
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    private final Class<?> elementType;
+    private final boolean array;
+    private final StructCodec<Object> codec;
+    private ArrayField field;
+
+    @SuppressWarnings("unchecked")
+    StructsProperty(String name, int index, MethodHandle getter, MethodHandle setter, Class<?> elementType, boolean array) {
+      super(name, index);
+      this.getter = getter;
+      this.setter = setter;
+      this.elementType = elementType;
+      this.array = array;
+      this.codec = (StructCodec<Object>) StructCodec.forClass(elementType);
+    }
+
+    @Override
+    void define(StructBuilder builder) {
+      builder.structs(name, index, codec.struct());
+    }
+
+    @Override
+    void resolve(Struct struct) {
+      field = struct.arrayField(name, StructField.class);
+    }
+
+    @Override
+    void encode(IndexedStructEncoder encoder, Object target) throws Throwable {
+      List<Object> values = values(target);
+      if (values != null) {
+        encoder.structs(field, values.size());
+        for (Object value : values) {
+          encoder.add();
+          codec.encodeFields(encoder, value);
+          encoder.end();
+        }
+        encoder.end();
+      }
+    }
+
+    @Override
+    void decode(IndexedStructDecoder decoder, Object target) throws Throwable {
+      int length = decoder.array(field);
+      if (length >= 0) {
+        List<Object> values = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+          decoder.next();
+          values.add(codec.decodeFields(decoder));
+          decoder.end();
+        }
+        decoder.end();
+        setter.invokeExact(target, toFieldValue(values));
+      }
+    }
+
+    @Override
+    void encode(StructEncoder<?> encoder, Object target) throws Throwable {
+      List<Object> values = values(target);
+      if (values != null) {
+        encoder.structs(name, values, codec);
+      }
+    }
+
+    @Override
+    void decode(StructDecoder<?> decoder, Object target) throws Throwable {
+      StructArrayDecoder<?> arrayDecoder = decoder.structs(name);
+      if (arrayDecoder != null) {
+        int length = arrayDecoder.length();
+        List<Object> values = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+          StructDecoder<?> element = arrayDecoder.next();
+          values.add(codec.decode(element));
+          element.end();
+        }
+        arrayDecoder.end();
+        setter.invokeExact(target, toFieldValue(values));
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> values(Object target) throws Throwable {
+      Object value = getter.invokeExact(target);
+      if (value == null) {
+        return null;
+      }
+      List<Object> values = array ? Arrays.asList((Object[]) value) : (List<Object>) value;
+      checkNoNullElement(values);
+      return values;
+    }
+
+    private Object toFieldValue(List<Object> values) {
+      if (!array) {
+        return values;
+      }
+      return values.toArray((Object[]) Array.newInstance(elementType, values.size()));
+    }
+  }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.mapping;
+
+import org.terracotta.runnel.Struct;
+import org.terracotta.runnel.StructBuilder;
+import org.terracotta.runnel.decoding.IndexedStructDecoder;
+import org.terracotta.runnel.decoding.StructDecoder;
+import org.terracotta.runnel.encoding.IndexedStructEncoder;
+import org.terracotta.runnel.encoding.StructEncoder;
+
+/**
+ * The mapping of one annotated java field to one structure field.
+ */
+abstract class Property {
+
+  protected final String name;
+  protected final int index;
+
+  Property(String name, int index) {
+    this.name = name;
+    this.index = index;
+  }
+
+  int index() {
+    return index;
+  }
+
+  abstract void define(StructBuilder builder);
+
+  abstract void resolve(Struct struct);
+
+  abstract void encode(IndexedStructEncoder encoder, Object target) throws Throwable;
+
+  abstract void decode(IndexedStructDecoder decoder, Object target) throws Throwable;
+
+  abstract void encode(StructEncoder<?> encoder, Object target) throws Throwable;
+
+  abstract void decode(StructDecoder<?> decoder, Object target) throws Throwable;
+
+  /**
+   * @throws IllegalArgumentException if an element is null, which the array fields cannot encode.
+   */
+  void checkNoNullElement(Iterable<?> values) {
+    int i = 0;
+    for (Object value : values) {
+      if (value == null) {
+        throw new IllegalArgumentException("Cannot encode null element at index " + i + " of field : " + name);
+      }
+      i++;
+    }
+  }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.mapping;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field of a class as being part of its {@link StructCodec} structure.
+ * <p>
+ * Supported field types are {@code boolean}, {@code char}, {@code int}, {@code long}, {@code double} and their boxed
+ * counterparts, {@link String}, {@link java.nio.ByteBuffer}, enums whose constants are annotated with
+ * {@link RunnelEnumValue}, classes themselves annotated with {@link RunnelField}, arrays of primitives or strings,
+ * and arrays or {@link java.util.List}s of annotated classes.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface RunnelField {
+
+  /**
+   * The index of the field in the structure, which must never change over time as it is part of the encoded bytes.
+   */
+  int index();
+
+  /**
+   * The name of the field in the structure, defaulting to the java field name.
+   */
+  String name() default "";
+
+}
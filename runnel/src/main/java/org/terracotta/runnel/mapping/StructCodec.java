@@ -0,0 +1,255 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.mapping;
+
+import org.terracotta.runnel.Struct;
+import org.terracotta.runnel.StructBuilder;
+import org.terracotta.runnel.decoding.IndexedStructDecoder;
+import org.terracotta.runnel.decoding.StructDecoder;
+import org.terracotta.runnel.encoding.IndexedStructEncoder;
+import org.terracotta.runnel.encoding.StructEncoder;
+import org.terracotta.runnel.encoding.StructEncoderFunction;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A codec mapping the fields of a class annotated with {@link RunnelField} to a {@link Struct}.
+ * <p>
+ * The structure and the accessors of the annotated fields are computed once per class, then encoding and decoding
+ * go through {@link IndexedStructEncoder} and {@link IndexedStructDecoder} with pre-resolved fields, so no name lookup
+ * happens. The codec also is a {@link StructEncoderFunction} so that mapped classes can be embedded in hand-written
+ * structures, with {@link StructBuilder#struct(String, int, Struct)} and {@link #struct()}.
+ * <p>
+ * Mapped classes need a no-arg constructor, of any visibility. Absent fields are left to the value the constructor
+ * gave them when decoding, and null fields are not encoded.
+ * Note: Instances of this class are thread-safe.
+ */
+public final class StructCodec<T> implements StructEncoderFunction<T> {
+
+  private static final int INITIAL_BUFFER_SIZE = 256;
+  private static final int MAX_CACHED_BUFFER_SIZE = 64 * 1024;
+
+  private static final ClassValue<StructCodec<?>> CODECS = new ClassValue<StructCodec<?>>() {
+    @Override
+    protected StructCodec<?> computeValue(Class<?> type) {
+      return new StructCodec<>(type);
+    }
+  };
+  private static final ThreadLocal<Set<Class<?>>> BEING_BUILT = ThreadLocal.withInitial(HashSet::new);
+  private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocate(INITIAL_BUFFER_SIZE));
+
+  private final Class<T> type;
+  private final MethodHandle constructor;
+  private final Property[] properties;
+  private final Struct struct;
+
+  /**
+   * Get the codec of a class, building it on first use.
+   * @param type the class, which fields are annotated with {@link RunnelField}.
+   * @param <T> the class type.
+   * @return the codec.
+   * @throws IllegalArgumentException if the class cannot be mapped.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> StructCodec<T> forClass(Class<T> type) throws IllegalArgumentException {
+    return (StructCodec<T>) CODECS.get(type);
+  }
+
+  private StructCodec(Class<T> type) {
+    if (!BEING_BUILT.get().add(type)) {
+      throw new IllegalArgumentException("Recursive structures are not supported : " + type.getName());
+    }
+    try {
+      this.type = type;
+      this.constructor = findConstructor(type);
+
+      List<Property> properties = new ArrayList<>();
+      for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+        for (Field field : c.getDeclaredFields()) {
+          RunnelField annotation = field.getAnnotation(RunnelField.class);
+          if (annotation != null) {
+            properties.add(Properties.create(field, annotation));
+          }
+        }
+      }
+      if (properties.isEmpty()) {
+        throw new IllegalArgumentException("No field annotated with @" + RunnelField.class.getSimpleName() + " in " + type.getName());
+      }
+      properties.sort(Comparator.comparingInt(Property::index));
+      this.properties = properties.toArray(new Property[0]);
+
+      StructBuilder builder = StructBuilder.newStructBuilder();
+      for (Property property : this.properties) {
+        property.define(builder);
+      }
+      this.struct = builder.build();
+      for (Property property : this.properties) {
+        property.resolve(struct);
+      }
+    } finally {
+      BEING_BUILT.get().remove(type);
+    }
+  }
+
+  /**
+   * @return the structure the mapped class is encoded with.
+   */
+  public Struct struct() {
+    return struct;
+  }
+
+  /**
+   * Encode a value into a newly allocated heap byte buffer of the exact size.
+   * @param value the value to encode.
+   * @return the encoded value, positioned right after the encoded bytes.
+   */
+  public ByteBuffer encode(T value) {
+    ByteBuffer buffer = BUFFERS.get();
+    while (true) {
+      buffer.clear();
+      try {
+        encode(value, buffer);
+        break;
+      } catch (BufferOverflowException e) {
+        buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+        if (buffer.capacity() <= MAX_CACHED_BUFFER_SIZE) {
+          BUFFERS.set(buffer);
+        }
+      }
+    }
+    buffer.flip();
+    ByteBuffer result = ByteBuffer.allocate(buffer.remaining());
+    result.put(buffer);
+    return result;
+  }
+
+  /**
+   * Encode a value into the passed byte buffer.
+   * @param value the value to encode.
+   * @param byteBuffer the byte buffer to encode into, which must have a few bytes of headroom.
+   * @return the passed-in byte buffer.
+   * @throws BufferOverflowException if the byte buffer is too small.
+   */
+  public ByteBuffer encode(T value, ByteBuffer byteBuffer) throws BufferOverflowException {
+    IndexedStructEncoder encoder = struct.indexedEncoder(byteBuffer);
+    encodeFields(encoder, value);
+    return encoder.encode();
+  }
+
+  /**
+   * Decode a value.
+   * @param byteBuffer the byte buffer containing the value.
+   * @return the decoded value.
+   */
+  public T decode(ByteBuffer byteBuffer) {
+    return decodeFields(struct.indexedDecoder(byteBuffer));
+  }
+
+  /**
+   * Encode a value with an encoder of a structure built with {@link #struct()}, or an alias of it.
+   * @param encoder the encoder.
+   * @param value the value to encode.
+   */
+  @Override
+  public void encode(StructEncoder<?> encoder, T value) {
+    try {
+      for (Property property : properties) {
+        property.encode(encoder, value);
+      }
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  /**
+   * Decode a value with a decoder of a structure built with {@link #struct()}, or an alias of it.
+   * @param decoder the decoder.
+   * @return the decoded value.
+   */
+  public T decode(StructDecoder<?> decoder) {
+    try {
+      T value = newInstance();
+      for (Property property : properties) {
+        property.decode(decoder, value);
+      }
+      return value;
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  void encodeFields(IndexedStructEncoder encoder, Object value) {
+    try {
+      for (Property property : properties) {
+        property.encode(encoder, value);
+      }
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  T decodeFields(IndexedStructDecoder decoder) {
+    try {
+      T value = newInstance();
+      for (Property property : properties) {
+        property.decode(decoder, value);
+      }
+      return value;
+    } catch (Throwable t) {
+      throw propagate(t);
+    }
+  }
+
+  private T newInstance() throws Throwable {
+    return type.cast(constructor.invokeExact());
+  }
+
+  private static MethodHandle findConstructor(Class<?> type) {
+    if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+      throw new IllegalArgumentException("Cannot map abstract type : " + type.getName());
+    }
+    try {
+      Constructor<?> constructor = type.getDeclaredConstructor();
+      constructor.setAccessible(true);
+      return MethodHandles.lookup().unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+    } catch (NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+      throw new IllegalArgumentException("Cannot access no-arg constructor of " + type.getName(), e);
+    }
+  }
+
+  private static RuntimeException propagate(Throwable t) {
+    if (t instanceof RuntimeException) {
+      return (RuntimeException) t;
+    }
+    if (t instanceof Error) {
+      throw (Error) t;
+    }
+    return new IllegalStateException(t);
+  }
+
+}
@@ -15,6 +15,7 @@
  */
 package org.terracotta.runnel.metadata;
 
+import org.terracotta.runnel.decoding.fields.ArrayField;
 import org.terracotta.runnel.decoding.fields.Field;
 import org.terracotta.runnel.decoding.fields.StructField;
 import org.terracotta.runnel.utils.ReadBuffer;
@@ -93,6 +94,41 @@ public class Metadata {
     return map;
   }
 
+  /**
+   * Look up a field by name.
+   * @param name the field name.
+   * @return the field.
+   */
+  public Field resolveField(String name) {
+    Field field = getFieldByName(name);
+    if (field == null) {
+      throw new IllegalArgumentException("No such field : " + name);
+    }
+    return field;
+  }
+
+  /**
+   * Look up a field by name and check its type, without any ordering constraint.
+   * @param name the field name.
+   * @param fieldClazz the expected field type.
+   * @param subFieldClazz the expected arrayed field type when looking up an array, null otherwise.
+   * @return the field.
+   */
+  public <T extends Field, S extends Field> T resolveField(String name, Class<T> fieldClazz, Class<S> subFieldClazz) {
+    Field field = resolveField(name);
+    if (field.getClass() != fieldClazz) {
+      throw new IllegalArgumentException("Invalid type for field '" + name + "', expected : '" + fieldClazz.getSimpleName() + "' but was '" + field.getClass().getSimpleName() + "'");
+    }
+    if (subFieldClazz != null) {
+      ArrayField arrayField = (ArrayField) field;
+      Field nextSubField = arrayField.subField();
+      if (!nextSubField.getClass().equals(subFieldClazz)) {
+        throw new IllegalArgumentException("Invalid subtype for field '" + name + "', expected : '" + subFieldClazz.getSimpleName() + "' but was '" + nextSubField.getClass().getSimpleName() + "'");
+      }
+    }
+    return fieldClazz.cast(field);
+  }
+
   Field getFieldByName(String name) {
     return fieldsByName.get(name);
   }
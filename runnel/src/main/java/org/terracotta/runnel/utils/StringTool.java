@@ -349,6 +349,31 @@ public final class StringTool {
 
   }
 
+  /**
+   * Appends the <i>modified</i> UTF-8 representation of a {@code String} to the {@code ByteBuffer} provided,
+   * reading the characters straight from {@code str} so that no intermediate {@code char[]} gets allocated.
+   * The buffer's position is advanced by the number of bytes required by the modified UTF-8 representation.
+   *
+   * @param buffer the {@code ByteBuffer} into which {@code str} is encoded
+   * @param str the {@code String} to encode
+   * @throws BufferOverflowException if {@code buffer} is too small for the UTF-encoded {@code str}
+   * @throws ReadOnlyBufferException if {@code buffer} is read-only
+   */
+  public static void putEncodedChars(final ByteBuffer buffer,
+                                     final String str) throws BufferOverflowException, ReadOnlyBufferException {
+    final int strLength = str.length();
+    for (int i = 0; i < strLength; i++) {
+      final char c = str.charAt(i);
+      if (c <= '\u007F' && c != '\u0000') {
+        buffer.put((byte) c);
+      } else if (c <= '\u07FF') {
+        buffer.put((byte) (0xC0 | c >>> 6)).put((byte) (0x80 | (c & 0x3F)));
+      } else {
+        buffer.put((byte) (0xE0 | c >>> 12)).put((byte) (0x80 | ((c >>> 6) & 0x3F))).put((byte) (0x80 | (c & 0x3F)));
+      }
+    }
+  }
+
   /**
    * Appends the <i>modified</i> UTF-8 representation of a {@code String} to the {@code ByteBuffer} provided.
    * The buffer's position is advanced by the number of bytes required by the modified UTF-8 representation.
@@ -494,6 +519,23 @@ public final class StringTool {
     return (int) len;
   }
 
+  /**
+   * Calculates the number of bytes into which a {@code String} is encoded as modified UTF-8, without any
+   * type or length header.
+   *
+   * @param str the {@code String} for which the length is to be calculated
+   * @return the length of the raw encoding of {@code str}
+   * @throws NullPointerException if {@code str} is {@code null}
+   * @throws IllegalStateException if the calculated length is greater than {@code Integer.MAX_VALUE}
+   */
+  public static int getEncodedLength(final String str) {
+    final long len = getEncodedLen(str);
+    if (len > Integer.MAX_VALUE) {
+      throw new IllegalStateException("Encoded length greater than Integer.MAX_VALUE: " + len);
+    }
+    return (int) len;
+  }
+
   /**
    * Calculates the length of a {@code String} when encoded using modified UTF-8.
    *
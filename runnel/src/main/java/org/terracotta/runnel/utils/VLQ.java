@@ -22,6 +22,11 @@ import java.nio.ByteBuffer;
  */
 public class VLQ {
 
+  /**
+   * The maximum number of bytes an encoded positive int can span.
+   */
+  public static final int MAX_ENCODED_SIZE = 5;
+
   public static void encode(int value, ByteBuffer out) {
     if (value < 0) {
       throw new IllegalArgumentException("Cannot encode negative values");
@@ -15,6 +15,7 @@
  */
 package org.terracotta.runnel.utils;
 
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 
 /**
@@ -52,8 +53,70 @@ public class WriteBuffer {
     VLQ.encode(value, byteBuffer);
   }
 
+  /**
+   * Copy the remaining bytes of the passed buffer, leaving its position untouched so that it can be written again.
+   * @param buffer the buffer to copy.
+   */
   public void putByteBuffer(ByteBuffer buffer) {
+    int position = buffer.position();
     byteBuffer.put(buffer);
+    buffer.position(position);
+  }
+
+  public void putString(String value) {
+    putVlqInt(StringTool.getEncodedLength(value));
+    StringTool.putEncodedChars(byteBuffer, value);
+  }
+
+  /**
+   * Reserve room for a VLQ-encoded size that is not known yet, to be filled in later with
+   * {@link #backPatchVlqInt(int)} once everything it accounts for has been written.
+   * @return the reserved position.
+   */
+  public int reserveVlqInt() {
+    int position = byteBuffer.position();
+    if (byteBuffer.limit() - position < VLQ.MAX_ENCODED_SIZE) {
+      throw new BufferOverflowException();
+    }
+    byteBuffer.position(position + VLQ.MAX_ENCODED_SIZE);
+    return position;
+  }
+
+  /**
+   * Write the size of everything written since the reservation at its reserved position, then move the written
+   * bytes back over the unused part of the reservation so that the output is the same as if the size had been
+   * known upfront.
+   * @param reservedPosition the position returned by {@link #reserveVlqInt()}.
+   */
+  public void backPatchVlqInt(int reservedPosition) {
+    int end = byteBuffer.position();
+    int valueStart = reservedPosition + VLQ.MAX_ENCODED_SIZE;
+    int size = end - valueStart;
+    int sizeLength = VLQ.encodedSize(size);
+    int shift = VLQ.MAX_ENCODED_SIZE - sizeLength;
+    if (shift > 0) {
+      moveBack(valueStart, reservedPosition + sizeLength, size);
+    }
+    byteBuffer.position(reservedPosition);
+    VLQ.encode(size, byteBuffer);
+    byteBuffer.position(end - shift);
+  }
+
+  private void moveBack(int from, int to, int length) {
+    if (byteBuffer.hasArray()) {
+      byte[] array = byteBuffer.array();
+      int offset = byteBuffer.arrayOffset();
+      System.arraycopy(array, offset + from, array, offset + to, length);
+    } else {
+      // forward copy is safe as the destination is always before the source
+      int i = 0;
+      for (; i + 8 <= length; i += 8) {
+        byteBuffer.putLong(to + i, byteBuffer.getLong(from + i));
+      }
+      for (; i < length; i++) {
+        byteBuffer.put(to + i, byteBuffer.get(from + i));
+      }
+    }
   }
 
 }
@@ -0,0 +1,275 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel;
+
+import org.junit.Test;
+import org.terracotta.runnel.decoding.IndexedStructDecoder;
+import org.terracotta.runnel.decoding.StructDecoder;
+import org.terracotta.runnel.decoding.fields.ArrayField;
+import org.terracotta.runnel.decoding.fields.EnumField;
+import org.terracotta.runnel.decoding.fields.FloatingPoint64Field;
+import org.terracotta.runnel.decoding.fields.Int32Field;
+import org.terracotta.runnel.decoding.fields.Int64Field;
+import org.terracotta.runnel.decoding.fields.StringField;
+import org.terracotta.runnel.decoding.fields.StructField;
+
+import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
+
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class IndexedStructTest {
+
+  private enum Letter {
+    A, B
+  }
+
+  private static final EnumMapping<Letter> LETTER_MAPPING = EnumMappingBuilder.newEnumMappingBuilder(Letter.class)
+      .mapping(Letter.A, 10)
+      .mapping(Letter.B, 200)
+      .build();
+
+  private static final Struct ENTRY = StructBuilder.newStructBuilder()
+      .string("key", 1)
+      .int32("value", 2)
+      .build();
+
+  private static final Struct STRUCT = StructBuilder.newStructBuilder()
+      .int32("age", 10)
+      .int64("id", 20)
+      .string("name", 30)
+      .enm("letter", 40, LETTER_MAPPING)
+      .struct("entry", 50, ENTRY)
+      .structs("entries", 60, ENTRY)
+      .int32s("counts", 70)
+      .strings("tags", 80)
+      .fp64("ratio", 90)
+      .build();
+
+  private static final Int32Field AGE = STRUCT.field("age", Int32Field.class);
+  private static final Int64Field ID = STRUCT.field("id", Int64Field.class);
+  private static final StringField NAME = STRUCT.field("name", StringField.class);
+  private static final EnumField<Letter> LETTER = STRUCT.enumField("letter");
+  private static final StructField ENTRY_FIELD = STRUCT.field("entry", StructField.class);
+  private static final ArrayField ENTRIES = STRUCT.arrayField("entries", StructField.class);
+  private static final ArrayField COUNTS = STRUCT.arrayField("counts", Int32Field.class);
+  private static final ArrayField TAGS = STRUCT.arrayField("tags", StringField.class);
+  private static final FloatingPoint64Field RATIO = STRUCT.field("ratio", FloatingPoint64Field.class);
+  private static final StringField KEY = ENTRY.field("key", StringField.class);
+  private static final Int32Field VALUE = ENTRY.field("value", Int32Field.class);
+
+  @Test
+  public void testSameBytesAsStructEncoder() throws Exception {
+    String longName = buildString(300);
+
+    ByteBuffer expected = STRUCT.encoder()
+        .int32("age", 30)
+        .int64("id", 1234L)
+        .string("name", longName)
+        .enm("letter", Letter.B)
+        .struct("entry")
+          .string("key", "one")
+          .int32("value", 1)
+        .end()
+        .structs("entries")
+          .add()
+            .string("key", "two")
+          .end()
+          .add()
+            .int32("value", 3)
+          .end()
+        .end()
+        .int32s("counts").value(4).value(5).end()
+        .strings("tags").value("x").value("yy").end()
+        .fp64("ratio", 0.5)
+        .encode();
+    expected.rewind();
+
+    for (ByteBuffer bb : new ByteBuffer[] { ByteBuffer.allocate(1024), ByteBuffer.allocateDirect(1024) }) {
+      STRUCT.indexedEncoder(bb)
+          .int32(AGE, 30)
+          .int64(ID, 1234L)
+          .string(NAME, longName)
+          .enm(LETTER, Letter.B)
+          .struct(ENTRY_FIELD)
+            .string(KEY, "one")
+            .int32(VALUE, 1)
+          .end()
+          .structs(ENTRIES, 2)
+            .add()
+              .string(KEY, "two")
+            .end()
+            .add()
+              .int32(VALUE, 3)
+            .end()
+          .end()
+          .int32s(COUNTS, new int[] { 4, 5 })
+          .strings(TAGS, new String[] { "x", "yy" })
+          .fp64(RATIO, 0.5)
+          .encode();
+      bb.flip();
+
+      assertThat(bb, is(expected));
+    }
+  }
+
+  @Test
+  public void testDecodeAll() throws Exception {
+    ByteBuffer bb = STRUCT.indexedEncoder(ByteBuffer.allocate(1024))
+        .int32(AGE, 30)
+        .int64(ID, 1234L)
+        .string(NAME, "joe")
+        .enm(LETTER, Letter.A)
+        .struct(ENTRY_FIELD)
+          .string(KEY, "one")
+          .int32(VALUE, 1)
+        .end()
+        .structs(ENTRIES, 2)
+          .add()
+            .string(KEY, "two")
+          .end()
+          .add()
+            .int32(VALUE, 3)
+          .end()
+        .end()
+        .int32s(COUNTS, new int[] { 4, 5 })
+        .strings(TAGS, new String[] { "x", "yy" })
+        .fp64(RATIO, 0.5)
+        .encode();
+    bb.flip();
+
+    IndexedStructDecoder decoder = STRUCT.indexedDecoder(bb);
+    assertThat(decoder.has(AGE), is(true));
+    assertThat(decoder.int32(AGE), is(30));
+    assertThat(decoder.int64(ID), is(1234L));
+    assertThat(decoder.string(NAME), is("joe"));
+    assertThat(decoder.enm(LETTER), is(Letter.A));
+
+    assertThat(decoder.struct(ENTRY_FIELD), is(true));
+    assertThat(decoder.string(KEY), is("one"));
+    assertThat(decoder.int32(VALUE), is(1));
+    decoder.end();
+
+    assertThat(decoder.array(ENTRIES), is(2));
+    decoder.next();
+    assertThat(decoder.string(KEY), is("two"));
+    assertThat(decoder.has(VALUE), is(false));
+    decoder.end();
+    decoder.next();
+    assertThat(decoder.string(KEY), is(nullValue()));
+    assertThat(decoder.int32(VALUE), is(3));
+    decoder.end();
+    decoder.end();
+
+    assertThat(decoder.array(COUNTS), is(2));
+    assertThat(decoder.int32Value(), is(4));
+    assertThat(decoder.int32Value(), is(5));
+    decoder.end();
+
+    assertThat(decoder.array(TAGS), is(2));
+    assertThat(decoder.stringValue(), is("x"));
+    assertThat(decoder.stringValue(), is("yy"));
+    decoder.end();
+
+    assertThat(decoder.fp64(RATIO), is(0.5));
+  }
+
+  @Test
+  public void testDecodeWithSkippedFields() throws Exception {
+    ByteBuffer bb = STRUCT.encoder()
+        .int32("age", 30)
+        .int64("id", 1234L)
+        .struct("entry")
+          .string("key", "one")
+          .int32("value", 1)
+        .end()
+        .fp64("ratio", 0.5)
+        .encode();
+    bb.rewind();
+
+    IndexedStructDecoder decoder = STRUCT.indexedDecoder(bb);
+    assertThat(decoder.int64(ID), is(1234L));
+    assertThat(decoder.string(NAME), is(nullValue()));
+    assertThat(decoder.enm(LETTER), is(nullValue()));
+    assertThat(decoder.array(ENTRIES), is(-1));
+    assertThat(decoder.fp64(RATIO), is(0.5));
+  }
+
+  @Test
+  public void testStructDecoderReadsIndexedEncoding() throws Exception {
+    ByteBuffer bb = STRUCT.indexedEncoder(ByteBuffer.allocate(1024))
+        .int32(AGE, 30)
+        .string(NAME, "joe")
+        .encode();
+    bb.flip();
+
+    StructDecoder<Void> decoder = STRUCT.decoder(bb);
+    assertThat(decoder.int32("age"), is(30));
+    assertThat(decoder.int64("id"), is(nullValue()));
+    assertThat(decoder.string("name"), is("joe"));
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void testAbsentPrimitive() throws Exception {
+    ByteBuffer bb = STRUCT.indexedEncoder(ByteBuffer.allocate(1024))
+        .int32(AGE, 30)
+        .encode();
+    bb.flip();
+
+    STRUCT.indexedDecoder(bb).int64(ID);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEncodeOutOfOrder() throws Exception {
+    STRUCT.indexedEncoder(ByteBuffer.allocate(1024))
+        .int64(ID, 1234L)
+        .int32(AGE, 30);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testResolveWrongType() throws Exception {
+    STRUCT.field("age", Int64Field.class);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testCannotEncodeWithOpenStruct() throws Exception {
+    STRUCT.indexedEncoder(ByteBuffer.allocate(1024))
+        .struct(ENTRY_FIELD)
+          .string(KEY, "one")
+        .encode();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testMissingArrayElements() throws Exception {
+    STRUCT.indexedEncoder(ByteBuffer.allocate(1024))
+        .structs(ENTRIES, 2)
+          .add()
+            .string(KEY, "one")
+          .end()
+        .end();
+  }
+
+  private static String buildString(int length) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      sb.append((char) ('a' + (i % 26))).append('é');
+    }
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel;
+
+import org.junit.Test;
+import org.terracotta.runnel.decoding.LazyArrayDecoder;
+import org.terracotta.runnel.decoding.LazyStructArrayDecoder;
+import org.terracotta.runnel.decoding.LazyStructDecoder;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class LazyStructDecoderTest {
+
+  private static final Struct ENTRY = StructBuilder.newStructBuilder()
+      .string("key", 1)
+      .int32("value", 2)
+      .build();
+
+  private static final Struct STRUCT = StructBuilder.newStructBuilder()
+      .string("name", 1)
+      .struct("entry", 2, ENTRY)
+      .structs("entries", 3, ENTRY)
+      .int64s("ids", 4)
+      .bool("flag", 5)
+      .build();
+
+  private static final Struct OLD_STRUCT = StructBuilder.newStructBuilder()
+      .struct("entry", 2, ENTRY)
+      .bool("flag", 5)
+      .build();
+
+  private ByteBuffer encode() {
+    ByteBuffer bb = STRUCT.encoder()
+        .string("name", "joe")
+        .struct("entry")
+          .string("key", "one")
+          .int32("value", 1)
+        .end()
+        .structs("entries")
+          .add()
+            .string("key", "two")
+            .int32("value", 2)
+          .end()
+          .add()
+            .string("key", "three")
+          .end()
+        .end()
+        .int64s("ids").value(10L).value(20L).value(30L).end()
+        .bool("flag", true)
+        .encode();
+    bb.rewind();
+    return bb;
+  }
+
+  @Test
+  public void testReadInAnyOrder() throws Exception {
+    ByteBuffer bb = encode();
+    LazyStructDecoder decoder = STRUCT.lazyDecoder(bb);
+    assertThat(bb.remaining(), is(0));
+
+    assertThat(decoder.bool("flag"), is(true));
+
+    LazyArrayDecoder<Long> ids = decoder.int64s("ids");
+    assertThat(ids.length(), is(3));
+    assertThat(ids.value(2), is(30L));
+    assertThat(ids.value(0), is(10L));
+
+    LazyStructArrayDecoder entries = decoder.structs("entries");
+    assertThat(entries.length(), is(2));
+    assertThat(entries.get(1).string("key"), is("three"));
+    assertThat(entries.get(1).int32("value"), is(nullValue()));
+    assertThat(entries.get(0).int32("value"), is(2));
+    assertThat(entries.get(0).string("key"), is("two"));
+
+    assertThat(decoder.struct("entry").int32("value"), is(1));
+    assertThat(decoder.string("name"), is("joe"));
+    assertThat(decoder.string("name"), is("joe"));
+  }
+
+  @Test
+  public void testAbsentFields() throws Exception {
+    ByteBuffer bb = STRUCT.encoder()
+        .string("name", "joe")
+        .encode();
+    bb.rewind();
+
+    LazyStructDecoder decoder = STRUCT.lazyDecoder(bb);
+    assertThat(decoder.has("name"), is(true));
+    assertThat(decoder.has("flag"), is(false));
+    assertThat(decoder.bool("flag"), is(nullValue()));
+    assertThat(decoder.struct("entry"), is(nullValue()));
+    assertThat(decoder.structs("entries"), is(nullValue()));
+    assertThat(decoder.int64s("ids"), is(nullValue()));
+  }
+
+  @Test
+  public void testUnknownFieldsAreSkipped() throws Exception {
+    LazyStructDecoder decoder = OLD_STRUCT.lazyDecoder(encode());
+
+    assertThat(decoder.bool("flag"), is(true));
+    assertThat(decoder.struct("entry").string("key"), is("one"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongType() throws Exception {
+    STRUCT.lazyDecoder(encode()).int32("name");
+  }
+
+}
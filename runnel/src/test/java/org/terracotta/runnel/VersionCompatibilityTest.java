@@ -18,6 +18,7 @@ package org.terracotta.runnel;
 import org.junit.Test;
 import org.terracotta.runnel.decoding.Enm;
 import org.terracotta.runnel.decoding.StructDecoder;
+import org.terracotta.runnel.encoding.StructEncoder;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
@@ -143,4 +144,25 @@ public class VersionCompatibilityTest {
     STRUCT_V2.dump(encoded_v1, new PrintStream(new ByteArrayOutputStream()));
   }
 
+  @Test
+  public void testForwardStreaming() throws Exception {
+    StructEncoder<Void> encoder = STRUCT_V2.encoder()
+        .int32("age", 30)
+        .string("name", "john doe")
+        .int64("id", 1234L)
+        .enm("letter", TestEnum_v2.C)
+        .enm("2ndLetter", TestEnum_v2.A);
+    ByteBuffer encoded_v2 = encoder.encode();
+    ByteBuffer streamed_v2 = encoder.encodeStreaming(ByteBuffer.allocateDirect(64));
+
+    encoded_v2.rewind();
+    streamed_v2.flip();
+    assertThat(streamed_v2, is(encoded_v2));
+
+    StructDecoder decoder_v1 = STRUCT_V1.decoder(streamed_v2);
+    assertThat(decoder_v1.int32("age"), is(30));
+    assertThat(decoder_v1.int64("id"), is(1234L));
+    assertThat(decoder_v1.enm("letter").raw(), is(30));
+  }
+
 }
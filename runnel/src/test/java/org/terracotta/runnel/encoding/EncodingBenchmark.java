@@ -0,0 +1,165 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.encoding;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.terracotta.runnel.Struct;
+import org.terracotta.runnel.StructBuilder;
+import org.terracotta.runnel.decoding.IndexedStructDecoder;
+import org.terracotta.runnel.decoding.StructArrayDecoder;
+import org.terracotta.runnel.decoding.StructDecoder;
+import org.terracotta.runnel.decoding.fields.ArrayField;
+import org.terracotta.runnel.decoding.fields.EnumField;
+import org.terracotta.runnel.decoding.fields.Int32Field;
+import org.terracotta.runnel.decoding.fields.Int64Field;
+import org.terracotta.runnel.decoding.fields.StringField;
+import org.terracotta.runnel.decoding.fields.StructField;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.terracotta.runnel.encoding.EncodingPerfTest.CELL_STRUCT;
+import static org.terracotta.runnel.encoding.EncodingPerfTest.KEY_STRUCT;
+
+/**
+ * Compares the name-based {@link StructEncoder} / {@link StructDecoder} with the index-based
+ * {@link IndexedStructEncoder} / {@link IndexedStructDecoder} on the record layout of {@link EncodingPerfTest}.
+ * Run with {@code java -cp <test classpath> org.terracotta.runnel.encoding.EncodingBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodingBenchmark {
+
+  private static final Struct RECORD = StructBuilder.newStructBuilder()
+      .int64("msn", 10)
+      .struct("key", 20, KEY_STRUCT)
+      .structs("cells", 30, CELL_STRUCT)
+      .build();
+
+  private static final Int64Field MSN = RECORD.field("msn", Int64Field.class);
+  private static final StructField KEY = RECORD.field("key", StructField.class);
+  private static final ArrayField CELLS = RECORD.arrayField("cells", StructField.class);
+  private static final StringField KEY_STRING = KEY_STRUCT.field("string", StringField.class);
+  private static final StringField CELL_NAME = CELL_STRUCT.field("name", StringField.class);
+  private static final EnumField<EncodingPerfTest.Typ> CELL_TYPE = CELL_STRUCT.enumField("type");
+  private static final Int32Field CELL_INT = CELL_STRUCT.field("int", Int32Field.class);
+  private static final StringField CELL_STRING = CELL_STRUCT.field("string", StringField.class);
+
+  private final ByteBuffer buffer = ByteBuffer.allocate(4096);
+  private ByteBuffer encoded;
+
+  @Setup
+  public void setUp() {
+    encoded = encodeByName();
+  }
+
+  @Benchmark
+  public ByteBuffer encodeByName() {
+    return RECORD.encoder()
+        .int64("msn", 42L)
+        .struct("key")
+          .string("string", "key42")
+        .end()
+        .structs("cells")
+          .add()
+            .string("name", "Cell1")
+            .enm("type", EncodingPerfTest.Typ.STRING)
+            .string("string", "some cell value")
+          .end()
+          .add()
+            .string("name", "Cell2")
+            .enm("type", EncodingPerfTest.Typ.INT)
+            .int32("int", 42)
+          .end()
+        .end()
+        .encode();
+  }
+
+  @Benchmark
+  public ByteBuffer encodeByIndex() {
+    buffer.clear();
+    return RECORD.indexedEncoder(buffer)
+        .int64(MSN, 42L)
+        .struct(KEY)
+          .string(KEY_STRING, "key42")
+        .end()
+        .structs(CELLS, 2)
+          .add()
+            .string(CELL_NAME, "Cell1")
+            .enm(CELL_TYPE, EncodingPerfTest.Typ.STRING)
+            .string(CELL_STRING, "some cell value")
+          .end()
+          .add()
+            .string(CELL_NAME, "Cell2")
+            .enm(CELL_TYPE, EncodingPerfTest.Typ.INT)
+            .int32(CELL_INT, 42)
+          .end()
+        .end()
+        .encode();
+  }
+
+  @Benchmark
+  public long decodeByName() {
+    encoded.rewind();
+    StructDecoder<Void> decoder = RECORD.decoder(encoded);
+    long sum = decoder.int64("msn");
+    StructArrayDecoder<StructDecoder<Void>> cells = decoder.structs("cells");
+    while (cells.hasNext()) {
+      Integer value = cells.next().int32("int");
+      if (value != null) {
+        sum += value;
+      }
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long decodeByIndex() {
+    encoded.rewind();
+    IndexedStructDecoder decoder = RECORD.indexedDecoder(encoded);
+    long sum = decoder.int64(MSN);
+    int length = decoder.array(CELLS);
+    for (int i = 0; i < length; i++) {
+      decoder.next();
+      if (decoder.has(CELL_INT)) {
+        sum += decoder.int32(CELL_INT);
+      }
+      decoder.end();
+    }
+    return sum;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(EncodingBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
@@ -73,4 +73,18 @@ public class ArrayTest {
     assertThat(readBuffer.getString(5), is("three"));
   }
 
+  @Test
+  public void testStreaming() throws Exception {
+    ArrayDataHolder arrayDataHolder = new ArrayDataHolder(Arrays.asList(new StringDataHolder("one", 3), new StringDataHolder("two", 6), new StringDataHolder("three", 9)), 7);
+
+    ByteBuffer expected = ByteBuffer.allocate(arrayDataHolder.size(true));
+    arrayDataHolder.encode(new WriteBuffer(expected), true);
+    expected.flip();
+
+    ByteBuffer bb = ByteBuffer.allocateDirect(arrayDataHolder.size(true) + 4);
+    arrayDataHolder.encodeStreaming(new WriteBuffer(bb), true);
+    bb.flip();
+    assertThat(bb, is(expected));
+  }
+
 }
@@ -77,4 +77,18 @@ public class StructTest {
     assertThat(readBuffer.getString(8), is("deuxieme"));
   }
 
+  @Test
+  public void testStreaming() throws Exception {
+    StructDataHolder structDataHolder = new StructDataHolder(Arrays.asList(new StringDataHolder("eins", 2), new Int64DataHolder(111L, 3), new StringDataHolder("deuxieme", 4)), 11);
+
+    ByteBuffer expected = ByteBuffer.allocate(structDataHolder.size(true));
+    structDataHolder.encode(new WriteBuffer(expected), true);
+    expected.flip();
+
+    ByteBuffer bb = ByteBuffer.allocateDirect(structDataHolder.size(true) + 4);
+    structDataHolder.encodeStreaming(new WriteBuffer(bb), true);
+    bb.flip();
+    assertThat(bb, is(expected));
+  }
+
 }
@@ -0,0 +1,226 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.mapping;
+
+import org.junit.Test;
+import org.terracotta.runnel.decoding.StructDecoder;
+import org.terracotta.runnel.encoding.StructEncoder;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.fail;
+
+public class StructCodecTest {
+
+  enum Color {
+    @RunnelEnumValue(1) RED,
+    @RunnelEnumValue(2) BLUE
+  }
+
+  static class Entry {
+    @RunnelField(index = 1)
+    String key;
+    @RunnelField(index = 2)
+    int value;
+
+    Entry() {
+    }
+
+    Entry(String key, int value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+
+  static class Person {
+    @RunnelField(index = 10)
+    int age;
+    @RunnelField(index = 20, name = "identifier")
+    long id;
+    @RunnelField(index = 30)
+    String name;
+    @RunnelField(index = 40)
+    Color color;
+    @RunnelField(index = 50)
+    Entry entry;
+    @RunnelField(index = 60)
+    List<Entry> entries;
+    @RunnelField(index = 70)
+    int[] counts;
+    @RunnelField(index = 80)
+    String[] tags;
+    @RunnelField(index = 90)
+    Double ratio;
+    @RunnelField(index = 100)
+    boolean flag;
+    @RunnelField(index = 110)
+    Entry[] moreEntries;
+    int notMapped = 7;
+  }
+
+  static class Recursive {
+    @RunnelField(index = 1)
+    Recursive next;
+  }
+
+  static class Unsupported {
+    @RunnelField(index = 1)
+    Object value;
+  }
+
+  private static Person person() {
+    Person person = new Person();
+    person.age = 30;
+    person.id = 1234L;
+    person.name = "joe";
+    person.color = Color.BLUE;
+    person.entry = new Entry("one", 1);
+    person.entries = Arrays.asList(new Entry("two", 2), new Entry(null, 3));
+    person.counts = new int[] { 4, 5 };
+    person.tags = new String[] { "x", "yy" };
+    person.ratio = 0.5;
+    person.flag = true;
+    person.moreEntries = new Entry[] { new Entry("four", 4) };
+    person.notMapped = 8;
+    return person;
+  }
+
+  private static void assertDecoded(Person decoded) {
+    assertThat(decoded.age, is(30));
+    assertThat(decoded.id, is(1234L));
+    assertThat(decoded.name, is("joe"));
+    assertThat(decoded.color, is(Color.BLUE));
+    assertThat(decoded.entry.key, is("one"));
+    assertThat(decoded.entry.value, is(1));
+    assertThat(decoded.entries.size(), is(2));
+    assertThat(decoded.entries.get(0).key, is("two"));
+    assertThat(decoded.entries.get(1).key, is(nullValue()));
+    assertThat(decoded.entries.get(1).value, is(3));
+    assertThat(decoded.counts, is(new int[] { 4, 5 }));
+    assertThat(decoded.tags, is(new String[] { "x", "yy" }));
+    assertThat(decoded.ratio, is(0.5));
+    assertThat(decoded.flag, is(true));
+    assertThat(decoded.moreEntries.length, is(1));
+    assertThat(decoded.moreEntries[0].key, is("four"));
+    assertThat(decoded.notMapped, is(7));
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    StructCodec<Person> codec = StructCodec.forClass(Person.class);
+    ByteBuffer bb = codec.encode(person());
+    bb.flip();
+
+    assertDecoded(codec.decode(bb));
+  }
+
+  @Test
+  public void testSameBytesAsStructEncoder() throws Exception {
+    StructCodec<Person> codec = StructCodec.forClass(Person.class);
+    Person person = person();
+
+    ByteBuffer indexed = codec.encode(person);
+    indexed.flip();
+
+    StructEncoder<Void> encoder = codec.struct().encoder();
+    codec.encode(encoder, person);
+    ByteBuffer byName = encoder.encode();
+    byName.flip();
+
+    assertThat(indexed, is(byName));
+
+    StructDecoder<Void> decoder = codec.struct().decoder(indexed);
+    assertDecoded(codec.decode(decoder));
+  }
+
+  @Test
+  public void testAbsentFieldsKeepDefaults() throws Exception {
+    StructCodec<Person> codec = StructCodec.forClass(Person.class);
+    Person person = new Person();
+    person.name = "joe";
+    ByteBuffer bb = codec.encode(person);
+    bb.flip();
+
+    Person decoded = codec.decode(bb);
+    assertThat(decoded.name, is("joe"));
+    assertThat(decoded.age, is(0));
+    assertThat(decoded.color, is(nullValue()));
+    assertThat(decoded.entry, is(nullValue()));
+    assertThat(decoded.entries, is(nullValue()));
+    assertThat(decoded.counts, is(nullValue()));
+    assertThat(decoded.ratio, is(nullValue()));
+  }
+
+  @Test
+  public void testGrowsBuffer() throws Exception {
+    StructCodec<Person> codec = StructCodec.forClass(Person.class);
+    Person person = new Person();
+    person.counts = new int[10_000];
+    person.counts[9_999] = 42;
+    ByteBuffer bb = codec.encode(person);
+    bb.flip();
+
+    assertThat(codec.decode(bb).counts[9_999], is(42));
+  }
+
+  @Test
+  public void testCachedCodec() throws Exception {
+    assertThat(StructCodec.forClass(Entry.class) == StructCodec.forClass(Entry.class), is(true));
+  }
+
+  @Test
+  public void testNullArrayElementIsRejected() throws Exception {
+    StructCodec<Person> codec = StructCodec.forClass(Person.class);
+    Person person = new Person();
+    person.tags = new String[] { "x", null };
+    try {
+      codec.encode(person);
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage(), containsString("tags"));
+    }
+  }
+
+  @Test
+  public void testNullListElementIsRejected() throws Exception {
+    StructCodec<Person> codec = StructCodec.forClass(Person.class);
+    Person person = new Person();
+    person.entries = Arrays.asList(new Entry("one", 1), null);
+    try {
+      codec.encode(codec.struct().encoder(), person);
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage(), containsString("entries"));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRecursiveStructure() throws Exception {
+    StructCodec.forClass(Recursive.class);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedType() throws Exception {
+    StructCodec.forClass(Unsupported.class);
+  }
+
+}
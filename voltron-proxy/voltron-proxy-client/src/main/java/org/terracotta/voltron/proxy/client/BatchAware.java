@@ -0,0 +1,42 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.voltron.proxy.client;
+
+/**
+ * Proxied entities which client type extends this interface can group their calls into {@link ProxyBatch}es.
+ */
+public interface BatchAware {
+
+  /**
+   * Opens a batch on the current thread, with a default maximum size.
+   *
+   * @see #batch(int)
+   */
+  ProxyBatch batch();
+
+  /**
+   * Opens a batch on the current thread: until the batch is closed, {@link org.terracotta.voltron.proxy.Async} calls
+   * made by this thread on this proxy are not sent one by one but grouped into a single message, which is sent when
+   * {@link ProxyBatch#flush()} or {@link ProxyBatch#close()} is called, when {@code maxSize} calls were grouped, or
+   * right before a synchronous call is made on this proxy by this thread. The server invokes the calls of a batch in
+   * order and the future of each call completes with its own result.
+   *
+   * @param maxSize the number of calls after which the batch is sent automatically
+   * @return the batch, to be closed by the calling thread
+   * @throws IllegalStateException if a batch is already open on this thread for this proxy
+   */
+  ProxyBatch batch(int maxSize);
+}
@@ -37,11 +37,34 @@ public class ClientProxyFactory {
     return createProxy(clientType, type, entityClientEndpoint, messageTypes, codec);
   }
 
+  public static <T extends Entity & ServerMessageAware> T createEntityProxy(Class<T> clientType,
+                                                                            Class<? super T> type,
+                                                                            EntityClientEndpoint<ProxyEntityMessage, ProxyEntityResponse> entityClientEndpoint,
+                                                                            Class<?>[] messageTypes,
+                                                                            Codec codec,
+                                                                            MessageDispatcher dispatcher) {
+    return createProxy(clientType, type, entityClientEndpoint, messageTypes, codec, dispatcher);
+  }
+
   public static <T> T createProxy(Class<T> clientType,
                                   Class<? super T> type,
                                   EntityClientEndpoint<ProxyEntityMessage, ProxyEntityResponse> entityClientEndpoint,
                                   Class<?>[] messageTypes,
                                   Codec codec) {
+    return createProxy(clientType, type, entityClientEndpoint, messageTypes, codec, null);
+  }
+
+  /**
+   * Creates a proxy which server messages and invocation callbacks are run by the given dispatcher,
+   * in order for that proxy. A {@code null} dispatcher gives the proxy its own thread, whose dispatching metrics are
+   * not exposed: only a shared dispatcher reports them.
+   */
+  public static <T> T createProxy(Class<T> clientType,
+                                  Class<? super T> type,
+                                  EntityClientEndpoint<ProxyEntityMessage, ProxyEntityResponse> entityClientEndpoint,
+                                  Class<?>[] messageTypes,
+                                  Codec codec,
+                                  MessageDispatcher dispatcher) {
 
     if (entityClientEndpoint == null) {
       throw new NullPointerException("EntityClientEndpoint has to be provided!");
@@ -63,7 +86,8 @@ public class ClientProxyFactory {
         new VoltronProxyInvocationHandler(
             entityClientEndpoint,
             CommonProxyFactory.invert(CommonProxyFactory.createResponseTypeMappings(type, messageTypes)).values(),
-            codec)
+            codec,
+            dispatcher)
     ));
   }
 
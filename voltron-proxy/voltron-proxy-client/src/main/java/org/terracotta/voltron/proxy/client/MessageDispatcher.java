@@ -0,0 +1,366 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.voltron.proxy.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dispatches server messages to {@link org.terracotta.voltron.proxy.MessageListener}s and runs invocation callbacks
+ * for many proxies on a small, bounded pool of threads.
+ * <p>
+ * Each proxy gets its own {@link Lane}: tasks of a lane run one at a time and in submission order, while different
+ * lanes run concurrently. A lane holds at most {@code laneCapacity} pending server messages: once full,
+ * {@link Lane#dispatch(Runnable) dispatching} blocks the thread delivering the messages for up to {@code offerTimeout},
+ * after which the message is dropped, logged and counted as rejected. Invocation callbacks, submitted through
+ * {@link Lane#execute(Runnable)}, are never bounded nor dropped, since a dropped callback would leave its caller
+ * waiting forever.
+ * <p>
+ * Sharing a dispatcher is opt-in: proxies created without one get a {@link #dedicatedLane(String) dedicated lane},
+ * with its own thread and no bound. A listener running on a shared dispatcher must not wait on a
+ * call made through another proxy of the same dispatcher: with all the threads busy doing so, the awaited callbacks
+ * could never run.
+ * <p>
+ * The metrics ({@link #getQueueDepth()}, {@link #getDispatchedCount()}, ...) cover the lanes of a dispatcher, so they
+ * are only available for the proxies sharing one: a dedicated lane is backed by a private dispatcher, which nothing
+ * exposes.
+ */
+public class MessageDispatcher {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(MessageDispatcher.class);
+
+  /**
+   * A lane capacity never rejecting server messages.
+   */
+  public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+  private static final int DEFAULT_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+  private static final int DEFAULT_LANE_CAPACITY = 1024;
+  private static final long DEFAULT_OFFER_TIMEOUT_MILLIS = 5_000L;
+  // tasks run by a lane in a row before giving its thread to the other lanes
+  private static final int DRAIN_BATCH = 64;
+
+  private static volatile MessageDispatcher shared;
+
+  private final ExecutorService workers;
+  private final int laneCapacity;
+  private final long offerTimeoutNanos;
+
+  private final AtomicInteger queueDepth = new AtomicInteger();
+  private final LongAdder dispatched = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder totalLatencyNanos = new LongAdder();
+  private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+  public MessageDispatcher(String name, int threads, int laneCapacity, long offerTimeout, TimeUnit unit) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Invalid thread count: " + threads);
+    }
+    if (laneCapacity < 1) {
+      throw new IllegalArgumentException("Invalid lane capacity: " + laneCapacity);
+    }
+    this.laneCapacity = laneCapacity;
+    this.offerTimeoutNanos = unit.toNanos(offerTimeout);
+    AtomicInteger threadCount = new AtomicInteger();
+    // the pool queue holds at most one drain task per lane
+    this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+      Thread thread = new Thread(r, name + "-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * A dispatcher shared by all the proxies given it explicitly. Its threads are daemon threads, started on demand, and
+   * its lanes hold at most 1024 server messages, the next ones waiting up to 5 seconds for room before being dropped.
+   */
+  public static MessageDispatcher shared() {
+    MessageDispatcher dispatcher = shared;
+    if (dispatcher == null) {
+      synchronized (MessageDispatcher.class) {
+        dispatcher = shared;
+        if (dispatcher == null) {
+          shared = dispatcher = new MessageDispatcher("Voltron Proxy Message Dispatcher", DEFAULT_THREADS, DEFAULT_LANE_CAPACITY,
+              DEFAULT_OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+      }
+    }
+    return dispatcher;
+  }
+
+  /**
+   * Creates a new lane, which tasks run in order.
+   *
+   * @param name the lane name, used for logging
+   * @return the lane
+   */
+  public Lane lane(String name) {
+    return new Lane(name, false);
+  }
+
+  /**
+   * Creates a lane backed by its own thread and never rejecting server messages, as a proxy used to have before
+   * dispatchers could be shared. The thread stops once the lane is closed and its pending tasks have run. The lane
+   * metrics are not exposed: only {@link Lane#getQueueDepth()} is available from the lane itself.
+   *
+   * @param name the lane name, also naming its thread
+   * @return the lane
+   */
+  public static Lane dedicatedLane(String name) {
+    MessageDispatcher dispatcher = new MessageDispatcher(name, 1, UNBOUNDED, 0L, TimeUnit.MILLISECONDS);
+    return dispatcher.new Lane(name, true);
+  }
+
+  /**
+   * Stops all the dispatcher threads, dropping the pending tasks.
+   */
+  public void shutdown() {
+    workers.shutdownNow();
+  }
+
+  /**
+   * @return the number of tasks waiting to be run, across all lanes
+   */
+  public int getQueueDepth() {
+    return queueDepth.get();
+  }
+
+  /**
+   * @return the number of tasks run so far
+   */
+  public long getDispatchedCount() {
+    return dispatched.sum();
+  }
+
+  /**
+   * @return the number of server messages rejected so far because their lane stayed full or was closed
+   */
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+
+  /**
+   * @return the mean time tasks waited in their lane before being run, in nanoseconds
+   */
+  public long getAverageLatencyNanos() {
+    long count = dispatched.sum();
+    return count == 0 ? 0L : totalLatencyNanos.sum() / count;
+  }
+
+  /**
+   * @return the longest time a task waited in its lane before being run, in nanoseconds
+   */
+  public long getMaxLatencyNanos() {
+    return maxLatencyNanos.get();
+  }
+
+  private void recordLatency(long latencyNanos) {
+    dispatched.increment();
+    totalLatencyNanos.add(latencyNanos);
+    long max;
+    while (latencyNanos > (max = maxLatencyNanos.get())) {
+      if (maxLatencyNanos.compareAndSet(max, latencyNanos)) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * A serial executor backed by the dispatcher threads.
+   */
+  public final class Lane implements Executor {
+
+    private final String name;
+    private final boolean ownsDispatcher;
+    private final BlockingQueue<Task> tasks = new LinkedBlockingQueue<>();
+    // room left for server messages, null when unbounded
+    private final Semaphore room = laneCapacity == UNBOUNDED ? null : new Semaphore(laneCapacity);
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean closed;
+
+    private Lane(String name, boolean ownsDispatcher) {
+      this.name = name;
+      this.ownsDispatcher = ownsDispatcher;
+    }
+
+    /**
+     * Queues an invocation callback. Callbacks are never bounded: once the lane is closed, they run on the calling
+     * thread instead.
+     */
+    @Override
+    public void execute(Runnable command) {
+      if (closed) {
+        command.run();
+        return;
+      }
+      enqueue(new Task(command, false));
+    }
+
+    /**
+     * Queues a server message, waiting for room if the lane is full.
+     *
+     * @throws RejectedExecutionException if the lane is closed or stayed full
+     */
+    public void dispatch(Runnable command) {
+      if (closed) {
+        rejected.increment();
+        throw new RejectedExecutionException("Lane " + name + " is closed");
+      }
+      if (room != null) {
+        boolean acquired;
+        try {
+          acquired = room.tryAcquire() || room.tryAcquire(offerTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          acquired = false;
+        }
+        if (!acquired) {
+          rejected.increment();
+          LOGGER.warn("Lane {} is full ({} pending server messages): message dropped", name, laneCapacity);
+          throw new RejectedExecutionException("Lane " + name + " is full");
+        }
+      }
+      enqueue(new Task(command, true));
+    }
+
+    /**
+     * Stops accepting server messages; the already queued tasks still run.
+     */
+    public void close() {
+      closed = true;
+      if (ownsDispatcher) {
+        // runs after the pending tasks
+        enqueue(new Task(workers::shutdown, false));
+      }
+    }
+
+    /**
+     * Stops accepting server messages and drops the queued tasks.
+     */
+    public void abort() {
+      closed = true;
+      int dropped = 0;
+      Task task;
+      while ((task = tasks.poll()) != null) {
+        task.dequeued();
+        dropped++;
+      }
+      queueDepth.addAndGet(-dropped);
+      if (ownsDispatcher) {
+        workers.shutdownNow();
+      }
+    }
+
+    /**
+     * @return the number of tasks waiting to be run in this lane
+     */
+    public int getQueueDepth() {
+      return tasks.size();
+    }
+
+    private void enqueue(Task task) {
+      tasks.add(task);
+      queueDepth.incrementAndGet();
+      schedule();
+    }
+
+    private void schedule() {
+      if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+        try {
+          workers.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+          // dispatcher shut down: nothing will run the callbacks anymore, so the calling thread does
+          scheduled.set(false);
+          runOnCaller();
+        }
+      }
+    }
+
+    private void drain() {
+      try {
+        for (int i = 0; i < DRAIN_BATCH; i++) {
+          Task task = tasks.poll();
+          if (task == null) {
+            break;
+          }
+          task.dequeued();
+          queueDepth.decrementAndGet();
+          recordLatency(System.nanoTime() - task.queuedAt);
+          try {
+            task.command.run();
+          } catch (RuntimeException e) {
+            LOGGER.warn("Error running task of lane {}: {}", name, e.getMessage(), e);
+          }
+        }
+      } finally {
+        scheduled.set(false);
+        // pick up tasks queued while the flag was still set
+        schedule();
+      }
+    }
+
+    private void runOnCaller() {
+      closed = true;
+      Task task;
+      while ((task = tasks.poll()) != null) {
+        task.dequeued();
+        queueDepth.decrementAndGet();
+        if (!task.serverMessage) {
+          try {
+            task.command.run();
+          } catch (RuntimeException e) {
+            LOGGER.warn("Error running task of lane {}: {}", name, e.getMessage(), e);
+          }
+        }
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "Lane " + name;
+    }
+
+    private final class Task {
+      private final Runnable command;
+      private final boolean serverMessage;
+      private final long queuedAt = System.nanoTime();
+
+      Task(Runnable command, boolean serverMessage) {
+        this.command = command;
+        this.serverMessage = serverMessage;
+      }
+
+      void dequeued() {
+        if (serverMessage && room != null) {
+          room.release();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.voltron.proxy.client;
+
+import org.terracotta.entity.EntityUserException;
+import org.terracotta.entity.InvokeFuture;
+import org.terracotta.exception.EntityException;
+import org.terracotta.voltron.proxy.Async;
+import org.terracotta.voltron.proxy.MessageType;
+import org.terracotta.voltron.proxy.ProxyEntityMessage;
+import org.terracotta.voltron.proxy.ProxyEntityResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A group of asynchronous calls made by one thread on a proxy, sent to the server as a single message.
+ * Instances are obtained from {@link BatchAware#batch(int)} and must only be used by the thread which opened them.
+ */
+public final class ProxyBatch implements AutoCloseable {
+
+  private final VoltronProxyInvocationHandler handler;
+  private final int maxSize;
+  private final Thread owner = Thread.currentThread();
+
+  private List<ProxyEntityMessage> messages = new ArrayList<>();
+  private List<BatchedFuture<?>> futures = new ArrayList<>();
+  private boolean ackReceived;
+  private boolean closed;
+
+  ProxyBatch(VoltronProxyInvocationHandler handler, int maxSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("Invalid batch size: " + maxSize);
+    }
+    this.handler = handler;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Sends the calls grouped so far, if any.
+   */
+  public void flush() {
+    checkOwner();
+    if (messages.isEmpty()) {
+      return;
+    }
+    List<ProxyEntityMessage> sentMessages = messages;
+    List<BatchedFuture<?>> sentFutures = futures;
+    boolean sentAckReceived = ackReceived;
+    messages = new ArrayList<>();
+    futures = new ArrayList<>();
+    ackReceived = false;
+
+    try {
+      if (sentMessages.size() == 1) {
+        // no need for a batch
+        sentFutures.get(0).sent(handler.send(sentMessages.get(0), sentAckReceived), -1);
+      } else {
+        InvokeFuture<ProxyEntityResponse> future = handler.send(ProxyEntityMessage.batch(sentMessages), sentAckReceived);
+        for (int i = 0; i < sentFutures.size(); i++) {
+          sentFutures.get(i).sent(future, i);
+        }
+      }
+    } catch (Exception e) {
+      for (BatchedFuture<?> future : sentFutures) {
+        future.failed(e);
+      }
+    }
+  }
+
+  /**
+   * Sends the calls grouped so far, if any, and stops grouping calls.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    try {
+      flush();
+    } finally {
+      closed = true;
+      handler.closed(this);
+    }
+  }
+
+  <T> Future<T> add(ProxyEntityMessage message, Async.Ack ack) {
+    checkOwner();
+    if (closed) {
+      throw new IllegalStateException("Batch closed");
+    }
+    BatchedFuture<T> future = new BatchedFuture<>(this);
+    messages.add(message);
+    futures.add(future);
+    ackReceived |= ack == Async.Ack.RECEIVED;
+    if (messages.size() >= maxSize) {
+      flush();
+    }
+    return future;
+  }
+
+  private void checkOwner() {
+    if (Thread.currentThread() != owner) {
+      throw new IllegalStateException("Batch opened by " + owner + " cannot be used by " + Thread.currentThread());
+    }
+  }
+
+  private static class BatchedFuture<T> implements Future<T> {
+
+    private final ProxyBatch batch;
+    private final CompletableFuture<InvokeFuture<ProxyEntityResponse>> sent = new CompletableFuture<>();
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private volatile int index;
+
+    BatchedFuture(ProxyBatch batch) {
+      this.batch = batch;
+    }
+
+    void sent(InvokeFuture<ProxyEntityResponse> future, int index) {
+      this.index = index;
+      sent.complete(future);
+    }
+
+    void failed(Throwable t) {
+      sent.completeExceptionally(t);
+    }
+
+    /**
+     * The call cannot be taken back once grouped: cancelling only marks this future as cancelled.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      return cancelled.compareAndSet(false, true);
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return cancelled.get();
+    }
+
+    @Override
+    public boolean isDone() {
+      if (!sent.isDone()) {
+        return false;
+      }
+      if (sent.isCompletedExceptionally()) {
+        return true;
+      }
+      return sent.join().isDone();
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+      InvokeFuture<ProxyEntityResponse> future = awaitSent();
+      try {
+        return extract(future.get());
+      } catch (EntityException | EntityUserException e) {
+        throw new ExecutionException(e);
+      }
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+      long deadline = System.nanoTime() + unit.toNanos(timeout);
+      flushIfOwner();
+      InvokeFuture<ProxyEntityResponse> future = sent.get(timeout, unit);
+      try {
+        return extract(future.getWithTimeout(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+      } catch (EntityException | EntityUserException e) {
+        throw new ExecutionException(e);
+      }
+    }
+
+    private InvokeFuture<ProxyEntityResponse> awaitSent() throws InterruptedException, ExecutionException {
+      flushIfOwner();
+      return sent.get();
+    }
+
+    private void flushIfOwner() {
+      // waiting on a call of a batch which is still open on this thread would never end
+      if (!sent.isDone() && Thread.currentThread() == batch.owner) {
+        batch.flush();
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T extract(ProxyEntityResponse response) throws EntityUserException {
+      if (index >= 0 && response != null && response.getMessageType() == MessageType.BATCH) {
+        response = ((ProxyEntityResponse[]) response.getResponse())[index];
+      }
+      return (T) VoltronProxyInvocationHandler.getResponse(response);
+    }
+  }
+}
@@ -32,6 +32,7 @@ public abstract class ProxyEntityClientService<T extends Entity & ServerMessageA
   private final Class<C> configType;
   private final Class<?>[] messageTypes;
   private final ProxyMessageCodec messageCodec;
+  private volatile MessageDispatcher dispatcher;
 
   @SuppressFBWarnings("EI_EXPOSE_REP2")
   public ProxyEntityClientService(Class<T> clientType, Class<? super T> type, Class<C> configType, Class<?>[] messageTypes) {
@@ -49,7 +50,7 @@ public abstract class ProxyEntityClientService<T extends Entity & ServerMessageA
 
   @Override
   public T create(EntityClientEndpoint<ProxyEntityMessage, ProxyEntityResponse> endpoint, Object userData) {
-    return ClientProxyFactory.createEntityProxy(clientType, type, endpoint, messageTypes, messageCodec.getCodec());
+    return ClientProxyFactory.createEntityProxy(clientType, type, endpoint, messageTypes, messageCodec.getCodec(), dispatcher);
   }
 
   @Override
@@ -76,4 +77,12 @@ public abstract class ProxyEntityClientService<T extends Entity & ServerMessageA
   protected void setCodec(Codec codec) {
     messageCodec.setCodec(codec);
   }
+
+  /**
+   * Makes the proxies created from now on share the given dispatcher, {@code null} giving each of them its own thread.
+   * The dispatching metrics are only reported by a shared dispatcher.
+   */
+  protected void setMessageDispatcher(MessageDispatcher dispatcher) {
+    this.dispatcher = dispatcher;
+  }
 }
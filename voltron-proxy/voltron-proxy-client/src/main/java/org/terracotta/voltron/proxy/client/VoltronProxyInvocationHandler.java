@@ -23,7 +23,9 @@ import org.terracotta.entity.EntityClientEndpoint;
 import org.terracotta.entity.EntityUserException;
 import org.terracotta.entity.InvocationBuilder;
 import org.terracotta.entity.InvokeFuture;
+import org.terracotta.entity.MessageCodecException;
 import org.terracotta.exception.EntityException;
+import org.terracotta.voltron.proxy.Async;
 import org.terracotta.voltron.proxy.Codec;
 import org.terracotta.voltron.proxy.MessageListener;
 import org.terracotta.voltron.proxy.MessageType;
@@ -38,8 +40,6 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -56,26 +56,44 @@ class VoltronProxyInvocationHandler implements InvocationHandler {
   private static final Method close;
   private static final Method registerMessageListener;
   private static final Method setEndpointListener;
+  private static final Method batch;
+  private static final Method batchWithSize;
+
+  private static final int DEFAULT_BATCH_SIZE = 64;
 
   static {
     try {
       close = Entity.class.getDeclaredMethod("close");
       registerMessageListener = ServerMessageAware.class.getDeclaredMethod("registerMessageListener", Class.class, MessageListener.class);
       setEndpointListener = EndpointListenerAware.class.getDeclaredMethod("setEndpointListener", EndpointListener.class);
+      batch = BatchAware.class.getDeclaredMethod("batch");
+      batchWithSize = BatchAware.class.getDeclaredMethod("batch", int.class);
     } catch (NoSuchMethodException e) {
       throw new AssertionError("Someone changed some method signature here!!!");
     }
   }
 
   private final EntityClientEndpoint<ProxyEntityMessage, ProxyEntityResponse> entityClientEndpoint;
-  private final ExecutorService handler;
+  private final MessageDispatcher.Lane handler;
   private final ConcurrentMap<Class<?>, CopyOnWriteArrayList<MessageListener<?>>> listeners;
+  private final ThreadLocal<ProxyBatch> currentBatch = new ThreadLocal<>();
 
   private volatile EndpointListener endpointListener;
 
   VoltronProxyInvocationHandler(final EntityClientEndpoint<ProxyEntityMessage, ProxyEntityResponse> entityClientEndpoint, Collection<Class<?>> events, final Codec codec) {
+    this(entityClientEndpoint, events, codec, null);
+  }
+
+  /**
+   * @param dispatcher the dispatcher running the server messages and invocation callbacks, or {@code null} for this
+   *                   proxy to get its own thread
+   */
+
+  VoltronProxyInvocationHandler(final EntityClientEndpoint<ProxyEntityMessage, ProxyEntityResponse> entityClientEndpoint, Collection<Class<?>> events, final Codec codec, MessageDispatcher dispatcher) {
     this.entityClientEndpoint = entityClientEndpoint;
-    handler = Executors.newSingleThreadExecutor(r -> new Thread(r, "Message Handler for " + entityClientEndpoint));
+    handler = dispatcher == null
+        ? MessageDispatcher.dedicatedLane("Message Handler for " + entityClientEndpoint)
+        : dispatcher.lane(String.valueOf(entityClientEndpoint));
     this.listeners = new ConcurrentHashMap<>();
     if (events.size() > 0) {
       for (Class<?> aClass : events) {
@@ -88,7 +106,7 @@ class VoltronProxyInvocationHandler implements InvocationHandler {
         @Override
         public void handleMessage(ProxyEntityResponse response) {
           try {
-            handler.execute(() -> {
+            handler.dispatch(() -> {
               final Class<?> aClass = response.getResponseType();
               try {
                 for (MessageListener messageListener : listeners.get(aClass)) {
@@ -99,8 +117,9 @@ class VoltronProxyInvocationHandler implements InvocationHandler {
               }
             });
           } catch (RejectedExecutionException e) {
-            // do nothing: this is normal in case the executor is closed
-            // and we can forget the message because the caller wants to close anyway
+            // do nothing: this is normal in case the lane is closed
+            // and we can forget the message because the caller wants to close anyway;
+            // a full lane is reported by the dispatcher
           }
         }
 
@@ -122,7 +141,7 @@ class VoltronProxyInvocationHandler implements InvocationHandler {
           if (endpointListener != null) {
             endpointListener.onDisconnectUnexpectedly();
           }
-          handler.shutdownNow();
+          handler.abort();
         }
       });
     }
@@ -132,7 +151,7 @@ class VoltronProxyInvocationHandler implements InvocationHandler {
   public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
 
     if (close.equals(method)) {
-      handler.shutdown();
+      handler.close();
       entityClientEndpoint.close();
       return null;
 
@@ -149,31 +168,59 @@ class VoltronProxyInvocationHandler implements InvocationHandler {
     } else if (setEndpointListener.equals(method)) {
       this.endpointListener = (EndpointListener) args[0];
       return null;
+
+    } else if (batch.equals(method)) {
+      return openBatch(DEFAULT_BATCH_SIZE);
+
+    } else if (batchWithSize.equals(method)) {
+      return openBatch((Integer) args[0]);
     }
 
     final MethodDescriptor methodDescriptor = MethodDescriptor.of(method);
+    final ProxyEntityMessage message = new ProxyEntityMessage(methodDescriptor, args, MessageType.MESSAGE);
 
-    final InvocationBuilder<ProxyEntityMessage, ProxyEntityResponse> builder = entityClientEndpoint.beginInvoke()
-        .message(new ProxyEntityMessage(methodDescriptor, args, MessageType.MESSAGE)).withExecutor(handler);
+    final ProxyBatch openBatch = currentBatch.get();
+    if (openBatch != null) {
+      if (methodDescriptor.isAsync()) {
+        return openBatch.add(message, methodDescriptor.getAck());
+      }
+      // keep the calls in order
+      openBatch.flush();
+    }
 
     if (methodDescriptor.isAsync()) {
-      switch (methodDescriptor.getAck()) {
-        case NONE:
-          break;
-        case RECEIVED:
-          builder.ackReceived();
-          break;
-        default:
-          throw new IllegalStateException(methodDescriptor.getAck().name());
-      }
-      return new ProxiedInvokeFuture<>(builder.invoke());
+      return new ProxiedInvokeFuture<>(send(message, methodDescriptor.getAck() == Async.Ack.RECEIVED));
 
     } else {
-      return getResponse(builder.invoke().get());
+      return getResponse(send(message, false).get());
+    }
+  }
+
+  InvokeFuture<ProxyEntityResponse> send(ProxyEntityMessage message, boolean ackReceived) throws MessageCodecException {
+    final InvocationBuilder<ProxyEntityMessage, ProxyEntityResponse> builder = entityClientEndpoint.beginInvoke()
+        .message(message).withExecutor(handler);
+    if (ackReceived) {
+      builder.ackReceived();
+    }
+    return builder.invoke();
+  }
+
+  void closed(ProxyBatch closedBatch) {
+    if (currentBatch.get() == closedBatch) {
+      currentBatch.remove();
+    }
+  }
+
+  private ProxyBatch openBatch(int maxSize) {
+    if (currentBatch.get() != null) {
+      throw new IllegalStateException("A batch is already open");
     }
+    ProxyBatch newBatch = new ProxyBatch(this, maxSize);
+    currentBatch.set(newBatch);
+    return newBatch;
   }
 
-  private static Object getResponse(ProxyEntityResponse proxyEntityResponse) throws EntityUserException {
+  static Object getResponse(ProxyEntityResponse proxyEntityResponse) throws EntityUserException {
     if (proxyEntityResponse == null) {
       return null;
     }
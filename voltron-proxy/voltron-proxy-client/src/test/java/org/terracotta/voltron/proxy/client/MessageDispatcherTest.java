@@ -0,0 +1,161 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.voltron.proxy.client;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.fail;
+
+public class MessageDispatcherTest {
+
+  private final MessageDispatcher dispatcher = new MessageDispatcher("test", 2, 4, 10, TimeUnit.MILLISECONDS);
+
+  @After
+  public void tearDown() {
+    dispatcher.shutdown();
+  }
+
+  @Test
+  public void testLanesKeepOrder() throws Exception {
+    MessageDispatcher.Lane first = dispatcher.lane("first");
+    MessageDispatcher.Lane second = dispatcher.lane("second");
+    List<Integer> firstSeen = Collections.synchronizedList(new ArrayList<>());
+    List<Integer> secondSeen = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch done = new CountDownLatch(200);
+
+    for (int i = 0; i < 100; i++) {
+      int value = i;
+      submit(first, () -> {
+        firstSeen.add(value);
+        done.countDown();
+      });
+      submit(second, () -> {
+        secondSeen.add(value);
+        done.countDown();
+      });
+    }
+
+    assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+    for (int i = 0; i < 100; i++) {
+      assertThat(firstSeen.get(i), is(i));
+      assertThat(secondSeen.get(i), is(i));
+    }
+    assertThat(dispatcher.getDispatchedCount(), is(200L));
+    assertThat(dispatcher.getQueueDepth(), is(0));
+  }
+
+  @Test
+  public void testFullLaneRejects() throws Exception {
+    MessageDispatcher.Lane lane = dispatcher.lane("full");
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    lane.execute(() -> {
+      blocked.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    assertThat(blocked.await(10, TimeUnit.SECONDS), is(true));
+
+    for (int i = 0; i < 4; i++) {
+      lane.dispatch(() -> { });
+    }
+    assertThat(lane.getQueueDepth(), is(4));
+    try {
+      lane.dispatch(() -> { });
+      fail();
+    } catch (RejectedExecutionException e) {
+      // expected
+    }
+    assertThat(dispatcher.getRejectedCount(), is(1L));
+
+    // callbacks are never rejected
+    CountDownLatch callbacks = new CountDownLatch(10);
+    for (int i = 0; i < 10; i++) {
+      lane.execute(callbacks::countDown);
+    }
+    assertThat(lane.getQueueDepth(), is(14));
+    release.countDown();
+    assertThat(callbacks.await(10, TimeUnit.SECONDS), is(true));
+    assertThat(dispatcher.getRejectedCount(), is(1L));
+  }
+
+  @Test
+  public void testClosedLane() throws Exception {
+    MessageDispatcher.Lane lane = dispatcher.lane("closed");
+    lane.close();
+    try {
+      lane.dispatch(() -> { });
+      fail();
+    } catch (RejectedExecutionException e) {
+      // expected
+    }
+    // a callback still runs, on the calling thread
+    List<Thread> ranOn = new ArrayList<>();
+    lane.execute(() -> ranOn.add(Thread.currentThread()));
+    assertThat(ranOn, is(Collections.singletonList(Thread.currentThread())));
+  }
+
+  @Test
+  public void testDedicatedLane() throws Exception {
+    MessageDispatcher.Lane lane = MessageDispatcher.dedicatedLane("dedicated");
+    CountDownLatch release = new CountDownLatch(1);
+    List<String> threads = Collections.synchronizedList(new ArrayList<>());
+    lane.dispatch(() -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    // never full
+    for (int i = 0; i < 5000; i++) {
+      lane.dispatch(() -> threads.add(Thread.currentThread().getName()));
+    }
+    CountDownLatch done = new CountDownLatch(1);
+    lane.execute(done::countDown);
+    lane.close();
+    release.countDown();
+
+    assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+    assertThat(threads.size(), is(5000));
+    assertThat(threads.get(0), is("dedicated-1"));
+  }
+
+  private static void submit(MessageDispatcher.Lane lane, Runnable task) throws InterruptedException {
+    // the lanes are small: retry until the dispatcher catches up
+    while (true) {
+      try {
+        lane.execute(task);
+        return;
+      } catch (RejectedExecutionException e) {
+        Thread.sleep(1);
+      }
+    }
+  }
+}
@@ -0,0 +1,592 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.voltron.proxy;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A compact binary {@link Codec}.
+ * <p>
+ * Primitives, boxed primitives, strings, arrays of primitives and strings, object arrays, lists, sets and maps are
+ * written with a one byte tag followed by their raw content. Arguments and responses declared with a primitive type
+ * are written without any tag. The way to encode each parameter list is computed once per method signature and
+ * cached.
+ * <p>
+ * Other types can be registered with {@link #register(Class, TypeCodec)}. Types which are neither known nor
+ * registered are encoded with the fallback codec, which is a {@link SerializationCodec} by default.
+ * <p>
+ * Both the client and the server side must use a {@code BinaryCodec} with the same registrations, made in the same
+ * order.
+ */
+public class BinaryCodec implements Codec {
+
+  private static final int INITIAL_BUFFER_SIZE = 64;
+
+  private static final byte NULL = 0;
+  private static final byte TRUE = 1;
+  private static final byte FALSE = 2;
+  private static final byte BYTE = 3;
+  private static final byte SHORT = 4;
+  private static final byte CHAR = 5;
+  private static final byte INT = 6;
+  private static final byte LONG = 7;
+  private static final byte FLOAT = 8;
+  private static final byte DOUBLE = 9;
+  private static final byte STRING = 10;
+  private static final byte BYTE_ARRAY = 11;
+  private static final byte INT_ARRAY = 12;
+  private static final byte LONG_ARRAY = 13;
+  private static final byte DOUBLE_ARRAY = 14;
+  private static final byte STRING_ARRAY = 15;
+  private static final byte OBJECT_ARRAY = 16;
+  private static final byte ARRAY_LIST = 17;
+  private static final byte HASH_SET = 18;
+  private static final byte LINKED_HASH_SET = 19;
+  private static final byte HASH_MAP = 20;
+  private static final byte LINKED_HASH_MAP = 21;
+  private static final byte REGISTERED = 22;
+  private static final byte FALLBACK = 23;
+
+  private static final Map<Class<?>, Byte> TAGS = new IdentityHashMap<>();
+
+  static {
+    TAGS.put(Byte.class, BYTE);
+    TAGS.put(Short.class, SHORT);
+    TAGS.put(Character.class, CHAR);
+    TAGS.put(Integer.class, INT);
+    TAGS.put(Long.class, LONG);
+    TAGS.put(Float.class, FLOAT);
+    TAGS.put(Double.class, DOUBLE);
+    TAGS.put(String.class, STRING);
+    TAGS.put(byte[].class, BYTE_ARRAY);
+    TAGS.put(int[].class, INT_ARRAY);
+    TAGS.put(long[].class, LONG_ARRAY);
+    TAGS.put(double[].class, DOUBLE_ARRAY);
+    TAGS.put(String[].class, STRING_ARRAY);
+    TAGS.put(Object[].class, OBJECT_ARRAY);
+    TAGS.put(ArrayList.class, ARRAY_LIST);
+    TAGS.put(HashSet.class, HASH_SET);
+    TAGS.put(LinkedHashSet.class, LINKED_HASH_SET);
+    TAGS.put(HashMap.class, HASH_MAP);
+    TAGS.put(LinkedHashMap.class, LINKED_HASH_MAP);
+  }
+
+  /**
+   * Encodes and decodes the instances of a registered type.
+   */
+  public interface TypeCodec<T> {
+
+    void encode(DataOutput output, T value) throws IOException;
+
+    T decode(DataInput input) throws IOException;
+  }
+
+  private final Codec fallback;
+  private final List<TypeCodec<Object>> registeredCodecs = new CopyOnWriteArrayList<>();
+  private final Map<Class<?>, Integer> registeredIds = new ConcurrentHashMap<>();
+  private final Map<List<Class<?>>, ValueCodec[]> plans = new ConcurrentHashMap<>();
+
+  public BinaryCodec() {
+    this(new SerializationCodec());
+  }
+
+  public BinaryCodec(Codec fallback) {
+    this.fallback = fallback;
+  }
+
+  /**
+   * Registers a codec for the instances of exactly the given type, which is then encoded with an identifier that
+   * depends on the registration order. Registrations must happen before the codec is used.
+   *
+   * @return this codec
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized <T> BinaryCodec register(Class<T> type, TypeCodec<? super T> codec) {
+    if (type.isPrimitive() || type == Boolean.class || TAGS.containsKey(type)) {
+      throw new IllegalArgumentException("Type " + type.getName() + " is already supported");
+    }
+    if (registeredIds.containsKey(type)) {
+      throw new IllegalArgumentException("Type " + type.getName() + " is already registered");
+    }
+    registeredCodecs.add((TypeCodec<Object>) codec);
+    registeredIds.put(type, registeredCodecs.size() - 1);
+    return this;
+  }
+
+  @Override
+  public byte[] encode(Class<?> type, Object value) {
+    BinaryOutput output = new BinaryOutput(INITIAL_BUFFER_SIZE);
+    try {
+      plan(type).write(this, output, value);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return output.toByteArray();
+  }
+
+  @Override
+  public byte[] encode(Class<?>[] types, Object[] values) {
+    if (values == null) {
+      values = new Object[0];
+    }
+    if (types.length != values.length) {
+      throw new IllegalArgumentException();
+    }
+    ValueCodec[] plan = plan(types);
+    BinaryOutput output = new BinaryOutput(INITIAL_BUFFER_SIZE);
+    try {
+      for (int i = 0; i < plan.length; i++) {
+        plan[i].write(this, output, values[i]);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return output.toByteArray();
+  }
+
+  @Override
+  public <T> T decode(Class<T> type, byte[] buffer) {
+    return decode(type, buffer, 0, buffer.length);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> T decode(Class<T> type, byte[] buffer, int offset, int len) {
+    if (len == 0) {
+      return null;
+    }
+    Object value;
+    try {
+      value = plan(type).read(this, new BinaryInput(buffer, offset, len));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return type.isPrimitive() ? (T) value : type.cast(value);
+  }
+
+  @Override
+  public Object[] decode(Class<?>[] types, byte[] buffer) {
+    return decode(types, buffer, 0, buffer.length);
+  }
+
+  @Override
+  public Object[] decode(Class<?>[] types, byte[] buffer, int offset, int len) {
+    ValueCodec[] plan = plan(types);
+    BinaryInput input = new BinaryInput(buffer, offset, len);
+    Object[] values = new Object[plan.length];
+    try {
+      for (int i = 0; i < plan.length; i++) {
+        Object value = plan[i].read(this, input);
+        values[i] = types[i].isPrimitive() ? value : types[i].cast(value);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return values;
+  }
+
+  private ValueCodec[] plan(Class<?>[] types) {
+    ValueCodec[] plan = plans.get(Arrays.asList(types));
+    if (plan == null) {
+      plan = new ValueCodec[types.length];
+      for (int i = 0; i < types.length; i++) {
+        plan[i] = plan(types[i]);
+      }
+      // copy the key, as the caller owns the array
+      plans.put(Arrays.asList(types.clone()), plan);
+    }
+    return plan;
+  }
+
+  private static ValueCodec plan(Class<?> type) {
+    if (type == void.class || type == Void.class) {
+      return ValueCodec.NONE;
+    }
+    if (type.isPrimitive()) {
+      return ValueCodec.valueOf(type.getName().toUpperCase(Locale.ROOT));
+    }
+    return ValueCodec.TAGGED;
+  }
+
+  void writeTagged(BinaryOutput output, Object value) throws IOException {
+    if (value == null) {
+      output.writeByte(NULL);
+      return;
+    }
+    if (value instanceof Boolean) {
+      output.writeByte((Boolean) value ? TRUE : FALSE);
+      return;
+    }
+    Byte tag = TAGS.get(value.getClass());
+    if (tag == null) {
+      Integer id = registeredIds.get(value.getClass());
+      if (id == null) {
+        byte[] bytes = fallback.encode(Object.class, value);
+        output.writeByte(FALLBACK);
+        output.writeVarInt(bytes.length);
+        output.write(bytes);
+      } else {
+        output.writeByte(REGISTERED);
+        output.writeVarInt(id);
+        registeredCodecs.get(id).encode(output, value);
+      }
+      return;
+    }
+    output.writeByte(tag);
+    switch (tag) {
+      case BYTE:
+        output.writeByte((Byte) value);
+        break;
+      case SHORT:
+        output.writeShort((Short) value);
+        break;
+      case CHAR:
+        output.writeChar((Character) value);
+        break;
+      case INT:
+        output.writeInt((Integer) value);
+        break;
+      case LONG:
+        output.writeLong((Long) value);
+        break;
+      case FLOAT:
+        output.writeFloat((Float) value);
+        break;
+      case DOUBLE:
+        output.writeDouble((Double) value);
+        break;
+      case STRING:
+        output.writeUTF((String) value);
+        break;
+      case BYTE_ARRAY: {
+        byte[] array = (byte[]) value;
+        output.writeVarInt(array.length);
+        output.write(array);
+        break;
+      }
+      case INT_ARRAY: {
+        int[] array = (int[]) value;
+        output.writeVarInt(array.length);
+        for (int v : array) {
+          output.writeInt(v);
+        }
+        break;
+      }
+      case LONG_ARRAY: {
+        long[] array = (long[]) value;
+        output.writeVarInt(array.length);
+        for (long v : array) {
+          output.writeLong(v);
+        }
+        break;
+      }
+      case DOUBLE_ARRAY: {
+        double[] array = (double[]) value;
+        output.writeVarInt(array.length);
+        for (double v : array) {
+          output.writeDouble(v);
+        }
+        break;
+      }
+      case STRING_ARRAY:
+      case OBJECT_ARRAY: {
+        Object[] array = (Object[]) value;
+        output.writeVarInt(array.length);
+        for (Object o : array) {
+          writeTagged(output, o);
+        }
+        break;
+      }
+      case ARRAY_LIST:
+      case HASH_SET:
+      case LINKED_HASH_SET: {
+        Collection<?> collection = (Collection<?>) value;
+        output.writeVarInt(collection.size());
+        for (Object o : collection) {
+          writeTagged(output, o);
+        }
+        break;
+      }
+      case HASH_MAP:
+      case LINKED_HASH_MAP: {
+        Map<?, ?> map = (Map<?, ?>) value;
+        output.writeVarInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+          writeTagged(output, entry.getKey());
+          writeTagged(output, entry.getValue());
+        }
+        break;
+      }
+      default:
+        throw new AssertionError(tag);
+    }
+  }
+
+  Object readTagged(BinaryInput input) throws IOException {
+    byte tag = input.readByte();
+    switch (tag) {
+      case NULL:
+        return null;
+      case TRUE:
+        return Boolean.TRUE;
+      case FALSE:
+        return Boolean.FALSE;
+      case BYTE:
+        return input.readByte();
+      case SHORT:
+        return input.readShort();
+      case CHAR:
+        return input.readChar();
+      case INT:
+        return input.readInt();
+      case LONG:
+        return input.readLong();
+      case FLOAT:
+        return input.readFloat();
+      case DOUBLE:
+        return input.readDouble();
+      case STRING:
+        return input.readUTF();
+      case BYTE_ARRAY: {
+        byte[] array = new byte[input.readLength()];
+        input.readFully(array);
+        return array;
+      }
+      case INT_ARRAY: {
+        int[] array = new int[input.readLength()];
+        for (int i = 0; i < array.length; i++) {
+          array[i] = input.readInt();
+        }
+        return array;
+      }
+      case LONG_ARRAY: {
+        long[] array = new long[input.readLength()];
+        for (int i = 0; i < array.length; i++) {
+          array[i] = input.readLong();
+        }
+        return array;
+      }
+      case DOUBLE_ARRAY: {
+        double[] array = new double[input.readLength()];
+        for (int i = 0; i < array.length; i++) {
+          array[i] = input.readDouble();
+        }
+        return array;
+      }
+      case STRING_ARRAY: {
+        String[] array = new String[input.readLength()];
+        for (int i = 0; i < array.length; i++) {
+          array[i] = (String) readTagged(input);
+        }
+        return array;
+      }
+      case OBJECT_ARRAY: {
+        Object[] array = new Object[input.readLength()];
+        for (int i = 0; i < array.length; i++) {
+          array[i] = readTagged(input);
+        }
+        return array;
+      }
+      case ARRAY_LIST: {
+        int size = input.readLength();
+        return readElements(input, size, new ArrayList<>(size));
+      }
+      case HASH_SET: {
+        int size = input.readLength();
+        return readElements(input, size, new HashSet<>(capacity(size)));
+      }
+      case LINKED_HASH_SET: {
+        int size = input.readLength();
+        return readElements(input, size, new LinkedHashSet<>(capacity(size)));
+      }
+      case HASH_MAP: {
+        int size = input.readLength();
+        return readEntries(input, size, new HashMap<>(capacity(size)));
+      }
+      case LINKED_HASH_MAP: {
+        int size = input.readLength();
+        return readEntries(input, size, new LinkedHashMap<>(capacity(size)));
+      }
+      case REGISTERED: {
+        int id = input.readVarInt();
+        if (id < 0 || id >= registeredCodecs.size()) {
+          throw new IllegalStateException("No registered type with id " + id);
+        }
+        return registeredCodecs.get(id).decode(input);
+      }
+      case FALLBACK: {
+        int length = input.readLength();
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return fallback.decode(Object.class, bytes);
+      }
+      default:
+        throw new IllegalStateException("Unknown tag: " + tag);
+    }
+  }
+
+  private Collection<Object> readElements(BinaryInput input, int size, Collection<Object> collection) throws IOException {
+    for (int i = 0; i < size; i++) {
+      collection.add(readTagged(input));
+    }
+    return collection;
+  }
+
+  private Map<Object, Object> readEntries(BinaryInput input, int size, Map<Object, Object> map) throws IOException {
+    for (int i = 0; i < size; i++) {
+      map.put(readTagged(input), readTagged(input));
+    }
+    return map;
+  }
+
+  private static int capacity(int size) {
+    return size < 3 ? size + 1 : (int) (size / 0.75f + 1.0f);
+  }
+
+  /**
+   * How a value of a declared type is written: values of primitive types are written raw, other values are tagged.
+   */
+  private enum ValueCodec {
+    NONE {
+      @Override
+      void write(BinaryCodec codec, BinaryOutput output, Object value) {
+      }
+
+      @Override
+      Object read(BinaryCodec codec, BinaryInput input) {
+        return null;
+      }
+    },
+    BOOLEAN {
+      @Override
+      void write(BinaryCodec codec, BinaryOutput output, Object value) {
+        output.writeBoolean((Boolean) value);
+      }
+
+      @Override
+      Object read(BinaryCodec codec, BinaryInput input) throws IOException {
+        return input.readBoolean();
+      }
+    },
+    BYTE {
+      @Override
+      void write(BinaryCodec codec, BinaryOutput output, Object value) {
+        output.writeByte((Byte) value);
+      }
+
+      @Override
+      Object read(BinaryCodec codec, BinaryInput input) throws IOException {
+        return input.readByte();
+      }
+    },
+    SHORT {
+      @Override
+      void write(BinaryCodec codec, BinaryOutput output, Object value) {
+        output.writeShort((Short) value);
+      }
+
+      @Override
+      Object read(BinaryCodec codec, BinaryInput input) throws IOException {
+        return input.readShort();
+      }
+    },
+    CHAR {
+      @Override
+      void write(BinaryCodec codec, BinaryOutput output, Object value) {
+        output.writeChar((Character) value);
+      }
+
+      @Override
+      Object read(BinaryCodec codec, BinaryInput input) throws IOException {
+        return input.readChar();
+      }
+    },
+    INT {
+      @Override
+      void write(BinaryCodec codec, BinaryOutput output, Object value) {
+        output.writeInt((Integer) value);
+      }
+
+      @Override
+      Object read(BinaryCodec codec, BinaryInput input) throws IOException {
+        return input.readInt();
+      }
+    },
+    LONG {
+      @Override
+      void write(BinaryCodec codec, BinaryOutput output, Object value) {
+        output.writeLong((Long) value);
+      }
+
+      @Override
+      Object read(BinaryCodec codec, BinaryInput input) throws IOException {
+        return input.readLong();
+      }
+    },
+    FLOAT {
+      @Override
+      void write(BinaryCodec codec, BinaryOutput output, Object value) {
+        output.writeFloat((Float) value);
+      }
+
+      @Override
+      Object read(BinaryCodec codec, BinaryInput input) throws IOException {
+        return input.readFloat();
+      }
+    },
+    DOUBLE {
+      @Override
+      void write(BinaryCodec codec, BinaryOutput output, Object value) {
+        output.writeDouble((Double) value);
+      }
+
+      @Override
+      Object read(BinaryCodec codec, BinaryInput input) throws IOException {
+        return input.readDouble();
+      }
+    },
+    TAGGED {
+      @Override
+      void write(BinaryCodec codec, BinaryOutput output, Object value) throws IOException {
+        codec.writeTagged(output, value);
+      }
+
+      @Override
+      Object read(BinaryCodec codec, BinaryInput input) throws IOException {
+        return codec.readTagged(input);
+      }
+    };
+
+    abstract void write(BinaryCodec codec, BinaryOutput output, Object value) throws IOException;
+
+    abstract Object read(BinaryCodec codec, BinaryInput input) throws IOException;
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.voltron.proxy;
+
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.UTFDataFormatException;
+
+/**
+ * A {@link DataInput} reading from a region of a byte array, the counterpart of {@link BinaryOutput}.
+ */
+final class BinaryInput implements DataInput {
+
+  private final byte[] buffer;
+  private final int limit;
+  private int position;
+
+  BinaryInput(byte[] buffer, int offset, int len) {
+    if (offset < 0 || len < 0 || offset + len > buffer.length) {
+      throw new IndexOutOfBoundsException("offset: " + offset + ", len: " + len + ", buffer length: " + buffer.length);
+    }
+    this.buffer = buffer;
+    this.position = offset;
+    this.limit = offset + len;
+  }
+
+  int position() {
+    return position;
+  }
+
+  boolean hasRemaining() {
+    return position < limit;
+  }
+
+  @Override
+  public void readFully(byte[] b) throws EOFException {
+    readFully(b, 0, b.length);
+  }
+
+  @Override
+  public void readFully(byte[] b, int off, int len) throws EOFException {
+    require(len);
+    System.arraycopy(buffer, position, b, off, len);
+    position += len;
+  }
+
+  @Override
+  public int skipBytes(int n) {
+    int skipped = Math.max(0, Math.min(n, limit - position));
+    position += skipped;
+    return skipped;
+  }
+
+  @Override
+  public boolean readBoolean() throws EOFException {
+    return readByte() != 0;
+  }
+
+  @Override
+  public byte readByte() throws EOFException {
+    require(1);
+    return buffer[position++];
+  }
+
+  @Override
+  public int readUnsignedByte() throws EOFException {
+    return readByte() & 0xFF;
+  }
+
+  @Override
+  public short readShort() throws EOFException {
+    return (short) readUnsignedShort();
+  }
+
+  @Override
+  public int readUnsignedShort() throws EOFException {
+    require(2);
+    return ((buffer[position++] & 0xFF) << 8) | (buffer[position++] & 0xFF);
+  }
+
+  @Override
+  public char readChar() throws EOFException {
+    return (char) readUnsignedShort();
+  }
+
+  @Override
+  public int readInt() throws EOFException {
+    require(4);
+    return ((buffer[position++] & 0xFF) << 24)
+        | ((buffer[position++] & 0xFF) << 16)
+        | ((buffer[position++] & 0xFF) << 8)
+        | (buffer[position++] & 0xFF);
+  }
+
+  @Override
+  public long readLong() throws EOFException {
+    return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+  }
+
+  @Override
+  public float readFloat() throws EOFException {
+    return Float.intBitsToFloat(readInt());
+  }
+
+  @Override
+  public double readDouble() throws EOFException {
+    return Double.longBitsToDouble(readLong());
+  }
+
+  @Override
+  public String readLine() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Reads strings written with {@link BinaryOutput#writeUTF(String)}.
+   */
+  @Override
+  public String readUTF() throws EOFException, UTFDataFormatException {
+    // every char takes at least one byte
+    int len = readLength();
+    char[] chars = new char[len];
+    for (int i = 0; i < len; i++) {
+      int b = readUnsignedByte();
+      if (b < 0x80) {
+        chars[i] = (char) b;
+      } else if ((b & 0xE0) == 0xC0) {
+        chars[i] = (char) (((b & 0x1F) << 6) | continuation());
+      } else if ((b & 0xF0) == 0xE0) {
+        chars[i] = (char) (((b & 0x0F) << 12) | (continuation() << 6) | continuation());
+      } else {
+        throw new UTFDataFormatException("Malformed input around byte " + (position - 1));
+      }
+    }
+    return new String(chars);
+  }
+
+  int readVarInt() throws EOFException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IllegalStateException("Malformed variable-length integer");
+  }
+
+  int readLength() throws EOFException {
+    int length = readVarInt();
+    if (length < 0 || length > limit - position) {
+      // every element takes at least one byte
+      throw new EOFException("Invalid length: " + length);
+    }
+    return length;
+  }
+
+  private int continuation() throws EOFException, UTFDataFormatException {
+    int b = readUnsignedByte();
+    if ((b & 0xC0) != 0x80) {
+      throw new UTFDataFormatException("Malformed input around byte " + (position - 1));
+    }
+    return b & 0x3F;
+  }
+
+  private void require(int length) throws EOFException {
+    if (length > limit - position) {
+      throw new EOFException();
+    }
+  }
+}
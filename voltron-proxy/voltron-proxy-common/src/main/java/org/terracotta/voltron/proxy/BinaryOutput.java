@@ -0,0 +1,168 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.voltron.proxy;
+
+import java.io.DataOutput;
+import java.util.Arrays;
+
+/**
+ * A growable byte array implementing {@link DataOutput}, without the synchronization and the extra copies of
+ * {@link java.io.ByteArrayOutputStream} and {@link java.io.DataOutputStream}.
+ */
+final class BinaryOutput implements DataOutput {
+
+  private byte[] buffer;
+  private int position;
+
+  BinaryOutput(int initialCapacity) {
+    this.buffer = new byte[initialCapacity];
+  }
+
+  int position() {
+    return position;
+  }
+
+  byte[] toByteArray() {
+    return position == buffer.length ? buffer : Arrays.copyOf(buffer, position);
+  }
+
+  @Override
+  public void write(int b) {
+    ensureCapacity(1);
+    buffer[position++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] b) {
+    write(b, 0, b.length);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    ensureCapacity(len);
+    System.arraycopy(b, off, buffer, position, len);
+    position += len;
+  }
+
+  @Override
+  public void writeBoolean(boolean v) {
+    write(v ? 1 : 0);
+  }
+
+  @Override
+  public void writeByte(int v) {
+    write(v);
+  }
+
+  @Override
+  public void writeShort(int v) {
+    ensureCapacity(2);
+    buffer[position++] = (byte) (v >>> 8);
+    buffer[position++] = (byte) v;
+  }
+
+  @Override
+  public void writeChar(int v) {
+    writeShort(v);
+  }
+
+  @Override
+  public void writeInt(int v) {
+    ensureCapacity(4);
+    buffer[position++] = (byte) (v >>> 24);
+    buffer[position++] = (byte) (v >>> 16);
+    buffer[position++] = (byte) (v >>> 8);
+    buffer[position++] = (byte) v;
+  }
+
+  @Override
+  public void writeLong(long v) {
+    writeInt((int) (v >>> 32));
+    writeInt((int) v);
+  }
+
+  @Override
+  public void writeFloat(float v) {
+    writeInt(Float.floatToIntBits(v));
+  }
+
+  @Override
+  public void writeDouble(double v) {
+    writeLong(Double.doubleToLongBits(v));
+  }
+
+  @Override
+  public void writeBytes(String s) {
+    int len = s.length();
+    ensureCapacity(len);
+    for (int i = 0; i < len; i++) {
+      buffer[position++] = (byte) s.charAt(i);
+    }
+  }
+
+  @Override
+  public void writeChars(String s) {
+    int len = s.length();
+    ensureCapacity(len * 2);
+    for (int i = 0; i < len; i++) {
+      char c = s.charAt(i);
+      buffer[position++] = (byte) (c >>> 8);
+      buffer[position++] = (byte) c;
+    }
+  }
+
+  /**
+   * Unlike {@link java.io.DataOutputStream#writeUTF(String)}, strings are not limited to 64K bytes.
+   */
+  @Override
+  public void writeUTF(String s) {
+    int len = s.length();
+    writeVarInt(len);
+    ensureCapacity(len * 3);
+    for (int i = 0; i < len; i++) {
+      char c = s.charAt(i);
+      if (c != 0 && c < 0x80) {
+        buffer[position++] = (byte) c;
+      } else if (c < 0x800) {
+        buffer[position++] = (byte) (0xC0 | (c >> 6));
+        buffer[position++] = (byte) (0x80 | (c & 0x3F));
+      } else {
+        buffer[position++] = (byte) (0xE0 | (c >> 12));
+        buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        buffer[position++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+  }
+
+  void writeVarInt(int v) {
+    ensureCapacity(5);
+    while ((v & ~0x7F) != 0) {
+      buffer[position++] = (byte) ((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    buffer[position++] = (byte) v;
+  }
+
+  private void ensureCapacity(int length) {
+    int required = position + length;
+    if (required < 0) {
+      throw new OutOfMemoryError("Encoded data too large");
+    }
+    if (required > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length << 1));
+    }
+  }
+}
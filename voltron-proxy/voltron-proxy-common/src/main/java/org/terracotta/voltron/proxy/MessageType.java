@@ -22,5 +22,9 @@ import com.tc.classloader.CommonComponent;
  */
 @CommonComponent
 public enum MessageType {
-  MESSAGE, SYNC, MESSENGER, ERROR
+  MESSAGE, SYNC, MESSENGER, ERROR,
+  /**
+   * Several {@link #MESSAGE}s sent as one, see {@link ProxyEntityMessage#batch(java.util.List)}.
+   */
+  BATCH
 }
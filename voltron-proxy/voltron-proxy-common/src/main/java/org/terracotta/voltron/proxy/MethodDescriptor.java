@@ -15,6 +15,8 @@
  */
 package org.terracotta.voltron.proxy;
 
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Array;
 import java.lang.reflect.GenericArrayType;
@@ -35,12 +37,14 @@ public final class MethodDescriptor {
   private final boolean async;
   private final Class<?> messageType;
   private final Method method;
+  private final Class<?>[] parameterTypes;
   private final Async.Ack ack;
   private final ExecutionStrategy.Location location;
   private final int concurrencyKey;
   
   private MethodDescriptor(Method method) {
     this.method = method;
+    this.parameterTypes = method.getParameterTypes();
 
     // @Async
     Async asyncAnnot = method.getAnnotation(Async.class);
@@ -115,8 +119,12 @@ public final class MethodDescriptor {
     return method.hashCode();
   }
 
+  /**
+   * @return the parameter types, which are computed once and must not be modified
+   */
+  @SuppressFBWarnings("EI_EXPOSE_REP")
   public Class<?>[] getParameterTypes() {
-    return method.getParameterTypes();
+    return parameterTypes;
   }
 
   public Annotation[][] getParameterAnnotations() {
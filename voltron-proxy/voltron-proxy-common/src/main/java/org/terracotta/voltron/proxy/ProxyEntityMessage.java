@@ -20,6 +20,10 @@ import org.terracotta.entity.EntityMessage;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Collections.unmodifiableList;
 
 /**
  * @author Alex Snaps
@@ -31,11 +35,65 @@ public class ProxyEntityMessage implements EntityMessage {
 
   private final MessageType type;
 
+  // only for batches
+  private final List<ProxyEntityMessage> messages;
+  private final int concurrencyKey;
+  private final ExecutionStrategy.Location executionLocation;
+
   @SuppressFBWarnings("EI_EXPOSE_REP")
   public ProxyEntityMessage(final MethodDescriptor method, final Object[] args, MessageType type) {
     this.method = method;
     this.args = args;
     this.type = type;
+    this.messages = null;
+    this.concurrencyKey = method.getConcurrencyKey();
+    this.executionLocation = method.getExecutionLocation();
+  }
+
+  private ProxyEntityMessage(List<ProxyEntityMessage> messages) {
+    this.method = null;
+    this.args = null;
+    this.type = MessageType.BATCH;
+    this.messages = unmodifiableList(new ArrayList<>(messages));
+
+    // a batch runs on the key of its messages when they all share it, exclusively otherwise
+    // and where at least one of its messages has to run
+    int key = messages.get(0).getConcurrencyKey();
+    ExecutionStrategy.Location location = messages.get(0).getExecutionLocation();
+    for (ProxyEntityMessage message : messages) {
+      if (message.getType() != MessageType.MESSAGE) {
+        throw new IllegalArgumentException("Cannot batch message of type " + message.getType());
+      }
+      if (message.getConcurrencyKey() != key) {
+        key = ConcurrencyStrategy.MANAGEMENT_KEY;
+      }
+      if (message.getExecutionLocation() != location) {
+        location = ExecutionStrategy.Location.BOTH;
+      }
+    }
+    this.concurrencyKey = key;
+    this.executionLocation = location;
+  }
+
+  /**
+   * Creates a message carrying several {@link MessageType#MESSAGE} messages, which are invoked in order and
+   * answered with a {@link ProxyEntityResponse#batch(ProxyEntityResponse[])} response.
+   */
+  public static ProxyEntityMessage batch(List<ProxyEntityMessage> messages) {
+    if (messages.isEmpty()) {
+      throw new IllegalArgumentException("Empty batch");
+    }
+    return new ProxyEntityMessage(messages);
+  }
+
+  /**
+   * @return the messages of a {@link MessageType#BATCH} message
+   */
+  public List<ProxyEntityMessage> getMessages() {
+    if (messages == null) {
+      throw new IllegalStateException("Not a batch");
+    }
+    return messages;
   }
 
   public MethodDescriptor getMethod() {
@@ -68,15 +126,15 @@ public class ProxyEntityMessage implements EntityMessage {
   }
 
   public Class<?> messageType() {
-    return method.getMessageType();
+    return method == null ? ProxyEntityResponse[].class : method.getMessageType();
   }
 
   public int getConcurrencyKey() {
-    return method.getConcurrencyKey();
+    return concurrencyKey;
   }
 
   public ExecutionStrategy.Location getExecutionLocation() {
-    return method.getExecutionLocation();
+    return executionLocation;
   }
 
   public MessageType getType() {
@@ -45,6 +45,13 @@ public final class ProxyEntityResponse implements EntityResponse {
     return response(MessageType.ERROR, EntityUserException.class, error);
   }
 
+  /**
+   * @param responses the responses to the messages of a batch, in the order of the batch
+   */
+  public static ProxyEntityResponse batch(ProxyEntityResponse[] responses) {
+    return response(MessageType.BATCH, ProxyEntityResponse[].class, responses);
+  }
+
   private final MessageType messageType;
   private final Class<?> responseType;
   private final Object response;
@@ -19,10 +19,10 @@ import org.terracotta.entity.MessageCodec;
 import org.terracotta.entity.MessageCodecException;
 import org.terracotta.entity.EntityUserException;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.lang.annotation.Annotation;
+import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -77,33 +77,17 @@ public class ProxyMessageCodec implements MessageCodec<ProxyEntityMessage, Proxy
 
   @Override
   public byte[] encodeResponse(ProxyEntityResponse r) throws MessageCodecException {
-    if (r == null) {
-      return new byte[0];
-    }
-    MessageType messageType = r.getMessageType();
-    ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-    DataOutputStream output = new DataOutputStream(byteOut);
     try {
-      output.writeByte(messageType.ordinal());
-      output.writeByte(messageType == MessageType.ERROR ? 0 : getMessageTypeIdentifier(r));
-      output.write(codec.encode(r.getResponseType(), r.getResponse()));
-      output.close();
+      return encodeProxyResponse(r);
     } catch (Exception e) {
       throw new MessageCodecException("Error encoding ProxyEntityResponse", e);
     }
-    return byteOut.toByteArray();
   }
 
   @Override
   public ProxyEntityResponse decodeResponse(byte[] buffer) throws MessageCodecException {
-    if (buffer.length == 0) {
-      return null;
-    }
     try {
-      MessageType messageType = MessageType.values()[buffer[0]];
-      Class<?> responseType = messageType == MessageType.ERROR ? EntityUserException.class : getResponseType(messageType, buffer[1]);
-      Object o = codec.decode(responseType, buffer, 2, buffer.length - 2);
-      return ProxyEntityResponse.response(messageType, responseType, o);
+      return decodeProxyResponse(buffer, 0, buffer.length);
     } catch (Exception e) {
       throw new MessageCodecException("Error decoding ProxyEntityResponse", e);
     }
@@ -112,30 +96,7 @@ public class ProxyMessageCodec implements MessageCodec<ProxyEntityMessage, Proxy
   @Override
   public byte[] encodeMessage(ProxyEntityMessage message) throws MessageCodecException {
     try {
-      MessageType messageType = message.getType();
-      MethodDescriptor method = message.getMethod();
-      Byte methodIdentifier = getMethodIdentifier(message);
-
-      Object[] args = message.getArguments();
-      final Annotation[][] parameterAnnotations = method.getParameterAnnotations();
-      for (int i = 0, parameterAnnotationsLength = parameterAnnotations.length; i < parameterAnnotationsLength; i++) {
-        final Annotation[] parameterAnnotation = parameterAnnotations[i];
-        for (Annotation annotation : parameterAnnotation) {
-          if (annotation.annotationType() == ClientId.class) {
-            args[i] = null;
-          }
-        }
-      }
-
-      ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-      DataOutputStream output = new DataOutputStream(byteOut);
-
-      output.writeByte(messageType.ordinal()); // first, message type
-      output.writeByte(methodIdentifier); // then method mapping
-      output.write(codec.encode(method.getParameterTypes(), args));
-
-      output.close();
-      return byteOut.toByteArray();
+      return encodeProxyMessage(message);
     } catch (Exception ex) {
       throw new MessageCodecException("Error encoding ProxyEntityMessage", ex);
     }
@@ -144,14 +105,117 @@ public class ProxyMessageCodec implements MessageCodec<ProxyEntityMessage, Proxy
   @Override
   public ProxyEntityMessage decodeMessage(final byte[] buffer) throws MessageCodecException {
     try {
-      MessageType messageType = MessageType.values()[buffer[0]];
-      MethodDescriptor method = getMethod(messageType, buffer[1]);
-      return new ProxyEntityMessage(method, codec.decode(method.getParameterTypes(), buffer, 2, buffer.length - 2), messageType);
+      return decodeProxyMessage(buffer, 0, buffer.length);
     } catch (Exception ex) {
       throw new MessageCodecException("Error decoding ProxyEntityMessage", ex);
     }
   }
 
+  private byte[] encodeProxyResponse(ProxyEntityResponse r) throws Exception {
+    if (r == null) {
+      return new byte[0];
+    }
+    MessageType messageType = r.getMessageType();
+    if (messageType == MessageType.BATCH) {
+      // batch: header, count, then each response prefixed by its length
+      ProxyEntityResponse[] responses = (ProxyEntityResponse[]) r.getResponse();
+      BinaryOutput output = new BinaryOutput(64);
+      output.writeByte(messageType.ordinal());
+      output.writeByte(0);
+      output.writeVarInt(responses.length);
+      for (ProxyEntityResponse response : responses) {
+        byte[] bytes = encodeProxyResponse(response);
+        output.writeVarInt(bytes.length);
+        output.write(bytes);
+      }
+      return output.toByteArray();
+    }
+    byte identifier = messageType == MessageType.ERROR ? 0 : getMessageTypeIdentifier(r);
+    return withHeader(messageType, identifier, codec.encode(r.getResponseType(), r.getResponse()));
+  }
+
+  private ProxyEntityResponse decodeProxyResponse(byte[] buffer, int offset, int len) throws Exception {
+    if (len == 0) {
+      return null;
+    }
+    MessageType messageType = MessageType.values()[buffer[offset]];
+    if (messageType == MessageType.BATCH) {
+      BinaryInput input = new BinaryInput(buffer, offset + 2, len - 2);
+      ProxyEntityResponse[] responses = new ProxyEntityResponse[input.readLength()];
+      for (int i = 0; i < responses.length; i++) {
+        int length = input.readLength();
+        responses[i] = decodeProxyResponse(buffer, input.position(), length);
+        input.skipBytes(length);
+      }
+      return ProxyEntityResponse.batch(responses);
+    }
+    Class<?> responseType = messageType == MessageType.ERROR ? EntityUserException.class : getResponseType(messageType, buffer[offset + 1]);
+    Object o = codec.decode(responseType, buffer, offset + 2, len - 2);
+    return ProxyEntityResponse.response(messageType, responseType, o);
+  }
+
+  private byte[] encodeProxyMessage(ProxyEntityMessage message) throws Exception {
+    MessageType messageType = message.getType();
+    if (messageType == MessageType.BATCH) {
+      // batch: header, count, then each message prefixed by its length
+      List<ProxyEntityMessage> messages = message.getMessages();
+      BinaryOutput output = new BinaryOutput(64);
+      output.writeByte(messageType.ordinal());
+      output.writeByte(0);
+      output.writeVarInt(messages.size());
+      for (ProxyEntityMessage m : messages) {
+        byte[] bytes = encodeProxyMessage(m);
+        output.writeVarInt(bytes.length);
+        output.write(bytes);
+      }
+      return output.toByteArray();
+    }
+
+    MethodDescriptor method = message.getMethod();
+    Byte methodIdentifier = getMethodIdentifier(message);
+
+    Object[] args = message.getArguments();
+    final Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+    for (int i = 0, parameterAnnotationsLength = parameterAnnotations.length; i < parameterAnnotationsLength; i++) {
+      final Annotation[] parameterAnnotation = parameterAnnotations[i];
+      for (Annotation annotation : parameterAnnotation) {
+        if (annotation.annotationType() == ClientId.class) {
+          args[i] = null;
+        }
+      }
+    }
+
+    return withHeader(messageType, methodIdentifier, codec.encode(method.getParameterTypes(), args));
+  }
+
+  private ProxyEntityMessage decodeProxyMessage(byte[] buffer, int offset, int len) throws Exception {
+    MessageType messageType = MessageType.values()[buffer[offset]];
+    if (messageType == MessageType.BATCH) {
+      BinaryInput input = new BinaryInput(buffer, offset + 2, len - 2);
+      int count = input.readLength();
+      List<ProxyEntityMessage> messages = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        int length = input.readLength();
+        messages.add(decodeProxyMessage(buffer, input.position(), length));
+        input.skipBytes(length);
+      }
+      return ProxyEntityMessage.batch(messages);
+    }
+    MethodDescriptor method = getMethod(messageType, buffer[offset + 1]);
+    return new ProxyEntityMessage(method, codec.decode(method.getParameterTypes(), buffer, offset + 2, len - 2), messageType);
+  }
+
+  /**
+   * Prepends the message type and the method or response type identifier to the encoded payload, in a single copy.
+   */
+  private static byte[] withHeader(MessageType messageType, byte identifier, byte[] payload) {
+    byte[] bytes = new byte[payload.length + 2];
+    bytes[0] = (byte) messageType.ordinal(); // first, message type
+    bytes[1] = identifier; // then method mapping
+    System.arraycopy(payload, 0, bytes, 2, payload.length);
+    return bytes;
+  }
+
   private MethodDescriptor getMethod(MessageType messageType, Byte b) {
     Map<Byte, MethodDescriptor> mapping = methodMappings.get(messageType);
     if (mapping == null) {
@@ -0,0 +1,185 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.voltron.proxy;
+
+import org.junit.Test;
+import org.terracotta.AvailableClass;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class BinaryCodecTest {
+
+  private final BinaryCodec codec = new BinaryCodec().register(Point.class, new PointCodec());
+
+  @Test
+  public void testPrimitiveParameters() {
+    Class<?>[] types = {int.class, long.class, boolean.class, double.class, char.class};
+    Object[] values = {42, 1234L, true, 0.5, 'x'};
+
+    byte[] encoded = codec.encode(types, values);
+
+    assertThat(encoded.length, is(4 + 8 + 1 + 8 + 2));
+    assertThat(codec.decode(types, encoded), equalTo(values));
+  }
+
+  @Test
+  public void testObjectParameters() {
+    List<Object> list = new ArrayList<>(Arrays.asList("a", null, 3, 0));
+    Map<String, Object> map = new HashMap<>();
+    map.put("list", list);
+    map.put("set", new LinkedHashSet<>(Arrays.asList(1L, 2L)));
+    Class<?>[] types = {String.class, Object.class, Map.class, String[].class, Integer.class};
+    Object[] values = {"h\u00e9llo \u20ac\u0000", map, map, new String[] {"x", null}, null};
+
+    Object[] decoded = codec.decode(types, codec.encode(types, values));
+
+    assertThat(decoded, equalTo(values));
+    assertThat(((Map<?, ?>) decoded[1]).get("set"), instanceOf(LinkedHashSet.class));
+  }
+
+  @Test
+  public void testArrays() {
+    Class<?>[] types = {byte[].class, int[].class, long[].class, double[].class, Object[].class};
+    Object[] values = {new byte[] {1, 2}, new int[] {3}, new long[] {4L, 5L}, new double[] {6.0}, new Object[] {"7", 8}};
+
+    assertThat(codec.decode(types, codec.encode(types, values)), equalTo(values));
+  }
+
+  @Test
+  public void testLongString() {
+    char[] chars = new char[100_000];
+    Arrays.fill(chars, '\u00e9');
+    String value = new String(chars);
+
+    assertThat(codec.decode(String.class, codec.encode(String.class, value)), is(value));
+  }
+
+  @Test
+  public void testRegisteredType() {
+    byte[] encoded = codec.encode(Object.class, new Point(1, 2));
+
+    assertThat(encoded.length, is(1 + 1 + 4 + 4));
+    Point point = codec.decode(Point.class, encoded);
+    assertThat(point.x, is(1));
+    assertThat(point.y, is(2));
+  }
+
+  @Test
+  public void testFallbackToSerialization() {
+    Object[] values = {new AvailableClass("foobar"), TimeUnit.SECONDS};
+    Object[] decoded = codec.decode(new Class<?>[] {AvailableClass.class, TimeUnit.class}, codec.encode(new Class<?>[] {AvailableClass.class, TimeUnit.class}, values));
+
+    assertThat(((AvailableClass) decoded[0]).string, is("foobar"));
+    assertThat(decoded[1], is((Object) TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testVoidAndNullResponses() {
+    assertThat(codec.encode(Void.TYPE, null).length, is(0));
+    assertThat(codec.decode(Void.TYPE, new byte[0]), is(nullValue()));
+    assertThat(codec.decode(String.class, codec.encode(String.class, null)), is(nullValue()));
+  }
+
+  @Test
+  public void testNoArgument() {
+    assertThat(codec.decode(new Class<?>[0], codec.encode(new Class<?>[0], null)).length, is(0));
+  }
+
+  @Test(expected = EOFException.class)
+  public void testOversizedStringLengthIsRejected() throws Exception {
+    // a length of Integer.MAX_VALUE chars, followed by nothing
+    byte[] bytes = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+    new BinaryInput(bytes, 0, bytes.length).readUTF();
+  }
+
+  @Test(expected = EOFException.class)
+  public void testNegativeStringLengthIsRejected() throws Exception {
+    byte[] bytes = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F};
+    new BinaryInput(bytes, 0, bytes.length).readUTF();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCannotRegisterSupportedType() {
+    new BinaryCodec().register(String.class, new BinaryCodec.TypeCodec<String>() {
+      @Override
+      public void encode(DataOutput output, String value) throws IOException {
+      }
+
+      @Override
+      public String decode(DataInput input) throws IOException {
+        return null;
+      }
+    });
+  }
+
+  @Test
+  public void testProxyMessageCodec() throws Exception {
+    ProxyMessageCodec messageCodec = new ProxyMessageCodec(Calculator.class);
+    messageCodec.setCodec(codec);
+    MethodDescriptor method = MethodDescriptor.of(Calculator.class.getMethod("add", int.class, Point.class));
+
+    ProxyEntityMessage message = messageCodec.decodeMessage(messageCodec.encodeMessage(new ProxyEntityMessage(method, new Object[] {3, new Point(1, 2)}, MessageType.MESSAGE)));
+    assertThat(message.getMethod(), equalTo(method));
+    assertThat(message.getArguments()[0], is((Object) 3));
+    assertThat(((Point) message.getArguments()[1]).y, is(2));
+
+    ProxyEntityResponse response = messageCodec.decodeResponse(messageCodec.encodeResponse(ProxyEntityResponse.messageResponse(int.class, 6)));
+    assertThat(response.getResponse(), is((Object) 6));
+  }
+
+  public interface Calculator {
+    int add(int a, Point b);
+  }
+
+  static final class Point {
+    final int x;
+    final int y;
+
+    Point(int x, int y) {
+      this.x = x;
+      this.y = y;
+    }
+  }
+
+  static final class PointCodec implements BinaryCodec.TypeCodec<Point> {
+    @Override
+    public void encode(DataOutput output, Point value) throws IOException {
+      output.writeInt(value.x);
+      output.writeInt(value.y);
+    }
+
+    @Override
+    public Point decode(DataInput input) throws IOException {
+      return new Point(input.readInt(), input.readInt());
+    }
+  }
+}
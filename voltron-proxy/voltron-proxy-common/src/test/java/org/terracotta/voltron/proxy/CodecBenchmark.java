@@ -0,0 +1,111 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.voltron.proxy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.terracotta.entity.MessageCodecException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link SerializationCodec} and {@link BinaryCodec} through a {@link ProxyMessageCodec}, on a
+ * management-like call carrying a few strings, a number and a collection.
+ * Run with {@code java -cp <test classpath> org.terracotta.voltron.proxy.CodecBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+  public interface Service {
+    Map<String, String> call(String context, String capability, long timestamp, List<String> parameters);
+  }
+
+  @Param({"serialization", "binary"})
+  public String codec;
+
+  private ProxyMessageCodec messageCodec;
+  private ProxyEntityMessage message;
+  private ProxyEntityResponse response;
+  private byte[] encodedMessage;
+  private byte[] encodedResponse;
+
+  @Setup
+  public void setUp() throws Exception {
+    messageCodec = new ProxyMessageCodec(Service.class);
+    messageCodec.setCodec(codec.equals("binary") ? new BinaryCodec() : new SerializationCodec());
+
+    List<String> parameters = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      parameters.add("parameter-" + i);
+    }
+    MethodDescriptor method = MethodDescriptor.of(Service.class.getMethod("call", String.class, String.class, long.class, List.class));
+    message = new ProxyEntityMessage(method, new Object[] {"cacheManager", "StatisticsCapability", 1234567890L, parameters}, MessageType.MESSAGE);
+
+    Map<String, String> result = new HashMap<>();
+    for (int i = 0; i < 4; i++) {
+      result.put("statistic-" + i, String.valueOf(i));
+    }
+    response = ProxyEntityResponse.messageResponse(Map.class, result);
+
+    encodedMessage = messageCodec.encodeMessage(message);
+    encodedResponse = messageCodec.encodeResponse(response);
+  }
+
+  @Benchmark
+  public byte[] encodeMessage() throws MessageCodecException {
+    return messageCodec.encodeMessage(message);
+  }
+
+  @Benchmark
+  public ProxyEntityMessage decodeMessage() throws MessageCodecException {
+    return messageCodec.decodeMessage(encodedMessage);
+  }
+
+  @Benchmark
+  public byte[] encodeResponse() throws MessageCodecException {
+    return messageCodec.encodeResponse(response);
+  }
+
+  @Benchmark
+  public ProxyEntityResponse decodeResponse() throws MessageCodecException {
+    return messageCodec.decodeResponse(encodedResponse);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(CodecBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -44,6 +44,7 @@ public abstract class ActiveProxiedServerEntity<S, R, M extends Messenger> imple
     switch (message.getType()) {
       case MESSAGE:
       case MESSENGER:
+      case BATCH:
         return entityInvoker.invoke(context, message);
       default:
         throw new AssertionError(message.getType());
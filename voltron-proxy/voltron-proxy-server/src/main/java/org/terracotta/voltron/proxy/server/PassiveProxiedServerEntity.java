@@ -35,6 +35,7 @@ public abstract class PassiveProxiedServerEntity implements PassiveServerEntity<
       case SYNC:
       case MESSENGER:
       case MESSAGE:
+      case BATCH:
         entityInvoker.invoke(message);
         break;
       default:
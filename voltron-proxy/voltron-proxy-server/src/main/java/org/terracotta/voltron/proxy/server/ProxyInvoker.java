@@ -21,6 +21,8 @@ import org.terracotta.entity.ClientDescriptor;
 import org.terracotta.entity.EntityUserException;
 import org.terracotta.entity.InvokeContext;
 import org.terracotta.entity.MessageCodecException;
+import org.terracotta.voltron.proxy.ExecutionStrategy;
+import org.terracotta.voltron.proxy.MessageType;
 import org.terracotta.voltron.proxy.ProxyEntityMessage;
 import org.terracotta.voltron.proxy.ProxyEntityResponse;
 
@@ -30,6 +32,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -49,6 +52,18 @@ class ProxyInvoker<T> implements MessageFiring {
   }
 
   ProxyEntityResponse invoke(ActiveInvokeContext<ProxyEntityResponse> context, final ProxyEntityMessage message) {
+    if (message.getType() == MessageType.BATCH) {
+      // each message of the batch is answered on its own, an error not preventing the next ones to run
+      List<ProxyEntityMessage> messages = message.getMessages();
+      ProxyEntityResponse[] responses = new ProxyEntityResponse[messages.size()];
+      for (int i = 0; i < responses.length; i++) {
+        ProxyEntityMessage m = messages.get(i);
+        if (runsOnActive(m.getExecutionLocation())) {
+          responses[i] = invoke(context, m);
+        }
+      }
+      return ProxyEntityResponse.batch(responses);
+    }
     ClientDescriptor clientDescriptor = context.getClientDescriptor();
     try {
       invocationContext.set(new InvocationContext(clientDescriptor));
@@ -73,6 +88,28 @@ class ProxyInvoker<T> implements MessageFiring {
   }
 
   void invoke(final ProxyEntityMessage message) {
+    if (message.getType() == MessageType.BATCH) {
+      // as on the active, a failing message does not prevent the next ones to run: the first failure is
+      // only reported once the whole batch has been applied, so that both sides end up in the same state
+      RuntimeException failure = null;
+      for (ProxyEntityMessage m : message.getMessages()) {
+        if (runsOnPassive(m.getExecutionLocation())) {
+          try {
+            invoke(m);
+          } catch (RuntimeException e) {
+            if (failure == null) {
+              failure = e;
+            } else {
+              failure.addSuppressed(e);
+            }
+          }
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+      return;
+    }
     try {
       message.invoke(target);
     } catch (IllegalAccessException e) {
@@ -133,6 +170,14 @@ class ProxyInvoker<T> implements MessageFiring {
     return new ArrayList<>(clients);
   }
 
+  private static boolean runsOnActive(ExecutionStrategy.Location location) {
+    return location == ExecutionStrategy.Location.ACTIVE || location == ExecutionStrategy.Location.BOTH;
+  }
+
+  private static boolean runsOnPassive(ExecutionStrategy.Location location) {
+    return location == ExecutionStrategy.Location.PASSIVE || location == ExecutionStrategy.Location.BOTH;
+  }
+
   private void handleExceptionOnSend(MessageCodecException ex) {
     throw new RuntimeException(ex);
   }
@@ -24,21 +24,28 @@ import org.terracotta.entity.ClientSourceId;
 import org.terracotta.entity.EndpointDelegate;
 import org.terracotta.entity.EntityClientEndpoint;
 import org.terracotta.entity.EntityResponse;
+import org.terracotta.entity.EntityUserException;
 import org.terracotta.entity.InvocationBuilder;
 import org.terracotta.entity.InvokeFuture;
 import org.terracotta.entity.MessageCodec;
 import org.terracotta.entity.MessageCodecException;
 import org.terracotta.exception.EntityException;
+import org.terracotta.voltron.proxy.Async;
 import org.terracotta.voltron.proxy.ClientId;
 import org.terracotta.voltron.proxy.MessageListener;
 import org.terracotta.voltron.proxy.ProxyEntityMessage;
 import org.terracotta.voltron.proxy.ProxyEntityResponse;
 import org.terracotta.voltron.proxy.ProxyMessageCodec;
 import org.terracotta.voltron.proxy.SerializationCodec;
+import org.terracotta.voltron.proxy.client.BatchAware;
 import org.terracotta.voltron.proxy.client.ClientProxyFactory;
+import org.terracotta.voltron.proxy.client.ProxyBatch;
 import org.terracotta.voltron.proxy.client.ServerMessageAware;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
@@ -57,6 +64,7 @@ import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import org.terracotta.entity.ActiveInvokeChannel;
@@ -231,12 +239,103 @@ public class EndToEndTest {
     assertThat(proxy.much(12, 12), notNullValue());
   }
 
+  @Test
+  public void testBatchedCalls() throws Exception {
+    final SerializationCodec codec = new SerializationCodec();
+    final MessageCodec<ProxyEntityMessage, ProxyEntityResponse> messageCodec = new ProxyMessageCodec(Batched.class, null);
+    final List<Integer> received = new ArrayList<>();
+    final ProxyInvoker<Batched> proxyInvoker = new ProxyInvoker<Batched>(new Batched() {
+      @Override
+      public Future<Integer> add(int value) {
+        received.add(value);
+        return CompletableFuture.completedFuture(received.size());
+      }
+
+      @Override
+      public int count() {
+        return received.size();
+      }
+
+      @Override
+      public ProxyBatch batch() {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public ProxyBatch batch(int maxSize) {
+        throw new UnsupportedOperationException();
+      }
+    });
+    final EntityClientEndpoint endpoint = mock(EntityClientEndpoint.class);
+    final RecordingInvocationBuilder builder = new RecordingInvocationBuilder(proxyInvoker, messageCodec);
+    when(endpoint.beginInvoke()).thenReturn(builder);
+
+    final Batched proxy = ClientProxyFactory.createProxy(Batched.class, Batched.class, endpoint, null, codec);
+    final Future<Integer> first;
+    final Future<Integer> second;
+    try (ProxyBatch batch = proxy.batch()) {
+      first = proxy.add(1);
+      second = proxy.add(2);
+      assertThat(received.isEmpty(), is(true));
+    }
+    assertThat(builder.invocations, is(1));
+    assertThat(received, equalTo(Arrays.asList(1, 2)));
+    assertThat(first.get(), is(1));
+    assertThat(second.get(), is(2));
+
+    try (ProxyBatch batch = proxy.batch()) {
+      proxy.add(3);
+      // a synchronous call sends the pending ones first
+      assertThat(proxy.count(), is(3));
+    }
+    assertThat(builder.invocations, is(3));
+  }
+
+  @Test
+  public void testFailingBatchedCallDoesNotStopPassive() throws Exception {
+    final SerializationCodec codec = new SerializationCodec();
+    final MessageCodec<ProxyEntityMessage, ProxyEntityResponse> messageCodec = new ProxyMessageCodec(Batched.class, null);
+    final ProxyInvoker<Batched> activeInvoker = new ProxyInvoker<Batched>(new FailingBatched(2, new ArrayList<>()));
+    final EntityClientEndpoint endpoint = mock(EntityClientEndpoint.class);
+    final RecordingInvocationBuilder builder = new RecordingInvocationBuilder(activeInvoker, messageCodec);
+    when(endpoint.beginInvoke()).thenReturn(builder);
+
+    final Batched proxy = ClientProxyFactory.createProxy(Batched.class, Batched.class, endpoint, null, codec);
+    final Future<Integer> failing;
+    final Future<Integer> last;
+    try (ProxyBatch batch = proxy.batch()) {
+      proxy.add(1);
+      failing = proxy.add(2);
+      last = proxy.add(3);
+    }
+    assertThat(builder.invocations, is(1));
+    try {
+      failing.get();
+      fail();
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(EntityUserException.class));
+    }
+    assertThat(last.get(), is(2));
+
+    // the replicated batch: the passive keeps going after the failing message, as the active did
+    final List<Integer> received = new ArrayList<>();
+    final ProxyInvoker<Batched> passiveInvoker = new ProxyInvoker<Batched>(new FailingBatched(2, received));
+    try {
+      passiveInvoker.invoke(builder.message);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage(), is("2"));
+    }
+    assertThat(received, equalTo(Arrays.asList(1, 3)));
+  }
+
   @SuppressWarnings({"unchecked", "rawtypes"})
   private static class RecordingInvocationBuilder implements InvocationBuilder<ProxyEntityMessage, ProxyEntityResponse> {
     private final MessageCodec<ProxyEntityMessage, ProxyEntityResponse> codec;
     private final ProxyInvoker<?> proxyInvoker;
     private ProxyEntityMessage message;
     private MyClientDescriptor clientDescriptor;
+    private int invocations;
 
     public RecordingInvocationBuilder(final ProxyInvoker<?> proxyInvoker, MessageCodec<ProxyEntityMessage, ProxyEntityResponse> codec) {
       this(proxyInvoker, codec, new MyClientDescriptor());
@@ -307,6 +406,13 @@ public class EndToEndTest {
 
     @Override
     public InvokeFuture<ProxyEntityResponse> invoke() {
+      invocations++;
+      // go through the codec, as the real transport would
+      try {
+        message = codec.decodeMessage(codec.encodeMessage(message));
+      } catch (MessageCodecException e) {
+        throw new AssertionError(e);
+      }
       final FutureTask<ProxyEntityResponse> futureTask = new FutureTask<ProxyEntityResponse>(new Callable<ProxyEntityResponse>() {
         @Override
         public ProxyEntityResponse call() throws Exception {
@@ -405,6 +511,50 @@ public class EndToEndTest {
 
   }
 
+  public interface Batched extends BatchAware {
+
+    @Async
+    Future<Integer> add(int value);
+
+    int count();
+
+  }
+
+  private static class FailingBatched implements Batched {
+
+    private final int failing;
+    private final List<Integer> received;
+
+    FailingBatched(int failing, List<Integer> received) {
+      this.failing = failing;
+      this.received = received;
+    }
+
+    @Override
+    public Future<Integer> add(int value) {
+      if (value == failing) {
+        throw new IllegalStateException(String.valueOf(value));
+      }
+      received.add(value);
+      return CompletableFuture.completedFuture(received.size());
+    }
+
+    @Override
+    public int count() {
+      return received.size();
+    }
+
+    @Override
+    public ProxyBatch batch() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ProxyBatch batch(int maxSize) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
   public interface ComparableEntity extends ServerMessageAware, Entity, Comparable {
 
   }